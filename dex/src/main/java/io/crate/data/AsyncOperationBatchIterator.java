@@ -55,14 +55,23 @@ import java.util.concurrent.CompletionStage;
  *                      onResult -> fill-up data of *this* BatchIterator
  * }
  * </pre>
+ *
+ * With read-ahead enabled, the next batch is processed as soon as the result of the current batch is available,
+ * while the consumer is still consuming the current result. Only items of the source which are already loaded
+ * are used for the read-ahead; the source itself is only loaded within {@link #loadNextBatch()}.
+ * The {@link BatchAccumulator} must then be able to accumulate items and process a batch while the result of the
+ * previous batch is still being consumed.
  */
 public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
 
     private final BatchIterator<T> source;
     private final int batchSize;
     private final BatchAccumulator<T, Iterator<? extends T>> batchAccumulator;
+    private final boolean readAhead;
 
     private Iterator<? extends T> it;
+    @Nullable
+    private CompletionStage<Iterator<? extends T>> nextBatch = null;
     private int idxWithinBatch = 0;
     private boolean sourceExhausted = false;
     private boolean closed = false;
@@ -71,9 +80,16 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
 
     public AsyncOperationBatchIterator(BatchIterator<T> source,
                                        BatchAccumulator<T, Iterator<? extends T>> batchAccumulator) {
+        this(source, batchAccumulator, false);
+    }
+
+    public AsyncOperationBatchIterator(BatchIterator<T> source,
+                                       BatchAccumulator<T, Iterator<? extends T>> batchAccumulator,
+                                       boolean readAhead) {
         this.source = source;
         this.batchSize = batchAccumulator.batchSize();
         this.batchAccumulator = batchAccumulator;
+        this.readAhead = readAhead;
         this.it = Collections.emptyIterator();
     }
 
@@ -89,6 +105,8 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
         source.moveToStart();
         batchAccumulator.reset();
         sourceExhausted = false;
+        nextBatch = null;
+        idxWithinBatch = 0;
         it = Collections.emptyIterator();
         current = null;
     }
@@ -119,6 +137,11 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
 
     @Override
     public CompletionStage<?> loadNextBatch() throws Exception {
+        if (nextBatch != null) {
+            CompletionStage<Iterator<? extends T>> batch = nextBatch;
+            nextBatch = null;
+            return concatAndReadAhead(batch);
+        }
         if (sourceExhausted) {
             throw new IllegalStateException("BatchIterator already fully loaded");
         }
@@ -126,34 +149,38 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
     }
 
     private CompletionStage<?> uncheckedLoadNextBatch() {
-        CompletionStage<?> batchProcessResult = tryProcessBatchFromLoadedSource();
-        if (batchProcessResult == null) {
+        CompletionStage<Iterator<? extends T>> batch = tryProcessBatchFromLoadedSource();
+        if (batch == null) {
             try {
                 if (source.allLoaded()) {
-                    return processRemaining();
+                    return concatAndReadAhead(processRemaining());
                 }
                 return source.loadNextBatch().thenCompose(ignored -> this.uncheckedLoadNextBatch());
             } catch (Throwable t) {
                 return CompletableFuture.failedFuture(t);
             }
         }
-        return batchProcessResult;
+        return concatAndReadAhead(batch);
     }
 
-
-    private CompletionStage<?> processRemaining() {
+    private CompletionStage<Iterator<? extends T>> processRemaining() {
         sourceExhausted = true;
-        return processBatch(true);
+        return batchAccumulator.processBatch(true);
     }
 
+    /**
+     * Feeds the loaded items of the source into the accumulator.
+     *
+     * @return the result of the batch or null if the loaded items didn't fill a batch.
+     */
     @Nullable
-    private CompletionStage<?> tryProcessBatchFromLoadedSource() {
+    private CompletionStage<Iterator<? extends T>> tryProcessBatchFromLoadedSource() {
         try {
             while (source.moveNext()) {
                 idxWithinBatch++;
                 batchAccumulator.onItem(source.currentElement());
                 if (batchSize > 0 && idxWithinBatch == batchSize) {
-                    return processBatch(false);
+                    return batchAccumulator.processBatch(false);
                 }
             }
         } catch (Throwable t) {
@@ -162,10 +189,34 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
         return null;
     }
 
-    private CompletionStage<?> processBatch(boolean isLastBatch) {
-        return batchAccumulator.processBatch(isLastBatch)
+    private CompletionStage<?> concatAndReadAhead(CompletionStage<Iterator<? extends T>> batch) {
+        return batch
             .exceptionally(this::maybeRaiseKilled)
-            .thenAccept(this::concatRows);
+            .thenAccept(rows -> {
+                concatRows(rows);
+                maybeReadAhead();
+            });
+    }
+
+    /**
+     * Starts processing the next batch from the already loaded items of the source.
+     * This runs before the future returned by {@link #loadNextBatch()} completes, so it doesn't run concurrently
+     * with the consumer accessing the source.
+     */
+    private void maybeReadAhead() {
+        if (readAhead == false || sourceExhausted || closed || killed != null) {
+            return;
+        }
+        nextBatch = tryProcessBatchFromLoadedSource();
+        if (nextBatch == null) {
+            try {
+                if (source.allLoaded()) {
+                    nextBatch = processRemaining();
+                }
+            } catch (Throwable t) {
+                nextBatch = CompletableFuture.failedFuture(t);
+            }
+        }
     }
 
     private Iterator<? extends T> maybeRaiseKilled(Throwable throwable) {
@@ -179,7 +230,7 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
 
     @Override
     public boolean allLoaded() {
-        return sourceExhausted;
+        return sourceExhausted && nextBatch == null;
     }
 
     private void raiseIfClosedOrKilled() {
@@ -206,6 +257,7 @@ public class AsyncOperationBatchIterator<T> implements BatchIterator<T> {
         return "AsyncOperationBatchIterator{" +
                "source=" + source +
                ", batchSize=" + batchSize +
+               ", readAhead=" + readAhead +
                ", batchAccumulator=" + batchAccumulator +
                ", idxWithinBatch=" + idxWithinBatch +
                ", sourceExhausted=" + sourceExhausted +
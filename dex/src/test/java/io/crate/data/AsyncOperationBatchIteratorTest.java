@@ -31,9 +31,13 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
 public class AsyncOperationBatchIteratorTest {
 
     @Test
@@ -46,11 +50,40 @@ public class AsyncOperationBatchIteratorTest {
         runTest(() -> new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 10), 3, 4, null));
     }
 
+    @Test
+    public void testAsyncOperationBatchIteratorWithReadAhead() throws Exception {
+        runTest(() -> TestingBatchIterators.range(0, 10), true);
+    }
+
+    @Test
+    public void testAsyncOperationBatchIteratorWithBatchedSourceAndReadAhead() throws Exception {
+        runTest(() -> new BatchSimulatingIterator<>(TestingBatchIterators.range(0, 10), 3, 4, null), true);
+    }
+
+    @Test
+    public void test_next_batch_is_processed_while_the_current_one_is_consumed() throws Exception {
+        DummyBatchAccumulator accumulator = new DummyBatchAccumulator();
+        BatchIterator<Row> it = new AsyncOperationBatchIterator<>(TestingBatchIterators.range(0, 10), accumulator, true);
+
+        it.loadNextBatch().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertThat(accumulator.numBatches, is(2));
+        assertThat(it.allLoaded(), is(false));
+        int numRows = 0;
+        while (it.moveNext()) {
+            numRows++;
+        }
+        assertThat(numRows, is(3));
+    }
+
     private void runTest(Supplier<BatchIterator<Row>> sourceSupplier) throws Exception {
+        runTest(sourceSupplier, false);
+    }
+
+    private void runTest(Supplier<BatchIterator<Row>> sourceSupplier, boolean readAhead) throws Exception {
         Supplier<BatchIterator<Row>> biSupplier = () -> {
             BatchIterator<Row> source = sourceSupplier.get();
             BatchAccumulator<Row, Iterator<? extends Row>> accumulator = new DummyBatchAccumulator();
-            return new AsyncOperationBatchIterator<>(source, accumulator);
+            return new AsyncOperationBatchIterator<>(source, accumulator, readAhead);
         };
 
         List<Object[]> expectedResult = new ArrayList<>();
@@ -64,6 +97,7 @@ public class AsyncOperationBatchIteratorTest {
     private static class DummyBatchAccumulator implements BatchAccumulator<Row, Iterator<? extends Row>> {
 
         private final List<Integer> items = new ArrayList<>();
+        private int numBatches = 0;
 
         DummyBatchAccumulator() {
         }
@@ -80,11 +114,11 @@ public class AsyncOperationBatchIteratorTest {
 
         @Override
         public CompletableFuture<Iterator<? extends Row>> processBatch(boolean isLastBatch) {
-            return CompletableFuture.supplyAsync(() -> {
-                List<Row1> rows = items.stream().map(Row1::new).collect(Collectors.toList());
-                items.clear();
-                return rows.iterator();
-            });
+            numBatches++;
+            // copy the items right away, so that the next batch can be accumulated while this one is processed
+            List<Row1> rows = items.stream().map(Row1::new).collect(Collectors.toList());
+            items.clear();
+            return CompletableFuture.supplyAsync(rows::iterator);
         }
 
         @Override
@@ -26,6 +26,7 @@ import io.crate.analyze.AnalyzedAlterTableOpenClose;
 import io.crate.analyze.AnalyzedAlterTableRename;
 import io.crate.analyze.AnalyzedAlterUser;
 import io.crate.analyze.AnalyzedBegin;
+import io.crate.analyze.AnalyzedClose;
 import io.crate.analyze.AnalyzedCommit;
 import io.crate.analyze.AnalyzedCopyFrom;
 import io.crate.analyze.AnalyzedCopyTo;
@@ -37,6 +38,7 @@ import io.crate.analyze.AnalyzedCreateSnapshot;
 import io.crate.analyze.AnalyzedCreateTable;
 import io.crate.analyze.AnalyzedCreateUser;
 import io.crate.analyze.AnalyzedDeallocate;
+import io.crate.analyze.AnalyzedDeclare;
 import io.crate.analyze.AnalyzedDeleteStatement;
 import io.crate.analyze.AnalyzedDropFunction;
 import io.crate.analyze.AnalyzedDropRepository;
@@ -44,6 +46,7 @@ import io.crate.analyze.AnalyzedDropSnapshot;
 import io.crate.analyze.AnalyzedDropTable;
 import io.crate.analyze.AnalyzedDropUser;
 import io.crate.analyze.AnalyzedDropView;
+import io.crate.analyze.AnalyzedFetch;
 import io.crate.analyze.AnalyzedInsertStatement;
 import io.crate.analyze.AnalyzedKill;
 import io.crate.analyze.AnalyzedPrivileges;
@@ -465,6 +468,22 @@ public final class AccessControlImpl implements AccessControl {
             return null;
         }
 
+        @Override
+        public Void visitDeclare(AnalyzedDeclare analysis, User user) {
+            return process(analysis.relation(), user);
+        }
+
+        @Override
+        public Void visitFetch(AnalyzedFetch analysis, User user) {
+            // privileges for the query of the cursor are checked on DECLARE
+            return null;
+        }
+
+        @Override
+        public Void visitClose(AnalyzedClose analysis, User user) {
+            return null;
+        }
+
         @Override
         public Void visitShowCreateTableAnalyzedStatement(AnalyzedShowCreateTable analysis, User user) {
             Privileges.ensureUserHasPrivilege(
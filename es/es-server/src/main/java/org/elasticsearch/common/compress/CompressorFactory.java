@@ -34,8 +34,13 @@ public class CompressorFactory {
 
     public static final Compressor COMPRESSOR = new DeflateCompressor();
 
+    public static final Compressor LZ4 = new LZ4Compressor();
+
     @Nullable
     public static Compressor compressor(BytesReference bytes) {
+        if (LZ4.isCompressed(bytes)) {
+            return LZ4;
+        }
             if (COMPRESSOR.isCompressed(bytes)) {
                 // bytes should be either detected as compressed or as xcontent,
                 // if we have bytes that can be either detected as compressed or
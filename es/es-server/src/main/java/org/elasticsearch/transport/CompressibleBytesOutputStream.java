@@ -21,11 +21,12 @@ package org.elasticsearch.transport;
 
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.BytesStream;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.zip.DeflaterOutputStream;
 
@@ -44,20 +45,51 @@ import java.util.zip.DeflaterOutputStream;
  */
 final class CompressibleBytesOutputStream extends StreamOutput {
 
+    // writes are buffered so that the time spent compressing can be measured per chunk instead of per write
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     private final StreamOutput stream;
     private final BytesStream bytesStreamOutput;
     private final boolean shouldCompress;
+    @Nullable
+    private final byte[] buffer;
+    private int bufferPos = 0;
+    private long uncompressedBytes = 0;
+    private long compressionTimeInNanos = 0;
 
-    CompressibleBytesOutputStream(BytesStream bytesStreamOutput, boolean shouldCompress) throws IOException {
+    /**
+     * @param compressor the compressor to use or null if the bytes should not be compressed
+     */
+    CompressibleBytesOutputStream(BytesStream bytesStreamOutput, @Nullable Compressor compressor) throws IOException {
         this.bytesStreamOutput = bytesStreamOutput;
-        this.shouldCompress = shouldCompress;
+        this.shouldCompress = compressor != null;
         if (shouldCompress) {
-            this.stream = CompressorFactory.COMPRESSOR.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
+            this.stream = compressor.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
+            this.buffer = new byte[BUFFER_SIZE];
         } else {
             this.stream = bytesStreamOutput;
+            this.buffer = null;
         }
     }
 
+    boolean isCompressed() {
+        return shouldCompress;
+    }
+
+    /**
+     * @return the number of bytes written to this stream, before compression.
+     */
+    long uncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /**
+     * @return the time spent compressing the bytes written to this stream
+     */
+    long compressionTimeInNanos() {
+        return compressionTimeInNanos;
+    }
+
     /**
      * This method ensures that compression is complete and returns the underlying bytes.
      *
@@ -69,24 +101,62 @@ final class CompressibleBytesOutputStream extends StreamOutput {
         // The actual ReleasableBytesStreamOutput will not be closed yet as it is wrapped in flushOnCloseStream when
         // passed to the deflater stream.
         if (shouldCompress) {
+            flushBuffer();
+            long startTime = System.nanoTime();
             stream.close();
+            compressionTimeInNanos += System.nanoTime() - startTime;
         }
 
         return bytesStreamOutput.bytes();
     }
 
+    private void flushBuffer() throws IOException {
+        if (bufferPos > 0) {
+            long startTime = System.nanoTime();
+            stream.writeBytes(buffer, 0, bufferPos);
+            compressionTimeInNanos += System.nanoTime() - startTime;
+            uncompressedBytes += bufferPos;
+            bufferPos = 0;
+        }
+    }
+
     @Override
     public void writeByte(byte b) throws IOException {
-        stream.write(b);
+        if (buffer == null) {
+            stream.write(b);
+            return;
+        }
+        if (bufferPos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferPos++] = b;
     }
 
     @Override
     public void writeBytes(byte[] b, int offset, int length) throws IOException {
-        stream.writeBytes(b, offset, length);
+        if (buffer == null) {
+            stream.writeBytes(b, offset, length);
+            return;
+        }
+        if (length > buffer.length - bufferPos) {
+            flushBuffer();
+            if (length >= buffer.length) {
+                long startTime = System.nanoTime();
+                stream.writeBytes(b, offset, length);
+                compressionTimeInNanos += System.nanoTime() - startTime;
+                uncompressedBytes += length;
+                return;
+            }
+        }
+        System.arraycopy(b, offset, buffer, bufferPos, length);
+        bufferPos += length;
     }
 
     @Override
     public void flush() throws IOException {
+        if (buffer != null) {
+            flushBuffer();
+        }
         stream.flush();
     }
 
@@ -53,6 +53,7 @@ import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.network.NetworkAddress;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.network.NetworkUtils;
+import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.BoundTransportAddress;
@@ -70,6 +71,7 @@ import org.elasticsearch.node.Node;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.StreamCorruptedException;
@@ -151,6 +153,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     // connections while no connect operations is going on
     private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
     protected final boolean compress;
+    private final CompressionScheme compressionScheme;
+    private final String[] compressActions;
     protected final Settings settings;
     private final String nodeName;
     private volatile BoundTransportAddress boundAddress;
@@ -162,6 +166,10 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
 
     private final MeanMetric readBytesMetric = new MeanMetric();
     private final MeanMetric transmittedBytesMetric = new MeanMetric();
+    private final CounterMetric compressedMessagesMetric = new CounterMetric();
+    private final CounterMetric uncompressedBytesMetric = new CounterMetric();
+    private final CounterMetric compressedBytesMetric = new CounterMetric();
+    private final CounterMetric compressionTimeMetric = new CounterMetric();
     private volatile Map<String, RequestHandlerRegistry> requestHandlers = Collections.emptyMap();
     private final ResponseHandlers responseHandlers = new ResponseHandlers();
     private final BytesReference pingMessage;
@@ -175,7 +183,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         this.bigArrays = bigArrays;
         this.circuitBreakerService = circuitBreakerService;
         this.namedWriteableRegistry = namedWriteableRegistry;
-        this.compress = Transport.TRANSPORT_TCP_COMPRESS.get(settings);
+        this.compress = TransportSettings.TRANSPORT_COMPRESS.get(settings);
+        this.compressionScheme = TransportSettings.TRANSPORT_COMPRESSION_SCHEME.get(settings);
+        this.compressActions = TransportSettings.TRANSPORT_COMPRESS_ACTIONS.get(settings).toArray(new String[0]);
         this.networkService = networkService;
         this.transportName = transportName;
         this.nodeName = Node.NODE_NAME_SETTING.get(settings);
@@ -823,10 +833,30 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         return compress && (!(request instanceof BytesTransportRequest));
     }
 
+    /**
+     * @return true if all messages of the action should be compressed, depending on
+     *         {@link TransportSettings#TRANSPORT_COMPRESS_ACTIONS}.
+     */
+    private boolean compressAction(String action) {
+        return compress && (compressActions.length == 0 || Regex.simpleMatch(compressActions, action));
+    }
+
+    /**
+     * Returns the compressor to use for a message sent to a node with the given version or null if the message
+     * should not be compressed. Nodes before 4.2 only understand DEFLATE.
+     */
+    @Nullable
+    private Compressor compressor(boolean compressMessage, Version version) {
+        if (compressMessage == false) {
+            return null;
+        }
+        return version.onOrAfter(Version.V_4_2_0) ? compressionScheme.compressor() : CompressorFactory.COMPRESSOR;
+    }
+
     private void sendRequestToChannel(final DiscoveryNode node, final TcpChannel channel, final long requestId, final String action,
                                       final TransportRequest request, TransportRequestOptions options, Version channelVersion,
                                       byte status) throws IOException, TransportException {
-        if (compress) {
+        if (compressAction(action)) {
             options = TransportRequestOptions.builder(options).withCompress(true).build();
         }
 
@@ -834,20 +864,21 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         // the header part is compressed, and the "body" can't be extracted as compressed
         final boolean compressMessage = options.compress() && canCompress(request);
 
+        // we pick the smallest of the 2, to support both backward and forward compatibility
+        // note, this is the only place we need to do this, since from here on, we use the serialized version
+        // as the version to use also when the node receiving this request will send the response with
+        Version version = Version.min(getCurrentVersion(), channelVersion);
+
         status = TransportStatus.setRequest(status);
         ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
-        final CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, compressMessage);
+        final CompressibleBytesOutputStream stream =
+            new CompressibleBytesOutputStream(bStream, compressor(compressMessage, version));
         boolean addedReleaseListener = false;
         try {
             if (compressMessage) {
                 status = TransportStatus.setCompress(status);
             }
 
-            // we pick the smallest of the 2, to support both backward and forward compatibility
-            // note, this is the only place we need to do this, since from here on, we use the serialized version
-            // as the version to use also when the node receiving this request will send the response with
-            Version version = Version.min(getCurrentVersion(), channelVersion);
-
             stream.setVersion(version);
             threadPool.getThreadContext().writeTo(stream);
             stream.writeStringArray(features);
@@ -940,12 +971,13 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             final String action,
             TransportResponseOptions options,
             byte status) throws IOException {
-        if (compress) {
+        if (compressAction(action)) {
             options = TransportResponseOptions.builder(options).withCompress(true).build();
         }
         status = TransportStatus.setResponse(status); // TODO share some code with sendRequest
         ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
-        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, options.compress());
+        CompressibleBytesOutputStream stream =
+            new CompressibleBytesOutputStream(bStream, compressor(options.compress(), nodeVersion));
         boolean addedReleaseListener = false;
         try {
             if (options.compress()) {
@@ -1010,6 +1042,12 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         // #validateRequest method. this might be a problem in deflate after all but it's important to write
         // the marker bytes.
         final BytesReference messageBody = stream.materializeBytes();
+        if (stream.isCompressed()) {
+            compressedMessagesMetric.inc();
+            uncompressedBytesMetric.inc(stream.uncompressedBytes());
+            compressedBytesMetric.inc(messageBody.length());
+            compressionTimeMetric.inc(stream.compressionTimeInNanos());
+        }
         final BytesReference header = buildHeader(requestId, status, stream.getVersion(), messageBody.length() + zeroCopyBuffer.length());
         return new CompositeBytesReference(header, messageBody, zeroCopyBuffer);
     }
@@ -1498,7 +1536,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     @Override
     public final TransportStats getStats() {
         return new TransportStats(acceptedChannels.size(), readBytesMetric.count(), readBytesMetric.sum(), transmittedBytesMetric.count(),
-            transmittedBytesMetric.sum());
+            transmittedBytesMetric.sum(), compressedMessagesMetric.count(), uncompressedBytesMetric.count(),
+            compressedBytesMetric.count(), compressionTimeMetric.count());
     }
 
     /**
@@ -67,6 +67,12 @@ public final class TransportSettings {
         boolSetting("transport.tcp.compress", false, Setting.Property.NodeScope);
     public static final Setting<Boolean> TRANSPORT_COMPRESS =
         boolSetting("transport.compress", OLD_TRANSPORT_COMPRESS, Setting.Property.NodeScope);
+    public static final Setting<CompressionScheme> TRANSPORT_COMPRESSION_SCHEME =
+        new Setting<>("transport.compression_scheme", CompressionScheme.LZ4.toString(), CompressionScheme::parse,
+            Setting.Property.NodeScope);
+    // patterns of the actions whose requests and responses are compressed if compression is enabled, empty for all actions
+    public static final Setting<List<String>> TRANSPORT_COMPRESS_ACTIONS =
+        listSetting("transport.compress_actions", emptyList(), Function.identity(), Setting.Property.NodeScope);
     // the scheduled internal ping interval setting, defaults to disabled (-1)
     public static final Setting<TimeValue> PING_SCHEDULE =
         timeSetting("transport.ping_schedule", TimeValue.timeValueSeconds(-1), Setting.Property.NodeScope);
@@ -19,22 +19,74 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 
-public class TransportStats {
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class TransportStats implements Writeable {
 
     private final long serverOpen;
     private final long rxCount;
     private final long rxSize;
     private final long txCount;
     private final long txSize;
+    private final long txCompressedCount;
+    private final long txUncompressedSize;
+    private final long txCompressedSize;
+    private final long txCompressionTimeInNanos;
 
     public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+        this(serverOpen, rxCount, rxSize, txCount, txSize, 0, 0, 0, 0);
+    }
+
+    public TransportStats(long serverOpen,
+                          long rxCount,
+                          long rxSize,
+                          long txCount,
+                          long txSize,
+                          long txCompressedCount,
+                          long txUncompressedSize,
+                          long txCompressedSize,
+                          long txCompressionTimeInNanos) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.txCompressedCount = txCompressedCount;
+        this.txUncompressedSize = txUncompressedSize;
+        this.txCompressedSize = txCompressedSize;
+        this.txCompressionTimeInNanos = txCompressionTimeInNanos;
+    }
+
+    public TransportStats(StreamInput in) throws IOException {
+        this.serverOpen = in.readVLong();
+        this.rxCount = in.readVLong();
+        this.rxSize = in.readVLong();
+        this.txCount = in.readVLong();
+        this.txSize = in.readVLong();
+        this.txCompressedCount = in.readVLong();
+        this.txUncompressedSize = in.readVLong();
+        this.txCompressedSize = in.readVLong();
+        this.txCompressionTimeInNanos = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(serverOpen);
+        out.writeVLong(rxCount);
+        out.writeVLong(rxSize);
+        out.writeVLong(txCount);
+        out.writeVLong(txSize);
+        out.writeVLong(txCompressedCount);
+        out.writeVLong(txUncompressedSize);
+        out.writeVLong(txCompressedSize);
+        out.writeVLong(txCompressionTimeInNanos);
     }
 
     public long serverOpen() {
@@ -76,4 +128,37 @@ public class TransportStats {
     public ByteSizeValue getTxSize() {
         return txSize();
     }
+
+    /**
+     * @return the number of sent messages which have been compressed
+     */
+    public long txCompressedCount() {
+        return txCompressedCount;
+    }
+
+    /**
+     * @return the size of the compressed messages before compression
+     */
+    public ByteSizeValue txUncompressedSize() {
+        return new ByteSizeValue(txUncompressedSize);
+    }
+
+    /**
+     * @return the size of the compressed messages after compression
+     */
+    public ByteSizeValue txCompressedSize() {
+        return new ByteSizeValue(txCompressedSize);
+    }
+
+    /**
+     * @return the ratio of the uncompressed to the compressed size of the compressed messages or 0 if no message has
+     *         been compressed
+     */
+    public double txCompressionRatio() {
+        return txCompressedSize == 0 ? 0.0 : (double) txUncompressedSize / txCompressedSize;
+    }
+
+    public TimeValue txCompressionTime() {
+        return new TimeValue(txCompressionTimeInNanos, TimeUnit.NANOSECONDS);
+    }
 }
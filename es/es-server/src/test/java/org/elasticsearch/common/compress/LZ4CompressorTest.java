@@ -0,0 +1,116 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package org.elasticsearch.common.compress;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class LZ4CompressorTest extends ESTestCase {
+
+    private static byte[] roundTrip(byte[] bytes) throws IOException {
+        BytesReference compressed = compress(bytes);
+        assertThat(CompressorFactory.compressor(compressed), sameInstance(CompressorFactory.LZ4));
+        try (StreamInput in = CompressorFactory.LZ4.streamInput(compressed.streamInput())) {
+            byte[] uncompressed = new byte[bytes.length];
+            in.readBytes(uncompressed, 0, uncompressed.length);
+            assertThat(in.read(), is(-1));
+            return uncompressed;
+        }
+    }
+
+    private static BytesReference compress(byte[] bytes) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (StreamOutput compressedOut = CompressorFactory.LZ4.streamOutput(out)) {
+            compressedOut.writeBytes(bytes);
+        }
+        return out.bytes();
+    }
+
+    @Test
+    public void testRoundTripOfRepetitiveBytes() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"name\": \"Arthur\"}");
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        assertThat(bytes.length > LZ4Compressor.BLOCK_SIZE, is(true));
+
+        assertThat(roundTrip(bytes), is(bytes));
+        assertThat(compress(bytes).length(), lessThan(bytes.length / 4));
+    }
+
+    @Test
+    public void testRoundTripOfRandomBytes() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            byte[] bytes = randomByteArrayOfLength(randomIntBetween(0, 3 * LZ4Compressor.BLOCK_SIZE));
+            assertThat(roundTrip(bytes), is(bytes));
+        }
+    }
+
+    @Test
+    public void testRoundTripOfOverlappingMatches() throws Exception {
+        byte[] bytes = new byte[1000];
+        Arrays.fill(bytes, (byte) 'a');
+        bytes[500] = 'b';
+        assertThat(roundTrip(bytes), is(bytes));
+        assertThat(roundTrip(new byte[] { 1, 2, 3 }), is(new byte[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void testCorruptBlockIsRejected() throws Exception {
+        byte[] bytes = new byte[100];
+        Arrays.fill(bytes, (byte) 'a');
+        byte[] compressed = new byte[LZ4Compressor.maxCompressedLength(bytes.length)];
+        int compressedLength = LZ4Compressor.compress(bytes, 0, bytes.length, compressed, 0, new int[1 << 12]);
+
+        byte[] uncompressed = new byte[bytes.length];
+        LZ4Compressor.decompress(compressed, 0, compressedLength, uncompressed, 0, uncompressed.length);
+        assertThat(uncompressed, is(bytes));
+
+        expectThrows(IOException.class,
+            () -> LZ4Compressor.decompress(compressed, 0, compressedLength, new byte[200], 0, 200));
+    }
+
+    @Test
+    public void testDeflateIsStillDetected() throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (StreamOutput compressedOut = CompressorFactory.COMPRESSOR.streamOutput(out)) {
+            compressedOut.writeString("foo");
+        }
+        assertThat(CompressorFactory.compressor(out.bytes()), sameInstance(CompressorFactory.COMPRESSOR));
+        assertThat(CompressorFactory.compressor(new BytesArray("{}")), is((Compressor) null));
+    }
+}
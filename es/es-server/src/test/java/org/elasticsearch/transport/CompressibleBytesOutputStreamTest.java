@@ -0,0 +1,114 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.Compressor;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompressibleBytesOutputStreamTest extends ESTestCase {
+
+    /**
+     * Writes single bytes, small chunks which fit into the buffer and a chunk which is larger than the buffer
+     * and returns all written bytes in order.
+     */
+    private static byte[] writeMixedChunks(CompressibleBytesOutputStream stream) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        byte[] small = "{\"id\": 1, \"name\": \"Arthur\"}".getBytes(StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"name\": \"Trillian\"}");
+        }
+        byte[] large = sb.toString().getBytes(StandardCharsets.UTF_8);
+        assertThat(large.length, greaterThan(8 * 1024));
+
+        for (int i = 0; i < 500; i++) {
+            stream.writeByte((byte) 'x');
+            expected.write('x');
+            stream.writeBytes(small, 0, small.length);
+            expected.write(small, 0, small.length);
+        }
+        stream.writeBytes(large, 0, large.length);
+        expected.write(large, 0, large.length);
+        stream.writeByte((byte) 'y');
+        expected.write('y');
+        return expected.toByteArray();
+    }
+
+    private static void assertCompressedStream(Compressor compressor) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(out, compressor)) {
+            byte[] expected = writeMixedChunks(stream);
+            BytesReference bytes = stream.materializeBytes();
+
+            assertThat(stream.isCompressed(), is(true));
+            assertThat(stream.uncompressedBytes(), is((long) expected.length));
+            assertThat(stream.compressionTimeInNanos(), greaterThan(0L));
+            assertThat(bytes.length(), lessThan(expected.length));
+            assertThat(CompressorFactory.compressor(bytes), sameInstance(compressor));
+            try (StreamInput in = compressor.streamInput(bytes.streamInput())) {
+                byte[] uncompressed = new byte[expected.length];
+                in.readBytes(uncompressed, 0, uncompressed.length);
+                assertThat(in.read(), is(-1));
+                assertThat(uncompressed, is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testLZ4CompressedStreamCountsAllWrittenBytes() throws Exception {
+        assertCompressedStream(CompressorFactory.LZ4);
+    }
+
+    @Test
+    public void testDeflateCompressedStreamCountsAllWrittenBytes() throws Exception {
+        assertCompressedStream(CompressorFactory.COMPRESSOR);
+    }
+
+    @Test
+    public void testUncompressedStreamWritesRawBytes() throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        try (CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(out, null)) {
+            byte[] expected = writeMixedChunks(stream);
+            BytesReference bytes = stream.materializeBytes();
+
+            assertThat(stream.isCompressed(), is(false));
+            assertThat(stream.uncompressedBytes(), is(0L));
+            assertThat(stream.compressionTimeInNanos(), is(0L));
+            assertThat(BytesReference.toBytes(bytes), is(expected));
+        }
+    }
+}
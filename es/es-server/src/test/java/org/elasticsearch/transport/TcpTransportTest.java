@@ -19,8 +19,14 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.Compressor;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
@@ -29,14 +35,51 @@ import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class TcpTransportTest extends ESTestCase {
 
+    private static final String RECOVERY_ACTIONS = "internal:index/shard/recovery/*";
+    private static final String FILE_CHUNK_ACTION = "internal:index/shard/recovery/file_chunk";
+    private static final String GET_ACTION = "indices:data/read/get";
+    private static final String PAYLOAD;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append("{\"id\": ").append(i).append(", \"name\": \"Arthur\"}");
+        }
+        PAYLOAD = sb.toString();
+    }
+
+    private TestThreadPool threadPool;
+
+    @Before
+    public void setUpThreadPool() {
+        threadPool = new TestThreadPool("test");
+    }
+
+    @After
+    public void shutdownThreadPool() {
+        threadPool.shutdown();
+    }
+
     /** Test ipv4 host with a default port works */
     public void testParseV4DefaultPort() throws Exception {
         TransportAddress[] addresses = TcpTransport.parse("127.0.0.1", 1234);
@@ -141,37 +184,207 @@ public class TcpTransportTest extends ESTestCase {
                                  containsInAnyOrder("[::1]:4500", "127.0.0.1:4500"));
     }
 
-    private void testDefaultSeedAddresses(final Settings settings, Matcher<Iterable<? extends String>> seedAddressesMatcher) {
-        final TestThreadPool testThreadPool = new TestThreadPool("test");
-        try {
-            final TcpTransport tcpTransport = new TcpTransport("test",
-                                                               settings,
-                                                               testThreadPool,
-                                                               BigArrays.NON_RECYCLING_INSTANCE,
-                                                               new NoneCircuitBreakerService(),
-                                                               writableRegistry(),
-                                                               new NetworkService(Collections.emptyList())) {
-
-                @Override
-                protected TcpChannel bind(String name, InetSocketAddress address) {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                protected TcpChannel initiateChannel(DiscoveryNode node,
-                                                     ActionListener<Void> connectListener) {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                protected void stopInternal() {
-                    throw new UnsupportedOperationException();
-                }
-            };
-
-            assertThat(tcpTransport.getDefaultSeedAddresses(), seedAddressesMatcher);
-        } finally {
-            testThreadPool.shutdown();
+    public void testCompressActionsOnlyCompressMatchingRequestsAndResponses() throws Exception {
+        TcpTransport transport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), true)
+            .putList(TransportSettings.TRANSPORT_COMPRESS_ACTIONS.getKey(), RECOVERY_ACTIONS, "indices:data/write/bulk*")
+            .build());
+
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, FILE_CHUNK_ACTION)), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, "indices:data/write/bulk[s]")), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, GET_ACTION)), nullValue());
+
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, FILE_CHUNK_ACTION)), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, "indices:data/write/bulk[s]")), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, GET_ACTION)), nullValue());
+    }
+
+    public void testEmptyCompressActionsCompressAllMessages() throws Exception {
+        TcpTransport transport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), true)
+            .build());
+
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, FILE_CHUNK_ACTION)), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, GET_ACTION)), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, FILE_CHUNK_ACTION)), sameInstance(CompressorFactory.LZ4));
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, GET_ACTION)), sameInstance(CompressorFactory.LZ4));
+    }
+
+    public void testCompressActionsAreIgnoredIfCompressionIsDisabled() throws Exception {
+        TcpTransport transport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), false)
+            .putList(TransportSettings.TRANSPORT_COMPRESS_ACTIONS.getKey(), RECOVERY_ACTIONS)
+            .build());
+
+        assertThat(compressorOf(sendRequest(transport, Version.CURRENT, FILE_CHUNK_ACTION)), nullValue());
+        assertThat(compressorOf(sendResponse(transport, Version.CURRENT, FILE_CHUNK_ACTION)), nullValue());
+        assertThat(transport.getStats().txCompressedCount(), is(0L));
+    }
+
+    public void testMessagesToNodesBefore42AreCompressedWithDeflate() throws Exception {
+        TcpTransport transport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), true)
+            .build());
+
+        assertThat(compressorOf(sendRequest(transport, Version.V_4_1_0, GET_ACTION)), sameInstance(CompressorFactory.COMPRESSOR));
+        assertThat(compressorOf(sendResponse(transport, Version.V_4_1_0, GET_ACTION)), sameInstance(CompressorFactory.COMPRESSOR));
+
+        TcpTransport deflateTransport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), true)
+            .put(TransportSettings.TRANSPORT_COMPRESSION_SCHEME.getKey(), "deflate")
+            .build());
+        assertThat(compressorOf(sendRequest(deflateTransport, Version.CURRENT, GET_ACTION)), sameInstance(CompressorFactory.COMPRESSOR));
+        assertThat(compressorOf(sendResponse(deflateTransport, Version.CURRENT, GET_ACTION)), sameInstance(CompressorFactory.COMPRESSOR));
+    }
+
+    public void testStatsCountOnlyCompressedMessages() throws Exception {
+        TcpTransport transport = newTransport(Settings.builder()
+            .put(TransportSettings.TRANSPORT_COMPRESS.getKey(), true)
+            .putList(TransportSettings.TRANSPORT_COMPRESS_ACTIONS.getKey(), RECOVERY_ACTIONS)
+            .build());
+        TransportStats stats = transport.getStats();
+        assertThat(stats.txCompressedCount(), is(0L));
+        assertThat(stats.txCompressionRatio(), is(0.0d));
+
+        List<BytesReference> compressed = Arrays.asList(
+            sendRequest(transport, Version.CURRENT, FILE_CHUNK_ACTION),
+            sendResponse(transport, Version.V_4_1_0, FILE_CHUNK_ACTION));
+        BytesReference uncompressed = sendRequest(transport, Version.CURRENT, GET_ACTION);
+        assertThat(compressorOf(uncompressed), nullValue());
+
+        long compressedSize = 0;
+        long uncompressedSize = 0;
+        for (BytesReference message : compressed) {
+            BytesReference body = message.slice(TcpHeader.HEADER_SIZE, message.length() - TcpHeader.HEADER_SIZE);
+            compressedSize += body.length();
+            uncompressedSize += CompressorFactory.uncompress(body).length();
+        }
+
+        stats = transport.getStats();
+        assertThat(stats.txCount(), is(3L));
+        assertThat(stats.txCompressedCount(), is(2L));
+        assertThat(stats.txCompressedSize().getBytes(), is(compressedSize));
+        assertThat(stats.txUncompressedSize().getBytes(), is(uncompressedSize));
+        assertThat(stats.txUncompressedSize().getBytes(), greaterThan(2L * PAYLOAD.length()));
+        assertThat(stats.txCompressionRatio(), is((double) uncompressedSize / compressedSize));
+        assertThat(stats.txCompressionRatio(), greaterThan(4.0d));
+        assertThat(stats.txCompressionTime().nanos(), greaterThan(0L));
+    }
+
+    private TcpTransport newTransport(Settings settings) {
+        return new TcpTransport("test",
+                                settings,
+                                threadPool,
+                                BigArrays.NON_RECYCLING_INSTANCE,
+                                new NoneCircuitBreakerService(),
+                                writableRegistry(),
+                                new NetworkService(Collections.emptyList())) {
+
+            @Override
+            protected TcpChannel bind(String name, InetSocketAddress address) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected TcpChannel initiateChannel(DiscoveryNode node,
+                                                 ActionListener<Void> connectListener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected void stopInternal() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static BytesReference sendRequest(TcpTransport transport, Version peerVersion, String action) throws IOException {
+        CapturingChannel channel = new CapturingChannel();
+        DiscoveryNode node = new DiscoveryNode("peer", buildNewFakeTransportAddress(), peerVersion);
+        ConnectionProfile profile = ConnectionProfile.buildSingleChannelProfile(
+            TransportRequestOptions.Type.REG, null, null, null, null);
+        TcpTransport.NodeChannels connection =
+            transport.new NodeChannels(node, Collections.singletonList(channel), profile, peerVersion);
+        connection.sendRequest(1L, action, new BulkyRequest(), TransportRequestOptions.EMPTY);
+        return channel.message;
+    }
+
+    private static BytesReference sendResponse(TcpTransport transport, Version peerVersion, String action) throws IOException {
+        CapturingChannel channel = new CapturingChannel();
+        transport.sendResponse(
+            peerVersion, Collections.emptySet(), channel, new BulkyResponse(), 1L, action, TransportResponseOptions.EMPTY);
+        return channel.message;
+    }
+
+    /**
+     * @return the compressor the body of the message was compressed with or null if it isn't compressed
+     */
+    @Nullable
+    private static Compressor compressorOf(BytesReference message) {
+        byte status = message.get(TcpHeader.MARKER_BYTES_SIZE + TcpHeader.MESSAGE_LENGTH_SIZE + TcpHeader.REQUEST_ID_SIZE);
+        if (TransportStatus.isCompress(status) == false) {
+            return null;
         }
+        Compressor compressor = CompressorFactory.compressor(
+            message.slice(TcpHeader.HEADER_SIZE, message.length() - TcpHeader.HEADER_SIZE));
+        assertThat(compressor, notNullValue());
+        return compressor;
+    }
+
+    private static class BulkyRequest extends TransportRequest {
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(PAYLOAD);
+        }
+    }
+
+    private static class BulkyResponse extends TransportResponse {
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(PAYLOAD);
+        }
+    }
+
+    /**
+     * Channel which keeps a copy of the last message sent to it and completes every send immediately.
+     */
+    private static class CapturingChannel implements TcpChannel {
+
+        private BytesReference message;
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void addCloseListener(ActionListener<Void> listener) {
+        }
+
+        @Override
+        public void setSoLinger(int value) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), 4300);
+        }
+
+        @Override
+        public void sendMessage(BytesReference reference, ActionListener<Void> listener) {
+            message = new BytesArray(BytesReference.toBytes(reference));
+            listener.onResponse(null);
+        }
+    }
+
+    private void testDefaultSeedAddresses(final Settings settings, Matcher<Iterable<? extends String>> seedAddressesMatcher) {
+        assertThat(newTransport(settings).getDefaultSeedAddresses(), seedAddressesMatcher);
     }
 }
@@ -95,6 +95,9 @@ statement
         (ON clazz qnames)? FROM users=idents                                         #revokePrivilege
     | createStmt                                                                     #create
     | DEALLOCATE (PREPARE)? (ALL | prepStmt=stringLiteralOrIdentifierOrQname)        #deallocate
+    | DECLARE cursorName=ident CURSOR FOR query                                      #declare
+    | FETCH fetchDirection? (IN | FROM)? cursorName=ident                            #fetch
+    | CLOSE (ALL | cursorName=ident)                                                 #close
     | ANALYZE                                                                        #analyze
     ;
 
@@ -417,6 +420,13 @@ numericLiteral
     | integerLiteral
     ;
 
+fetchDirection
+    : NEXT
+    | ALL
+    | FORWARD (ALL | count=integerLiteral)?
+    | count=integerLiteral
+    ;
+
 intervalLiteral
     : INTERVAL sign=(PLUS | MINUS)? stringLiteral from=intervalField (TO to=intervalField)?
     ;
@@ -661,7 +671,7 @@ nonReserved
     | WORK | SERIALIZABLE | REPEATABLE | COMMITTED | UNCOMMITTED | READ | WRITE | WINDOW | DEFERRABLE
     | STRING_TYPE | IP | DOUBLE | FLOAT | TIMESTAMP | LONG | INT | INTEGER | SHORT | BYTE | BOOLEAN | PRECISION
     | REPLACE | RETURNING | SWAP | GC | DANGLING | ARTIFACTS | DECOMMISSION | LEADING | TRAILING | BOTH | TRIM
-    | CURRENT_SCHEMA | PROMOTE
+    | CURRENT_SCHEMA | PROMOTE | DECLARE | CURSOR | FETCH | NEXT | FORWARD
     ;
 
 SELECT: 'SELECT';
@@ -673,6 +683,11 @@ ALL: 'ALL';
 ANY: 'ANY';
 SOME: 'SOME';
 DEALLOCATE: 'DEALLOCATE';
+DECLARE: 'DECLARE';
+CURSOR: 'CURSOR';
+FETCH: 'FETCH';
+NEXT: 'NEXT';
+FORWARD: 'FORWARD';
 DIRECTORY: 'DIRECTORY';
 DISTINCT: 'DISTINCT';
 WHERE: 'WHERE';
@@ -527,7 +527,12 @@ public final class SqlFormatter {
             builder.append(formatQualifiedName(node.getName()));
             if (!node.partitionProperties().isEmpty()) {
                 builder.append(" PARTITION (");
+                boolean first = true;
                 for (Assignment assignment : node.partitionProperties()) {
+                    if (!first) {
+                        builder.append(", ");
+                    }
+                    first = false;
                     builder.append(assignment.columnName().toString());
                     builder.append("=");
                     builder.append(assignment.expression().toString());
@@ -53,6 +53,7 @@ import io.crate.sql.tree.BetweenPredicate;
 import io.crate.sql.tree.BooleanLiteral;
 import io.crate.sql.tree.Cast;
 import io.crate.sql.tree.CharFilters;
+import io.crate.sql.tree.Close;
 import io.crate.sql.tree.ClusteredBy;
 import io.crate.sql.tree.CollectionColumnType;
 import io.crate.sql.tree.ColumnConstraint;
@@ -73,6 +74,7 @@ import io.crate.sql.tree.CreateUser;
 import io.crate.sql.tree.CreateView;
 import io.crate.sql.tree.CurrentTime;
 import io.crate.sql.tree.DeallocateStatement;
+import io.crate.sql.tree.Declare;
 import io.crate.sql.tree.DecommissionNodeStatement;
 import io.crate.sql.tree.Delete;
 import io.crate.sql.tree.DenyPrivilege;
@@ -92,6 +94,7 @@ import io.crate.sql.tree.ExistsPredicate;
 import io.crate.sql.tree.Explain;
 import io.crate.sql.tree.Expression;
 import io.crate.sql.tree.Extract;
+import io.crate.sql.tree.Fetch;
 import io.crate.sql.tree.FrameBound;
 import io.crate.sql.tree.FunctionArgument;
 import io.crate.sql.tree.FunctionCall;
@@ -691,6 +694,37 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
         return new DeallocateStatement((Expression) visit(context.prepStmt));
     }
 
+    @Override
+    public Node visitDeclare(SqlBaseParser.DeclareContext context) {
+        return new Declare(getIdentText(context.cursorName), (Query) visit(context.query()));
+    }
+
+    @Override
+    public Node visitFetch(SqlBaseParser.FetchContext context) {
+        SqlBaseParser.FetchDirectionContext direction = context.fetchDirection();
+        long count;
+        if (direction == null || direction.NEXT() != null) {
+            count = 1;
+        } else if (direction.count != null) {
+            count = Long.parseLong(direction.count.getText());
+            if (count == 0) {
+                throw new IllegalArgumentException("FETCH count must be greater than 0");
+            }
+        } else {
+            // ALL or FORWARD [ALL]
+            count = direction.FORWARD() != null && direction.ALL() == null ? 1 : Fetch.ALL;
+        }
+        return new Fetch(getIdentText(context.cursorName), count);
+    }
+
+    @Override
+    public Node visitClose(SqlBaseParser.CloseContext context) {
+        if (context.ALL() != null) {
+            return new Close(null);
+        }
+        return new Close(getIdentText(context.cursorName));
+    }
+
     @Override
     public Node visitExplain(SqlBaseParser.ExplainContext context) {
         return new Explain((Statement) visit(context.statement()), context.ANALYZE() != null);
@@ -512,6 +512,18 @@ public abstract class AstVisitor<R, C> {
         return visitStatement(node, context);
     }
 
+    public R visitDeclare(Declare node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitFetch(Fetch node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitClose(Close node, C context) {
+        return visitStatement(node, context);
+    }
+
     public R visitDropRepository(DropRepository node, C context) {
         return visitStatement(node, context);
     }
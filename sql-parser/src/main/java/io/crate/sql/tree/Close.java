@@ -0,0 +1,74 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.sql.tree;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * {@code CLOSE { <cursorName> | ALL }}
+ */
+public class Close extends Statement {
+
+    @Nullable
+    private final String cursorName;
+
+    /**
+     * @param cursorName the cursor to close or null to close all cursors
+     */
+    public Close(@Nullable String cursorName) {
+        this.cursorName = cursorName;
+    }
+
+    @Nullable
+    public String cursorName() {
+        return cursorName;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitClose(this, context);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Close close = (Close) o;
+        return Objects.equals(cursorName, close.cursorName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(cursorName);
+    }
+
+    @Override
+    public String toString() {
+        return cursorName == null ? "CLOSE ALL" : "CLOSE " + cursorName;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.sql.tree;
+
+import java.util.Objects;
+
+/**
+ * {@code DECLARE <cursorName> CURSOR FOR <query>}
+ */
+public class Declare extends Statement {
+
+    private final String cursorName;
+    private final Query query;
+
+    public Declare(String cursorName, Query query) {
+        this.cursorName = cursorName;
+        this.query = query;
+    }
+
+    public String cursorName() {
+        return cursorName;
+    }
+
+    public Query query() {
+        return query;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitDeclare(this, context);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Declare declare = (Declare) o;
+        return cursorName.equals(declare.cursorName) &&
+               query.equals(declare.query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cursorName, query);
+    }
+
+    @Override
+    public String toString() {
+        return "Declare{" +
+               "cursorName=" + cursorName +
+               ", query=" + query +
+               '}';
+    }
+}
@@ -29,12 +29,14 @@ import io.crate.sql.tree.ArrayComparisonExpression;
 import io.crate.sql.tree.ArrayLikePredicate;
 import io.crate.sql.tree.ArrayLiteral;
 import io.crate.sql.tree.Assignment;
+import io.crate.sql.tree.Close;
 import io.crate.sql.tree.ComparisonExpression;
 import io.crate.sql.tree.CopyFrom;
 import io.crate.sql.tree.CreateFunction;
 import io.crate.sql.tree.CreateTable;
 import io.crate.sql.tree.CreateUser;
 import io.crate.sql.tree.DeallocateStatement;
+import io.crate.sql.tree.Declare;
 import io.crate.sql.tree.DefaultTraversalVisitor;
 import io.crate.sql.tree.DenyPrivilege;
 import io.crate.sql.tree.DropAnalyzer;
@@ -47,6 +49,7 @@ import io.crate.sql.tree.DropUser;
 import io.crate.sql.tree.DropView;
 import io.crate.sql.tree.EscapedCharStringLiteral;
 import io.crate.sql.tree.Expression;
+import io.crate.sql.tree.Fetch;
 import io.crate.sql.tree.FunctionCall;
 import io.crate.sql.tree.GCDanglingArtifacts;
 import io.crate.sql.tree.GrantPrivilege;
@@ -411,6 +414,38 @@ public class TestStatementBuilder {
         assertTrue(stmt.equals(new DeallocateStatement()));
     }
 
+    @Test
+    public void testDeclareCursor() {
+        printStatement("DECLARE c1 CURSOR FOR SELECT * FROM t WHERE x > 10 ORDER BY x");
+        Declare declare = (Declare) SqlParser.createStatement("DECLARE c1 CURSOR FOR SELECT 1");
+        assertThat(declare.cursorName(), is("c1"));
+        assertThat(declare.query(), instanceOf(Query.class));
+    }
+
+    @Test
+    public void testFetchFromCursor() {
+        assertThat((Fetch) SqlParser.createStatement("FETCH c1"), is(new Fetch("c1", 1)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH NEXT FROM c1"), is(new Fetch("c1", 1)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH 20 IN c1"), is(new Fetch("c1", 20)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH FORWARD FROM c1"), is(new Fetch("c1", 1)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH FORWARD 20 FROM c1"), is(new Fetch("c1", 20)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH ALL FROM c1"), is(new Fetch("c1", Fetch.ALL)));
+        assertThat((Fetch) SqlParser.createStatement("FETCH FORWARD ALL FROM c1"), is(new Fetch("c1", Fetch.ALL)));
+    }
+
+    @Test
+    public void testFetchZeroRowsIsRejected() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("FETCH count must be greater than 0");
+        SqlParser.createStatement("FETCH 0 FROM c1");
+    }
+
+    @Test
+    public void testCloseCursor() {
+        assertThat((Close) SqlParser.createStatement("CLOSE c1"), is(new Close("c1")));
+        assertThat((Close) SqlParser.createStatement("CLOSE ALL"), is(new Close(null)));
+    }
+
     @Test
     public void testRefreshStmtBuilder() {
         printStatement("refresh table t");
@@ -0,0 +1,237 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.protocols.postgres.Portal;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The cursors declared within a {@link Session} using {@code DECLARE <name> CURSOR FOR <query>}.
+ * <p>
+ * A cursor holds a portal whose execution is suspended after each {@code FETCH}. The job of the query, its
+ * BatchIterator and the memory accounted for it are kept alive until the query is exhausted or the cursor is closed.
+ * To bound the resources held by abandoned cursors, the number of cursors per session is limited and cursors which
+ * haven't been used for longer than {@link #IDLE_TIMEOUT_SETTING} are closed by a background task.
+ */
+public final class Cursors implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(Cursors.class);
+
+    public static final Setting<Integer> MAX_CURSORS_SETTING = Setting.intSetting(
+        "node.sql.cursor.max_per_session",
+        100,
+        0,
+        Setting.Property.NodeScope);
+
+    public static final Setting<TimeValue> IDLE_TIMEOUT_SETTING = Setting.positiveTimeSetting(
+        "node.sql.cursor.idle_timeout",
+        TimeValue.timeValueMinutes(10),
+        Setting.Property.NodeScope);
+
+    enum State {
+        IDLE,
+        FETCHING,
+        CLOSED
+    }
+
+    static final class Cursor {
+
+        private final String name;
+        private final Portal portal;
+
+        private State state = State.IDLE;
+        private boolean closeRequested = false;
+        private long lastAccessNanos = System.nanoTime();
+
+        private Cursor(String name, Portal portal) {
+            this.name = name;
+            this.portal = portal;
+        }
+
+        String name() {
+            return name;
+        }
+
+        Portal portal() {
+            return portal;
+        }
+
+        /**
+         * @return true if the query of the cursor is exhausted (or failed), so that a FETCH cannot return any rows.
+         */
+        boolean exhausted() {
+            var consumer = portal.activeConsumer();
+            return consumer != null && consumer.completionFuture().isDone();
+        }
+
+        synchronized void startFetch() {
+            if (state == State.CLOSED) {
+                throw new IllegalArgumentException("Cursor `" + name + "` is closed");
+            }
+            state = State.FETCHING;
+        }
+
+        /**
+         * Must be called once the rows of a FETCH have been received.
+         * Closes the cursor if a CLOSE was issued while the FETCH was still pending.
+         */
+        synchronized void finishFetch() {
+            if (state != State.FETCHING) {
+                return;
+            }
+            if (closeRequested) {
+                closeNow();
+            } else {
+                state = State.IDLE;
+                lastAccessNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * Closes the cursor and releases the resources of its query.
+         * If a FETCH is pending the cursor is closed once the FETCH finished.
+         */
+        synchronized void close() {
+            if (state == State.FETCHING) {
+                closeRequested = true;
+            } else if (state == State.IDLE) {
+                closeNow();
+            }
+        }
+
+        private synchronized boolean closeIfIdleSince(long nanos) {
+            if (state == State.IDLE && lastAccessNanos - nanos <= 0) {
+                closeNow();
+                return true;
+            }
+            return state == State.CLOSED;
+        }
+
+        private void closeNow() {
+            state = State.CLOSED;
+            portal.closeActiveConsumer();
+        }
+    }
+
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final Supplier<ThreadPool> threadPool;
+    private final int maxCursors;
+    private final TimeValue idleTimeout;
+
+    @Nullable
+    private Scheduler.ScheduledCancellable scheduledExpiry;
+
+    Cursors(Supplier<ThreadPool> threadPool, int maxCursors, TimeValue idleTimeout) {
+        this.threadPool = threadPool;
+        this.maxCursors = maxCursors;
+        this.idleTimeout = idleTimeout;
+    }
+
+    void declare(String name, Portal portal) {
+        if (cursors.containsKey(name)) {
+            throw new IllegalArgumentException("Cursor `" + name + "` already exists");
+        }
+        if (cursors.size() >= maxCursors) {
+            throw new IllegalArgumentException(
+                "Cannot declare cursor `" + name + "`, the limit of " + maxCursors + " cursors per session is reached");
+        }
+        cursors.put(name, new Cursor(name, portal));
+        scheduleExpiry();
+    }
+
+    Cursor get(String name) {
+        Cursor cursor = cursors.get(name);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Cursor `" + name + "` does not exist");
+        }
+        return cursor;
+    }
+
+    /**
+     * Closes the cursor with the given name. It is an error to close a cursor which doesn't exist.
+     */
+    void close(String name) {
+        Cursor cursor = cursors.remove(name);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Cursor `" + name + "` does not exist");
+        }
+        cursor.close();
+    }
+
+    /**
+     * Closes all cursors and stops the expiry of idle cursors.
+     */
+    @Override
+    public void close() {
+        Iterator<Cursor> it = cursors.values().iterator();
+        while (it.hasNext()) {
+            Cursor cursor = it.next();
+            it.remove();
+            cursor.close();
+        }
+        synchronized (this) {
+            if (scheduledExpiry != null) {
+                scheduledExpiry.cancel();
+                scheduledExpiry = null;
+            }
+        }
+    }
+
+    private synchronized void scheduleExpiry() {
+        if (scheduledExpiry == null) {
+            scheduledExpiry = threadPool.get().schedule(this::closeIdleCursors, idleTimeout, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    private void closeIdleCursors() {
+        synchronized (this) {
+            scheduledExpiry = null;
+        }
+        long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeout.millis());
+        Iterator<Cursor> it = cursors.values().iterator();
+        while (it.hasNext()) {
+            Cursor cursor = it.next();
+            if (cursor.closeIfIdleSince(idleSince)) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Closed cursor `{}` after it was idle for more than {}", cursor.name(), idleTimeout);
+                }
+                it.remove();
+            }
+        }
+        if (cursors.isEmpty() == false) {
+            scheduleExpiry();
+        }
+    }
+}
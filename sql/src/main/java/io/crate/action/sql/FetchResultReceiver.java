@@ -0,0 +1,109 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.data.Row;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ResultReceiver for a {@code FETCH} from a cursor.
+ * <p>
+ * The execution of the query of the cursor is suspended once the requested number of rows has been received,
+ * which completes the FETCH as if all rows had been received. A later FETCH resumes the execution.
+ */
+final class FetchResultReceiver<T> implements ResultReceiver<T> {
+
+    private final ResultReceiver<T> delegate;
+    private final Cursors.Cursor cursor;
+    private boolean finished = false;
+
+    FetchResultReceiver(ResultReceiver<T> delegate, Cursors.Cursor cursor) {
+        this.delegate = delegate;
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void setNextRow(Row row) {
+        delegate.setNextRow(row);
+    }
+
+    @Override
+    public void batchFinished() {
+        finish(false);
+    }
+
+    @Override
+    public void allFinished(boolean interrupted) {
+        // A cursor which is closed after a FETCH finishes this receiver again with interrupted=true; that's ignored
+        finish(interrupted);
+    }
+
+    @Override
+    public void fail(@Nonnull Throwable t) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        cursor.finishFetch();
+        delegate.fail(t);
+    }
+
+    @Override
+    public CompletableFuture<T> completionFuture() {
+        return delegate.completionFuture();
+    }
+
+    /**
+     * Finishes the FETCH without any rows if the query of the cursor is already exhausted.
+     *
+     * @return true if the FETCH has been finished.
+     */
+    boolean finishIfExhausted() {
+        if (cursor.exhausted()) {
+            finish(false);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the FETCH as finished without notifying the delegate; used if the FETCH is discarded before it executed.
+     */
+    void abort() {
+        if (finished == false) {
+            finished = true;
+            cursor.finishFetch();
+        }
+    }
+
+    private void finish(boolean interrupted) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        cursor.finishFetch();
+        delegate.allFinished(interrupted);
+    }
+}
@@ -61,6 +61,10 @@ public class PreparedStmt {
         this.describedParameterTypes = describedParameters;
     }
 
+    ParamTypeHints paramTypeHints() {
+        return paramTypeHints;
+    }
+
     Statement parsedStatement() {
         return parsedStatement;
     }
@@ -37,6 +37,7 @@ public class RowConsumerToResultReceiver implements RowConsumer {
     private ResultReceiver resultReceiver;
     private int maxRows;
     private long rowCount = 0;
+    private int rowsInBatch = 0;
     private BatchIterator<Row> activeIt;
 
     public RowConsumerToResultReceiver(ResultReceiver resultReceiver, int maxRows, Consumer<Throwable> onCompletion) {
@@ -69,9 +70,12 @@ public class RowConsumerToResultReceiver implements RowConsumer {
         try {
             while (iterator.moveNext()) {
                 rowCount++;
+                rowsInBatch++;
                 resultReceiver.setNextRow(iterator.currentElement());
 
-                if (maxRows > 0 && rowCount % maxRows == 0) {
+                // maxRows may change between resumes (see replaceResultReceiver), so count the rows per batch
+                if (maxRows > 0 && rowsInBatch >= maxRows) {
+                    rowsInBatch = 0;
                     activeIt = iterator;
                     resultReceiver.batchFinished();
                     return; // resumed via postgres protocol, close is done later
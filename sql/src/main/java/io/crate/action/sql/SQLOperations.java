@@ -22,11 +22,13 @@
 
 package io.crate.action.sql;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.crate.analyze.Analyzer;
 import io.crate.auth.user.User;
 import io.crate.auth.user.UserManager;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.planner.DependencyCarrier;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
@@ -34,6 +36,7 @@ import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.transport.NodeDisconnectedException;
 
 import javax.annotation.Nullable;
@@ -55,6 +58,9 @@ public class SQLOperations {
     private final ClusterService clusterService;
     private final UserManager userManager;
     private final boolean isReadOnly;
+    private final PlanCache planCache;
+    private final int maxCursors;
+    private final TimeValue cursorIdleTimeout;
     private volatile boolean disabled;
 
     @Inject
@@ -72,6 +78,10 @@ public class SQLOperations {
         this.clusterService = clusterService;
         this.userManager = userManagerProvider.get();
         this.isReadOnly = NODE_READ_ONLY_SETTING.get(settings);
+        this.planCache = new PlanCache(PlanCache.NODE_PLAN_CACHE_SIZE_SETTING.get(settings));
+        clusterService.addListener(planCache);
+        this.maxCursors = Cursors.MAX_CURSORS_SETTING.get(settings);
+        this.cursorIdleTimeout = Cursors.IDLE_TIMEOUT_SETTING.get(settings);
     }
 
     private Session createSession(SessionContext sessionContext) {
@@ -85,7 +95,15 @@ public class SQLOperations {
             isReadOnly,
             executorProvider.get(),
             userManager.getAccessControl(sessionContext),
-            sessionContext);
+            sessionContext,
+            planCache,
+            maxCursors,
+            cursorIdleTimeout);
+    }
+
+    @VisibleForTesting
+    public PlanCache planCache() {
+        return planCache;
     }
 
     public Session newSystemSession() {
@@ -24,7 +24,10 @@ package io.crate.action.sql;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.analyze.AnalyzedBegin;
+import io.crate.analyze.AnalyzedClose;
 import io.crate.analyze.AnalyzedDeallocate;
+import io.crate.analyze.AnalyzedDeclare;
+import io.crate.analyze.AnalyzedFetch;
 import io.crate.analyze.AnalyzedStatement;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.ParamTypeHints;
@@ -44,6 +47,7 @@ import io.crate.metadata.CoordinatorTxnCtx;
 import io.crate.metadata.RoutingProvider;
 import io.crate.planner.DependencyCarrier;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.operators.StatementClassifier;
@@ -59,6 +63,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.common.Randomness;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -119,11 +125,15 @@ public class Session implements AutoCloseable {
     @VisibleForTesting
     final Map<Statement, List<DeferredExecution>> deferredExecutionsByStmt = new HashMap<>();
 
+    @VisibleForTesting
+    final Cursors cursors;
+
     private final Analyzer analyzer;
     private final Planner planner;
     private final JobsLogs jobsLogs;
     private final boolean isReadOnly;
     private final ParameterTypeExtractor parameterTypeExtractor;
+    private final PlanCache planCache;
 
     public Session(Analyzer analyzer,
                    Planner planner,
@@ -132,6 +142,40 @@ public class Session implements AutoCloseable {
                    DependencyCarrier executor,
                    AccessControl accessControl,
                    SessionContext sessionContext) {
+        this(analyzer, planner, jobsLogs, isReadOnly, executor, accessControl, sessionContext, new PlanCache(0));
+    }
+
+    public Session(Analyzer analyzer,
+                   Planner planner,
+                   JobsLogs jobsLogs,
+                   boolean isReadOnly,
+                   DependencyCarrier executor,
+                   AccessControl accessControl,
+                   SessionContext sessionContext,
+                   PlanCache planCache) {
+        this(
+            analyzer,
+            planner,
+            jobsLogs,
+            isReadOnly,
+            executor,
+            accessControl,
+            sessionContext,
+            planCache,
+            Cursors.MAX_CURSORS_SETTING.get(Settings.EMPTY),
+            Cursors.IDLE_TIMEOUT_SETTING.get(Settings.EMPTY));
+    }
+
+    public Session(Analyzer analyzer,
+                   Planner planner,
+                   JobsLogs jobsLogs,
+                   boolean isReadOnly,
+                   DependencyCarrier executor,
+                   AccessControl accessControl,
+                   SessionContext sessionContext,
+                   PlanCache planCache,
+                   int maxCursors,
+                   TimeValue cursorIdleTimeout) {
         this.analyzer = analyzer;
         this.planner = planner;
         this.jobsLogs = jobsLogs;
@@ -140,13 +184,15 @@ public class Session implements AutoCloseable {
         this.accessControl = accessControl;
         this.sessionContext = sessionContext;
         this.parameterTypeExtractor = new ParameterTypeExtractor();
+        this.planCache = planCache;
+        this.cursors = new Cursors(executor::threadPool, maxCursors, cursorIdleTimeout);
     }
 
     /**
      * See {@link #quickExec(String, Function, ResultReceiver, Row)}
      */
     public void quickExec(String statement, ResultReceiver resultReceiver, Row params) {
-        quickExec(statement, SqlParser::createStatement, resultReceiver, params);
+        quickExec(statement, planCache::parse, resultReceiver, params);
     }
 
     /**
@@ -245,7 +291,7 @@ public class Session implements AutoCloseable {
 
         Statement statement;
         try {
-            statement = SqlParser.createStatement(query);
+            statement = planCache.parse(query);
         } catch (Throwable t) {
             if ("".equals(query)) {
                 statement = EMPTY_STMT;
@@ -312,8 +358,7 @@ public class Session implements AutoCloseable {
         switch (type) {
             case 'P':
                 Portal portal = getSafePortal(portalOrStatement);
-                var analyzedStmt = portal.analyzedStatement();
-                return new DescribeResult(analyzedStmt.outputs());
+                return new DescribeResult(outputs(portal.analyzedStatement()));
             case 'S':
                 /*
                  * describe might be called without prior bind call.
@@ -344,7 +389,7 @@ public class Session implements AutoCloseable {
                 if (parameterSymbols.length > 0) {
                     preparedStmt.setDescribedParameters(parameterSymbols);
                 }
-                return new DescribeResult(analyzedStatement.outputs(), parameterSymbols);
+                return new DescribeResult(outputs(analyzedStatement), parameterSymbols);
             default:
                 throw new AssertionError("Unsupported type: " + type);
         }
@@ -372,6 +417,26 @@ public class Session implements AutoCloseable {
                 preparedStatements.clear();
             }
             resultReceiver.allFinished(false);
+        } else if (analyzedStmt instanceof AnalyzedDeclare) {
+            declareCursor(portal, (AnalyzedDeclare) analyzedStmt);
+            resultReceiver.allFinished(false);
+        } else if (analyzedStmt instanceof AnalyzedClose) {
+            String cursorName = ((AnalyzedClose) analyzedStmt).cursorName();
+            if (cursorName == null) {
+                cursors.close();
+            } else {
+                cursors.close(cursorName);
+            }
+            resultReceiver.allFinished(false);
+        } else if (analyzedStmt instanceof AnalyzedFetch) {
+            // Deferred like any other statement, but the rows are read from the portal of the cursor
+            AnalyzedFetch fetch = (AnalyzedFetch) analyzedStmt;
+            Cursors.Cursor cursor = cursors.get(fetch.cursorName());
+            cursor.startFetch();
+            int fetchSize = fetch.count() >= Integer.MAX_VALUE ? 0 : (int) fetch.count();
+            deferExecution(
+                portal.preparedStmt().parsedStatement(),
+                new DeferredExecution(cursor.portal(), fetchSize, new FetchResultReceiver<>(resultReceiver, cursor)));
         } else {
             /* We defer the execution for any other statements to `sync` messages so that we can efficiently process
              * bulk operations. E.g. If we receive `INSERT INTO (x) VALUES (?)` bindings/execute multiple times
@@ -386,20 +451,50 @@ public class Session implements AutoCloseable {
              *          preparedStatement.execute(args)
              *      conn.commit()
              */
-            deferredExecutionsByStmt.compute(
-                portal.preparedStmt().parsedStatement(), (key, oldValue) -> {
-                    DeferredExecution deferredExecution = new DeferredExecution(portal, maxRows, resultReceiver);
-                    if (oldValue == null) {
-                        ArrayList<DeferredExecution> deferredExecutions = new ArrayList<>();
-                        deferredExecutions.add(deferredExecution);
-                        return deferredExecutions;
-                    } else {
-                        oldValue.add(deferredExecution);
-                        return oldValue;
-                    }
+            deferExecution(
+                portal.preparedStmt().parsedStatement(),
+                new DeferredExecution(portal, maxRows, resultReceiver));
+        }
+    }
+
+    private void deferExecution(Statement statement, DeferredExecution deferredExecution) {
+        deferredExecutionsByStmt.compute(
+            statement, (key, oldValue) -> {
+                if (oldValue == null) {
+                    ArrayList<DeferredExecution> deferredExecutions = new ArrayList<>();
+                    deferredExecutions.add(deferredExecution);
+                    return deferredExecutions;
+                } else {
+                    oldValue.add(deferredExecution);
+                    return oldValue;
                 }
-            );
+            }
+        );
+    }
+
+    /**
+     * Creates a cursor for the query of a {@code DECLARE} statement.
+     * The query is executed by the first {@code FETCH} and suspended after each FETCH.
+     */
+    private void declareCursor(Portal portal, AnalyzedDeclare declare) {
+        PreparedStmt declareStmt = portal.preparedStmt();
+        PreparedStmt query = new PreparedStmt(
+            declare.query(),
+            declare.relation(),
+            declareStmt.rawStatement(),
+            declareStmt.paramTypeHints());
+        cursors.declare(
+            declare.cursorName(),
+            new Portal(declare.cursorName(), query, portal.params(), declare.relation(), null));
+    }
+
+    @Nullable
+    private List<Symbol> outputs(AnalyzedStatement analyzedStatement) {
+        if (analyzedStatement instanceof AnalyzedFetch) {
+            Cursors.Cursor cursor = cursors.get(((AnalyzedFetch) analyzedStatement).cursorName());
+            return cursor.portal().analyzedStatement().outputs();
         }
+        return analyzedStatement.outputs();
     }
 
     public CompletableFuture<?> sync() {
@@ -458,7 +553,7 @@ public class Session implements AutoCloseable {
 
         Plan plan;
         try {
-            plan = planner.plan(analyzedStatement, plannerContext);
+            plan = plan(firstPreparedStatement, analyzedStatement, plannerContext);
         } catch (Throwable t) {
             jobsLogs.logPreExecutionFailure(
                 jobId,
@@ -512,7 +607,22 @@ public class Session implements AutoCloseable {
         jobsLogs.logExecutionEnd(jobId, null);
     }
 
+    private Plan plan(PreparedStmt preparedStmt, AnalyzedStatement analyzedStatement, PlannerContext plannerContext) {
+        return planCache.getOrPlan(
+            preparedStmt.rawStatement(),
+            analyzedStatement,
+            preparedStmt.paramTypeHints(),
+            sessionContext,
+            plannerContext.clusterState().metaData().version(),
+            planner.tableStats().version(),
+            () -> planner.plan(analyzedStatement, plannerContext)
+        );
+    }
+
     private CompletableFuture<?> singleExec(Portal portal, ResultReceiver<?> resultReceiver, int maxRows) {
+        if (resultReceiver instanceof FetchResultReceiver && ((FetchResultReceiver<?>) resultReceiver).finishIfExhausted()) {
+            return resultReceiver.completionFuture();
+        }
         var activeConsumer = portal.activeConsumer();
         if (activeConsumer != null && activeConsumer.suspended()) {
             activeConsumer.replaceResultReceiver(resultReceiver, maxRows);
@@ -536,7 +646,7 @@ public class Session implements AutoCloseable {
         }
         Plan plan;
         try {
-            plan = planner.plan(analyzedStmt, plannerContext);
+            plan = plan(portal.preparedStmt(), analyzedStmt, plannerContext);
         } catch (Throwable t) {
             jobsLogs.logPreExecutionFailure(jobId, rawStatement, SQLExceptions.messageOf(t), sessionContext.user());
             throw t;
@@ -574,8 +684,7 @@ public class Session implements AutoCloseable {
     @Nullable
     public List<? extends DataType> getOutputTypes(String portalName) {
         Portal portal = getSafePortal(portalName);
-        var analyzedStatement = portal.analyzedStatement();
-        List<Symbol> fields = analyzedStatement.outputs();
+        List<Symbol> fields = outputs(portal.analyzedStatement());
         if (fields != null) {
             return Symbols.typeView(fields);
         }
@@ -657,6 +766,7 @@ public class Session implements AutoCloseable {
     @Override
     public void close() {
         resetDeferredExecutions();
+        cursors.close();
         for (Portal portal : portals.values()) {
             portal.closeActiveConsumer();
         }
@@ -671,8 +781,13 @@ public class Session implements AutoCloseable {
     public void resetDeferredExecutions() {
         for (var deferredExecutions : deferredExecutionsByStmt.values()) {
             for (DeferredExecution deferredExecution : deferredExecutions) {
+                if (deferredExecution.resultReceiver() instanceof FetchResultReceiver) {
+                    // the portal belongs to a cursor, which stays usable
+                    ((FetchResultReceiver<?>) deferredExecution.resultReceiver()).abort();
+                    continue;
+                }
                 deferredExecution.portal().closeActiveConsumer();
-                portals.remove(deferredExecution.portal().name());
+                portals.remove(deferredExecution.portal().name(), deferredExecution.portal());
             }
         }
         deferredExecutionsByStmt.clear();
@@ -38,6 +38,7 @@ public class SessionContext {
 
     private SearchPath searchPath;
     private boolean hashJoinEnabled = true;
+    private boolean resultCacheEnabled = true;
 
     /**
      * Creates a new SessionContext suitable to use as system SessionContext
@@ -83,6 +84,14 @@ public class SessionContext {
         this.hashJoinEnabled = hashJoinEnabled;
     }
 
+    public boolean isResultCacheEnabled() {
+        return resultCacheEnabled;
+    }
+
+    public void setResultCacheEnabled(boolean resultCacheEnabled) {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+
     public User user() {
         return user;
     }
@@ -90,5 +99,6 @@ public class SessionContext {
     public void resetToDefaults() {
         resetSchema();
         hashJoinEnabled = true;
+        resultCacheEnabled = true;
     }
 }
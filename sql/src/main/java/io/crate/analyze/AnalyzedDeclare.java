@@ -0,0 +1,66 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.analyze;
+
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.sql.tree.Query;
+
+/**
+ * {@code DECLARE <cursorName> CURSOR FOR <query>}
+ * <p>
+ * The query is analyzed when the cursor is declared, but executed lazily by the first {@code FETCH}.
+ */
+public class AnalyzedDeclare implements AnalyzedStatement {
+
+    private final String cursorName;
+    private final Query query;
+    private final AnalyzedRelation relation;
+
+    AnalyzedDeclare(String cursorName, Query query, AnalyzedRelation relation) {
+        this.cursorName = cursorName;
+        this.query = query;
+        this.relation = relation;
+    }
+
+    public String cursorName() {
+        return cursorName;
+    }
+
+    public Query query() {
+        return query;
+    }
+
+    public AnalyzedRelation relation() {
+        return relation;
+    }
+
+    @Override
+    public <C, R> R accept(AnalyzedStatementVisitor<C, R> analyzedStatementVisitor, C context) {
+        return analyzedStatementVisitor.visitDeclare(this, context);
+    }
+
+    @Override
+    public boolean isWriteOperation() {
+        return false;
+    }
+}
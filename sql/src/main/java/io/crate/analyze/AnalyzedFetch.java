@@ -0,0 +1,60 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.analyze;
+
+/**
+ * {@code FETCH <count> FROM <cursorName>}
+ * <p>
+ * The outputs are those of the query of the cursor, they're resolved by the session which holds the cursor.
+ */
+public class AnalyzedFetch implements AnalyzedStatement {
+
+    private final String cursorName;
+    private final long count;
+
+    AnalyzedFetch(String cursorName, long count) {
+        this.cursorName = cursorName;
+        this.count = count;
+    }
+
+    public String cursorName() {
+        return cursorName;
+    }
+
+    /**
+     * @return the number of rows to fetch or {@link io.crate.sql.tree.Fetch#ALL}
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public <C, R> R accept(AnalyzedStatementVisitor<C, R> analyzedStatementVisitor, C context) {
+        return analyzedStatementVisitor.visitFetch(this, context);
+    }
+
+    @Override
+    public boolean isWriteOperation() {
+        return false;
+    }
+}
@@ -131,6 +131,18 @@ public class AnalyzedStatementVisitor<C, R> {
         return visitAnalyzedStatement(analysis, context);
     }
 
+    public R visitDeclare(AnalyzedDeclare analysis, C context) {
+        return visitAnalyzedStatement(analysis, context);
+    }
+
+    public R visitFetch(AnalyzedFetch analysis, C context) {
+        return visitAnalyzedStatement(analysis, context);
+    }
+
+    public R visitClose(AnalyzedClose analysis, C context) {
+        return visitAnalyzedStatement(analysis, context);
+    }
+
     public R visitShowCreateTableAnalyzedStatement(AnalyzedShowCreateTable analysis, C context) {
         return visitAnalyzedStatement(analysis, context);
     }
@@ -22,6 +22,7 @@
 package io.crate.analyze;
 
 import io.crate.action.sql.SessionContext;
+import io.crate.analyze.relations.AnalyzedRelation;
 import io.crate.analyze.relations.RelationAnalyzer;
 import io.crate.auth.user.UserManager;
 import io.crate.execution.ddl.RepositoryService;
@@ -40,6 +41,7 @@ import io.crate.sql.tree.AlterUser;
 import io.crate.sql.tree.AnalyzeStatement;
 import io.crate.sql.tree.AstVisitor;
 import io.crate.sql.tree.BeginStatement;
+import io.crate.sql.tree.Close;
 import io.crate.sql.tree.CommitStatement;
 import io.crate.sql.tree.CopyFrom;
 import io.crate.sql.tree.CopyTo;
@@ -52,6 +54,7 @@ import io.crate.sql.tree.CreateTable;
 import io.crate.sql.tree.CreateUser;
 import io.crate.sql.tree.CreateView;
 import io.crate.sql.tree.DeallocateStatement;
+import io.crate.sql.tree.Declare;
 import io.crate.sql.tree.DecommissionNodeStatement;
 import io.crate.sql.tree.Delete;
 import io.crate.sql.tree.DenyPrivilege;
@@ -65,6 +68,7 @@ import io.crate.sql.tree.DropUser;
 import io.crate.sql.tree.DropView;
 import io.crate.sql.tree.Explain;
 import io.crate.sql.tree.Expression;
+import io.crate.sql.tree.Fetch;
 import io.crate.sql.tree.GCDanglingArtifacts;
 import io.crate.sql.tree.GrantPrivilege;
 import io.crate.sql.tree.Insert;
@@ -369,6 +373,25 @@ public class Analyzer {
             return DeallocateAnalyzer.analyze(node);
         }
 
+        @Override
+        public AnalyzedStatement visitDeclare(Declare node, Analysis context) {
+            AnalyzedRelation relation = relationAnalyzer.analyze(
+                node.query(),
+                context.transactionContext(),
+                context.paramTypeHints());
+            return new AnalyzedDeclare(node.cursorName(), node.query(), relation);
+        }
+
+        @Override
+        public AnalyzedStatement visitFetch(Fetch node, Analysis context) {
+            return new AnalyzedFetch(node.cursorName(), node.count());
+        }
+
+        @Override
+        public AnalyzedStatement visitClose(Close node, Analysis context) {
+            return new AnalyzedClose(node.cursorName());
+        }
+
         @Override
         public AnalyzedStatement visitDelete(Delete node, Analysis analysis) {
             return deleteAnalyzer.analyze(
@@ -65,6 +65,22 @@ public class ParamTypeHints implements Function<ParameterExpression, Symbol> {
         return new ParameterSymbol(input.index(), getType(input.index()));
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return types.equals(((ParamTypeHints) o).types);
+    }
+
+    @Override
+    public int hashCode() {
+        return types.hashCode();
+    }
+
     @Override
     public String toString() {
         return "ParamTypeHints{" + types + '}';
@@ -33,6 +33,9 @@ import io.crate.execution.jobs.PageResultListener;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -49,6 +52,8 @@ public class IncrementalPageBucketReceiver<T> implements PageBucketReceiver {
     private final CompletableFuture<Iterable<Row>> processingFuture = new CompletableFuture<>();
     private final Executor executor;
     private final Streamer<?>[] streamers;
+    @GuardedBy("pagesByBucketIdx")
+    private final Map<Integer, int[]> pagesByBucketIdx = new HashMap<>();
 
     private final BatchIterator<Row> lazyBatchIterator;
     private CompletableFuture<?> currentlyAccumulating;
@@ -78,8 +83,27 @@ public class IncrementalPageBucketReceiver<T> implements PageBucketReceiver {
         }
     }
 
+    /**
+     * The order of the pages doesn't matter for the accumulation, but an upstream is only exhausted
+     * once all pages up to its last page have been received.
+     */
+    private boolean isUpstreamExhausted(int bucketIdx, int pageIdx, boolean isLast) {
+        if (pageIdx == UNKNOWN_PAGE_IDX) {
+            return isLast;
+        }
+        synchronized (pagesByBucketIdx) {
+            // [number of received pages, total number of pages or -1 if the last page hasn't been received yet]
+            int[] pages = pagesByBucketIdx.computeIfAbsent(bucketIdx, k -> new int[] { 0, -1 });
+            pages[0]++;
+            if (isLast) {
+                pages[1] = pageIdx + 1;
+            }
+            return pages[0] == pages[1];
+        }
+    }
+
     @Override
-    public void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
+    public void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
         if (processingFuture.isCompletedExceptionally()) {
             pageResultListener.needMore(false);
             return;
@@ -109,7 +133,7 @@ public class IncrementalPageBucketReceiver<T> implements PageBucketReceiver {
                 });
             }
         }
-        if (isLast) {
+        if (isUpstreamExhausted(bucketIdx, pageIdx, isLast)) {
             if (remainingUpstreams.decrementAndGet() == 0) {
                 currentlyAccumulating.whenComplete((r, t) -> consumeRows());
             }
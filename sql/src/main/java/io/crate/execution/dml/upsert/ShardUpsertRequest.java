@@ -37,6 +37,7 @@ import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.translog.Translog;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -80,6 +81,17 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
     @Nullable
     private Symbol[] returnValues;
 
+    /**
+     * Set by the primary if all items are appended with auto generated ids.
+     * Enables the append-only optimization of the engine on primary and replicas which skips the version lookup.
+     */
+    private long autoGeneratedIdTimestamp = Translog.UNSET_AUTO_GENERATED_TIMESTAMP;
+
+    /**
+     * Whether the request was retried, in which case documents may have been appended already.
+     */
+    private boolean isRetry = false;
+
     ShardUpsertRequest() {
     }
 
@@ -150,6 +162,25 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         return this;
     }
 
+    long autoGeneratedIdTimestamp() {
+        return autoGeneratedIdTimestamp;
+    }
+
+    ShardUpsertRequest autoGeneratedIdTimestamp(long autoGeneratedIdTimestamp) {
+        assert autoGeneratedIdTimestamp >= 0 : "autoGeneratedIdTimestamp must be positive";
+        this.autoGeneratedIdTimestamp = autoGeneratedIdTimestamp;
+        return this;
+    }
+
+    boolean isRetry() {
+        return isRetry;
+    }
+
+    @Override
+    public void onRetry() {
+        isRetry = true;
+    }
+
     public ShardUpsertRequest(StreamInput in) throws IOException {
         super(in);
         int assignmentsColumnsSize = in.readVInt();
@@ -184,6 +215,8 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
                     returnValues[i] = Symbols.fromStream(in);
                 }
             }
+            autoGeneratedIdTimestamp = in.readLong();
+            isRetry = in.readBoolean();
         }
     }
 
@@ -228,6 +261,8 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             } else {
                 out.writeVInt(0);
             }
+            out.writeLong(autoGeneratedIdTimestamp);
+            out.writeBoolean(isRetry);
         }
     }
 
@@ -245,6 +280,8 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
         return continueOnError == items.continueOnError &&
                duplicateKeyAction == items.duplicateKeyAction &&
                validateConstraints == items.validateConstraints &&
+               autoGeneratedIdTimestamp == items.autoGeneratedIdTimestamp &&
+               isRetry == items.isRetry &&
                Arrays.equals(updateColumns, items.updateColumns) &&
                Arrays.equals(insertColumns, items.insertColumns) &&
                Arrays.equals(insertValuesStreamer, items.insertValuesStreamer) &&
@@ -253,7 +290,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), continueOnError, duplicateKeyAction, validateConstraints, updateColumns, insertColumns, insertValuesStreamer, returnValues);
+        return Objects.hashCode(super.hashCode(), continueOnError, duplicateKeyAction, validateConstraints, autoGeneratedIdTimestamp, isRetry, updateColumns, insertColumns, insertValuesStreamer, returnValues);
     }
 
     /**
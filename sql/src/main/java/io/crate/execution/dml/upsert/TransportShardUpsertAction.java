@@ -73,7 +73,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -147,8 +149,17 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
             ? null
             : new ReturnValueGen(functions, txnCtx, tableInfo, request.getReturnValues());
 
+        boolean pureInsert = insertSourceGen != null && updateSourceGen == null;
+        if (pureInsert
+            && tableInfo.hasAutoGeneratedPrimaryKey()
+            && request.autoGeneratedIdTimestamp() == Translog.UNSET_AUTO_GENERATED_TIMESTAMP) {
+            // The ids are random and unique, so there can't be an existing document with the same id unless the
+            // request is retried. This lets the engine append the documents without looking up their versions.
+            request.autoGeneratedIdTimestamp(Math.max(0, threadPool.absoluteTimeInMillis()));
+        }
+
         Translog.Location translogLocation = null;
-        for (ShardUpsertRequest.Item item : request.items()) {
+        for (ShardUpsertRequest.Item item : itemsInIndexingOrder(request, pureInsert)) {
             int location = item.location();
             if (killed.get()) {
                 // set failure on response and skip all next items.
@@ -204,6 +215,29 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return new WritePrimaryResult<>(request, shardResponse, translogLocation, null, indexShard);
     }
 
+    /**
+     * Inserts into tables with a primary key require a version lookup per document.
+     * Doing these lookups in the order of the ids visits the terms index of each segment sequentially
+     * instead of jumping around randomly.
+     * <p>
+     * The sort is stable, so items with the same id are still processed in the order they were added.
+     * It is only applied if the request continues on errors, otherwise the set of documents written before
+     * a failure must not depend on the order of the ids.
+     */
+    @VisibleForTesting
+    static List<ShardUpsertRequest.Item> itemsInIndexingOrder(ShardUpsertRequest request, boolean pureInsert) {
+        List<ShardUpsertRequest.Item> items = request.items();
+        if (pureInsert == false
+            || request.continueOnError() == false
+            || request.autoGeneratedIdTimestamp() != Translog.UNSET_AUTO_GENERATED_TIMESTAMP
+            || items.size() < 2) {
+            return items;
+        }
+        ArrayList<ShardUpsertRequest.Item> sortedItems = new ArrayList<>(items);
+        sortedItems.sort(Comparator.comparing(ShardUpsertRequest.Item::id));
+        return sortedItems;
+    }
+
     @Override
     protected WriteReplicaResult<ShardUpsertRequest> processRequestItemsOnReplica(IndexShard indexShard, ShardUpsertRequest request) throws IOException {
         Translog.Location location = null;
@@ -225,8 +259,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
             Engine.IndexResult indexResult = indexShard.applyIndexOperationOnReplica(
                 item.seqNo(),
                 item.version(),
-                Translog.UNSET_AUTO_GENERATED_TIMESTAMP,
-                false,
+                request.autoGeneratedIdTimestamp(),
+                request.isRetry(),
                 sourceToParse
             );
             if (indexResult.getResultType() == Engine.Result.Type.MAPPING_UPDATE_REQUIRED) {
@@ -329,11 +363,20 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         }
         item.source(rawSource);
 
-        long version = request.duplicateKeyAction() == DuplicateKeyAction.OVERWRITE ? Versions.MATCH_ANY : Versions.MATCH_DELETED;
+        long autoGeneratedIdTimestamp = request.autoGeneratedIdTimestamp();
+        long version;
+        if (autoGeneratedIdTimestamp != Translog.UNSET_AUTO_GENERATED_TIMESTAMP) {
+            // required by the append-only optimization of the engine
+            version = Versions.MATCH_ANY;
+            isRetry = isRetry || request.isRetry();
+        } else {
+            version = request.duplicateKeyAction() == DuplicateKeyAction.OVERWRITE ? Versions.MATCH_ANY : Versions.MATCH_DELETED;
+        }
         long seqNo = SequenceNumbers.UNASSIGNED_SEQ_NO;
         long primaryTerm = SequenceNumbers.UNASSIGNED_PRIMARY_TERM;
 
-        Engine.IndexResult indexResult = index(item, indexShard, isRetry, seqNo, primaryTerm, version);
+        Engine.IndexResult indexResult = index(
+            item, indexShard, isRetry, seqNo, primaryTerm, version, autoGeneratedIdTimestamp);
         Object[] returnvalues = null;
         if (returnGen != null) {
             // This optimizes for the case where the insert value is already string-based, so only parse the source
@@ -380,7 +423,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         long primaryTerm = item.primaryTerm();
         long version = Versions.MATCH_ANY;
 
-        Engine.IndexResult indexResult = index(item, indexShard, isRetry, seqNo, primaryTerm, version);
+        Engine.IndexResult indexResult = index(
+            item, indexShard, isRetry, seqNo, primaryTerm, version, Translog.UNSET_AUTO_GENERATED_TIMESTAMP);
         Object[] returnvalues = null;
         if (returnGen != null) {
             returnvalues = returnGen.generateReturnValues(
@@ -404,7 +448,8 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                      boolean isRetry,
                                      long seqNo,
                                      long primaryTerm,
-                                     long version) throws Exception {
+                                     long version,
+                                     long autoGeneratedIdTimestamp) throws Exception {
         SourceToParse sourceToParse = new SourceToParse(
             indexShard.shardId().getIndexName(),
             item.id(),
@@ -420,7 +465,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                 sourceToParse,
                 seqNo,
                 primaryTerm,
-                Translog.UNSET_AUTO_GENERATED_TIMESTAMP,
+                autoGeneratedIdTimestamp,
                 isRetry
             ),
             e -> indexShard.getFailedIndexResult(e, Versions.MATCH_ANY)
@@ -28,6 +28,7 @@ import io.crate.expression.symbol.Symbols;
 import io.crate.planner.node.dql.join.JoinType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
@@ -43,8 +44,11 @@ public class HashJoinPhase extends JoinPhase {
     private final List<Symbol> rightJoinConditionInputs;
 
     private final Collection<DataType> leftOutputTypes;
+    @Nullable
+    private final Collection<DataType> rightOutputTypes;
     private final long estimatedRowSizeForLeft;
     private final long numberOfRowsForLeft;
+    private final boolean graceHashJoin;
 
     public HashJoinPhase(UUID jobId,
                          int executionNodeId,
@@ -55,12 +59,15 @@ public class HashJoinPhase extends JoinPhase {
                          int numLeftOutputs,
                          int numRightOutputs,
                          Collection<String> executionNodes,
+                         JoinType joinType,
                          @Nullable Symbol joinCondition,
                          List<Symbol> leftJoinConditionInputs,
                          List<Symbol> rightJoinConditionInputs,
                          Collection<DataType> leftOutputTypes,
+                         Collection<DataType> rightOutputTypes,
                          long estimatedRowSizeForLeft,
-                         long numberOfRowsForLeft) {
+                         long numberOfRowsForLeft,
+                         boolean graceHashJoin) {
         super(
             jobId,
             executionNodeId,
@@ -71,14 +78,16 @@ public class HashJoinPhase extends JoinPhase {
             numLeftOutputs,
             numRightOutputs,
             executionNodes,
-            JoinType.INNER,
+            joinType,
             joinCondition);
         assert joinCondition != null : "JoinCondition for HashJoin cannot be null";
         this.leftJoinConditionInputs = leftJoinConditionInputs;
         this.rightJoinConditionInputs = rightJoinConditionInputs;
         this.leftOutputTypes = leftOutputTypes;
+        this.rightOutputTypes = rightOutputTypes;
         this.estimatedRowSizeForLeft = estimatedRowSizeForLeft;
         this.numberOfRowsForLeft = numberOfRowsForLeft;
+        this.graceHashJoin = graceHashJoin;
     }
 
     public HashJoinPhase(StreamInput in) throws IOException {
@@ -90,6 +99,14 @@ public class HashJoinPhase extends JoinPhase {
 
         estimatedRowSizeForLeft = in.readZLong();
         numberOfRowsForLeft = in.readZLong();
+
+        if (in.getVersion().onOrAfter(Version.V_4_2_0)) {
+            rightOutputTypes = DataTypes.listFromStream(in);
+            graceHashJoin = in.readBoolean();
+        } else {
+            rightOutputTypes = null;
+            graceHashJoin = false;
+        }
     }
 
     @Override
@@ -102,6 +119,11 @@ public class HashJoinPhase extends JoinPhase {
 
         out.writeZLong(estimatedRowSizeForLeft);
         out.writeZLong(numberOfRowsForLeft);
+
+        if (out.getVersion().onOrAfter(Version.V_4_2_0)) {
+            DataTypes.toStream(rightOutputTypes, out);
+            out.writeBoolean(graceHashJoin);
+        }
     }
 
     @Override
@@ -126,6 +148,14 @@ public class HashJoinPhase extends JoinPhase {
         return leftOutputTypes;
     }
 
+    /**
+     * @return the types of the right side or null if the phase was received from a node &lt; 4.2.0
+     */
+    @Nullable
+    public Collection<DataType> rightOutputTypes() {
+        return rightOutputTypes;
+    }
+
     public long estimatedRowSizeForLeft() {
         return estimatedRowSizeForLeft;
     }
@@ -133,4 +163,13 @@ public class HashJoinPhase extends JoinPhase {
     public long numberOfRowsForLeft() {
         return numberOfRowsForLeft;
     }
+
+    /**
+     * @return true if the left side is consumed completely before the right side, so that both sides can be split
+     *         into partitions and joined pairwise if the left side doesn't fit into memory. The number of partitions
+     *         is decided by each execution, see {@link io.crate.execution.engine.join.GraceHashJoinBatchIterator}
+     */
+    public boolean graceHashJoin() {
+        return graceHashJoin;
+    }
 }
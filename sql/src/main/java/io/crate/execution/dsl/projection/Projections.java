@@ -23,6 +23,7 @@
 package io.crate.execution.dsl.projection;
 
 import com.google.common.collect.Collections2;
+import io.crate.expression.symbol.AggregateMode;
 import io.crate.metadata.RowGranularity;
 
 import java.util.Collection;
@@ -45,4 +46,32 @@ public class Projections {
         }
         return false;
     }
+
+    /**
+     * @return true if there are shard projections and they can be applied independently to disjoint parts of a shard.
+     *         That is the case if they only filter or evaluate rows, or compute partial aggregations which are
+     *         merged later on.
+     */
+    public static boolean canSplitShardProjections(Iterable<? extends Projection> projections) {
+        boolean hasShardProjections = false;
+        for (Projection projection : projections) {
+            if (projection.requiredGranularity() != RowGranularity.SHARD) {
+                continue;
+            }
+            hasShardProjections = true;
+            if (projection instanceof FilterProjection || projection instanceof EvalProjection) {
+                continue;
+            }
+            if (projection instanceof AggregationProjection
+                && ((AggregationProjection) projection).mode() == AggregateMode.ITER_PARTIAL) {
+                continue;
+            }
+            if (projection instanceof GroupProjection
+                && ((GroupProjection) projection).mode() == AggregateMode.ITER_PARTIAL) {
+                continue;
+            }
+            return false;
+        }
+        return hasShardProjections;
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine;
+
+import io.crate.breaker.BlockBasedRamAccounting;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Decides if and where pipeline breaking operations, like a GROUP BY or an ORDER BY, spill the rows they buffer
+ * to disk.
+ * <p>
+ * The rows are spilled once the circuit breaker is under pressure, so that an operation on a huge number of
+ * rows completes instead of failing with a {@link org.elasticsearch.common.breaker.CircuitBreakingException}.
+ */
+public final class SpillPolicy {
+
+    /**
+     * Fraction of the circuit breaker limit above which the breaker is considered to be under pressure.
+     */
+    static final double PRESSURE_THRESHOLD = 0.75;
+
+    /**
+     * Minimum fraction of the circuit breaker limit an operation must use before it spills, so that
+     * memory held by other operations doesn't cause a flood of tiny runs.
+     */
+    static final double MIN_SPILL_FRACTION = 0.01;
+
+    private final Path directory;
+    private final Supplier<CircuitBreaker> circuitBreaker;
+
+    /**
+     * @param circuitBreaker supplies the current instance of the breaker, which changes if its limit is updated
+     */
+    public SpillPolicy(Path directory, Supplier<CircuitBreaker> circuitBreaker) {
+        this.directory = directory;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Block size for the {@link BlockBasedRamAccounting} of a spilling operation.
+     * The operation needs a RamAccounting of its own, so that it can release the accounted memory after spilling.
+     */
+    public int ramAccountingBlockSizeInBytes() {
+        return BlockBasedRamAccounting.calculateBlockSizeInBytes(circuitBreaker.get().getLimit(), 1);
+    }
+
+    /**
+     * @param accountedBytes the number of bytes currently accounted for the rows the operation holds in memory
+     */
+    public boolean shouldSpill(long accountedBytes) {
+        CircuitBreaker breaker = circuitBreaker.get();
+        long limit = breaker.getLimit();
+        if (limit <= 0 || accountedBytes < limit * MIN_SPILL_FRACTION) {
+            return false;
+        }
+        return breaker.getUsed() >= limit * PRESSURE_THRESHOLD;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.data.Input;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implemented by {@link AggregationFunction}s whose state has a fixed size and can be updated in place within a
+ * {@link ByteBuf}. This allows {@link OffHeapGroupingCollector} to keep the states of all groups in off-heap memory
+ * instead of holding one state object per group on the heap.
+ * <p>
+ * The binary state is never streamed, it is converted into the regular partial state using
+ * {@link #partialState(ByteBuf, int)} once the aggregation is finished.
+ *
+ * @param <TPartial> the partial state type of the aggregation
+ */
+public interface FixedWidthStateAggregation<TPartial> {
+
+    /**
+     * @return the number of bytes of the state
+     */
+    int stateSize();
+
+    /**
+     * Writes an initial state at the given offset, the equivalent of {@link AggregationFunction#newState}.
+     */
+    void initState(ByteBuf buffer, int offset);
+
+    /**
+     * Updates the state at the given offset with the input values, the equivalent of
+     * {@link AggregationFunction#iterate}.
+     */
+    void iterate(ByteBuf buffer, int offset, Input... args);
+
+    /**
+     * Merges a partial state (e.g. received from another node) into the state at the given offset, the
+     * equivalent of {@link AggregationFunction#reduce}.
+     */
+    void reduce(ByteBuf buffer, int offset, @Nullable TPartial partialState);
+
+    /**
+     * @return the state at the given offset as the partial state used by {@link AggregationFunction}
+     */
+    @Nullable
+    TPartial partialState(ByteBuf buffer, int offset);
+}
@@ -22,26 +22,40 @@
 
 package io.crate.execution.engine.aggregation;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import io.crate.Streamer;
+import io.crate.breaker.BlockBasedRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.breaker.SizeEstimator;
 import io.crate.breaker.SizeEstimatorFactory;
 import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.data.RowN;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.InputCondition;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.memory.MemoryManager;
 import io.crate.types.DataType;
 import org.elasticsearch.Version;
+import org.elasticsearch.core.internal.io.IOUtils;
 
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -52,10 +66,45 @@ import java.util.stream.Collector;
 /**
  * Collector implementation which uses {@link AggregateMode}s and {@code keyInputs}
  * to group rows by key and aggregate the grouped values.
+ * <p>
+ * If a {@link SpillPolicy} is given, the groups are spilled to disk as {@link SpilledGroupRuns} once the
+ * circuit breaker is under pressure. The runs are merged at the end, reducing the partial states of equal keys:
+ *
+ * <pre>
+ *     accumulate:
+ *         if (spillPolicy.shouldSpill()) {
+ *             write the groups sorted by hash of the key as a new run
+ *             continue with an empty map
+ *         }
+ *     finish:
+ *         write the remaining groups as a new run
+ *         merge all runs by hash, reduce the states of equal keys and terminate them
+ * </pre>
+ *
+ * The collector must be closed to delete the runs.
  *
  * @param <K> type of the key
  */
-public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, Iterable<Row>> {
+public class GroupingCollector<K> implements Collector<Row, GroupingCollector.Groups<K>, Iterable<Row>>, Closeable {
+
+    /**
+     * Merging opens all runs at once, if there are more runs they're compacted into one
+     */
+    static final int MAX_RUNS = 64;
+
+    /**
+     * The groups of one collect operation
+     */
+    static final class Groups<K> {
+
+        private Map<K, Object[]> statesByKey;
+        @Nullable
+        private SpilledGroupRuns spilledRuns;
+
+        private Groups(Map<K, Object[]> statesByKey) {
+            this.statesByKey = statesByKey;
+        }
+    }
 
     private final CollectExpression<Row, ?>[] expressions;
     private final AggregationFunction[] aggregations;
@@ -69,9 +118,13 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
     private final BiConsumer<Map<K, Object[]>, K> accountForNewEntry;
     private final Function<Row, K> keyExtractor;
     private final Version indexVersionCreated;
-    private final BiConsumer<Map<K, Object[]>, Row> accumulator;
-    private final Supplier<Map<K, Object[]>> supplier;
+    private final BiConsumer<Groups<K>, Row> accumulator;
+    private final Supplier<Map<K, Object[]>> mapSupplier;
     private final Version minNodeVersion;
+    @Nullable
+    private final SpillPolicy spillPolicy;
+    private final Streamer<?>[] spillStreamers;
+    private final List<SpilledGroupRuns> allSpilledRuns = new ArrayList<>();
 
     static GroupingCollector<Object> singleKey(CollectExpression<Row, ?>[] expressions,
                                                AggregateMode mode,
@@ -84,6 +137,35 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                                                Input<?> keyInput,
                                                DataType keyType,
                                                Version indexVersionCreated) {
+        return singleKey(
+            expressions,
+            mode,
+            aggregations,
+            inputs,
+            filters,
+            ramAccounting,
+            memoryManager,
+            minNodeVersion,
+            keyInput,
+            keyType,
+            indexVersionCreated,
+            null
+        );
+    }
+
+    static GroupingCollector<Object> singleKey(CollectExpression<Row, ?>[] expressions,
+                                               AggregateMode mode,
+                                               AggregationFunction[] aggregations,
+                                               Input[][] inputs,
+                                               Input<Boolean>[] filters,
+                                               RamAccounting ramAccounting,
+                                               MemoryManager memoryManager,
+                                               Version minNodeVersion,
+                                               Input<?> keyInput,
+                                               DataType keyType,
+                                               Version indexVersionCreated,
+                                               @Nullable SpillPolicy spillPolicy) {
+        ramAccounting = spillableRamAccounting(ramAccounting, spillPolicy);
         return new GroupingCollector<>(
             expressions,
             aggregations,
@@ -102,7 +184,9 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
             ),
             row -> keyInput.value(),
             indexVersionCreated,
-            GroupByMaps.mapForType(keyType)
+            GroupByMaps.mapForType(keyType),
+            List.of(keyType),
+            spillPolicy
         );
     }
 
@@ -117,6 +201,35 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                                                     List<Input<?>> keyInputs,
                                                     List<? extends DataType> keyTypes,
                                                     Version indexVersionCreated) {
+        return manyKeys(
+            expressions,
+            mode,
+            aggregations,
+            inputs,
+            filters,
+            ramAccountingContext,
+            memoryManager,
+            minNodeVersion,
+            keyInputs,
+            keyTypes,
+            indexVersionCreated,
+            null
+        );
+    }
+
+    static GroupingCollector<List<Object>> manyKeys(CollectExpression<Row, ?>[] expressions,
+                                                    AggregateMode mode,
+                                                    AggregationFunction[] aggregations,
+                                                    Input[][] inputs,
+                                                    Input<Boolean>[] filters,
+                                                    RamAccounting ramAccountingContext,
+                                                    MemoryManager memoryManager,
+                                                    Version minNodeVersion,
+                                                    List<Input<?>> keyInputs,
+                                                    List<? extends DataType> keyTypes,
+                                                    Version indexVersionCreated,
+                                                    @Nullable SpillPolicy spillPolicy) {
+        ramAccountingContext = spillableRamAccounting(ramAccountingContext, spillPolicy);
         return new GroupingCollector<>(
             expressions,
             aggregations,
@@ -135,10 +248,23 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
             ),
             row -> evalKeyInputs(keyInputs),
             indexVersionCreated,
-            HashMap::new
+            HashMap::new,
+            keyTypes,
+            spillPolicy
         );
     }
 
+    /**
+     * Spilling releases all memory accounted for the groups, so they need a RamAccounting of their own.
+     */
+    private static RamAccounting spillableRamAccounting(RamAccounting ramAccounting,
+                                                        @Nullable SpillPolicy spillPolicy) {
+        if (spillPolicy == null) {
+            return ramAccounting;
+        }
+        return new BlockBasedRamAccounting(ramAccounting::addBytes, spillPolicy.ramAccountingBlockSizeInBytes());
+    }
+
     private static List<Object> evalKeyInputs(List<Input<?>> keyInputs) {
         List<Object> key = new ArrayList<>(keyInputs.size());
         for (Input<?> keyInput : keyInputs) {
@@ -166,7 +292,9 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
                               BiConsumer<Map<K, Object[]>, K> accountForNewEntry,
                               Function<Row, K> keyExtractor,
                               Version indexVersionCreated,
-                              Supplier<Map<K, Object[]>> supplier) {
+                              Supplier<Map<K, Object[]>> mapSupplier,
+                              List<? extends DataType> keyTypes,
+                              @Nullable SpillPolicy spillPolicy) {
         this.expressions = expressions;
         this.aggregations = aggregations;
         this.mode = mode;
@@ -180,30 +308,38 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         this.keyExtractor = keyExtractor;
         this.indexVersionCreated = indexVersionCreated;
         this.accumulator = mode == AggregateMode.PARTIAL_FINAL ? this::reduce : this::iter;
-        this.supplier = supplier;
+        this.mapSupplier = mapSupplier;
         this.minNodeVersion = minNodeVersion;
+        this.spillPolicy = spillPolicy;
+        this.spillStreamers = new Streamer[numKeyColumns + aggregations.length];
+        for (int i = 0; i < numKeyColumns; i++) {
+            spillStreamers[i] = keyTypes.get(i).streamer();
+        }
+        for (int i = 0; i < aggregations.length; i++) {
+            spillStreamers[numKeyColumns + i] = aggregations[i].partialType().streamer();
+        }
     }
 
     @Override
-    public Supplier<Map<K, Object[]>> supplier() {
-        return supplier;
+    public Supplier<Groups<K>> supplier() {
+        return () -> new Groups<>(mapSupplier.get());
     }
 
     @Override
-    public BiConsumer<Map<K, Object[]>, Row> accumulator() {
+    public BiConsumer<Groups<K>, Row> accumulator() {
         return accumulator;
     }
 
     @Override
-    public BinaryOperator<Map<K, Object[]>> combiner() {
+    public BinaryOperator<Groups<K>> combiner() {
         return (state1, state2) -> {
             throw new UnsupportedOperationException("combine not supported");
         };
     }
 
     @Override
-    public Function<Map<K, Object[]>, Iterable<Row>> finisher() {
-        return this::mapToRows;
+    public Function<Groups<K>, Iterable<Row>> finisher() {
+        return this::groupsToRows;
     }
 
     @Override
@@ -211,7 +347,8 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         return Collections.emptySet();
     }
 
-    private void reduce(Map<K, Object[]> statesByKey, Row row) {
+    private void reduce(Groups<K> groups, Row row) {
+        Map<K, Object[]> statesByKey = statesByKeyOrSpill(groups);
         for (CollectExpression<Row, ?> expression : expressions) {
             expression.setNextRow(row);
         }
@@ -235,7 +372,8 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         statesByKey.put(key, states);
     }
 
-    private void iter(Map<K, Object[]> statesByKey, Row row) {
+    private void iter(Groups<K> groups, Row row) {
+        Map<K, Object[]> statesByKey = statesByKeyOrSpill(groups);
         for (CollectExpression<Row, ?> expression : expressions) {
             expression.setNextRow(row);
         }
@@ -270,6 +408,157 @@ public class GroupingCollector<K> implements Collector<Row, Map<K, Object[]>, It
         addWithAccounting(statesByKey, key, states);
     }
 
+    private Map<K, Object[]> statesByKeyOrSpill(Groups<K> groups) {
+        if (spillPolicy != null
+            && !groups.statesByKey.isEmpty()
+            && spillPolicy.shouldSpill(ramAccounting.totalBytes())) {
+            spill(groups);
+        }
+        return groups.statesByKey;
+    }
+
+    /**
+     * Writes the groups in memory as a new run and continues with an empty map.
+     */
+    private void spill(Groups<K> groups) {
+        assert spillPolicy != null : "spillPolicy must not be null if groups are spilled";
+        try {
+            if (groups.spilledRuns == null) {
+                groups.spilledRuns = new SpilledGroupRuns(spillPolicy.directory(), spillStreamers);
+                synchronized (allSpilledRuns) {
+                    allSpilledRuns.add(groups.spilledRuns);
+                }
+            }
+            List<SpilledGroupRuns.Entry> entries = new ArrayList<>(groups.statesByKey.size());
+            for (Map.Entry<K, Object[]> group : groups.statesByKey.entrySet()) {
+                Object[] cells = new Object[numKeyColumns + aggregations.length];
+                applyKeyToCells.accept(group.getKey(), cells);
+                System.arraycopy(group.getValue(), 0, cells, numKeyColumns, aggregations.length);
+                entries.add(new SpilledGroupRuns.Entry(keyHash(cells), cells));
+            }
+            groups.statesByKey = mapSupplier.get();
+            entries.sort(Comparator.comparingInt(entry -> entry.hash));
+            groups.spilledRuns.write(entries.iterator());
+            if (groups.spilledRuns.numRuns() >= MAX_RUNS) {
+                groups.spilledRuns.compact(this::reduceEqualKeys);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ramAccounting.release();
+    }
+
+    private int keyHash(Object[] cells) {
+        int hash = 1;
+        for (int i = 0; i < numKeyColumns; i++) {
+            hash = 31 * hash + Objects.hashCode(cells[i]);
+        }
+        return hash;
+    }
+
+    private boolean keysEqual(Object[] cells1, Object[] cells2) {
+        for (int i = 0; i < numKeyColumns; i++) {
+            if (!Objects.equals(cells1[i], cells2[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reduces the states of entries with equal keys.
+     *
+     * @param entries entries sorted by hash
+     * @return one entry per key, sorted by hash
+     */
+    @SuppressWarnings("unchecked")
+    private Iterator<SpilledGroupRuns.Entry> reduceEqualKeys(Iterator<SpilledGroupRuns.Entry> entries) {
+        PeekingIterator<SpilledGroupRuns.Entry> sortedEntries = Iterators.peekingIterator(entries);
+        return new AbstractIterator<>() {
+
+            // the reduced entries of the current hash, usually only one
+            final ArrayDeque<SpilledGroupRuns.Entry> reduced = new ArrayDeque<>();
+
+            @Override
+            protected SpilledGroupRuns.Entry computeNext() {
+                if (reduced.isEmpty()) {
+                    if (!sortedEntries.hasNext()) {
+                        return endOfData();
+                    }
+                    reduceNextHash();
+                }
+                return reduced.poll();
+            }
+
+            private void reduceNextHash() {
+                int hash = sortedEntries.peek().hash;
+                do {
+                    SpilledGroupRuns.Entry entry = sortedEntries.next();
+                    SpilledGroupRuns.Entry existing = null;
+                    for (SpilledGroupRuns.Entry candidate : reduced) {
+                        if (keysEqual(candidate.cells, entry.cells)) {
+                            existing = candidate;
+                            break;
+                        }
+                    }
+                    if (existing == null) {
+                        reduced.add(entry);
+                    } else {
+                        for (int i = 0; i < aggregations.length; i++) {
+                            int c = numKeyColumns + i;
+                            existing.cells[c] = aggregations[i].reduce(ramAccounting, existing.cells[c], entry.cells[c]);
+                        }
+                    }
+                } while (sortedEntries.hasNext() && sortedEntries.peek().hash == hash);
+            }
+        };
+    }
+
+    private Iterable<Row> groupsToRows(Groups<K> groups) {
+        if (groups.spilledRuns == null) {
+            return mapToRows(groups.statesByKey);
+        }
+        if (!groups.statesByKey.isEmpty()) {
+            spill(groups);
+        }
+        SpilledGroupRuns spilledRuns = groups.spilledRuns;
+        return () -> Iterators.transform(
+            reduceEqualKeys(spilledRuns.mergeSortedByHash()),
+            new com.google.common.base.Function<>() {
+
+                final Object[] cells = new Object[numKeyColumns + aggregations.length];
+                final RowN row = new RowN(cells);
+
+                @Nullable
+                @Override
+                public Row apply(@Nullable SpilledGroupRuns.Entry entry) {
+                    assert entry != null : "entry must not be null";
+                    if (ramAccounting.totalBytes() > 0) {
+                        // the memory accounted while reducing the states of the previous key isn't used anymore
+                        ramAccounting.release();
+                    }
+                    System.arraycopy(entry.cells, 0, cells, 0, numKeyColumns);
+                    for (int i = 0; i < aggregations.length; i++) {
+                        int c = numKeyColumns + i;
+                        cells[c] = mode.finishCollect(ramAccounting, aggregations[i], entry.cells[c]);
+                    }
+                    return row;
+                }
+            }
+        );
+    }
+
+    /**
+     * Deletes the runs of spilled groups.
+     */
+    @Override
+    public void close() {
+        synchronized (allSpilledRuns) {
+            IOUtils.closeWhileHandlingException(allSpilledRuns);
+            allSpilledRuns.clear();
+        }
+    }
+
     private Iterable<Row> mapToRows(Map<K, Object[]> statesByKey) {
         return Iterables.transform(statesByKey.entrySet(), new com.google.common.base.Function<>() {
 
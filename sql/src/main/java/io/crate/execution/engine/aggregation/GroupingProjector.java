@@ -24,10 +24,12 @@ package io.crate.execution.engine.aggregation;
 
 import io.crate.breaker.RamAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
 import io.crate.data.Projector;
 import io.crate.data.Row;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.symbol.AggregateMode;
 import io.crate.expression.symbol.Symbol;
@@ -37,6 +39,7 @@ import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.Version;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.stream.Collector;
 
@@ -55,7 +58,8 @@ public class GroupingProjector implements Projector {
                              RamAccounting ramAccounting,
                              MemoryManager memoryManager,
                              Version minNodeVersion,
-                             Version indexVersionCreated) {
+                             Version indexVersionCreated,
+                             @Nullable SpillPolicy spillPolicy) {
         assert keys.size() == keyInputs.size() : "number of key types must match with number of key inputs";
         ensureAllTypesSupported(keys);
 
@@ -68,7 +72,20 @@ public class GroupingProjector implements Projector {
             inputs[i] = aggregation.inputs();
             filters[i] = aggregation.filter();
         }
-        if (keys.size() == 1) {
+        List<DataType> keyTypes = typeView(keys);
+        if (OffHeapGroupingCollector.isSupported(memoryManager, keyTypes, functions)) {
+            collector = new OffHeapGroupingCollector(
+                collectExpressions,
+                mode,
+                functions,
+                inputs,
+                filters,
+                ramAccounting,
+                memoryManager,
+                keyInputs,
+                keyTypes
+            );
+        } else if (keys.size() == 1) {
             Symbol key = keys.get(0);
             collector = GroupingCollector.singleKey(
                 collectExpressions,
@@ -81,7 +98,8 @@ public class GroupingProjector implements Projector {
                 minNodeVersion,
                 keyInputs.get(0),
                 key.valueType(),
-                indexVersionCreated
+                indexVersionCreated,
+                spillPolicy
             );
         } else {
             //noinspection unchecked
@@ -95,8 +113,9 @@ public class GroupingProjector implements Projector {
                 memoryManager,
                 minNodeVersion,
                 keyInputs,
-                typeView(keys),
-                indexVersionCreated
+                keyTypes,
+                indexVersionCreated,
+                spillPolicy
             );
         }
     }
@@ -112,6 +131,21 @@ public class GroupingProjector implements Projector {
 
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        if (collector instanceof GroupingCollector) {
+            GroupingCollector<?> groupingCollector = (GroupingCollector<?>) collector;
+            return CollectingBatchIterator.newInstance(
+                () -> {
+                    try {
+                        batchIterator.close();
+                    } finally {
+                        groupingCollector.close();
+                    }
+                },
+                batchIterator::kill,
+                () -> BatchIterators.collect(batchIterator, groupingCollector),
+                batchIterator.hasLazyResultSet()
+            );
+        }
         return CollectingBatchIterator.newInstance(batchIterator, collector);
     }
 
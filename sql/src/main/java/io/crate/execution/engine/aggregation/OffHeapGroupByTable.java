@@ -0,0 +1,282 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Input;
+import io.crate.memory.MemoryManager;
+import io.crate.types.DataType;
+import io.netty.buffer.ByteBuf;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash table for GROUP BY operations which stores the keys and the aggregation states of all groups in
+ * {@link ByteBuf} pages allocated by a {@link MemoryManager}.
+ * <p>
+ * The keys are serialized using the {@link Streamer}s of the key types, so any number of key columns of any
+ * primitive type (including strings) are supported. Each group is stored as one entry:
+ *
+ * <pre>
+ *     [int keyLength][key bytes][state 1][state 2]...[state n]
+ * </pre>
+ *
+ * The states have a fixed size (see {@link FixedWidthStateAggregation}) and are updated in place.
+ * The heap only holds a primitive open-addressing index of the entries (hash and address), so the heap usage
+ * is about 16 bytes per group, independent of the number and the types of the keys and aggregations.
+ * The index is accounted using {@link RamAccounting}, the pages are owned by the {@link MemoryManager}.
+ */
+final class OffHeapGroupByTable {
+
+    static final int PAGE_SIZE_IN_BYTES = 1 << 20;
+
+    private static final long NO_ENTRY = -1L;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int BYTES_PER_SLOT = Integer.BYTES + Long.BYTES;
+
+    private final MemoryManager memoryManager;
+    private final RamAccounting ramAccounting;
+    private final DataType[] keyTypes;
+    private final Streamer[] keyStreamers;
+    private final int statesSize;
+    private final ArrayList<ByteBuf> pages = new ArrayList<>();
+    private final BytesStreamOutput keyOut = new BytesStreamOutput();
+    private byte[] keyIn = new byte[0];
+
+    private int[] slotHashes;
+    /**
+     * page index (upper 32 bits) and offset within the page (lower 32 bits) of each entry or {@link #NO_ENTRY}
+     */
+    private long[] slotAddresses;
+    private int mask;
+    private int resizeAt;
+    private int size;
+
+    private ByteBuf currentPage;
+    private int currentStatesOffset;
+
+    OffHeapGroupByTable(MemoryManager memoryManager,
+                        RamAccounting ramAccounting,
+                        List<? extends DataType> keyTypes,
+                        int statesSize) {
+        this.memoryManager = memoryManager;
+        this.ramAccounting = ramAccounting;
+        this.keyTypes = keyTypes.toArray(new DataType[0]);
+        this.keyStreamers = new Streamer[this.keyTypes.length];
+        for (int i = 0; i < this.keyTypes.length; i++) {
+            keyStreamers[i] = this.keyTypes[i].streamer();
+        }
+        this.statesSize = statesSize;
+        ramAccounting.addBytes((long) INITIAL_CAPACITY * BYTES_PER_SLOT);
+        allocateSlots(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the entry of the key given by the current values of the key inputs and adds it if it doesn't exist.
+     * Afterwards {@link #page()} and {@link #statesOffset()} point to the states of the entry.
+     *
+     * @return true if a new entry has been added. The states of a new entry must be initialized by the caller.
+     */
+    @SuppressWarnings("unchecked")
+    boolean lookupOrAdd(List<? extends Input<?>> keyInputs) {
+        keyOut.reset();
+        try {
+            for (int i = 0; i < keyStreamers.length; i++) {
+                keyStreamers[i].writeValueTo(keyOut, keyTypes[i].value(keyInputs.get(i).value()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BytesRef key = keyOut.bytes().toBytesRef();
+        int hash = StringHelper.murmurhash3_x86_32(key.bytes, key.offset, key.length, 0);
+
+        int slot = hash & mask;
+        long address;
+        while ((address = slotAddresses[slot]) != NO_ENTRY) {
+            if (slotHashes[slot] == hash && keyEquals(address, key)) {
+                point(address);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        address = addEntry(key);
+        slotHashes[slot] = hash;
+        slotAddresses[slot] = address;
+        size++;
+        if (size > resizeAt) {
+            rehash();
+        }
+        return true;
+    }
+
+    ByteBuf page() {
+        return currentPage;
+    }
+
+    int statesOffset() {
+        return currentStatesOffset;
+    }
+
+    private boolean keyEquals(long address, BytesRef key) {
+        ByteBuf page = pages.get((int) (address >>> 32));
+        int offset = (int) address;
+        int length = page.getInt(offset);
+        if (length != key.length) {
+            return false;
+        }
+        byte[] bytes = readKeyBytes(page, offset, length);
+        return Arrays.equals(bytes, 0, length, key.bytes, key.offset, key.offset + length);
+    }
+
+    private byte[] readKeyBytes(ByteBuf page, int offset, int length) {
+        if (keyIn.length < length) {
+            keyIn = new byte[length];
+        }
+        page.getBytes(offset + Integer.BYTES, keyIn, 0, length);
+        return keyIn;
+    }
+
+    private void point(long address) {
+        currentPage = pages.get((int) (address >>> 32));
+        int offset = (int) address;
+        currentStatesOffset = offset + Integer.BYTES + currentPage.getInt(offset);
+    }
+
+    private long addEntry(BytesRef key) {
+        int entrySize = Integer.BYTES + key.length + statesSize;
+        ByteBuf page;
+        if (pages.isEmpty() || (page = pages.get(pages.size() - 1)).writableBytes() < entrySize) {
+            // Pages must not be released by us, they're released once the memory manager is closed
+            page = memoryManager.allocate(Math.max(PAGE_SIZE_IN_BYTES, entrySize));
+            pages.add(page);
+        }
+        int offset = page.writerIndex();
+        page.writeInt(key.length);
+        page.writeBytes(key.bytes, key.offset, key.length);
+        page.writerIndex(page.writerIndex() + statesSize);
+        currentPage = page;
+        currentStatesOffset = offset + Integer.BYTES + key.length;
+        return ((long) (pages.size() - 1) << 32) | offset;
+    }
+
+    private void allocateSlots(int capacity) {
+        slotHashes = new int[capacity];
+        slotAddresses = new long[capacity];
+        Arrays.fill(slotAddresses, NO_ENTRY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        int[] oldHashes = slotHashes;
+        long[] oldAddresses = slotAddresses;
+        if (oldHashes.length == MAX_CAPACITY) {
+            throw new IllegalStateException("GROUP BY cannot hold more than " + resizeAt + " groups");
+        }
+        int capacity = oldHashes.length << 1;
+        ramAccounting.addBytes((long) (capacity - oldHashes.length) * BYTES_PER_SLOT);
+        allocateSlots(capacity);
+        for (int i = 0; i < oldHashes.length; i++) {
+            long address = oldAddresses[i];
+            if (address != NO_ENTRY) {
+                int slot = oldHashes[i] & mask;
+                while (slotAddresses[slot] != NO_ENTRY) {
+                    slot = (slot + 1) & mask;
+                }
+                slotHashes[slot] = oldHashes[i];
+                slotAddresses[slot] = address;
+            }
+        }
+    }
+
+    /**
+     * @return a cursor over all entries in the order they've been added.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    final class Cursor {
+
+        private int pageIdx = 0;
+        private int nextOffset = 0;
+        private ByteBuf page;
+        private int offset;
+
+        /**
+         * Moves to the next entry. Afterwards {@link #page()} and {@link #statesOffset()} point to its states.
+         */
+        boolean moveNext() {
+            while (pageIdx < pages.size()) {
+                ByteBuf candidate = pages.get(pageIdx);
+                if (nextOffset < candidate.writerIndex()) {
+                    page = candidate;
+                    offset = nextOffset;
+                    nextOffset = statesOffset() + statesSize;
+                    return true;
+                }
+                pageIdx++;
+                nextOffset = 0;
+            }
+            return false;
+        }
+
+        ByteBuf page() {
+            return page;
+        }
+
+        int statesOffset() {
+            return offset + Integer.BYTES + page.getInt(offset);
+        }
+
+        /**
+         * Reads the key values of the current entry into {@code cells}, starting at index 0.
+         */
+        void readKey(Object[] cells) {
+            int length = page.getInt(offset);
+            StreamInput in = StreamInput.wrap(readKeyBytes(page, offset, length), 0, length);
+            try {
+                for (int i = 0; i < keyStreamers.length; i++) {
+                    cells[i] = keyStreamers[i].readValueFrom(in);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.InputCondition;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.memory.MemoryManager;
+import io.crate.memory.OffHeapMemoryManager;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Variant of {@link GroupingCollector} which keeps the keys and the aggregation states in an
+ * {@link OffHeapGroupByTable}. The states are updated in place using {@link FixedWidthStateAggregation}.
+ * <p>
+ * Only used with an {@link OffHeapMemoryManager}, if all keys are of a primitive type and all aggregations
+ * support a fixed width state, see {@link #isSupported(MemoryManager, List, AggregationFunction[])}.
+ */
+public class OffHeapGroupingCollector implements Collector<Row, OffHeapGroupByTable, Iterable<Row>> {
+
+    private final CollectExpression<Row, ?>[] expressions;
+    private final AggregationFunction[] aggregations;
+    private final FixedWidthStateAggregation[] binaryAggregations;
+    private final int[] stateOffsets;
+    private final AggregateMode mode;
+    private final Input[][] inputs;
+    private final Input<Boolean>[] filters;
+    private final RamAccounting ramAccounting;
+    private final MemoryManager memoryManager;
+    private final List<Input<?>> keyInputs;
+    private final List<? extends DataType> keyTypes;
+    private final int statesSize;
+    private final BiConsumer<OffHeapGroupByTable, Row> accumulator;
+
+    static boolean isSupported(MemoryManager memoryManager,
+                               List<? extends DataType> keyTypes,
+                               AggregationFunction[] aggregations) {
+        if (!(memoryManager instanceof OffHeapMemoryManager)) {
+            return false;
+        }
+        for (DataType keyType : keyTypes) {
+            if (!DataTypes.PRIMITIVE_TYPES.contains(keyType)) {
+                return false;
+            }
+        }
+        for (AggregationFunction aggregation : aggregations) {
+            if (!(aggregation instanceof FixedWidthStateAggregation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    OffHeapGroupingCollector(CollectExpression<Row, ?>[] expressions,
+                             AggregateMode mode,
+                             AggregationFunction[] aggregations,
+                             Input[][] inputs,
+                             Input<Boolean>[] filters,
+                             RamAccounting ramAccounting,
+                             MemoryManager memoryManager,
+                             List<Input<?>> keyInputs,
+                             List<? extends DataType> keyTypes) {
+        assert isSupported(memoryManager, keyTypes, aggregations)
+            : "OffHeapGroupingCollector requires an off-heap memory manager, primitive keys and fixed width states";
+        this.expressions = expressions;
+        this.aggregations = aggregations;
+        this.mode = mode;
+        this.inputs = inputs;
+        this.filters = filters;
+        this.ramAccounting = ramAccounting;
+        this.memoryManager = memoryManager;
+        this.keyInputs = keyInputs;
+        this.keyTypes = keyTypes;
+        this.binaryAggregations = new FixedWidthStateAggregation[aggregations.length];
+        this.stateOffsets = new int[aggregations.length];
+        int offset = 0;
+        for (int i = 0; i < aggregations.length; i++) {
+            binaryAggregations[i] = (FixedWidthStateAggregation) aggregations[i];
+            stateOffsets[i] = offset;
+            offset += binaryAggregations[i].stateSize();
+        }
+        this.statesSize = offset;
+        this.accumulator = mode == AggregateMode.PARTIAL_FINAL ? this::reduce : this::iter;
+    }
+
+    @Override
+    public Supplier<OffHeapGroupByTable> supplier() {
+        return () -> new OffHeapGroupByTable(memoryManager, ramAccounting, keyTypes, statesSize);
+    }
+
+    @Override
+    public BiConsumer<OffHeapGroupByTable, Row> accumulator() {
+        return accumulator;
+    }
+
+    @Override
+    public BinaryOperator<OffHeapGroupByTable> combiner() {
+        return (state1, state2) -> {
+            throw new UnsupportedOperationException("combine not supported");
+        };
+    }
+
+    @Override
+    public Function<OffHeapGroupByTable, Iterable<Row>> finisher() {
+        return this::tableToRows;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.emptySet();
+    }
+
+    private boolean lookupOrAdd(OffHeapGroupByTable table, Row row) {
+        for (CollectExpression<Row, ?> expression : expressions) {
+            expression.setNextRow(row);
+        }
+        return table.lookupOrAdd(keyInputs);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reduce(OffHeapGroupByTable table, Row row) {
+        boolean isNew = lookupOrAdd(table, row);
+        ByteBuf page = table.page();
+        int statesOffset = table.statesOffset();
+        for (int i = 0; i < binaryAggregations.length; i++) {
+            int offset = statesOffset + stateOffsets[i];
+            if (isNew) {
+                binaryAggregations[i].initState(page, offset);
+            }
+            binaryAggregations[i].reduce(page, offset, inputs[i][0].value());
+        }
+    }
+
+    private void iter(OffHeapGroupByTable table, Row row) {
+        boolean isNew = lookupOrAdd(table, row);
+        ByteBuf page = table.page();
+        int statesOffset = table.statesOffset();
+        for (int i = 0; i < binaryAggregations.length; i++) {
+            int offset = statesOffset + stateOffsets[i];
+            if (isNew) {
+                binaryAggregations[i].initState(page, offset);
+            }
+            if (InputCondition.matches(filters[i])) {
+                binaryAggregations[i].iterate(page, offset, inputs[i]);
+            }
+        }
+    }
+
+    private Iterable<Row> tableToRows(OffHeapGroupByTable table) {
+        int numKeyColumns = keyTypes.size();
+        return () -> new Iterator<>() {
+
+            final OffHeapGroupByTable.Cursor cursor = table.cursor();
+            final Object[] cells = new Object[numKeyColumns + aggregations.length];
+            final RowN row = new RowN(cells);
+            boolean hasNext = cursor.moveNext();
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Row next() {
+                if (!hasNext) {
+                    throw new NoSuchElementException("OffHeapGroupByTable has no more entries");
+                }
+                cursor.readKey(cells);
+                ByteBuf page = cursor.page();
+                int statesOffset = cursor.statesOffset();
+                for (int i = 0; i < aggregations.length; i++) {
+                    Object state = binaryAggregations[i].partialState(page, statesOffset + stateOffsets[i]);
+                    cells[numKeyColumns + i] = mode.finishCollect(ramAccounting, aggregations[i], state);
+                }
+                hasNext = cursor.moveNext();
+                return row;
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.Streamer;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.UnaryOperator;
+
+/**
+ * Groups of a {@link GroupingCollector} which have been spilled to disk.
+ * <p>
+ * Each spill writes one run file. A run is a sequence of entries, sorted by the hash of their key:
+ *
+ * <pre>
+ *     [int hash][key values][partial states]
+ * </pre>
+ *
+ * The key values and partial states are written using the {@link Streamer}s of the key types and of the
+ * {@link AggregationFunction#partialType()}s. Because all runs are sorted by hash, they can be merged without
+ * loading more than the entries of one hash into memory.
+ */
+final class SpilledGroupRuns implements Closeable {
+
+    static final class Entry {
+
+        final int hash;
+        final Object[] cells;
+
+        Entry(int hash, Object[] cells) {
+            this.hash = hash;
+            this.cells = cells;
+        }
+    }
+
+    private final Path directory;
+    private final Streamer[] streamers;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Integer> numEntries = new ArrayList<>();
+    private final List<StreamInput> openInputs = new ArrayList<>();
+
+    /**
+     * @param streamers the streamers of the keys followed by the streamers of the partial states
+     */
+    SpilledGroupRuns(Path directory, Streamer<?>[] streamers) throws IOException {
+        this.directory = directory;
+        this.streamers = streamers;
+        Files.createDirectories(directory);
+    }
+
+    int numRuns() {
+        return files.size();
+    }
+
+    /**
+     * Writes a new run.
+     *
+     * @param entries entries sorted by hash.
+     */
+    @SuppressWarnings("unchecked")
+    void write(Iterator<Entry> entries) throws IOException {
+        Path file = Files.createTempFile(directory, "group-by-", ".run");
+        files.add(file);
+        int count = 0;
+        try (StreamOutput out = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                out.writeInt(entry.hash);
+                for (int i = 0; i < streamers.length; i++) {
+                    streamers[i].writeValueTo(out, entry.cells[i]);
+                }
+                count++;
+            }
+        } finally {
+            numEntries.add(count);
+        }
+    }
+
+    /**
+     * Replaces all runs by a single run.
+     *
+     * @param reducer receives the merged entries of all runs, sorted by hash, and returns the entries to write.
+     */
+    void compact(UnaryOperator<Iterator<Entry>> reducer) throws IOException {
+        List<Path> oldFiles = new ArrayList<>(files);
+        Iterator<Entry> merged = reducer.apply(mergeSortedByHash());
+        files.clear();
+        numEntries.clear();
+        try {
+            write(merged);
+        } finally {
+            closeInputs();
+            IOUtils.deleteFilesIgnoringExceptions(oldFiles);
+        }
+    }
+
+    /**
+     * @return the entries of all runs, sorted by hash. Each call reads the runs again.
+     */
+    Iterator<Entry> mergeSortedByHash() {
+        PriorityQueue<RunReader> readers = new PriorityQueue<>(
+            Math.max(1, files.size()), Comparator.comparingInt(reader -> reader.current.hash));
+        for (int i = 0; i < files.size(); i++) {
+            RunReader reader = new RunReader(files.get(i), numEntries.get(i));
+            if (reader.moveNext()) {
+                readers.add(reader);
+            }
+        }
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return !readers.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                RunReader reader = readers.poll();
+                if (reader == null) {
+                    throw new NoSuchElementException("All runs have been merged");
+                }
+                Entry entry = reader.current;
+                if (reader.moveNext()) {
+                    readers.add(reader);
+                }
+                return entry;
+            }
+        };
+    }
+
+    private class RunReader {
+
+        private final StreamInput in;
+        private int remaining;
+        private Entry current;
+
+        RunReader(Path file, int numEntries) {
+            try {
+                in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(file)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synchronized (openInputs) {
+                openInputs.add(in);
+            }
+            remaining = numEntries;
+        }
+
+        boolean moveNext() {
+            if (remaining == 0) {
+                closeInput(in);
+                return false;
+            }
+            try {
+                int hash = in.readInt();
+                Object[] cells = new Object[streamers.length];
+                for (int i = 0; i < streamers.length; i++) {
+                    cells[i] = streamers[i].readValueFrom(in);
+                }
+                current = new Entry(hash, cells);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            remaining--;
+            return true;
+        }
+    }
+
+    private void closeInput(StreamInput in) {
+        synchronized (openInputs) {
+            if (openInputs.remove(in)) {
+                IOUtils.closeWhileHandlingException(in);
+            }
+        }
+    }
+
+    private void closeInputs() {
+        synchronized (openInputs) {
+            IOUtils.closeWhileHandlingException(openInputs);
+            openInputs.clear();
+        }
+    }
+
+    /**
+     * Closes all open readers and deletes the run files.
+     */
+    @Override
+    public void close() {
+        closeInputs();
+        IOUtils.deleteFilesIgnoringExceptions(files);
+        files.clear();
+        numEntries.clear();
+    }
+}
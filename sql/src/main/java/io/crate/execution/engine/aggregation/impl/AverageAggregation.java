@@ -26,12 +26,14 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
 import io.crate.memory.MemoryManager;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
+import io.netty.buffer.ByteBuf;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -41,7 +43,8 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.List;
 
-public class AverageAggregation extends AggregationFunction<AverageAggregation.AverageState, Double> {
+public class AverageAggregation extends AggregationFunction<AverageAggregation.AverageState, Double>
+    implements FixedWidthStateAggregation<AverageAggregation.AverageState> {
 
     public static final String[] NAMES = new String[]{"avg", "mean"};
     public static final String NAME = NAMES[0];
@@ -213,6 +216,45 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
         return state.value();
     }
 
+    /**
+     * Binary state: [double sum][long count]
+     */
+    @Override
+    public int stateSize() {
+        return Double.BYTES + Long.BYTES;
+    }
+
+    @Override
+    public void initState(ByteBuf buffer, int offset) {
+        buffer.setDouble(offset, 0d);
+        buffer.setLong(offset + Double.BYTES, 0L);
+    }
+
+    @Override
+    public void iterate(ByteBuf buffer, int offset, Input... args) {
+        Number value = (Number) args[0].value();
+        if (value != null) {
+            buffer.setDouble(offset, buffer.getDouble(offset) + value.doubleValue());
+            buffer.setLong(offset + Double.BYTES, buffer.getLong(offset + Double.BYTES) + 1L);
+        }
+    }
+
+    @Override
+    public void reduce(ByteBuf buffer, int offset, @Nullable AverageState partialState) {
+        if (partialState != null) {
+            buffer.setDouble(offset, buffer.getDouble(offset) + partialState.sum);
+            buffer.setLong(offset + Double.BYTES, buffer.getLong(offset + Double.BYTES) + partialState.count);
+        }
+    }
+
+    @Override
+    public AverageState partialState(ByteBuf buffer, int offset) {
+        AverageState state = new AverageState();
+        state.sum = buffer.getDouble(offset);
+        state.count = buffer.getLong(offset + Double.BYTES);
+        return state;
+    }
+
     @Nullable
     @Override
     public AverageState newState(RamAccounting ramAccounting,
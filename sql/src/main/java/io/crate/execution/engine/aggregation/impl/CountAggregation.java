@@ -26,6 +26,7 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
 import io.crate.expression.symbol.Function;
 import io.crate.expression.symbol.Literal;
 import io.crate.expression.symbol.Symbol;
@@ -40,6 +41,7 @@ import io.crate.metadata.functions.params.Param;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
+import io.netty.buffer.ByteBuf;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -48,7 +50,8 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.List;
 
-public class CountAggregation extends AggregationFunction<CountAggregation.LongState, Long> {
+public class CountAggregation extends AggregationFunction<CountAggregation.LongState, Long>
+    implements FixedWidthStateAggregation<CountAggregation.LongState> {
 
     public static final String NAME = "count";
     private final FunctionInfo info;
@@ -111,6 +114,35 @@ public class CountAggregation extends AggregationFunction<CountAggregation.LongS
         return new LongState();
     }
 
+    @Override
+    public int stateSize() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public void initState(ByteBuf buffer, int offset) {
+        buffer.setLong(offset, 0L);
+    }
+
+    @Override
+    public void iterate(ByteBuf buffer, int offset, Input... args) {
+        if (!hasArgs || args[0].value() != null) {
+            buffer.setLong(offset, buffer.getLong(offset) + 1L);
+        }
+    }
+
+    @Override
+    public void reduce(ByteBuf buffer, int offset, @Nullable LongState partialState) {
+        if (partialState != null) {
+            buffer.setLong(offset, buffer.getLong(offset) + partialState.value);
+        }
+    }
+
+    @Override
+    public LongState partialState(ByteBuf buffer, int offset) {
+        return new LongState(buffer.getLong(offset));
+    }
+
     @Override
     public FunctionInfo info() {
         return info;
@@ -30,9 +30,11 @@ import io.crate.memory.MemoryManager;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
+import io.netty.buffer.ByteBuf;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
@@ -49,7 +51,9 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
             FunctionInfo functionInfo = new FunctionInfo(
                 new FunctionIdent(NAME, ImmutableList.of(dataType)), dataType, FunctionInfo.Type.AGGREGATE);
 
-            if (dataType instanceof FixedWidthType) {
+            if (NullableNumberState.isSupported(dataType)) {
+                mod.register(new NumericMaximumAggregation(functionInfo));
+            } else if (dataType instanceof FixedWidthType) {
                 mod.register(new FixedMaximumAggregation(functionInfo));
             } else {
                 mod.register(new VariableMaximumAggregation(functionInfo));
@@ -91,6 +95,61 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
         }
     }
 
+    /**
+     * Keeps the state of numeric and timestamp values in binary form, see {@link NullableNumberState}.
+     */
+    private static class NumericMaximumAggregation extends FixedMaximumAggregation
+        implements FixedWidthStateAggregation<Comparable> {
+
+        private final boolean isFloatingPoint;
+
+        NumericMaximumAggregation(FunctionInfo info) {
+            super(info);
+            isFloatingPoint = NullableNumberState.isFloatingPoint(partialType());
+        }
+
+        @Override
+        public int stateSize() {
+            return NullableNumberState.SIZE;
+        }
+
+        @Override
+        public void initState(ByteBuf buffer, int offset) {
+            NullableNumberState.init(buffer, offset);
+        }
+
+        @Override
+        public void iterate(ByteBuf buffer, int offset, Input... args) {
+            reduce(buffer, offset, (Comparable) args[0].value());
+        }
+
+        @Override
+        public void reduce(ByteBuf buffer, int offset, @Nullable Comparable value) {
+            if (value == null) {
+                return;
+            }
+            Number number = (Number) value;
+            boolean isNull = NullableNumberState.isNull(buffer, offset);
+            if (isFloatingPoint) {
+                double newValue = number.doubleValue();
+                if (isNull || Double.compare(newValue, NullableNumberState.getDouble(buffer, offset)) > 0) {
+                    NullableNumberState.setDouble(buffer, offset, newValue);
+                }
+            } else {
+                long newValue = number.longValue();
+                if (isNull || newValue > NullableNumberState.getLong(buffer, offset)) {
+                    NullableNumberState.setLong(buffer, offset, newValue);
+                }
+            }
+        }
+
+        @Nullable
+        @Override
+        public Comparable partialState(ByteBuf buffer, int offset) {
+            return (Comparable) NullableNumberState.get(buffer, offset, partialType());
+        }
+    }
+
     private static class VariableMaximumAggregation extends MaximumAggregation {
 
         private final SizeEstimator<Object> estimator;
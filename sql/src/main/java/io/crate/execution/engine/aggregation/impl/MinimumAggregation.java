@@ -31,9 +31,11 @@ import io.crate.memory.MemoryManager;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.FixedWidthType;
+import io.netty.buffer.ByteBuf;
 import org.elasticsearch.Version;
 
 import javax.annotation.Nullable;
@@ -49,7 +51,9 @@ public abstract class MinimumAggregation extends AggregationFunction<Comparable,
             FunctionInfo functionInfo = new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType)),
                 dataType, FunctionInfo.Type.AGGREGATE);
 
-            if (dataType instanceof FixedWidthType) {
+            if (NullableNumberState.isSupported(dataType)) {
+                mod.register(new NumericMinimumAggregation(functionInfo));
+            } else if (dataType instanceof FixedWidthType) {
                 mod.register(new FixedMinimumAggregation(functionInfo));
             } else {
                 mod.register(new VariableMinimumAggregation(functionInfo));
@@ -57,6 +61,61 @@ public abstract class MinimumAggregation extends AggregationFunction<Comparable,
         }
     }
 
+    /**
+     * Keeps the state of numeric and timestamp values in binary form, see {@link NullableNumberState}.
+     */
+    private static class NumericMinimumAggregation extends FixedMinimumAggregation
+        implements FixedWidthStateAggregation<Comparable> {
+
+        private final boolean isFloatingPoint;
+
+        NumericMinimumAggregation(FunctionInfo info) {
+            super(info);
+            isFloatingPoint = NullableNumberState.isFloatingPoint(partialType());
+        }
+
+        @Override
+        public int stateSize() {
+            return NullableNumberState.SIZE;
+        }
+
+        @Override
+        public void initState(ByteBuf buffer, int offset) {
+            NullableNumberState.init(buffer, offset);
+        }
+
+        @Override
+        public void iterate(ByteBuf buffer, int offset, Input... args) {
+            reduce(buffer, offset, (Comparable) args[0].value());
+        }
+
+        @Override
+        public void reduce(ByteBuf buffer, int offset, @Nullable Comparable value) {
+            if (value == null) {
+                return;
+            }
+            Number number = (Number) value;
+            boolean isNull = NullableNumberState.isNull(buffer, offset);
+            if (isFloatingPoint) {
+                double newValue = number.doubleValue();
+                if (isNull || Double.compare(newValue, NullableNumberState.getDouble(buffer, offset)) < 0) {
+                    NullableNumberState.setDouble(buffer, offset, newValue);
+                }
+            } else {
+                long newValue = number.longValue();
+                if (isNull || newValue < NullableNumberState.getLong(buffer, offset)) {
+                    NullableNumberState.setLong(buffer, offset, newValue);
+                }
+            }
+        }
+
+        @Nullable
+        @Override
+        public Comparable partialState(ByteBuf buffer, int offset) {
+            return (Comparable) NullableNumberState.get(buffer, offset, partialType());
+        }
+    }
+
     private static class VariableMinimumAggregation extends MinimumAggregation {
 
         private final SizeEstimator<Object> estimator;
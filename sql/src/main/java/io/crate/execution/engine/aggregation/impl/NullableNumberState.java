@@ -0,0 +1,114 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation.impl;
+
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+import io.netty.buffer.ByteBuf;
+
+import javax.annotation.Nullable;
+
+/**
+ * Binary layout of a nullable numeric state used by {@link FixedWidthStateAggregation} implementations:
+ *
+ * <pre>
+ *     [byte hasValue][long or double value]
+ * </pre>
+ *
+ * Floating point values are stored as double, all other values as long.
+ */
+final class NullableNumberState {
+
+    static final int SIZE = 1 + Long.BYTES;
+
+    private NullableNumberState() {
+    }
+
+    static boolean isSupported(DataType<?> type) {
+        return DataTypes.NUMERIC_PRIMITIVE_TYPES.contains(type)
+               || type.id() == TimestampType.ID_WITH_TZ
+               || type.id() == TimestampType.ID_WITHOUT_TZ;
+    }
+
+    static boolean isFloatingPoint(DataType<?> type) {
+        return type.id() == DoubleType.ID || type.id() == FloatType.ID;
+    }
+
+    static void init(ByteBuf buffer, int offset) {
+        buffer.setByte(offset, 0);
+        buffer.setLong(offset + 1, 0L);
+    }
+
+    static boolean isNull(ByteBuf buffer, int offset) {
+        return buffer.getByte(offset) == 0;
+    }
+
+    static long getLong(ByteBuf buffer, int offset) {
+        return buffer.getLong(offset + 1);
+    }
+
+    static void setLong(ByteBuf buffer, int offset, long value) {
+        buffer.setByte(offset, 1);
+        buffer.setLong(offset + 1, value);
+    }
+
+    static double getDouble(ByteBuf buffer, int offset) {
+        return buffer.getDouble(offset + 1);
+    }
+
+    static void setDouble(ByteBuf buffer, int offset, double value) {
+        buffer.setByte(offset, 1);
+        buffer.setDouble(offset + 1, value);
+    }
+
+    /**
+     * @return the value converted to the java type used by the given data type or null if no value is set
+     */
+    @Nullable
+    static Number get(ByteBuf buffer, int offset, DataType<?> type) {
+        if (isNull(buffer, offset)) {
+            return null;
+        }
+        switch (type.id()) {
+            case ByteType.ID:
+                return (byte) getLong(buffer, offset);
+            case ShortType.ID:
+                return (short) getLong(buffer, offset);
+            case IntegerType.ID:
+                return (int) getLong(buffer, offset);
+            case FloatType.ID:
+                return (float) getDouble(buffer, offset);
+            case DoubleType.ID:
+                return getDouble(buffer, offset);
+            default:
+                return getLong(buffer, offset);
+        }
+    }
+}
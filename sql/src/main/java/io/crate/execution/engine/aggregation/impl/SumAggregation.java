@@ -25,11 +25,13 @@ import com.google.common.annotations.VisibleForTesting;
 import io.crate.breaker.RamAccounting;
 import io.crate.data.Input;
 import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.FixedWidthStateAggregation;
 import io.crate.memory.MemoryManager;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import io.netty.buffer.ByteBuf;
 import org.elasticsearch.Version;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
@@ -37,7 +39,8 @@ import javax.annotation.Nullable;
 import java.util.Collections;
 import java.util.function.BinaryOperator;
 
-public class SumAggregation<T extends Number> extends AggregationFunction<T, T> {
+public class SumAggregation<T extends Number> extends AggregationFunction<T, T>
+    implements FixedWidthStateAggregation<T> {
 
     public static final String NAME = "sum";
 
@@ -115,6 +118,47 @@ public class SumAggregation<T extends Number> extends AggregationFunction<T, T>
         return state;
     }
 
+    @Override
+    public int stateSize() {
+        return NullableNumberState.SIZE;
+    }
+
+    @Override
+    public void initState(ByteBuf buffer, int offset) {
+        NullableNumberState.init(buffer, offset);
+    }
+
+    @Override
+    public void iterate(ByteBuf buffer, int offset, Input... args) {
+        reduce(buffer, offset, returnType.value(args[0].value()));
+    }
+
+    @Override
+    public void reduce(ByteBuf buffer, int offset, @Nullable T value) {
+        if (value == null) {
+            return;
+        }
+        boolean isNull = NullableNumberState.isNull(buffer, offset);
+        if (returnType == DataTypes.FLOAT) {
+            // add as float to get the same result as the boxed addition
+            float sum = isNull ? value.floatValue() : (float) NullableNumberState.getDouble(buffer, offset) + value.floatValue();
+            NullableNumberState.setDouble(buffer, offset, sum);
+        } else if (returnType == DataTypes.DOUBLE) {
+            double sum = isNull ? value.doubleValue() : NullableNumberState.getDouble(buffer, offset) + value.doubleValue();
+            NullableNumberState.setDouble(buffer, offset, sum);
+        } else {
+            long sum = isNull ? value.longValue() : Math.addExact(NullableNumberState.getLong(buffer, offset), value.longValue());
+            NullableNumberState.setLong(buffer, offset, sum);
+        }
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public T partialState(ByteBuf buffer, int offset) {
+        return (T) NullableNumberState.get(buffer, offset, returnType);
+    }
+
     @Override
     public DataType partialType() {
         return info.returnType();
@@ -0,0 +1,158 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.RemovalNotification;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base of the per node caches of the collect operation whose memory is accounted for in a circuit breaker.
+ * <p>
+ * The cache is bounded by its size in bytes, a single entry may use at most a {@link #MAX_ENTRY_FRACTION fraction}
+ * of it. Entries are only added if the breaker doesn't trip; the bytes are released once they are removed.
+ * <p>
+ * Each key belongs to a group, like the shard or the segment the entry was computed on. The keys are indexed by
+ * their group so that all entries of a group can be invalidated without looking at the keys of other groups.
+ *
+ * @param <K> the type of the keys
+ * @param <G> the type of the groups of the keys
+ * @param <V> the type of the cached values
+ */
+abstract class BreakerAccountedCache<K, G, V> {
+
+    private static final Logger LOGGER = LogManager.getLogger(BreakerAccountedCache.class);
+
+    /**
+     * A single entry may use at most this fraction of the cache.
+     */
+    private static final int MAX_ENTRY_FRACTION = 10;
+
+    private final boolean enabled;
+    private final long maxEntrySizeInBytes;
+    private final CircuitBreaker breaker;
+    private final String breakerLabel;
+    private final Cache<K, V> cache;
+    private final ConcurrentHashMap<G, Set<K>> keysByGroup = new ConcurrentHashMap<>();
+
+    BreakerAccountedCache(long sizeInBytes, CircuitBreaker breaker, String breakerLabel) {
+        this.enabled = sizeInBytes > 0;
+        this.maxEntrySizeInBytes = sizeInBytes / MAX_ENTRY_FRACTION;
+        this.breaker = breaker;
+        this.breakerLabel = breakerLabel;
+        this.cache = CacheBuilder.<K, V>builder()
+            .setMaximumWeight(Math.max(1, sizeInBytes))
+            .weigher(this::weight)
+            .removalListener(this::onRemoval)
+            .build();
+    }
+
+    /**
+     * @return the number of bytes the entry uses, must be the same for every call with the same key and value.
+     */
+    protected abstract long weight(K key, V value);
+
+    protected abstract G group(K key);
+
+    /**
+     * Called after an entry was removed from the cache and its bytes were released.
+     */
+    protected void removed(RemovalNotification<K, V> notification) {
+    }
+
+    private void onRemoval(RemovalNotification<K, V> notification) {
+        K key = notification.getKey();
+        breaker.addWithoutBreaking(-weight(key, notification.getValue()));
+        if (notification.getRemovalReason() != RemovalNotification.RemovalReason.REPLACED) {
+            keysByGroup.computeIfPresent(group(key), (group, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+        removed(notification);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Values which are larger than this are not cached, serializing them can be stopped once this size is exceeded.
+     */
+    long maxEntrySizeInBytes() {
+        return maxEntrySizeInBytes;
+    }
+
+    @Nullable
+    V getIfPresent(K key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Adds the entry to the cache unless the breaker would trip.
+     */
+    void put(K key, V value) {
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(weight(key, value), breakerLabel);
+        } catch (CircuitBreakingException e) {
+            LOGGER.debug("Not adding an entry to the {}, the circuit breaker would trip", breakerLabel);
+            return;
+        }
+        keysByGroup.compute(group(key), (group, keys) -> {
+            if (keys == null) {
+                keys = ConcurrentHashMap.newKeySet();
+            }
+            keys.add(key);
+            return keys;
+        });
+        cache.put(key, value);
+    }
+
+    /**
+     * Removes all entries of the given group.
+     */
+    void invalidateGroup(G group) {
+        Set<K> keys = keysByGroup.remove(group);
+        if (keys != null) {
+            for (K key : keys) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    int count() {
+        return cache.count();
+    }
+
+    long weight() {
+        return cache.weight();
+    }
+}
@@ -395,14 +395,14 @@ final class GroupByOptimizedIterator {
         return false;
     }
 
-    private static boolean docDeleted(@Nullable Bits liveDocs, int doc) {
+    static boolean docDeleted(@Nullable Bits liveDocs, int doc) {
         return liveDocs != null && !liveDocs.get(doc);
     }
 
-    private static void aggregateValues(List<AggregationContext> aggregations,
-                                        RamAccounting ramAccounting,
-                                        MemoryManager memoryManager,
-                                        Object[] states) {
+    static void aggregateValues(List<AggregationContext> aggregations,
+                                RamAccounting ramAccounting,
+                                MemoryManager memoryManager,
+                                Object[] states) {
         for (int i = 0; i < aggregations.size(); i++) {
             AggregationContext aggregation = aggregations.get(i);
 
@@ -417,10 +417,10 @@ final class GroupByOptimizedIterator {
         }
     }
 
-    private static Object[] initStates(List<AggregationContext> aggregations,
-                                       RamAccounting ramAccounting,
-                                       MemoryManager memoryManager,
-                                       Version minNodeVersion) {
+    static Object[] initStates(List<AggregationContext> aggregations,
+                               RamAccounting ramAccounting,
+                               MemoryManager memoryManager,
+                               Version minNodeVersion) {
         Object[] states = new Object[aggregations.size()];
         for (int i = 0; i < aggregations.size(); i++) {
             AggregationContext aggregation = aggregations.get(i);
@@ -468,7 +468,7 @@ final class GroupByOptimizedIterator {
         return groupProjection;
     }
 
-    private static void raiseIfClosedOrKilled(AtomicReference<Throwable> killed, AtomicBoolean closed) {
+    static void raiseIfClosedOrKilled(AtomicReference<Throwable> killed, AtomicBoolean closed) {
         Throwable killedException = killed.get();
         if (killedException != null) {
             Exceptions.rethrowUnchecked(killedException);
@@ -29,6 +29,7 @@ import io.crate.execution.engine.collect.collectors.LuceneBatchIterator;
 import io.crate.execution.engine.collect.collectors.LuceneOrderedDocCollector;
 import io.crate.execution.engine.collect.collectors.OptimizeQueryForSearchAfter;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
+import io.crate.execution.engine.collect.vector.VectorizedGlobalAggregation;
 import io.crate.execution.engine.sort.LuceneSortGenerator;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.execution.jobs.SharedShardContext;
@@ -49,6 +50,8 @@ import io.crate.metadata.table.Operation;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
@@ -62,6 +65,9 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -69,6 +75,11 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
 
     private static final Logger LOGGER = LogManager.getLogger(LuceneShardCollectorProvider.class);
 
+    /**
+     * Shards with fewer documents are not split, as the overhead would outweigh the benefit.
+     */
+    static final int MIN_DOCS_PER_SPLIT = 100_000;
+
     private final Supplier<String> localNodeId;
     private final LuceneQueryBuilder luceneQueryBuilder;
     private final Functions functions;
@@ -77,6 +88,8 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
     private final BigArrays bigArrays;
     private final FieldTypeLookup fieldTypeLookup;
     private final DocTableInfo table;
+    private final SegmentAggregationCache segmentAggregationCache;
+    private final boolean vectorizedAggregationEnabled;
 
     public LuceneShardCollectorProvider(Schemas schemas,
                                         LuceneQueryBuilder luceneQueryBuilder,
@@ -87,7 +100,8 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
                                         Settings settings,
                                         TransportActionProvider transportActionProvider,
                                         IndexShard indexShard,
-                                        BigArrays bigArrays) {
+                                        BigArrays bigArrays,
+                                        SegmentAggregationCache segmentAggregationCache) {
         super(
             clusterService,
             schemas,
@@ -118,57 +132,146 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
             )
         );
         this.bigArrays = bigArrays;
+        this.segmentAggregationCache = segmentAggregationCache;
+        this.vectorizedAggregationEnabled = VectorizedGlobalAggregation.ENABLED_SETTING.get(settings);
     }
 
     @Override
     protected BatchIterator<Row> getUnorderedIterator(RoutedCollectPhase collectPhase,
                                                       boolean requiresScroll,
                                                       CollectTask collectTask) {
+        return getUnorderedIterators(collectPhase, requiresScroll, collectTask, 1).get(0);
+    }
+
+    /**
+     * Splits the segments of the shard into up to {@code maxSplits} groups with a similar number of documents
+     * and creates an iterator per group.
+     * Each iterator gets its own query and expressions, as those are not thread-safe.
+     */
+    @Override
+    protected List<BatchIterator<Row>> getUnorderedIterators(RoutedCollectPhase collectPhase,
+                                                             boolean requiresScroll,
+                                                             CollectTask collectTask,
+                                                             int maxSplits) {
         ShardId shardId = indexShard.shardId();
         SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(shardId);
         Engine.Searcher searcher = sharedShardContext.acquireSearcher(formatSource(collectPhase));
         IndexShard indexShard = sharedShardContext.indexShard();
         try {
-            QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext();
-            LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
-                collectPhase.where(),
-                collectTask.txnCtx(),
-                indexShard.mapperService(),
-                indexShard.shardId().getIndexName(),
-                queryShardContext,
-                table,
-                sharedShardContext.indexService().cache()
-            );
+            IndexSearcher indexSearcher = searcher.searcher();
+            List<List<LeafReaderContext>> splits = splitLeaves(
+                indexSearcher.getTopReaderContext().leaves(), maxSplits, MIN_DOCS_PER_SPLIT);
+            ArrayList<BatchIterator<Row>> iterators = new ArrayList<>(splits.size());
+            for (List<LeafReaderContext> leaves : splits) {
+                QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext();
+                LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
+                    collectPhase.where(),
+                    collectTask.txnCtx(),
+                    indexShard.mapperService(),
+                    indexShard.shardId().getIndexName(),
+                    queryShardContext,
+                    table,
+                    sharedShardContext.indexService().cache()
+                );
+                InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx =
+                    docInputFactory.extractImplementations(collectTask.txnCtx(), collectPhase);
+                iterators.add(new LuceneBatchIterator(
+                    indexSearcher,
+                    leaves,
+                    queryContext.query(),
+                    queryContext.minScore(),
+                    Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE),
+                    getCollectorContext(sharedShardContext.readerId(), queryShardContext::getForField),
+                    docCtx.topLevelInputs(),
+                    docCtx.expressions()
+                ));
+            }
             collectTask.addSearcher(sharedShardContext.readerId(), searcher);
-            InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx =
-                docInputFactory.extractImplementations(collectTask.txnCtx(), collectPhase);
-
-            return new LuceneBatchIterator(
-                searcher.searcher(),
-                queryContext.query(),
-                queryContext.minScore(),
-                Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE),
-                getCollectorContext(sharedShardContext.readerId(), queryShardContext::getForField),
-                docCtx.topLevelInputs(),
-                docCtx.expressions()
-            );
+            return iterators;
         } catch (Throwable t) {
             searcher.close();
             throw t;
         }
     }
 
+    @Override
+    public boolean supportsResultCache() {
+        return true;
+    }
+
+    /**
+     * Distributes the leaves onto up to {@code maxSplits} groups, each containing at least
+     * {@code minDocsPerSplit} documents if possible.
+     * Leaves are assigned largest first to the group with the fewest documents.
+     */
+    static List<List<LeafReaderContext>> splitLeaves(List<LeafReaderContext> leaves, int maxSplits, int minDocsPerSplit) {
+        long numDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            numDocs += leaf.reader().maxDoc();
+        }
+        int numSplits = (int) Math.min(Math.min(maxSplits, leaves.size()), numDocs / minDocsPerSplit);
+        if (numSplits <= 1) {
+            return List.of(leaves);
+        }
+        ArrayList<LeafReaderContext> sortedLeaves = new ArrayList<>(leaves);
+        sortedLeaves.sort(Comparator.comparingInt((LeafReaderContext leaf) -> leaf.reader().maxDoc()).reversed());
+        ArrayList<List<LeafReaderContext>> splits = new ArrayList<>(numSplits);
+        long[] docsPerSplit = new long[numSplits];
+        for (int i = 0; i < numSplits; i++) {
+            splits.add(new ArrayList<>());
+        }
+        for (LeafReaderContext leaf : sortedLeaves) {
+            int smallest = 0;
+            for (int i = 1; i < numSplits; i++) {
+                if (docsPerSplit[i] < docsPerSplit[smallest]) {
+                    smallest = i;
+                }
+            }
+            splits.get(smallest).add(leaf);
+            docsPerSplit[smallest] += leaf.reader().maxDoc();
+        }
+        return splits;
+    }
+
     @Nullable
     @Override
     protected BatchIterator<Row> getProjectionFusedIterator(RoutedCollectPhase normalizedPhase, CollectTask collectTask) {
-        return GroupByOptimizedIterator.tryOptimizeSingleStringKey(
+        if (vectorizedAggregationEnabled) {
+            BatchIterator<Row> vectorizedIterator = VectorizedGlobalAggregation.tryCreate(
+                indexShard,
+                table,
+                luceneQueryBuilder,
+                fieldTypeLookup,
+                functions,
+                normalizedPhase,
+                collectTask
+            );
+            if (vectorizedIterator != null) {
+                return vectorizedIterator;
+            }
+        }
+        InputFactory inputFactory = new InputFactory(functions);
+        BatchIterator<Row> singleStringKeyIterator = GroupByOptimizedIterator.tryOptimizeSingleStringKey(
             indexShard,
             table,
             luceneQueryBuilder,
             fieldTypeLookup,
             bigArrays,
-            new InputFactory(functions),
+            inputFactory,
+            docInputFactory,
+            normalizedPhase,
+            collectTask
+        );
+        if (singleStringKeyIterator != null) {
+            return singleStringKeyIterator;
+        }
+        return SegmentCachedGroupByIterator.tryCreate(
+            indexShard,
+            table,
+            luceneQueryBuilder,
+            inputFactory,
             docInputFactory,
+            segmentAggregationCache,
             normalizedPhase,
             collectTask
         );
@@ -235,7 +338,7 @@ public class LuceneShardCollectorProvider extends ShardCollectorProvider {
         );
     }
 
-    static String formatSource(RoutedCollectPhase phase) {
+    public static String formatSource(RoutedCollectPhase phase) {
         return phase.jobId().toString() + '-' + phase.phaseId() + '-' + phase.name();
     }
 
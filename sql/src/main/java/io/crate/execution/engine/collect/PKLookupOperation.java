@@ -36,6 +36,7 @@ import io.crate.execution.engine.pipeline.ProjectorFactory;
 import io.crate.execution.engine.pipeline.Projectors;
 import io.crate.expression.reference.Doc;
 import io.crate.expression.reference.doc.lucene.SourceFieldVisitor;
+import io.crate.expression.reference.doc.lucene.SourceParser;
 import io.crate.memory.MemoryManager;
 import io.crate.metadata.TransactionContext;
 import io.crate.planner.operators.PKAndVersion;
@@ -79,7 +80,8 @@ public final class PKLookupOperation {
 
     public BatchIterator<Doc> lookup(boolean ignoreMissing,
                                      Map<ShardId, List<PKAndVersion>> idsByShard,
-                                     boolean consumerRequiresRepeat) {
+                                     boolean consumerRequiresRepeat,
+                                     SourceParser sourceParser) {
         Stream<Doc> getResultStream = idsByShard.entrySet().stream()
             .flatMap(entry -> {
                 ShardId shardId = entry.getKey();
@@ -101,8 +103,10 @@ public final class PKLookupOperation {
                     .map(pkAndVersion -> lookupDoc(shard,
                                                    pkAndVersion.id(),
                                                    pkAndVersion.version(),
+                                                   VersionType.EXTERNAL,
                                                    pkAndVersion.seqNo(),
-                                                   pkAndVersion.primaryTerm()))
+                                                   pkAndVersion.primaryTerm(),
+                                                   sourceParser))
                     .filter(Objects::nonNull);
             });
         final Iterable<Doc> getResultIterable;
@@ -115,12 +119,22 @@ public final class PKLookupOperation {
     }
 
     @Nullable
-    public static Doc lookupDoc(IndexShard shard, String id, long version, long seqNo, long primaryTerm) {
-        return lookupDoc(shard, id, version, VersionType.EXTERNAL, seqNo, primaryTerm);
+    public static Doc lookupDoc(IndexShard shard, String id, long version, VersionType versionType, long seqNo, long primaryTerm) {
+        return lookupDoc(shard, id, version, versionType, seqNo, primaryTerm, null);
     }
 
+    /**
+     * @param sourceParser used to parse only the required columns of the source.
+     *                     If null, the full source is parsed.
+     */
     @Nullable
-    public static Doc lookupDoc(IndexShard shard, String id, long version, VersionType versionType, long seqNo, long primaryTerm) {
+    public static Doc lookupDoc(IndexShard shard,
+                                String id,
+                                long version,
+                                VersionType versionType,
+                                long seqNo,
+                                long primaryTerm,
+                                @Nullable SourceParser sourceParser) {
         Term uidTerm = new Term(IdFieldMapper.NAME, Uid.encodeId(id));
         Engine.Get get = new Engine.Get(true, true, id, uidTerm)
             .version(version)
@@ -146,7 +160,9 @@ public final class PKLookupOperation {
                 docIdAndVersion.version,
                 docIdAndVersion.seqNo,
                 docIdAndVersion.primaryTerm,
-                convertToMap(visitor.source(), false, XContentType.JSON).v2(),
+                sourceParser == null
+                    ? convertToMap(visitor.source(), false, XContentType.JSON).v2()
+                    : sourceParser.parse(visitor.source()),
                 () -> visitor.source().utf8ToString()
             );
         }
@@ -160,7 +176,8 @@ public final class PKLookupOperation {
                                         Map<ShardId, List<PKAndVersion>> idsByShard,
                                         Collection<? extends Projection> projections,
                                         RowConsumer nodeConsumer,
-                                        Function<Doc, Row> resultToRow) {
+                                        Function<Doc, Row> resultToRow,
+                                        SourceParser sourceParser) {
         ArrayList<ShardAndIds> shardAndIdsList = new ArrayList<>(idsByShard.size());
         for (Map.Entry<ShardId, List<PKAndVersion>> idsByShardEntry : idsByShard.entrySet()) {
             ShardId shardId = idsByShardEntry.getKey();
@@ -198,8 +215,10 @@ public final class PKLookupOperation {
                 .map(pkAndVersion -> lookupDoc(shardAndIds.shard,
                                                pkAndVersion.id(),
                                                pkAndVersion.version(),
+                                               VersionType.EXTERNAL,
                                                pkAndVersion.seqNo(),
-                                               pkAndVersion.primaryTerm()))
+                                               pkAndVersion.primaryTerm(),
+                                               sourceParser))
                 .map(resultToRow);
 
             Projectors projectors = new Projectors(
@@ -0,0 +1,464 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+package io.crate.execution.engine.collect;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.Streamer;
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.data.BatchIterator;
+import io.crate.data.ForwardingBatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.EvalProjection;
+import io.crate.execution.dsl.projection.FilterProjection;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.OrderedTopNProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.dsl.projection.Projections;
+import io.crate.execution.dsl.projection.TopNDistinctProjection;
+import io.crate.execution.dsl.projection.TopNProjection;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.expression.symbol.Symbols;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocSysColumns;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.cache.RemovalNotification;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardId;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Per node cache of the rows a collect phase produces on a shard, including the shard projections.
+ * <p>
+ * Entries are keyed by:
+ *
+ * <ul>
+ *     <li>the bound collect phase: the columns to collect, the where clause and the shard projections</li>
+ *     <li>the shard</li>
+ *     <li>the version of the index reader used to collect the shard, which changes with every refresh which
+ *     makes changes to the shard visible</li>
+ * </ul>
+ *
+ * So entries never have to be invalidated because of writes, they become unreachable and are evicted eventually.
+ * <p>
+ * Only phases without non-deterministic functions, fetch ids and projections with side effects are cached.
+ * The rows are stored serialized, so that consumers can't modify the cached values.
+ * The memory used by the cache is accounted for in the query circuit breaker.
+ */
+public final class QueryResultCache
+    extends BreakerAccountedCache<QueryResultCache.Key, ShardId, QueryResultCache.CachedRows> {
+
+    public static final Setting<ByteSizeValue> SIZE_SETTING = Setting.memorySizeSetting(
+        "node.sql.result_cache.size",
+        "1%",
+        Setting.Property.NodeScope);
+
+    private static final String BREAKER_LABEL = "query-result-cache";
+
+    private static final Predicate<Symbol> NON_DETERMINISTIC =
+        s -> s instanceof Function && !((Function) s).info().isDeterministic();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Inject
+    public QueryResultCache(Settings settings, CrateCircuitBreakerService breakerService) {
+        this(SIZE_SETTING.get(settings).getBytes(), breakerService.getBreaker(CrateCircuitBreakerService.QUERY));
+    }
+
+    @VisibleForTesting
+    QueryResultCache(long sizeInBytes, CircuitBreaker breaker) {
+        super(sizeInBytes, breaker, BREAKER_LABEL);
+    }
+
+    @Override
+    protected long weight(Key key, CachedRows value) {
+        return key.phase.length() + value.rows.length();
+    }
+
+    @Override
+    protected ShardId group(Key key) {
+        return key.shardId;
+    }
+
+    @Override
+    protected void removed(RemovalNotification<Key, CachedRows> notification) {
+        if (notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @return the part of the cache key which identifies the collect phase,
+     *         or null if the results of the phase can't be cached.
+     */
+    @Nullable
+    public BytesReference phaseKey(RoutedCollectPhase collectPhase) {
+        if (!enabled()
+            || collectPhase.maxRowGranularity() != RowGranularity.DOC
+            || collectPhase.orderBy() != null) {
+            return null;
+        }
+        return serializedPhase(collectPhase);
+    }
+
+    /**
+     * @return the columns to collect, the where clause and the shard projections of the phase in serialized form,
+     *         or null if the phase contains parts which may produce different results on the same data.
+     */
+    @Nullable
+    static BytesReference serializedPhase(RoutedCollectPhase collectPhase) {
+        if (Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.FETCHID)
+            || SymbolVisitors.any(NON_DETERMINISTIC, collectPhase.toCollect())
+            || SymbolVisitors.any(NON_DETERMINISTIC, collectPhase.where())) {
+            return null;
+        }
+        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
+        for (Projection projection : shardProjections) {
+            if (!isCacheable(projection)) {
+                return null;
+            }
+        }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            Symbols.toStream(collectPhase.toCollect(), out);
+            Symbols.toStream(collectPhase.where(), out);
+            out.writeVInt(shardProjections.size());
+            for (Projection projection : shardProjections) {
+                Projection.toStream(projection, out);
+            }
+            return out.bytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Only projections which compute their output from the incoming rows without any side effects can be cached.
+     */
+    private static boolean isCacheable(Projection projection) {
+        if (projection instanceof FilterProjection) {
+            return !SymbolVisitors.any(NON_DETERMINISTIC, ((FilterProjection) projection).query());
+        }
+        if (projection instanceof GroupProjection) {
+            return !SymbolVisitors.any(NON_DETERMINISTIC, ((GroupProjection) projection).keys());
+        }
+        if (projection instanceof OrderedTopNProjection) {
+            return !SymbolVisitors.any(NON_DETERMINISTIC, ((OrderedTopNProjection) projection).orderBy())
+                && !SymbolVisitors.any(NON_DETERMINISTIC, projection.outputs());
+        }
+        if (projection instanceof EvalProjection
+            || projection instanceof TopNProjection
+            || projection instanceof TopNDistinctProjection
+            || projection instanceof AggregationProjection) {
+            return !SymbolVisitors.any(NON_DETERMINISTIC, projection.outputs());
+        }
+        return false;
+    }
+
+    /**
+     * @return the streamers of the rows a shard produces for the collect phase
+     */
+    public static Streamer<?>[] streamers(RoutedCollectPhase collectPhase) {
+        List<? extends Symbol> outputs = collectPhase.toCollect();
+        for (Projection projection : Projections.shardProjections(collectPhase.projections())) {
+            outputs = projection.outputs();
+        }
+        return Symbols.streamerArray(outputs);
+    }
+
+    /**
+     * @return an iterator over the cached rows or null if there are none.
+     */
+    @Nullable
+    public BatchIterator<Row> get(Key key, Streamer<?>[] streamers) {
+        CachedRows cachedRows = getIfPresent(key);
+        if (cachedRows == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return InMemoryBatchIterator.of(() -> cachedRows.iterator(streamers), SentinelRow.SENTINEL, true);
+    }
+
+    /**
+     * Wraps the iterators which together produce the rows of a shard, so that the rows are added to the cache once
+     * all iterators are fully consumed.
+     */
+    public List<BatchIterator<Row>> record(Key key, Streamer<?>[] streamers, List<BatchIterator<Row>> iterators) {
+        Recording recording = new Recording(key, iterators.size());
+        ArrayList<BatchIterator<Row>> result = new ArrayList<>(iterators.size());
+        for (int i = 0; i < iterators.size(); i++) {
+            result.add(new RecordingBatchIterator(iterators.get(i), recording, i, streamers));
+        }
+        return result;
+    }
+
+    /**
+     * Removes all entries of the given shard.
+     */
+    public void clear(ShardId shardId) {
+        invalidateGroup(shardId);
+    }
+
+    public QueryResultCacheStats stats() {
+        return new QueryResultCacheStats(
+            count(),
+            weight(),
+            hits.sum(),
+            misses.sum(),
+            evictions.sum()
+        );
+    }
+
+    public static final class Key {
+
+        private final BytesReference phase;
+        private final ShardId shardId;
+        private final long readerVersion;
+        private final int hashCode;
+
+        public Key(BytesReference phase, ShardId shardId, long readerVersion) {
+            this.phase = phase;
+            this.shardId = shardId;
+            this.readerVersion = readerVersion;
+            this.hashCode = Objects.hash(phase, shardId, readerVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return readerVersion == key.readerVersion &&
+                   shardId.equals(key.shardId) &&
+                   phase.equals(key.phase);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class CachedRows {
+
+        private final BytesReference rows;
+        private final int numRows;
+
+        CachedRows(BytesReference rows, int numRows) {
+            this.rows = rows;
+            this.numRows = numRows;
+        }
+
+        Iterator<Row> iterator(Streamer<?>[] streamers) {
+            StreamInput in;
+            try {
+                in = rows.streamInput();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Iterator<>() {
+
+                int idx = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return idx < numRows;
+                }
+
+                @Override
+                public Row next() {
+                    if (idx >= numRows) {
+                        throw new NoSuchElementException("Iterator is exhausted");
+                    }
+                    // a new array per row, consumers may keep references to rows or modify their values
+                    Object[] cells = new Object[streamers.length];
+                    try {
+                        for (int i = 0; i < cells.length; i++) {
+                            cells[i] = streamers[i].readValueFrom(in);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    idx++;
+                    return new RowN(cells);
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects the rows of all iterators of a shard and adds them to the cache once all of them are exhausted.
+     */
+    private final class Recording {
+
+        private final Key key;
+        private final BytesReference[] rowsPerIterator;
+        private final int[] numRowsPerIterator;
+        private int pending;
+        private boolean aborted = false;
+
+        Recording(Key key, int numIterators) {
+            this.key = key;
+            this.rowsPerIterator = new BytesReference[numIterators];
+            this.numRowsPerIterator = new int[numIterators];
+            this.pending = numIterators;
+        }
+
+        synchronized void finished(int iteratorIdx, BytesReference rows, int numRows) {
+            if (aborted || rowsPerIterator[iteratorIdx] != null) {
+                return;
+            }
+            rowsPerIterator[iteratorIdx] = rows;
+            numRowsPerIterator[iteratorIdx] = numRows;
+            pending--;
+            if (pending > 0) {
+                return;
+            }
+            int totalRows = 0;
+            long totalBytes = 0;
+            for (int i = 0; i < rowsPerIterator.length; i++) {
+                totalRows += numRowsPerIterator[i];
+                totalBytes += rowsPerIterator[i].length();
+            }
+            if (totalBytes <= maxEntrySizeInBytes()) {
+                put(key, new CachedRows(new CompositeBytesReference(rowsPerIterator), totalRows));
+            }
+        }
+
+        synchronized void abort() {
+            aborted = true;
+        }
+    }
+
+    private final class RecordingBatchIterator extends ForwardingBatchIterator<Row> {
+
+        private final BatchIterator<Row> delegate;
+        private final Recording recording;
+        private final int iteratorIdx;
+        private final Streamer[] streamers;
+
+        @Nullable
+        private BytesStreamOutput out = new BytesStreamOutput();
+        private int numRows = 0;
+
+        RecordingBatchIterator(BatchIterator<Row> delegate,
+                               Recording recording,
+                               int iteratorIdx,
+                               Streamer<?>[] streamers) {
+            this.delegate = delegate;
+            this.recording = recording;
+            this.iteratorIdx = iteratorIdx;
+            this.streamers = streamers;
+        }
+
+        @Override
+        protected BatchIterator<Row> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public void moveToStart() {
+            super.moveToStart();
+            if (out != null) {
+                out = new BytesStreamOutput();
+                numRows = 0;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean moveNext() {
+            if (delegate.moveNext()) {
+                if (out != null) {
+                    Row row = delegate.currentElement();
+                    try {
+                        for (int i = 0; i < streamers.length; i++) {
+                            streamers[i].writeValueTo(out, row.get(i));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    numRows++;
+                    if (out.size() > maxEntrySizeInBytes()) {
+                        abort();
+                    }
+                }
+                return true;
+            }
+            if (out != null && delegate.allLoaded()) {
+                recording.finished(iteratorIdx, out.bytes(), numRows);
+                out = null;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            if (out != null) {
+                abort();
+            }
+            super.close();
+        }
+
+        @Override
+        public void kill(@Nonnull Throwable throwable) {
+            abort();
+            super.kill(throwable);
+        }
+
+        private void abort() {
+            out = null;
+            recording.abort();
+        }
+    }
+}
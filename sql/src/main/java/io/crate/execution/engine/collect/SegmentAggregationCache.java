@@ -0,0 +1,171 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.crate.breaker.CrateCircuitBreakerService;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardId;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per node cache of the partial aggregation states a group by produces on a single segment.
+ * <p>
+ * Entries are keyed by the serialized collect phase, which includes the group projection, and by the
+ * {@link IndexReader#getReaderCacheHelper() cache key} of the segment reader. The cache key of a segment stays the
+ * same across refreshes as long as no documents of the segment are deleted, so for append-only tables only new
+ * segments have to be aggregated. Entries of a segment are removed once its reader is closed, e.g. after a merge.
+ * <p>
+ * The states are stored serialized using the partial types of the aggregations, so that they can be reduced
+ * without modifying the cached values.
+ * The memory used by the cache is accounted for in the query circuit breaker.
+ * <p>
+ * Aggregating segment by segment prevents splitting the collection of a shard across threads, so it is only used
+ * for group bys which were {@link #executedBefore(BytesReference, ShardId) executed on the shard before}.
+ */
+public final class SegmentAggregationCache
+    extends BreakerAccountedCache<SegmentAggregationCache.Key, IndexReader.CacheKey, BytesReference> {
+
+    public static final Setting<ByteSizeValue> SIZE_SETTING = Setting.memorySizeSetting(
+        "node.sql.segment_aggregation_cache.size",
+        "1%",
+        Setting.Property.NodeScope);
+
+    private static final String BREAKER_LABEL = "segment-aggregation-cache";
+
+    /**
+     * Number of phase and shard combinations which are remembered to detect repeated group bys.
+     */
+    private static final int MAX_EXECUTED_PHASES = 1000;
+
+    private final Set<IndexReader.CacheKey> segmentsWithListener = ConcurrentHashMap.newKeySet();
+    private final Cache<Tuple<BytesReference, ShardId>, Boolean> executedPhases = CacheBuilder
+        .<Tuple<BytesReference, ShardId>, Boolean>builder()
+        .setMaximumWeight(MAX_EXECUTED_PHASES)
+        .build();
+
+    @Inject
+    public SegmentAggregationCache(Settings settings, CrateCircuitBreakerService breakerService) {
+        this(SIZE_SETTING.get(settings).getBytes(), breakerService.getBreaker(CrateCircuitBreakerService.QUERY));
+    }
+
+    @VisibleForTesting
+    SegmentAggregationCache(long sizeInBytes, CircuitBreaker breaker) {
+        super(sizeInBytes, breaker, BREAKER_LABEL);
+    }
+
+    @Override
+    protected long weight(Key key, BytesReference states) {
+        return key.phase.length() + states.length();
+    }
+
+    @Override
+    protected IndexReader.CacheKey group(Key key) {
+        return key.segment;
+    }
+
+    /**
+     * Records that the phase is executed on the shard.
+     *
+     * @return true if the phase was executed on the shard before. Only then caching the states of the segments
+     *         is likely to pay off, the first execution should use the regular collect which can be split.
+     */
+    boolean executedBefore(BytesReference phase, ShardId shardId) {
+        Tuple<BytesReference, ShardId> key = new Tuple<>(phase, shardId);
+        if (executedPhases.get(key) != null) {
+            return true;
+        }
+        executedPhases.put(key, Boolean.TRUE);
+        return false;
+    }
+
+    /**
+     * @return the serialized states of the segment or null if they are not cached.
+     */
+    @Nullable
+    BytesReference get(BytesReference phase, IndexReader.CacheHelper segment) {
+        return getIfPresent(new Key(phase, segment.getKey()));
+    }
+
+    void put(BytesReference phase, IndexReader.CacheHelper segment, BytesReference states) {
+        Key key = new Key(phase, segment.getKey());
+        if (segmentsWithListener.add(key.segment)) {
+            try {
+                segment.addClosedListener(this::onSegmentClosed);
+            } catch (AlreadyClosedException e) {
+                segmentsWithListener.remove(key.segment);
+                return;
+            }
+        }
+        put(key, states);
+    }
+
+    private void onSegmentClosed(IndexReader.CacheKey segment) {
+        segmentsWithListener.remove(segment);
+        invalidateGroup(segment);
+    }
+
+    static final class Key {
+
+        private final BytesReference phase;
+        private final IndexReader.CacheKey segment;
+        private final int hashCode;
+
+        Key(BytesReference phase, IndexReader.CacheKey segment) {
+            this.phase = phase;
+            this.segment = segment;
+            this.hashCode = Objects.hash(phase, segment);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return segment == key.segment && phase.equals(key.phase);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.breaker.SizeEstimator;
+import io.crate.breaker.SizeEstimatorFactory;
+import io.crate.data.BatchIterator;
+import io.crate.data.CollectingBatchIterator;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.GroupProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.engine.aggregation.AggregationContext;
+import io.crate.execution.jobs.SharedShardContext;
+import io.crate.expression.InputFactory;
+import io.crate.expression.InputRow;
+import io.crate.expression.reference.doc.lucene.CollectorContext;
+import io.crate.expression.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Symbols;
+import io.crate.lucene.LuceneQueryBuilder;
+import io.crate.memory.MemoryManager;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.types.DataType;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.index.shard.IndexShard;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static io.crate.execution.dsl.projection.Projections.shardProjections;
+import static io.crate.execution.engine.collect.GroupByOptimizedIterator.aggregateValues;
+import static io.crate.execution.engine.collect.GroupByOptimizedIterator.docDeleted;
+import static io.crate.execution.engine.collect.GroupByOptimizedIterator.initStates;
+import static io.crate.execution.engine.collect.GroupByOptimizedIterator.raiseIfClosedOrKilled;
+import static io.crate.execution.engine.collect.LuceneShardCollectorProvider.formatSource;
+import static io.crate.execution.engine.collect.LuceneShardCollectorProvider.getCollectorContext;
+
+/**
+ * Group by which aggregates each segment separately and keeps the partial states of every segment in the
+ * {@link SegmentAggregationCache}:
+ *
+ * <pre>
+ *     for (segment in segments) {
+ *         states = cache[phase, segment] ?: aggregate(segment)
+ *         reduce states into the states of the shard
+ *     }
+ * </pre>
+ *
+ * Segments which don't change, like most segments of append-only tables, are only aggregated once.
+ * Apart from that this behaves like the group projection applied to the rows of the shard.
+ * <p>
+ * The shard is aggregated on a single thread, so this is only used if the group by was executed on the shard
+ * before. Otherwise {@link #tryCreate} returns null and the collection of the shard may be split.
+ */
+final class SegmentCachedGroupByIterator {
+
+    private static final long HASH_MAP_ENTRY_OVERHEAD = 32; // see private RamUsageEstimator.shallowSizeOfInstance(HashMap.Node.class)
+
+    @Nullable
+    static BatchIterator<Row> tryCreate(IndexShard indexShard,
+                                        DocTableInfo table,
+                                        LuceneQueryBuilder luceneQueryBuilder,
+                                        InputFactory inputFactory,
+                                        DocInputFactory docInputFactory,
+                                        SegmentAggregationCache cache,
+                                        RoutedCollectPhase collectPhase,
+                                        CollectTask collectTask) {
+        if (!cache.enabled() || !collectTask.txnCtx().sessionSettings().resultCacheEnabled()) {
+            return null;
+        }
+        Collection<? extends Projection> shardProjections = shardProjections(collectPhase.projections());
+        if (shardProjections.size() != 1 || !(shardProjections.iterator().next() instanceof GroupProjection)) {
+            return null;
+        }
+        if (Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE)
+            || Symbols.containsColumn(collectPhase.where(), DocSysColumns.SCORE)) {
+            return null;
+        }
+        BytesReference phaseKey = QueryResultCache.serializedPhase(collectPhase);
+        if (phaseKey == null || !cache.executedBefore(phaseKey, indexShard.shardId())) {
+            return null;
+        }
+        GroupProjection groupProjection = (GroupProjection) shardProjections.iterator().next();
+
+        SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(indexShard.shardId());
+        Engine.Searcher searcher = sharedShardContext.acquireSearcher(formatSource(collectPhase));
+        try {
+            QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext();
+            collectTask.addSearcher(sharedShardContext.readerId(), searcher);
+
+            InputFactory.Context<? extends LuceneCollectorExpression<?>> docCtx = docInputFactory.getCtx(collectTask.txnCtx());
+            docCtx.add(collectPhase.toCollect().stream()::iterator);
+
+            InputFactory.Context<CollectExpression<Row, ?>> ctxForAggregations = inputFactory.ctxForAggregations(collectTask.txnCtx());
+            ctxForAggregations.add(groupProjection.keys());
+            ctxForAggregations.add(groupProjection.values());
+
+            LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
+                collectPhase.where(),
+                collectTask.txnCtx(),
+                indexShard.mapperService(),
+                indexShard.shardId().getIndexName(),
+                queryShardContext,
+                table,
+                sharedShardContext.indexService().cache()
+            );
+
+            return getIterator(
+                cache,
+                phaseKey,
+                searcher.searcher(),
+                Symbols.typeView(groupProjection.keys()),
+                ctxForAggregations.topLevelInputs(),
+                ctxForAggregations.aggregations(),
+                docCtx.expressions(),
+                ctxForAggregations.expressions(),
+                collectTask.getRamAccounting(),
+                collectTask.memoryManager(),
+                collectTask.minNodeVersion(),
+                new InputRow(docCtx.topLevelInputs()),
+                queryContext.query(),
+                getCollectorContext(sharedShardContext.readerId(), queryShardContext::getForField),
+                groupProjection.mode()
+            );
+        } catch (Throwable t) {
+            searcher.close();
+            throw t;
+        }
+    }
+
+    static BatchIterator<Row> getIterator(SegmentAggregationCache cache,
+                                          BytesReference phaseKey,
+                                          IndexSearcher indexSearcher,
+                                          List<DataType> keyTypes,
+                                          List<Input<?>> keyInputs,
+                                          List<AggregationContext> aggregations,
+                                          List<? extends LuceneCollectorExpression<?>> expressions,
+                                          List<CollectExpression<Row, ?>> aggExpressions,
+                                          RamAccounting ramAccounting,
+                                          MemoryManager memoryManager,
+                                          Version minNodeVersion,
+                                          InputRow inputRow,
+                                          Query query,
+                                          CollectorContext collectorContext,
+                                          AggregateMode aggregateMode) {
+        for (int i = 0, expressionsSize = expressions.size(); i < expressionsSize; i++) {
+            expressions.get(i).startCollect(collectorContext);
+        }
+        SegmentAggregation aggregation = new SegmentAggregation(
+            cache,
+            phaseKey,
+            keyTypes,
+            keyInputs,
+            aggregations,
+            expressions,
+            aggExpressions,
+            ramAccounting,
+            memoryManager,
+            minNodeVersion,
+            inputRow
+        );
+        AtomicReference<Throwable> killed = new AtomicReference<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        return CollectingBatchIterator.newInstance(
+            () -> closed.set(true),
+            killed::set,
+            () -> {
+                try {
+                    return CompletableFuture.completedFuture(
+                        getRows(
+                            aggregation.apply(indexSearcher, query, killed, closed),
+                            keyTypes.size(),
+                            ramAccounting,
+                            aggregations,
+                            aggregateMode
+                        )
+                    );
+                } catch (Throwable t) {
+                    return CompletableFuture.failedFuture(t);
+                }
+            },
+            true
+        );
+    }
+
+    private static Iterable<Row> getRows(Map<Object, Object[]> groupedStates,
+                                         int numKeys,
+                                         RamAccounting ramAccounting,
+                                         List<AggregationContext> aggregations,
+                                         AggregateMode mode) {
+        return () -> groupedStates.entrySet().stream()
+            .map(new Function<Map.Entry<Object, Object[]>, Row>() {
+
+                final Object[] cells = new Object[numKeys + aggregations.size()];
+                final RowN row = new RowN(cells);
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Row apply(Map.Entry<Object, Object[]> entry) {
+                    if (numKeys == 1) {
+                        cells[0] = entry.getKey();
+                    } else {
+                        List<Object> keys = (List<Object>) entry.getKey();
+                        for (int i = 0; i < numKeys; i++) {
+                            cells[i] = keys.get(i);
+                        }
+                    }
+                    Object[] states = entry.getValue();
+                    for (int i = 0, c = numKeys; i < states.length; i++, c++) {
+                        cells[c] = mode.finishCollect(ramAccounting, aggregations.get(i).function(), states[i]);
+                    }
+                    return row;
+                }
+            })
+            .iterator();
+    }
+
+    /**
+     * Aggregates the segments of a searcher, re-using and populating the cached states of the segments.
+     * Keys are the value of the single group key or a list of the values of the group keys.
+     */
+    private static final class SegmentAggregation {
+
+        private final SegmentAggregationCache cache;
+        private final BytesReference phaseKey;
+        private final List<Input<?>> keyInputs;
+        private final List<AggregationContext> aggregations;
+        private final List<? extends LuceneCollectorExpression<?>> expressions;
+        private final List<CollectExpression<Row, ?>> aggExpressions;
+        private final RamAccounting ramAccounting;
+        private final MemoryManager memoryManager;
+        private final Version minNodeVersion;
+        private final InputRow inputRow;
+        private final Streamer[] keyStreamers;
+        private final Streamer[] stateStreamers;
+        private final List<SizeEstimator<Object>> keySizeEstimators;
+
+        SegmentAggregation(SegmentAggregationCache cache,
+                           BytesReference phaseKey,
+                           List<DataType> keyTypes,
+                           List<Input<?>> keyInputs,
+                           List<AggregationContext> aggregations,
+                           List<? extends LuceneCollectorExpression<?>> expressions,
+                           List<CollectExpression<Row, ?>> aggExpressions,
+                           RamAccounting ramAccounting,
+                           MemoryManager memoryManager,
+                           Version minNodeVersion,
+                           InputRow inputRow) {
+            this.cache = cache;
+            this.phaseKey = phaseKey;
+            this.keyInputs = keyInputs;
+            this.aggregations = aggregations;
+            this.expressions = expressions;
+            this.aggExpressions = aggExpressions;
+            this.ramAccounting = ramAccounting;
+            this.memoryManager = memoryManager;
+            this.minNodeVersion = minNodeVersion;
+            this.inputRow = inputRow;
+            this.keyStreamers = new Streamer[keyTypes.size()];
+            this.keySizeEstimators = new ArrayList<>(keyTypes.size());
+            for (int i = 0; i < keyTypes.size(); i++) {
+                keyStreamers[i] = keyTypes.get(i).streamer();
+                keySizeEstimators.add(SizeEstimatorFactory.create(keyTypes.get(i)));
+            }
+            this.stateStreamers = new Streamer[aggregations.size()];
+            for (int i = 0; i < aggregations.size(); i++) {
+                stateStreamers[i] = aggregations.get(i).function().partialType().streamer();
+            }
+        }
+
+        Map<Object, Object[]> apply(IndexSearcher indexSearcher,
+                                    Query query,
+                                    AtomicReference<Throwable> killed,
+                                    AtomicBoolean closed) throws IOException {
+            Map<Object, Object[]> statesByKey = new HashMap<>();
+            Weight weight = indexSearcher.createWeight(indexSearcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+            for (LeafReaderContext leaf : indexSearcher.getTopReaderContext().leaves()) {
+                raiseIfClosedOrKilled(killed, closed);
+                IndexReader.CacheHelper cacheHelper = leaf.reader().getReaderCacheHelper();
+                BytesReference cachedStates = cacheHelper == null ? null : cache.get(phaseKey, cacheHelper);
+                if (cachedStates != null) {
+                    ramAccounting.addBytes(cachedStates.length());
+                    reduceSerializedStates(cachedStates, statesByKey);
+                    continue;
+                }
+                Map<Object, Object[]> leafStates = aggregate(weight, leaf, killed, closed);
+                if (cacheHelper != null) {
+                    // serialize before reducing, reduce may modify the states
+                    BytesReference serializedStates = serialize(leafStates, cache.maxEntrySizeInBytes());
+                    if (serializedStates != null) {
+                        cache.put(phaseKey, cacheHelper, serializedStates);
+                    }
+                }
+                for (Map.Entry<Object, Object[]> entry : leafStates.entrySet()) {
+                    reduceStates(statesByKey, entry.getKey(), entry.getValue());
+                }
+            }
+            return statesByKey;
+        }
+
+        private Map<Object, Object[]> aggregate(Weight weight,
+                                                LeafReaderContext leaf,
+                                                AtomicReference<Throwable> killed,
+                                                AtomicBoolean closed) throws IOException {
+            HashMap<Object, Object[]> statesByKey = new HashMap<>();
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null) {
+                return statesByKey;
+            }
+            for (int i = 0, expressionsSize = expressions.size(); i < expressionsSize; i++) {
+                expressions.get(i).setNextReader(leaf);
+            }
+            DocIdSetIterator docs = scorer.iterator();
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                raiseIfClosedOrKilled(killed, closed);
+                if (docDeleted(liveDocs, doc)) {
+                    continue;
+                }
+                for (int i = 0, expressionsSize = expressions.size(); i < expressionsSize; i++) {
+                    expressions.get(i).setNextDocId(doc);
+                }
+                for (int i = 0, expressionsSize = aggExpressions.size(); i < expressionsSize; i++) {
+                    aggExpressions.get(i).setNextRow(inputRow);
+                }
+                Object key = currentKey();
+                Object[] states = statesByKey.get(key);
+                if (states == null) {
+                    ramAccounting.addBytes(estimateKeySize(key) + HASH_MAP_ENTRY_OVERHEAD);
+                    statesByKey.put(key, initStates(aggregations, ramAccounting, memoryManager, minNodeVersion));
+                } else {
+                    aggregateValues(aggregations, ramAccounting, memoryManager, states);
+                }
+            }
+            return statesByKey;
+        }
+
+        private Object currentKey() {
+            if (keyInputs.size() == 1) {
+                return keyInputs.get(0).value();
+            }
+            List<Object> key = new ArrayList<>(keyInputs.size());
+            for (int i = 0; i < keyInputs.size(); i++) {
+                key.add(keyInputs.get(i).value());
+            }
+            return key;
+        }
+
+        @SuppressWarnings("unchecked")
+        private long estimateKeySize(Object key) {
+            if (keyInputs.size() == 1) {
+                return keySizeEstimators.get(0).estimateSize(key);
+            }
+            List<Object> keys = (List<Object>) key;
+            long size = 0;
+            for (int i = 0; i < keys.size(); i++) {
+                size += keySizeEstimators.get(i).estimateSize(keys.get(i));
+            }
+            return size;
+        }
+
+        private void reduceStates(Map<Object, Object[]> statesByKey, Object key, Object[] states) {
+            Object[] prevStates = statesByKey.putIfAbsent(key, states);
+            if (prevStates != null) {
+                for (int i = 0; i < aggregations.size(); i++) {
+                    //noinspection unchecked
+                    prevStates[i] = aggregations.get(i).function().reduce(ramAccounting, prevStates[i], states[i]);
+                }
+            }
+        }
+
+        /**
+         * @return the serialized states or null if they are larger than {@code maxSizeInBytes}
+         */
+        @Nullable
+        @SuppressWarnings("unchecked")
+        private BytesReference serialize(Map<Object, Object[]> statesByKey, long maxSizeInBytes) throws IOException {
+            BytesStreamOutput out = new BytesStreamOutput();
+            out.writeVInt(statesByKey.size());
+            for (Map.Entry<Object, Object[]> entry : statesByKey.entrySet()) {
+                if (keyStreamers.length == 1) {
+                    keyStreamers[0].writeValueTo(out, entry.getKey());
+                } else {
+                    List<Object> keys = (List<Object>) entry.getKey();
+                    for (int i = 0; i < keyStreamers.length; i++) {
+                        keyStreamers[i].writeValueTo(out, keys.get(i));
+                    }
+                }
+                Object[] states = entry.getValue();
+                for (int i = 0; i < stateStreamers.length; i++) {
+                    stateStreamers[i].writeValueTo(out, states[i]);
+                }
+                if (out.size() > maxSizeInBytes) {
+                    return null;
+                }
+            }
+            return out.bytes();
+        }
+
+        private void reduceSerializedStates(BytesReference serializedStates,
+                                            Map<Object, Object[]> statesByKey) throws IOException {
+            try (StreamInput in = serializedStates.streamInput()) {
+                int numGroups = in.readVInt();
+                for (int group = 0; group < numGroups; group++) {
+                    Object key;
+                    if (keyStreamers.length == 1) {
+                        key = keyStreamers[0].readValueFrom(in);
+                    } else {
+                        List<Object> keys = new ArrayList<>(keyStreamers.length);
+                        for (int i = 0; i < keyStreamers.length; i++) {
+                            keys.add(keyStreamers[i].readValueFrom(in));
+                        }
+                        key = keys;
+                    }
+                    Object[] states = new Object[stateStreamers.length];
+                    for (int i = 0; i < stateStreamers.length; i++) {
+                        states[i] = stateStreamers[i].readValueFrom(in);
+                    }
+                    reduceStates(statesByKey, key, states);
+                }
+            }
+        }
+    }
+}
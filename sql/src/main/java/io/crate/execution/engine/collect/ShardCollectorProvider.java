@@ -23,12 +23,14 @@
 package io.crate.execution.engine.collect;
 
 import io.crate.analyze.WhereClause;
+import io.crate.common.collections.Lists2;
 import io.crate.data.BatchIterator;
 import io.crate.data.InMemoryBatchIterator;
 import io.crate.data.Row;
 import io.crate.data.SentinelRow;
 import io.crate.execution.TransportActionProvider;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.dsl.projection.Projections;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
@@ -50,6 +52,8 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
 
 public abstract class ShardCollectorProvider {
 
@@ -98,31 +102,49 @@ public abstract class ShardCollectorProvider {
     public BatchIterator<Row> getIterator(RoutedCollectPhase collectPhase,
                                           boolean requiresScroll,
                                           CollectTask collectTask) throws Exception {
+        return getIterators(collectPhase, requiresScroll, collectTask, 1).get(0);
+    }
+
+    /**
+     * Like {@link #getIterator(RoutedCollectPhase, boolean, CollectTask)}, but the collection may be split into up to
+     * {@code maxSplits} iterators over disjoint parts of the shard, which can be consumed concurrently.
+     * The shard projections are applied to each split, so {@code maxSplits} must only be greater than 1 if
+     * {@link Projections#canSplitShardProjections(Iterable)} is true.
+     */
+    public List<BatchIterator<Row>> getIterators(RoutedCollectPhase collectPhase,
+                                                 boolean requiresScroll,
+                                                 CollectTask collectTask,
+                                                 int maxSplits) throws Exception {
         assert collectPhase.orderBy() == null
             : "getDocCollector shouldn't be called if there is an orderBy on the collectPhase";
         assert collectPhase.maxRowGranularity() == RowGranularity.DOC :
             "granularity must be DOC";
+        assert maxSplits == 1 || Projections.canSplitShardProjections(collectPhase.projections())
+            : "shard projections must support splits if maxSplits > 1";
 
         RoutedCollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer, null);
         BatchIterator<Row> fusedIterator = getProjectionFusedIterator(normalizedCollectNode, collectTask);
         if (fusedIterator != null) {
-            return fusedIterator;
+            return List.of(fusedIterator);
         }
-        final BatchIterator<Row> iterator;
-        if (WhereClause.canMatch(normalizedCollectNode.where())) {
-            iterator = getUnorderedIterator(normalizedCollectNode, requiresScroll, collectTask);
+        final List<BatchIterator<Row>> iterators;
+        if (!WhereClause.canMatch(normalizedCollectNode.where())) {
+            iterators = List.of(InMemoryBatchIterator.empty(SentinelRow.SENTINEL));
+        } else if (maxSplits > 1) {
+            iterators = getUnorderedIterators(normalizedCollectNode, requiresScroll, collectTask, maxSplits);
         } else {
-            iterator = InMemoryBatchIterator.empty(SentinelRow.SENTINEL);
+            iterators = List.of(getUnorderedIterator(normalizedCollectNode, requiresScroll, collectTask));
         }
-        return Projectors.wrap(
-            Projections.shardProjections(collectPhase.projections()),
+        Collection<? extends Projection> shardProjections = Projections.shardProjections(collectPhase.projections());
+        return Lists2.map(iterators, iterator -> Projectors.wrap(
+            shardProjections,
             collectPhase.jobId(),
             collectTask.txnCtx(),
             collectTask.getRamAccounting(),
             collectTask.memoryManager(),
             projectorFactory,
             iterator
-        );
+        ));
     }
 
     /**
@@ -138,12 +160,32 @@ public abstract class ShardCollectorProvider {
                                                                boolean requiresScroll,
                                                                CollectTask collectTask);
 
+    /**
+     * Creates up to {@code maxSplits} unordered iterators which together return the same rows as
+     * {@link #getUnorderedIterator(RoutedCollectPhase, boolean, CollectTask)}.
+     * The default implementation doesn't split.
+     */
+    protected List<BatchIterator<Row>> getUnorderedIterators(RoutedCollectPhase collectPhase,
+                                                             boolean requiresScroll,
+                                                             CollectTask collectTask,
+                                                             int maxSplits) {
+        return List.of(getUnorderedIterator(collectPhase, requiresScroll, collectTask));
+    }
+
 
     public abstract OrderedDocCollector getOrderedCollector(RoutedCollectPhase collectPhase,
                                                             SharedShardContext sharedShardContext,
                                                             CollectTask collectTask,
                                                             boolean requiresRepeat);
 
+    /**
+     * @return true if the rows of this shard can be cached in the {@link QueryResultCache}.
+     *         This requires that the collect reads the searcher of the shard shared within the job.
+     */
+    public boolean supportsResultCache() {
+        return false;
+    }
+
     public ProjectorFactory getProjectorFactory() {
         return projectorFactory;
     }
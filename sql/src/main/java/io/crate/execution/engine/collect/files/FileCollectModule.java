@@ -33,5 +33,9 @@ public class FileCollectModule extends AbstractModule {
 
         binder.addBinding(LocalFsFileInputFactory.NAME).to(LocalFsFileInputFactory.class).asEagerSingleton();
         binder.addBinding(S3FileInputFactory.NAME).to(S3FileInputFactory.class).asEagerSingleton();
+
+        // also injected into the postgres protocol to register the streams of `COPY ... FROM STDIN`
+        bind(StdinFileInputFactory.class).asEagerSingleton();
+        binder.addBinding(StdinFileInputFactory.NAME).to(StdinFileInputFactory.class);
     }
 }
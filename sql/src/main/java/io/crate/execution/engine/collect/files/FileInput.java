@@ -43,5 +43,34 @@ public interface FileInput {
 
     InputStream getStream(URI uri) throws IOException;
 
+    /**
+     * @return the size of the file in bytes, or -1 if it is unknown or if the file cannot be read starting at
+     *         an offset using {@link #getStream(URI, long)}. Only files with a known size are split into byte ranges
+     *         to read them in parallel.
+     */
+    default long size(URI uri) throws IOException {
+        return -1;
+    }
+
+    /**
+     * Opens a stream of the file which starts at the given byte offset.
+     * Only used for files for which {@link #size(URI)} returns a size.
+     */
+    default InputStream getStream(URI uri, long offset) throws IOException {
+        InputStream stream = getStream(uri);
+        long remaining = offset;
+        while (remaining > 0) {
+            long skipped = stream.skip(remaining);
+            if (skipped <= 0) {
+                if (stream.read() == -1) {
+                    break;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return stream;
+    }
+
     boolean sharedStorageDefault();
 }
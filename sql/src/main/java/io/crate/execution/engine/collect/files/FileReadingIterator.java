@@ -21,8 +21,10 @@
 
 package io.crate.execution.engine.collect.files;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
+import io.crate.common.collections.Lists2;
 import io.crate.data.BatchIterator;
 import io.crate.data.CloseAssertingBatchIterator;
 import io.crate.data.Input;
@@ -39,6 +41,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
@@ -62,11 +65,18 @@ public class FileReadingIterator implements BatchIterator<Row> {
 
     private static final Logger LOGGER = LogManager.getLogger(FileReadingIterator.class);
     private static final int MAX_SOCKET_TIMEOUT_RETRIES = 5;
+
+    /**
+     * Files on shared storage are split into byte ranges of at least this size to read them on several nodes.
+     */
+    static final long MIN_RANGE_SIZE_IN_BYTES = 64 * 1024 * 1024;
+
     private final Map<String, FileInputFactory> fileInputFactories;
     private final Boolean shared;
     private final int numReaders;
     private final int readerNumber;
     private final boolean compressed;
+    private final long minRangeSizeInBytes;
 
     private static final Pattern HAS_GLOBS_PATTERN = Pattern.compile("(.*)[^\\\\]\\*.*");
     private static final Predicate<URI> MATCH_ALL_PREDICATE = (URI input) -> true;
@@ -76,9 +86,15 @@ public class FileReadingIterator implements BatchIterator<Row> {
     private FileUriCollectPhase.InputFormat inputFormat;
     private Iterator<Tuple<FileInput, UriWithGlob>> fileInputsIterator = null;
     private Tuple<FileInput, UriWithGlob> currentInput = null;
-    private Iterator<URI> currentInputIterator = null;
+    private Iterator<FileRange> currentInputIterator = null;
+    private FileRange currentRange;
     private URI currentUri;
     private BufferedReader currentReader = null;
+    /**
+     * The stream underneath {@link #currentReader}, closed by {@link #kill(Throwable)} from another thread
+     */
+    private volatile InputStream currentStream = null;
+    private volatile Throwable killed = null;
     private long currentLineNumber;
     private final Row row;
     private LineProcessor lineProcessor;
@@ -91,7 +107,8 @@ public class FileReadingIterator implements BatchIterator<Row> {
                                 Boolean shared,
                                 int numReaders,
                                 int readerNumber,
-                                FileUriCollectPhase.InputFormat inputFormat) {
+                                FileUriCollectPhase.InputFormat inputFormat,
+                                long minRangeSizeInBytes) {
         this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
         this.row = new InputRow(inputs);
         this.fileInputFactories = fileInputFactories;
@@ -101,6 +118,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
         this.urisWithGlob = getUrisWithGlob(fileUris);
         this.collectorExpressions = collectorExpressions;
         this.inputFormat = inputFormat;
+        this.minRangeSizeInBytes = minRangeSizeInBytes;
         initCollectorState();
     }
 
@@ -111,7 +129,24 @@ public class FileReadingIterator implements BatchIterator<Row> {
 
     @Override
     public void kill(@Nonnull Throwable throwable) {
-        // handled by CloseAssertingBatchIterator
+        // moveNext after kill is handled by CloseAssertingBatchIterator, but a read may be blocked waiting for data,
+        // e.g. of a COPY FROM STDIN, and would not return before the client sends more.
+        killed = throwable;
+        closeCurrentStream();
+    }
+
+    /**
+     * Closes the stream instead of the reader, closing the reader would wait for the blocked read to finish.
+     */
+    private void closeCurrentStream() {
+        InputStream stream = currentStream;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close stream of {}", e, currentUri);
+            }
+        }
     }
 
     public static BatchIterator<Row> newInstance(Collection<String> fileUris,
@@ -123,8 +158,23 @@ public class FileReadingIterator implements BatchIterator<Row> {
                                                  int numReaders,
                                                  int readerNumber,
                                                  FileUriCollectPhase.InputFormat inputFormat) {
+        return newInstance(fileUris, inputs, collectorExpressions, compression, fileInputFactories, shared,
+            numReaders, readerNumber, inputFormat, MIN_RANGE_SIZE_IN_BYTES);
+    }
+
+    @VisibleForTesting
+    static BatchIterator<Row> newInstance(Collection<String> fileUris,
+                                          List<Input<?>> inputs,
+                                          Iterable<LineCollectorExpression<?>> collectorExpressions,
+                                          String compression,
+                                          Map<String, FileInputFactory> fileInputFactories,
+                                          Boolean shared,
+                                          int numReaders,
+                                          int readerNumber,
+                                          FileUriCollectPhase.InputFormat inputFormat,
+                                          long minRangeSizeInBytes) {
         return new CloseAssertingBatchIterator<>(new FileReadingIterator(fileUris, inputs, collectorExpressions,
-            compression, fileInputFactories, shared, numReaders, readerNumber, inputFormat));
+            compression, fileInputFactories, shared, numReaders, readerNumber, inputFormat, minRangeSizeInBytes));
     }
 
     private void initCollectorState() {
@@ -146,9 +196,16 @@ public class FileReadingIterator implements BatchIterator<Row> {
 
     @Override
     public boolean moveNext() {
+        if (killed != null) {
+            rethrowUnchecked(killed);
+        }
         try {
             if (currentReader != null) {
                 String line = getLine(currentReader, currentLineNumber, 0);
+                if (killed != null) {
+                    // the line or the end of the stream may have been the result of the stream closed by kill
+                    rethrowUnchecked(killed);
+                }
                 if (line == null) {
                     closeCurrentReader();
                     return moveNext();
@@ -156,7 +213,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
                 lineProcessor.process(line);
                 return true;
             } else if (currentInputIterator != null && currentInputIterator.hasNext()) {
-                advanceToNextUri(currentInput.v1());
+                advanceToNextRange(currentInput.v1());
                 return moveNext();
             } else if (fileInputsIterator != null && fileInputsIterator.hasNext()) {
                 advanceToNextFileInput();
@@ -166,35 +223,52 @@ public class FileReadingIterator implements BatchIterator<Row> {
                 return false;
             }
         } catch (IOException e) {
+            if (killed != null) {
+                rethrowUnchecked(killed);
+            }
             lineProcessor.setFailure(e.getMessage());
             return true;
         }
     }
 
-    private void advanceToNextUri(FileInput fileInput) throws IOException {
-        currentUri = currentInputIterator.next();
-        initCurrentReader(fileInput, currentUri);
+    private void advanceToNextRange(FileInput fileInput) throws IOException {
+        currentRange = currentInputIterator.next();
+        currentUri = currentRange.uri;
+        initCurrentReader(fileInput, currentRange);
     }
 
     private void advanceToNextFileInput() throws IOException {
         currentInput = fileInputsIterator.next();
         FileInput fileInput = currentInput.v1();
         UriWithGlob fileUri = currentInput.v2();
-        Predicate<URI> uriPredicate = generateUriPredicate(fileInput, fileUri.globPredicate);
+        Predicate<URI> uriPredicate = fileUri.globPredicate == null ? MATCH_ALL_PREDICATE : fileUri.globPredicate;
         List<URI> uris = getUris(fileInput, fileUri.uri, fileUri.preGlobUri, uriPredicate);
 
         if (uris.size() > 0) {
-            currentInputIterator = uris.iterator();
-            advanceToNextUri(fileInput);
+            // the ranges of this reader may be empty, moveNext continues with the next file input in that case
+            currentInputIterator = rangesToRead(fileInput, uris).iterator();
         } else if (fileUri.preGlobUri != null) {
             lineProcessor.startWithUri(fileUri.uri);
             throw new IOException("Cannot find any URI matching: " + fileUri.uri.toString());
         }
     }
 
-    private void initCurrentReader(FileInput fileInput, URI uri) throws IOException {
-        lineProcessor.startWithUri(uri);
-        InputStream stream = fileInput.getStream(uri);
+    private void initCurrentReader(FileInput fileInput, FileRange range) throws IOException {
+        lineProcessor.startWithUri(range.uri);
+        InputStream stream;
+        if (range.isWholeFile()) {
+            stream = fileInput.getStream(range.uri);
+        } else {
+            stream = new LineAlignedRangeInputStream(
+                fileInput.getStream(range.uri, Math.max(0, range.start - 1)),
+                range.start,
+                range.end);
+        }
+        currentStream = stream;
+        if (killed != null) {
+            // kill may have missed the stream
+            closeCurrentStream();
+        }
         currentReader = createBufferedReader(stream);
         currentLineNumber = 0;
         lineProcessor.readFirstLine(currentUri, inputFormat, currentReader);
@@ -208,6 +282,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
                 LOGGER.error("Unable to close reader for {}", e, currentUri);
             }
             currentReader = null;
+            currentStream = null;
         }
     }
 
@@ -232,7 +307,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
             } else {
                 long startLine = currentLineNumber + 1;
                 closeCurrentReader();
-                initCurrentReader(currentInput.v1(), currentUri);
+                initCurrentReader(currentInput.v1(), currentRange);
                 return getLine(currentReader, startLine, retry + 1);
             }
         } catch (Exception e) {
@@ -255,6 +330,7 @@ public class FileReadingIterator implements BatchIterator<Row> {
         fileInputsIterator = null;
         currentInputIterator = null;
         currentInput = null;
+        currentRange = null;
         currentUri = null;
     }
 
@@ -273,6 +349,35 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return true;
     }
 
+    /**
+     * The part of a file a reader has to read: either the whole file or the lines starting within {@code [start, end)}
+     */
+    static final class FileRange {
+
+        final URI uri;
+        final long start;
+        final long end;
+
+        private FileRange(URI uri, long start, long end) {
+            this.uri = uri;
+            this.start = start;
+            this.end = end;
+        }
+
+        static FileRange wholeFile(URI uri) {
+            return new FileRange(uri, 0, -1);
+        }
+
+        boolean isWholeFile() {
+            return end == -1;
+        }
+
+        @Override
+        public String toString() {
+            return isWholeFile() ? uri.toString() : uri + "[" + start + ", " + end + ")";
+        }
+    }
+
     private static class UriWithGlob {
         final URI uri;
         final URI preGlobUri;
@@ -378,25 +483,74 @@ public class FileReadingIterator implements BatchIterator<Row> {
         return uris;
     }
 
-    private Predicate<URI> generateUriPredicate(FileInput fileInput, @Nullable Predicate<URI> globPredicate) {
-        Predicate<URI> moduloPredicate;
+    /**
+     * Determines the parts of the files this reader has to read.
+     * <p>
+     * If the files are not on shared storage, each reader reads all of its files.
+     * Otherwise each file is assigned to one of the readers, based on the hash of its URI.
+     * Large files which can be read starting at an offset (uncompressed JSON files of inputs which provide their size)
+     * are split into byte ranges, which are assigned to consecutive readers starting at the reader of the file.
+     * <p>
+     * All readers must come to the same decision, otherwise lines are read twice or not at all.
+     * If the size of a file cannot be determined, the COPY therefore fails instead of reading the file as a whole.
+     */
+    private List<FileRange> rangesToRead(FileInput fileInput, List<URI> uris) {
         boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
-        if (sharedStorage) {
-            moduloPredicate = input -> {
-                int hash = input.hashCode();
-                if (hash == Integer.MIN_VALUE) {
-                    hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
+        if (sharedStorage == false) {
+            return Lists2.map(uris, FileRange::wholeFile);
+        }
+        List<FileRange> ranges = new ArrayList<>();
+        for (URI uri : uris) {
+            int firstReader = readerOf(uri, numReaders);
+            // the size is only looked up if the file could be split, as this may require a request per file
+            long size = numReaders > 1 && isSplittable(uri) ? size(fileInput, uri) : -1;
+            int numRanges = numRanges(size, numReaders, minRangeSizeInBytes);
+            if (numRanges == 1) {
+                if (firstReader == readerNumber) {
+                    ranges.add(FileRange.wholeFile(uri));
                 }
-                return Math.abs(hash) % numReaders == readerNumber;
-            };
-        } else {
-            moduloPredicate = MATCH_ALL_PREDICATE;
+                continue;
+            }
+            for (int i = 0; i < numRanges; i++) {
+                if ((firstReader + i) % numReaders == readerNumber) {
+                    ranges.add(new FileRange(uri, size * i / numRanges, size * (i + 1) / numRanges));
+                }
+            }
         }
+        return ranges;
+    }
+
+    private boolean isSplittable(URI uri) {
+        // CSV files have a header line and compressed files cannot be read starting at an offset
+        return compressed == false && LineParser.isInputCsv(inputFormat, uri) == false;
+    }
+
+    private static long size(FileInput fileInput, URI uri) {
+        try {
+            return fileInput.size(uri);
+        } catch (IOException e) {
+            // not reported as a failure of the URI, the other readers may have read their ranges of the file
+            throw new UncheckedIOException("Unable to get the size of " + uri.toString(), e);
+        }
+    }
+
+    private static int readerOf(URI uri, int numReaders) {
+        int hash = uri.hashCode();
+        if (hash == Integer.MIN_VALUE) {
+            hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
+        }
+        return Math.abs(hash) % numReaders;
+    }
 
-        if (globPredicate != null) {
-            return moduloPredicate.and(globPredicate);
+    /**
+     * @return the number of byte ranges a file of the given size is split into, 1 if it's not split.
+     */
+    @VisibleForTesting
+    static int numRanges(long size, int numReaders, long minRangeSizeInBytes) {
+        if (size <= 0 || numReaders <= 1) {
+            return 1;
         }
-        return moduloPredicate;
+        return (int) Math.max(1, Math.min(numReaders, size / minRangeSizeInBytes));
     }
 
     private static class GlobPredicate implements Predicate<URI> {
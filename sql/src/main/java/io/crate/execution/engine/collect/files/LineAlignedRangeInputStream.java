@@ -0,0 +1,137 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Restricts a stream to the lines which start within the byte range {@code [start, end)} of a file.
+ * <p>
+ * This makes it possible to split a file at arbitrary byte offsets and to read the parts independently:
+ * <ul>
+ *     <li>If {@code start > 0}, the bytes up to and including the first line break at or after {@code start - 1}
+ *     are skipped. They belong to a line which started in a preceding range.</li>
+ *     <li>The last line which starts before {@code end} is read until its line break, even if it ends after
+ *     {@code end}.</li>
+ * </ul>
+ * The underlying stream must start at {@code max(0, start - 1)}. Line breaks are detected on the raw bytes, which
+ * is safe for UTF-8 as a {@code '\n'} byte is never part of a multi-byte sequence.
+ */
+final class LineAlignedRangeInputStream extends FilterInputStream {
+
+    private final long end;
+    private long position;
+    private boolean skipFirstLine;
+    private boolean eof;
+
+    /**
+     * @param in stream of the file starting at {@code max(0, start - 1)}
+     */
+    LineAlignedRangeInputStream(InputStream in, long start, long end) {
+        // the partial first line is skipped byte by byte
+        super(new BufferedInputStream(in));
+        assert start >= 0 && start <= end : "start must be >= 0 and <= end";
+        this.end = end;
+        this.position = Math.max(0, start - 1);
+        this.skipFirstLine = start > 0;
+        this.eof = start >= end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (skipFirstLine) {
+            skipPartialLine();
+        }
+        if (eof) {
+            return -1;
+        }
+        int n = in.read(b, off, len);
+        if (n == -1) {
+            eof = true;
+            return -1;
+        }
+        // A line break at position p starts a new line at p + 1.
+        // The range ends with the first line break which starts a line at or after `end`.
+        int firstCandidate = (int) Math.min(n, Math.max(0, end - 1 - position));
+        for (int i = off + firstCandidate; i < off + n; i++) {
+            if (b[i] == '\n') {
+                int count = i - off + 1;
+                position += count;
+                eof = true;
+                return count;
+            }
+        }
+        position += n;
+        return n;
+    }
+
+    private void skipPartialLine() throws IOException {
+        skipFirstLine = false;
+        int b;
+        while ((b = in.read()) != -1) {
+            position++;
+            if (b == '\n') {
+                eof = position >= end;
+                return;
+            }
+        }
+        eof = true;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return eof ? 0 : super.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
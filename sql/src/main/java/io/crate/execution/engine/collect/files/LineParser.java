@@ -58,7 +58,7 @@ public class LineParser {
         }
     }
 
-    private boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
+    static boolean isInputCsv(FileUriCollectPhase.InputFormat inputFormat, URI currentUri) {
         return (inputFormat == FileUriCollectPhase.InputFormat.CSV) || currentUri.toString().endsWith(".csv");
     }
 }
@@ -22,18 +22,24 @@
 package io.crate.execution.engine.collect.files;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import io.crate.external.S3ClientHelper;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 public class S3FileInput implements FileInput {
@@ -43,6 +49,12 @@ public class S3FileInput implements FileInput {
 
     final S3ClientHelper clientBuilder;
 
+    /**
+     * Sizes of the objects returned by {@link #listUris(URI, Predicate)}, taken from the object summaries of the
+     * listing so that {@link #size(URI)} doesn't need an additional request per object.
+     */
+    private final Map<URI, Long> listedSizes = new HashMap<>();
+
     public S3FileInput() {
         clientBuilder = new S3ClientHelper();
     }
@@ -77,6 +89,7 @@ public class S3FileInput implements FileInput {
                 URI keyUri = uri.resolve("/" + key);
                 if (uriPredicate.test(keyUri)) {
                     uris.add(keyUri);
+                    listedSizes.put(keyUri, summary.getSize());
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug("{}", keyUri);
                     }
@@ -98,6 +111,43 @@ public class S3FileInput implements FileInput {
         throw new IOException("Failed to load S3 URI: " + uri.toString());
     }
 
+    @Override
+    public long size(URI uri) throws IOException {
+        Long listedSize = listedSizes.get(uri);
+        if (listedSize != null) {
+            return listedSize;
+        }
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        ObjectMetadata metadata = client.getObjectMetadata(uri.getHost(), uri.getPath().substring(1));
+        return metadata == null ? -1 : metadata.getContentLength();
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        if (offset == 0) {
+            return getStream(uri);
+        }
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        GetObjectRequest request = new GetObjectRequest(uri.getHost(), uri.getPath().substring(1)).withRange(offset);
+        S3Object object = client.getObject(request);
+        if (object != null) {
+            S3ObjectInputStream content = object.getObjectContent();
+            // A range is usually not read to the end of the object; abort to not drain the remaining bytes on close
+            return new FilterInputStream(content) {
+                @Override
+                public void close() throws IOException {
+                    content.abort();
+                    super.close();
+                }
+            };
+        }
+        throw new IOException("Failed to load S3 URI: " + uri.toString());
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return true;
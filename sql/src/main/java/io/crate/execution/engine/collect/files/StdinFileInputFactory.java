@@ -0,0 +1,138 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+/**
+ * Makes streams which are fed by a client connection (e.g. the data of a {@code COPY ... FROM STDIN} sent via the
+ * PostgreSQL wire protocol) available to {@code COPY FROM} using {@code stdin:///<id>} URIs.
+ * <p>
+ * The streams only exist on the node that received them, so a {@code COPY FROM} reading such an URI must be
+ * restricted to the {@link #localNode()}. A registered stream can be read once.
+ * <p>
+ * Reading a stream blocks a collect thread while waiting for data of the client. To not occupy all threads of the
+ * search thread pool, the number of streams which can be registered at the same time is limited by
+ * {@link #MAX_CONCURRENT_SETTING}.
+ */
+public class StdinFileInputFactory implements FileInputFactory {
+
+    public static final String NAME = "stdin";
+
+    /**
+     * Defaults to half of the processors; the search thread pool has one and a half times as many threads.
+     */
+    public static final Setting<Integer> MAX_CONCURRENT_SETTING = new Setting<>(
+        "node.sql.copy_from_stdin.max_concurrent",
+        s -> Integer.toString(Math.max(1, EsExecutors.numberOfProcessors(s) / 2)),
+        s -> Setting.parseInt(s, 0, "node.sql.copy_from_stdin.max_concurrent"),
+        Setting.Property.NodeScope);
+
+    private final ClusterService clusterService;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final Map<URI, InputStream> streams = new ConcurrentHashMap<>();
+    private final Set<URI> registered = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public StdinFileInputFactory(Settings settings, ClusterService clusterService) {
+        this.clusterService = clusterService;
+        this.maxConcurrent = MAX_CONCURRENT_SETTING.get(settings);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public DiscoveryNode localNode() {
+        return clusterService.localNode();
+    }
+
+    /**
+     * Registers a stream and returns the URI which can be used to read it.
+     * The stream must be {@link #unregister(URI) unregistered} once the {@code COPY FROM} finished.
+     *
+     * @throws IllegalStateException if {@link #MAX_CONCURRENT_SETTING} streams are already registered
+     */
+    public URI register(InputStream stream) {
+        if (permits.tryAcquire() == false) {
+            throw new IllegalStateException(
+                "Too many concurrent COPY FROM STDIN operations on node " + localNode().getName() +
+                ", the maximum is " + maxConcurrent + " (" + MAX_CONCURRENT_SETTING.getKey() + ")");
+        }
+        URI uri = URI.create(NAME + ":///" + UUIDs.randomBase64UUID());
+        registered.add(uri);
+        streams.put(uri, stream);
+        return uri;
+    }
+
+    public void unregister(URI uri) {
+        streams.remove(uri);
+        if (registered.remove(uri)) {
+            permits.release();
+        }
+    }
+
+    @Override
+    public FileInput create() {
+        return new StdinFileInput();
+    }
+
+    private class StdinFileInput implements FileInput {
+
+        @Override
+        public List<URI> listUris(URI fileUri, Predicate<URI> uriPredicate) {
+            if (streams.containsKey(fileUri) && uriPredicate.test(fileUri)) {
+                return List.of(fileUri);
+            }
+            return List.of();
+        }
+
+        @Override
+        public InputStream getStream(URI uri) throws IOException {
+            InputStream stream = streams.remove(uri);
+            if (stream == null) {
+                throw new IOException("No client stream registered for " + uri + " on this node");
+            }
+            return stream;
+        }
+
+        @Override
+        public boolean sharedStorageDefault() {
+            return false;
+        }
+    }
+}
@@ -24,8 +24,10 @@ package io.crate.execution.engine.collect.files;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
@@ -51,6 +53,48 @@ class URLFileInput implements FileInput {
         return url.openStream();
     }
 
+    /**
+     * @return the content length of http(s) URLs whose server supports byte range requests, otherwise -1.
+     */
+    @Override
+    public long size(URI uri) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            try {
+                httpConnection.setRequestMethod("HEAD");
+                int responseCode = httpConnection.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    if ("bytes".equalsIgnoreCase(httpConnection.getHeaderField("Accept-Ranges"))) {
+                        return httpConnection.getContentLengthLong();
+                    }
+                } else if (responseCode != HttpURLConnection.HTTP_BAD_METHOD
+                           && responseCode != HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+                    // a server which doesn't support HEAD requests is read as a whole, other errors must fail
+                    throw new IOException("HEAD request to " + uri.toString() + " failed with status " + responseCode);
+                }
+            } finally {
+                httpConnection.disconnect();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long offset) throws IOException {
+        URLConnection connection = uri.toURL().openConnection();
+        if (offset > 0 && connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            httpConnection.setRequestProperty("Range", "bytes=" + offset + "-");
+            if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+                return httpConnection.getInputStream();
+            }
+            httpConnection.disconnect();
+        }
+        // no http(s) URL or the server ignored the range, skip to the offset
+        return FileInput.super.getStream(uri, offset);
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return true;
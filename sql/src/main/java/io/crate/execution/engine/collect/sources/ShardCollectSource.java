@@ -25,6 +25,7 @@ import com.carrotsearch.hppc.IntIndexedContainer;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.Iterables;
+import io.crate.Streamer;
 import io.crate.analyze.OrderBy;
 import io.crate.blob.v2.BlobIndicesService;
 import io.crate.breaker.CrateCircuitBreakerService;
@@ -40,8 +41,10 @@ import io.crate.execution.dsl.phases.CollectPhase;
 import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.execution.dsl.projection.Projections;
 import io.crate.execution.engine.collect.CollectTask;
+import io.crate.execution.engine.collect.QueryResultCache;
 import io.crate.execution.engine.collect.RemoteCollectorFactory;
 import io.crate.execution.engine.collect.RowsTransformer;
+import io.crate.execution.engine.collect.SegmentAggregationCache;
 import io.crate.execution.engine.collect.ShardCollectorProvider;
 import io.crate.execution.engine.collect.collectors.OrderedDocCollector;
 import io.crate.execution.engine.collect.collectors.OrderedLuceneBatchIteratorFactory;
@@ -77,6 +80,7 @@ import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.ShardRoutingState;
 import org.elasticsearch.cluster.service.ClusterService;
 import javax.annotation.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
@@ -86,6 +90,7 @@ import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexNotFoundException;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.IllegalIndexShardStateException;
 import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
@@ -155,6 +160,7 @@ public class ShardCollectSource implements CollectSource {
     private final StaticTableReferenceResolver<UnassignedShard> unassignedShardReferenceResolver;
     private final StaticTableReferenceResolver<ShardRowContext> shardReferenceResolver;
     private final IntSupplier availableThreads;
+    private final QueryResultCache queryResultCache;
 
     @Inject
     public ShardCollectSource(Settings settings,
@@ -171,7 +177,10 @@ public class ShardCollectSource implements CollectSource {
                               IndexEventListenerProxy indexEventListenerProxy,
                               BlobIndicesService blobIndicesService,
                               PageCacheRecycler pageCacheRecycler,
-                              CrateCircuitBreakerService circuitBreakerService) {
+                              CrateCircuitBreakerService circuitBreakerService,
+                              QueryResultCache queryResultCache,
+                              SegmentAggregationCache segmentAggregationCache) {
+        this.queryResultCache = queryResultCache;
         this.unassignedShardReferenceResolver = new StaticTableReferenceResolver<>(
             SysShardsTableInfo.unassignedShardsExpressions());
         this.shardReferenceResolver = new StaticTableReferenceResolver<>(SysShardsTableInfo.expressions());
@@ -193,7 +202,8 @@ public class ShardCollectSource implements CollectSource {
             functions,
             luceneQueryBuilder,
             nodeJobsCounter,
-            bigArrays);
+            bigArrays,
+            segmentAggregationCache);
         EvaluatingNormalizer nodeNormalizer = new EvaluatingNormalizer(
             functions,
             RowGranularity.DOC,
@@ -245,6 +255,7 @@ public class ShardCollectSource implements CollectSource {
         public void beforeIndexShardClosed(ShardId shardId, @Nullable IndexShard indexShard, Settings indexSettings) {
             LOGGER.debug("removing shard upon close in {} shard={} numShards={}", ShardCollectSource.this, shardId, shards.size());
             shards.remove(shardId);
+            queryResultCache.clear(shardId);
         }
 
         @Override
@@ -294,7 +305,12 @@ public class ShardCollectSource implements CollectSource {
         Map<String, IntIndexedContainer> indexShards = collectPhase.routing().locations().get(localNodeId);
         List<BatchIterator<Row>> iterators = indexShards == null
             ? Collections.emptyList()
-            : getIterators(collectTask, collectPhase, requireMoveToStartSupport, indexShards);
+            : getIterators(
+                collectTask,
+                collectPhase,
+                requireMoveToStartSupport,
+                indexShards,
+                maxSplitsPerShard(collectPhase, indexShards));
 
         final BatchIterator<Row> result;
         switch (iterators.size()) {
@@ -395,13 +411,32 @@ public class ShardCollectSource implements CollectSource {
         return shardCollectorProvider;
     }
 
+    /**
+     * If fewer shards than idle search threads are collected, the shards are split so that the shard projections
+     * (typically partial aggregations) of a single large shard utilize multiple threads.
+     */
+    private int maxSplitsPerShard(RoutedCollectPhase collectPhase, Map<String, IntIndexedContainer> indexShards) {
+        if (!Projections.canSplitShardProjections(collectPhase.projections())) {
+            return 1;
+        }
+        int numShards = 0;
+        for (IntIndexedContainer shards : indexShards.values()) {
+            numShards += shards.size();
+        }
+        return Math.max(1, availableThreads.getAsInt() / Math.max(1, numShards));
+    }
+
     private List<BatchIterator<Row>> getIterators(CollectTask collectTask,
                                                   RoutedCollectPhase collectPhase,
                                                   boolean requiresScroll,
-                                                  Map<String, IntIndexedContainer> indexShards) {
+                                                  Map<String, IntIndexedContainer> indexShards,
+                                                  int maxSplitsPerShard) {
 
         MetaData metaData = clusterService.state().metaData();
         List<BatchIterator<Row>> iterators = new ArrayList<>();
+        BytesReference resultCacheKey = collectTask.txnCtx().sessionSettings().resultCacheEnabled()
+            ? queryResultCache.phaseKey(collectPhase)
+            : null;
         for (Map.Entry<String, IntIndexedContainer> entry : indexShards.entrySet()) {
             String indexName = entry.getKey();
             IndexMetaData indexMD = metaData.index(indexName);
@@ -424,12 +459,24 @@ public class ShardCollectSource implements CollectSource {
                 ShardId shardId = new ShardId(index, shardCursor.value);
                 try {
                     ShardCollectorProvider shardCollectorProvider = getCollectorProviderSafe(shardId);
-                    BatchIterator<Row> iterator = shardCollectorProvider.getIterator(
-                        collectPhase,
-                        requiresScroll,
-                        collectTask
-                    );
-                    iterators.add(iterator);
+                    if (resultCacheKey != null && shardCollectorProvider.supportsResultCache()) {
+                        iterators.addAll(getCachedIterators(
+                            shardCollectorProvider,
+                            shardId,
+                            resultCacheKey,
+                            collectPhase,
+                            requiresScroll,
+                            collectTask,
+                            maxSplitsPerShard
+                        ));
+                    } else {
+                        iterators.addAll(shardCollectorProvider.getIterators(
+                            collectPhase,
+                            requiresScroll,
+                            collectTask,
+                            maxSplitsPerShard
+                        ));
+                    }
                 } catch (ShardNotFoundException | IllegalIndexShardStateException e) {
                     // If toCollect contains a docId it means that this is a QueryThenFetch operation.
                     // In such a case RemoteCollect cannot be used because on that node the FetchTask is missing
@@ -453,6 +500,36 @@ public class ShardCollectSource implements CollectSource {
         return iterators;
     }
 
+    /**
+     * Returns the cached rows of the shard or creates the iterators of the shard and records their rows.
+     * <p>
+     * The version of the reader is taken from the searcher shared within the job, which is the one the collect uses.
+     * The searcher is released once the collect task completes, so that it doesn't change in between.
+     */
+    private List<BatchIterator<Row>> getCachedIterators(ShardCollectorProvider shardCollectorProvider,
+                                                        ShardId shardId,
+                                                        BytesReference resultCacheKey,
+                                                        RoutedCollectPhase collectPhase,
+                                                        boolean requiresScroll,
+                                                        CollectTask collectTask,
+                                                        int maxSplitsPerShard) throws Exception {
+        SharedShardContext context = collectTask.sharedShardContexts().getOrCreateContext(shardId);
+        Engine.Searcher searcher = context.acquireSearcher("query-result-cache");
+        collectTask.completionFuture().whenComplete((r, t) -> searcher.close());
+        QueryResultCache.Key key = new QueryResultCache.Key(
+            resultCacheKey, shardId, searcher.getDirectoryReader().getVersion());
+        Streamer<?>[] streamers = QueryResultCache.streamers(collectPhase);
+        BatchIterator<Row> cachedRows = queryResultCache.get(key, streamers);
+        if (cachedRows != null) {
+            return List.of(cachedRows);
+        }
+        return queryResultCache.record(
+            key,
+            streamers,
+            shardCollectorProvider.getIterators(collectPhase, requiresScroll, collectTask, maxSplitsPerShard)
+        );
+    }
+
     private Iterable<Row> getShardsIterator(TransactionContext txnCtx, RoutedCollectPhase collectPhase, String localNodeId) {
         Map<String, Map<String, IntIndexedContainer>> locations = collectPhase.routing().locations();
         List<UnassignedShard> unassignedShards = new ArrayList<>();
@@ -0,0 +1,71 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import java.util.Arrays;
+
+/**
+ * A column of a {@link VectorBatch}: the values of one column for up to {@link #capacity()} rows,
+ * stored in a primitive array by the implementations, plus a bitmap of the rows which are null.
+ */
+abstract class ColumnVector {
+
+    private final long[] nulls;
+    private final int capacity;
+    private boolean hasNulls = false;
+
+    ColumnVector(int capacity) {
+        this.capacity = capacity;
+        this.nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    final int capacity() {
+        return capacity;
+    }
+
+    final boolean isNull(int position) {
+        return hasNulls && (nulls[position >>> 6] & (1L << position)) != 0;
+    }
+
+    final void setNull(int position) {
+        nulls[position >>> 6] |= 1L << position;
+        hasNulls = true;
+    }
+
+    /**
+     * @return false if none of the rows is null. Operators use this to skip the null checks.
+     */
+    final boolean hasNulls() {
+        return hasNulls;
+    }
+
+    /**
+     * Marks all rows as not null. Must be called before the vector is filled again.
+     */
+    final void reset() {
+        if (hasNulls) {
+            Arrays.fill(nulls, 0L);
+            hasNulls = false;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.util.NumericUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Fills a {@link ColumnVector} with the doc values of a column, for a batch of documents of one segment.
+ * <p>
+ * Numeric and timestamp columns are read from their {@link SortedNumericDocValues}. Columns without doc values
+ * aren't supported, a missing doc values field is loaded as null.
+ */
+abstract class DocValuesVectorLoader {
+
+    protected final String columnName;
+
+    private DocValuesVectorLoader(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * @return a loader for the column or null if the type cannot be loaded into a vector.
+     */
+    @Nullable
+    static DocValuesVectorLoader of(String columnName, DataType<?> type) {
+        switch (type.id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return new LongLoader(columnName);
+            case FloatType.ID:
+                return new DoubleLoader(columnName, true);
+            case DoubleType.ID:
+                return new DoubleLoader(columnName, false);
+            default:
+                return null;
+        }
+    }
+
+    abstract ColumnVector newVector(int capacity);
+
+    abstract void setNextReader(LeafReaderContext context) throws IOException;
+
+    /**
+     * Loads the values of the given documents into the vector, the value of {@code docs[i]} at position i.
+     *
+     * @param docs doc ids in ascending order
+     */
+    abstract void load(int[] docs, int numDocs, ColumnVector vector) throws IOException;
+
+    IllegalStateException arrayValueFound() {
+        return new IllegalStateException(
+            "Column \"" + columnName + "\" has a value that is an array, which cannot be loaded into a vector");
+    }
+
+    private static class LongLoader extends DocValuesVectorLoader {
+
+        private SortedNumericDocValues values;
+
+        LongLoader(String columnName) {
+            super(columnName);
+        }
+
+        @Override
+        public ColumnVector newVector(int capacity) {
+            return new LongVector(capacity);
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) throws IOException {
+            values = DocValues.getSortedNumeric(context.reader(), columnName);
+        }
+
+        @Override
+        public void load(int[] docs, int numDocs, ColumnVector vector) throws IOException {
+            LongVector longVector = (LongVector) vector;
+            for (int i = 0; i < numDocs; i++) {
+                if (values.advanceExact(docs[i])) {
+                    if (values.docValueCount() != 1) {
+                        throw arrayValueFound();
+                    }
+                    longVector.set(i, values.nextValue());
+                } else {
+                    longVector.setNull(i);
+                }
+            }
+        }
+    }
+
+    private static class DoubleLoader extends DocValuesVectorLoader {
+
+        private final boolean isFloat;
+        private SortedNumericDocValues values;
+
+        DoubleLoader(String columnName, boolean isFloat) {
+            super(columnName);
+            this.isFloat = isFloat;
+        }
+
+        @Override
+        public ColumnVector newVector(int capacity) {
+            return new DoubleVector(capacity);
+        }
+
+        @Override
+        public void setNextReader(LeafReaderContext context) throws IOException {
+            values = DocValues.getSortedNumeric(context.reader(), columnName);
+        }
+
+        @Override
+        public void load(int[] docs, int numDocs, ColumnVector vector) throws IOException {
+            DoubleVector doubleVector = (DoubleVector) vector;
+            for (int i = 0; i < numDocs; i++) {
+                if (values.advanceExact(docs[i])) {
+                    if (values.docValueCount() != 1) {
+                        throw arrayValueFound();
+                    }
+                    long sortableValue = values.nextValue();
+                    // floating point values are indexed in their sortable representation
+                    doubleVector.set(i, isFloat
+                        ? NumericUtils.sortableIntToFloat((int) sortableValue)
+                        : NumericUtils.sortableLongToDouble(sortableValue));
+                } else {
+                    doubleVector.setNull(i);
+                }
+            }
+        }
+    }
+}
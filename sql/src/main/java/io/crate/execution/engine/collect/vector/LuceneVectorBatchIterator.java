@@ -0,0 +1,217 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.data.BatchIterator;
+import io.crate.exceptions.Exceptions;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Vectorized counterpart of {@link io.crate.execution.engine.collect.collectors.LuceneBatchIterator}: exposes the documents matching a lucene {@link Query}
+ * as {@link VectorBatch}es, filled directly from the doc values of the columns by {@link DocValuesVectorLoader}s.
+ * <p>
+ * A batch contains up to {@link VectorBatch#capacity()} documents of a single segment. The first columns of the
+ * batch are filled by the loaders, in order.
+ * <p>
+ * The batch is re-used, so consumers must not hold on to it after calling {@link #moveNext()}.
+ */
+class LuceneVectorBatchIterator implements BatchIterator<VectorBatch> {
+
+    private final IndexSearcher indexSearcher;
+    private final Query query;
+    private final DocValuesVectorLoader[] loaders;
+    private final VectorBatch batch;
+    private final int[] docs;
+    private final List<LeafReaderContext> leaves;
+    private Weight weight;
+
+    private Iterator<LeafReaderContext> leavesIt;
+    private LeafReaderContext currentLeaf;
+    private DocIdSetIterator currentDocIdSetIt;
+    private boolean closed = false;
+    private volatile Throwable killed;
+
+    /**
+     * Creates a batch with one vector per loader and the given capacity.
+     */
+    static VectorBatch newBatch(List<DocValuesVectorLoader> loaders, int capacity) {
+        return newBatch(loaders, List.of(), capacity);
+    }
+
+    /**
+     * Creates a batch with one vector per loader, followed by the additional columns, which aren't filled by
+     * this iterator.
+     */
+    static VectorBatch newBatch(List<DocValuesVectorLoader> loaders, List<ColumnVector> additionalColumns, int capacity) {
+        ColumnVector[] columns = new ColumnVector[loaders.size() + additionalColumns.size()];
+        for (int i = 0; i < loaders.size(); i++) {
+            columns[i] = loaders.get(i).newVector(capacity);
+        }
+        for (int i = 0; i < additionalColumns.size(); i++) {
+            columns[loaders.size() + i] = additionalColumns.get(i);
+        }
+        return new VectorBatch(capacity, columns);
+    }
+
+    LuceneVectorBatchIterator(IndexSearcher indexSearcher,
+                                     Query query,
+                                     List<DocValuesVectorLoader> loaders,
+                                     VectorBatch batch) {
+        assert batch.numColumns() >= loaders.size() : "batch must have a column for each loader";
+        this.indexSearcher = indexSearcher;
+        this.query = query;
+        this.loaders = loaders.toArray(new DocValuesVectorLoader[0]);
+        this.batch = batch;
+        this.docs = new int[batch.capacity()];
+        leaves = indexSearcher.getTopReaderContext().leaves();
+        leavesIt = leaves.iterator();
+    }
+
+    @Override
+    public VectorBatch currentElement() {
+        return batch;
+    }
+
+    @Override
+    public void moveToStart() {
+        raiseIfClosedOrKilled();
+        leavesIt = leaves.iterator();
+        clearState();
+    }
+
+    @Override
+    public boolean moveNext() {
+        raiseIfClosedOrKilled();
+        try {
+            if (weight == null) {
+                weight = indexSearcher.createWeight(indexSearcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1f);
+            }
+            return innerMoveNext();
+        } catch (IOException e) {
+            Exceptions.rethrowUnchecked(e);
+            return false;
+        }
+    }
+
+    private boolean innerMoveNext() throws IOException {
+        while (tryAdvanceDocIdSetIterator()) {
+            Bits liveDocs = currentLeaf.reader().getLiveDocs();
+            int numDocs = 0;
+            while (numDocs < docs.length) {
+                int doc = currentDocIdSetIt.nextDoc();
+                if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                    currentDocIdSetIt = null;
+                    break;
+                }
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    docs[numDocs++] = doc;
+                }
+            }
+            if (numDocs > 0) {
+                batch.reset(numDocs);
+                for (int i = 0; i < loaders.length; i++) {
+                    loaders[i].load(docs, numDocs, batch.column(i));
+                }
+                return true;
+            }
+        }
+        clearState();
+        return false;
+    }
+
+    private boolean tryAdvanceDocIdSetIterator() throws IOException {
+        if (currentDocIdSetIt != null) {
+            return true;
+        }
+        while (leavesIt.hasNext()) {
+            LeafReaderContext leaf = leavesIt.next();
+            Scorer scorer = weight.scorer(leaf);
+            if (scorer == null) {
+                continue;
+            }
+            currentLeaf = leaf;
+            currentDocIdSetIt = scorer.iterator();
+            for (DocValuesVectorLoader loader : loaders) {
+                loader.setNextReader(leaf);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void clearState() {
+        currentDocIdSetIt = null;
+        currentLeaf = null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        clearState();
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("BatchIterator is closed");
+        }
+        throw new IllegalStateException("BatchIterator already fully loaded");
+    }
+
+    @Override
+    public boolean allLoaded() {
+        return true;
+    }
+
+    @Override
+    public boolean hasLazyResultSet() {
+        return true;
+    }
+
+    private void raiseIfClosedOrKilled() {
+        if (killed != null) {
+            Exceptions.rethrowUnchecked(killed);
+        }
+        if (closed) {
+            throw new IllegalStateException("BatchIterator is closed");
+        }
+    }
+
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        killed = throwable;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.data.BatchIterator;
+import io.crate.data.CollectingBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Vectorized implementations of the common aggregations.
+ * <p>
+ * The aggregations consume the selected rows of a batch. The results follow the semantics of the row based
+ * aggregations: null values are ignored, {@code count} returns 0 and all other aggregations return null if there
+ * are no values. Integral values are aggregated as long and floating point values as double; callers convert the
+ * results to the expected return type.
+ */
+final class VectorAggregators {
+
+    private enum Fold {
+        SUM,
+        MIN,
+        MAX
+    }
+
+    private VectorAggregators() {
+    }
+
+    /**
+     * Aggregates all batches of the source into a single row with one column per aggregator.
+     */
+    static BatchIterator<Row> aggregate(BatchIterator<VectorBatch> source, VectorAggregator... aggregators) {
+        return CollectingBatchIterator.newInstance(
+            source,
+            it -> aggregate(it, aggregators, new CompletableFuture<>()),
+            source.hasLazyResultSet()
+        );
+    }
+
+    private static CompletableFuture<List<Row>> aggregate(BatchIterator<VectorBatch> it,
+                                                          VectorAggregator[] aggregators,
+                                                          CompletableFuture<List<Row>> result) {
+        try {
+            while (it.moveNext()) {
+                VectorBatch batch = it.currentElement();
+                for (VectorAggregator aggregator : aggregators) {
+                    aggregator.aggregate(batch);
+                }
+            }
+            if (it.allLoaded()) {
+                Object[] cells = new Object[aggregators.length];
+                for (int i = 0; i < aggregators.length; i++) {
+                    cells[i] = aggregators[i].result();
+                }
+                result.complete(Collections.singletonList(new RowN(cells)));
+            } else {
+                it.loadNextBatch().whenComplete((r, t) -> {
+                    if (t == null) {
+                        aggregate(it, aggregators, result);
+                    } else {
+                        result.completeExceptionally(t);
+                    }
+                });
+            }
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+        return result;
+    }
+
+    /**
+     * {@code aggregation FILTER (WHERE condition)}: aggregates only the selected rows for which the filter matches.
+     */
+    static VectorAggregator filtered(VectorFilter filter, VectorAggregator aggregator) {
+        return new VectorAggregator() {
+
+            private int[] matches = new int[0];
+
+            @Override
+            public void aggregate(VectorBatch batch) {
+                if (matches.length < batch.capacity()) {
+                    matches = new int[batch.capacity()];
+                }
+                int[] selected = batch.selected();
+                int numSelected = batch.numSelected();
+                batch.select(matches, filter.filter(batch, matches));
+                try {
+                    aggregator.aggregate(batch);
+                } finally {
+                    // the other aggregations of the batch must see the rows selected before
+                    batch.restoreSelection(selected, numSelected);
+                }
+            }
+
+            @Override
+            public Object result() {
+                return aggregator.result();
+            }
+        };
+    }
+
+    /**
+     * {@code count(*)}
+     */
+    static VectorAggregator countAll() {
+        return new VectorAggregator() {
+
+            long count = 0;
+
+            @Override
+            public void aggregate(VectorBatch batch) {
+                count += batch.numSelected();
+            }
+
+            @Override
+            public Object result() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * {@code count(column)}
+     */
+    static VectorAggregator count(int column) {
+        return new VectorAggregator() {
+
+            long count = 0;
+
+            @Override
+            public void aggregate(VectorBatch batch) {
+                ColumnVector vector = batch.column(column);
+                int numSelected = batch.numSelected();
+                if (!vector.hasNulls()) {
+                    count += numSelected;
+                    return;
+                }
+                int[] selected = batch.selected();
+                for (int j = 0; j < numSelected; j++) {
+                    if (!vector.isNull(selected[j])) {
+                        count++;
+                    }
+                }
+            }
+
+            @Override
+            public Object result() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * {@code sum(column)} on a {@link LongVector}
+     */
+    static VectorAggregator longSum(int column) {
+        return new LongAggregator(column, Fold.SUM);
+    }
+
+    /**
+     * {@code min(column)} on a {@link LongVector}
+     */
+    static VectorAggregator longMin(int column) {
+        return new LongAggregator(column, Fold.MIN);
+    }
+
+    /**
+     * {@code max(column)} on a {@link LongVector}
+     */
+    static VectorAggregator longMax(int column) {
+        return new LongAggregator(column, Fold.MAX);
+    }
+
+    /**
+     * {@code sum(column)} on a {@link DoubleVector}
+     */
+    static VectorAggregator doubleSum(int column) {
+        return new DoubleAggregator(column, Fold.SUM);
+    }
+
+    /**
+     * {@code min(column)} on a {@link DoubleVector}
+     */
+    static VectorAggregator doubleMin(int column) {
+        return new DoubleAggregator(column, Fold.MIN);
+    }
+
+    /**
+     * {@code max(column)} on a {@link DoubleVector}
+     */
+    static VectorAggregator doubleMax(int column) {
+        return new DoubleAggregator(column, Fold.MAX);
+    }
+
+    /**
+     * Folds the values of a {@link LongVector} into a single long.
+     * There is one loop per {@link Fold}, so that the loops don't contain any virtual calls.
+     */
+    private static final class LongAggregator implements VectorAggregator {
+
+        private final int column;
+        private final Fold fold;
+        private boolean hasValue = false;
+        private long result;
+
+        LongAggregator(int column, Fold fold) {
+            this.column = column;
+            this.fold = fold;
+            this.result = fold == Fold.SUM ? 0 : (fold == Fold.MIN ? Long.MAX_VALUE : Long.MIN_VALUE);
+        }
+
+        @Override
+        public void aggregate(VectorBatch batch) {
+            LongVector vector = (LongVector) batch.column(column);
+            long[] values = vector.values();
+            boolean checkNulls = vector.hasNulls();
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            long acc = result;
+            boolean seen = false;
+            switch (fold) {
+                case SUM:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i))) {
+                            acc = Math.addExact(acc, values[i]);
+                            seen = true;
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i))) {
+                            acc = Math.min(acc, values[i]);
+                            seen = true;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i))) {
+                            acc = Math.max(acc, values[i]);
+                            seen = true;
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported fold: " + fold);
+            }
+            result = acc;
+            hasValue |= seen;
+        }
+
+        @Override
+        public Object result() {
+            return hasValue ? (Long) result : null;
+        }
+    }
+
+    /**
+     * Folds the values of a {@link DoubleVector} into a single double.
+     * There is one loop per {@link Fold}, so that the loops don't contain any virtual calls.
+     * <p>
+     * The fold starts with the first value and compares with {@link Double#compare(double, double)}, like the boxed
+     * values are compared by the row based aggregations: a sum of {@code -0.0} stays {@code -0.0}, {@code min}
+     * ignores {@code NaN} unless all values are {@code NaN} and {@code max} returns {@code NaN} if there is one.
+     */
+    private static final class DoubleAggregator implements VectorAggregator {
+
+        private final int column;
+        private final Fold fold;
+        private boolean hasValue = false;
+        private double result;
+
+        DoubleAggregator(int column, Fold fold) {
+            this.column = column;
+            this.fold = fold;
+        }
+
+        @Override
+        public void aggregate(VectorBatch batch) {
+            DoubleVector vector = (DoubleVector) batch.column(column);
+            double[] values = vector.values();
+            boolean checkNulls = vector.hasNulls();
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            double acc = result;
+            boolean seen = hasValue;
+            switch (fold) {
+                case SUM:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i))) {
+                            acc = seen ? acc + values[i] : values[i];
+                            seen = true;
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i)) && (!seen || Double.compare(values[i], acc) < 0)) {
+                            acc = values[i];
+                            seen = true;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (!(checkNulls && vector.isNull(i)) && (!seen || Double.compare(values[i], acc) > 0)) {
+                            acc = values[i];
+                            seen = true;
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported fold: " + fold);
+            }
+            result = acc;
+            hasValue = seen;
+        }
+
+        @Override
+        public Object result() {
+            return hasValue ? (Double) result : null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+package io.crate.execution.engine.collect.vector;
+
+/**
+ * A batch of rows stored column-wise in {@link ColumnVector}s, used to process many rows per call instead of
+ * evaluating {@link io.crate.data.Input}s for one row at a time.
+ * <p>
+ * The rows of a batch are addressed by their position within the vectors. The selection vector contains the
+ * positions of the rows which are processed, in ascending order; operators iterate over
+ * {@code selected()[0 .. numSelected()]}:
+ *
+ * <pre>
+ *     columns:   x: [1, 5, 3, 8]   y: [0.5, 1.5, null, 2.0]
+ *     selected:  [1, 3]            (the rows where x > 4)
+ * </pre>
+ *
+ * After {@link #reset(int)} all rows are selected.
+ */
+final class VectorBatch {
+
+    private final ColumnVector[] columns;
+    private final int capacity;
+    private final int[] allPositions;
+    private int numRows;
+    private int[] selected;
+    private int numSelected;
+
+    VectorBatch(int capacity, ColumnVector... columns) {
+        this.capacity = capacity;
+        for (ColumnVector column : columns) {
+            if (column.capacity() != capacity) {
+                throw new IllegalArgumentException("All columns of a VectorBatch must have the same capacity");
+            }
+        }
+        this.columns = columns;
+        this.allPositions = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            allPositions[i] = i;
+        }
+        this.selected = allPositions;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int numColumns() {
+        return columns.length;
+    }
+
+    ColumnVector column(int index) {
+        return columns[index];
+    }
+
+    int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the positions of the selected rows, only the first {@link #numSelected()} entries are valid.
+     */
+    int[] selected() {
+        return selected;
+    }
+
+    int numSelected() {
+        return numSelected;
+    }
+
+    /**
+     * Restricts the processed rows to the given positions, which must be a subset of the selected rows.
+     * The array is used as it is, it must not be modified while it is selected.
+     */
+    void select(int[] positions, int numPositions) {
+        assert numPositions <= numSelected : "Can only narrow the selected rows";
+        this.selected = positions;
+        this.numSelected = numPositions;
+    }
+
+    /**
+     * Reverts a {@link #select(int[], int)} to the rows which were selected before.
+     */
+    void restoreSelection(int[] positions, int numPositions) {
+        this.selected = positions;
+        this.numSelected = numPositions;
+    }
+
+    /**
+     * Clears the vectors so that they can be filled with the given number of rows, and selects all of them.
+     * The values of the vectors are kept, so a vector which is never set holds the same values for every batch.
+     */
+    void reset(int numRows) {
+        if (numRows > capacity) {
+            throw new IllegalArgumentException(
+                "Cannot store " + numRows + " rows in a VectorBatch with a capacity of " + capacity);
+        }
+        for (ColumnVector column : columns) {
+            column.reset();
+        }
+        this.numRows = numRows;
+        this.selected = allPositions;
+        this.numSelected = numRows;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import java.util.List;
+
+/**
+ * Vectorized implementations of the arithmetic operators {@code +}, {@code -} and {@code *}.
+ * <p>
+ * The results are the same as the ones of the row based {@link io.crate.expression.scalar.arithmetic.BinaryScalar}s:
+ * a null operand results in null, integer and long overflows raise an {@link IllegalArgumentException} and float
+ * operands result in a float value.
+ */
+final class VectorEvals {
+
+    enum Operator {
+        ADD,
+        SUBTRACT,
+        MULTIPLY
+    }
+
+    /**
+     * The width of the result, the operands of {@link #INTEGER} and {@link #LONG} are {@link LongVector}s,
+     * the ones of {@link #FLOAT} and {@link #DOUBLE} are {@link DoubleVector}s.
+     */
+    enum ResultType {
+        INTEGER,
+        LONG,
+        FLOAT,
+        DOUBLE
+    }
+
+    private VectorEvals() {
+    }
+
+    /**
+     * Evaluates the expressions, in order, for the rows selected when the filter is applied. An expression can
+     * use the results of the ones before.
+     */
+    static VectorFilter evaluateBefore(List<VectorEval> evals, VectorFilter filter) {
+        if (evals.isEmpty()) {
+            return filter;
+        }
+        VectorEval[] evalArray = evals.toArray(new VectorEval[0]);
+        return (batch, matches) -> {
+            evaluate(evalArray, batch);
+            return filter.filter(batch, matches);
+        };
+    }
+
+    /**
+     * Evaluates the expressions, in order, for the rows selected when the aggregator is applied. Like the row based
+     * aggregations, which evaluate their inputs only for the rows matching their filter.
+     */
+    static VectorAggregator evaluateBefore(List<VectorEval> evals, VectorAggregator aggregator) {
+        if (evals.isEmpty()) {
+            return aggregator;
+        }
+        VectorEval[] evalArray = evals.toArray(new VectorEval[0]);
+        return new VectorAggregator() {
+
+            @Override
+            public void aggregate(VectorBatch batch) {
+                evaluate(evalArray, batch);
+                aggregator.aggregate(batch);
+            }
+
+            @Override
+            public Object result() {
+                return aggregator.result();
+            }
+        };
+    }
+
+    private static void evaluate(VectorEval[] evals, VectorBatch batch) {
+        for (VectorEval eval : evals) {
+            eval.evaluate(batch);
+        }
+    }
+
+    /**
+     * {@code result = left <op> right}, for the selected rows
+     */
+    static VectorEval arithmetic(Operator operator, ResultType resultType, int left, int right, int result) {
+        switch (resultType) {
+            case INTEGER:
+            case LONG:
+                boolean isInteger = resultType == ResultType.INTEGER;
+                return batch -> {
+                    LongVector leftVector = (LongVector) batch.column(left);
+                    LongVector rightVector = (LongVector) batch.column(right);
+                    LongVector resultVector = (LongVector) batch.column(result);
+                    int numSelected = batch.numSelected();
+                    int[] selected = batch.selected();
+                    long[] leftValues = leftVector.values();
+                    long[] rightValues = rightVector.values();
+                    long[] resultValues = resultVector.values();
+                    boolean hasNulls = leftVector.hasNulls() || rightVector.hasNulls();
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (hasNulls && (leftVector.isNull(i) || rightVector.isNull(i))) {
+                            resultVector.setNull(i);
+                        } else {
+                            resultValues[i] = apply(operator, isInteger, leftValues[i], rightValues[i]);
+                        }
+                    }
+                };
+
+            case FLOAT:
+            case DOUBLE:
+                boolean isFloat = resultType == ResultType.FLOAT;
+                return batch -> {
+                    DoubleVector leftVector = (DoubleVector) batch.column(left);
+                    DoubleVector rightVector = (DoubleVector) batch.column(right);
+                    DoubleVector resultVector = (DoubleVector) batch.column(result);
+                    int numSelected = batch.numSelected();
+                    int[] selected = batch.selected();
+                    double[] leftValues = leftVector.values();
+                    double[] rightValues = rightVector.values();
+                    double[] resultValues = resultVector.values();
+                    boolean hasNulls = leftVector.hasNulls() || rightVector.hasNulls();
+                    for (int j = 0; j < numSelected; j++) {
+                        int i = selected[j];
+                        if (hasNulls && (leftVector.isNull(i) || rightVector.isNull(i))) {
+                            resultVector.setNull(i);
+                        } else {
+                            double value = apply(operator, leftValues[i], rightValues[i]);
+                            // float operands are exact as double, rounding the double result once is the same
+                            // as the float arithmetic of the row based operator
+                            resultValues[i] = isFloat ? (float) value : value;
+                        }
+                    }
+                };
+
+            default:
+                throw new IllegalArgumentException("Unsupported result type: " + resultType);
+        }
+    }
+
+    private static long apply(Operator operator, boolean isInteger, long left, long right) {
+        try {
+            if (isInteger) {
+                // the operands are integers, so the long result is exact
+                switch (operator) {
+                    case ADD:
+                        return Math.addExact((int) left, (int) right);
+                    case SUBTRACT:
+                        return Math.subtractExact((int) left, (int) right);
+                    case MULTIPLY:
+                        return Math.multiplyExact((int) left, (int) right);
+                    default:
+                        throw new IllegalStateException("Unsupported operator: " + operator);
+                }
+            }
+            switch (operator) {
+                case ADD:
+                    return Math.addExact(left, right);
+                case SUBTRACT:
+                    return Math.subtractExact(left, right);
+                case MULTIPLY:
+                    return Math.multiplyExact(left, right);
+                default:
+                    throw new IllegalStateException("Unsupported operator: " + operator);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    private static double apply(Operator operator, double left, double right) {
+        switch (operator) {
+            case ADD:
+                return left + right;
+            case SUBTRACT:
+                return left - right;
+            case MULTIPLY:
+                return left * right;
+            default:
+                throw new IllegalStateException("Unsupported operator: " + operator);
+        }
+    }
+}
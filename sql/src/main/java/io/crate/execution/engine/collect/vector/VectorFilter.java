@@ -0,0 +1,41 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+/**
+ * A boolean condition evaluated for the selected rows of a {@link VectorBatch} at once.
+ * <p>
+ * Instances may hold scratch buffers, there is one instance per condition and execution. See {@link VectorFilters}.
+ */
+interface VectorFilter {
+
+    /**
+     * Writes the positions of the selected rows for which the condition is true into {@code matches}, in
+     * ascending order. Rows for which the condition is false or null don't match. The selection of the batch is
+     * unchanged afterwards.
+     *
+     * @param matches an array with at least {@link VectorBatch#capacity()} entries
+     * @return the number of matching rows
+     */
+    int filter(VectorBatch batch, int[] matches);
+}
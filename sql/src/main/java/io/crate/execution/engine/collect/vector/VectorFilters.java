@@ -0,0 +1,327 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+/**
+ * Vectorized implementations of the common conditions.
+ * <p>
+ * The comparisons follow the semantics of the row based operators: a comparison with a null value is null and
+ * so doesn't match, floating point values are compared like boxed values with {@link Double#compare(double, double)}.
+ * Operands are columns of the batch; constants are stored in a column of their own which is filled once.
+ */
+final class VectorFilters {
+
+    enum Comparison {
+        EQ,
+        LT,
+        LTE,
+        GT,
+        GTE
+    }
+
+    private VectorFilters() {
+    }
+
+    /**
+     * {@code left <op> right} on two {@link LongVector}s
+     */
+    static VectorFilter longCompare(Comparison comparison, int left, int right) {
+        return (batch, matches) -> {
+            LongVector leftVector = (LongVector) batch.column(left);
+            LongVector rightVector = (LongVector) batch.column(right);
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            int numMatches = compare(
+                comparison, leftVector.values(), rightVector.values(), selected, numSelected, matches);
+            return removeNulls(leftVector, rightVector, matches, numMatches);
+        };
+    }
+
+    /**
+     * {@code left <op> right} on two {@link DoubleVector}s
+     */
+    static VectorFilter doubleCompare(Comparison comparison, int left, int right) {
+        return (batch, matches) -> {
+            DoubleVector leftVector = (DoubleVector) batch.column(left);
+            DoubleVector rightVector = (DoubleVector) batch.column(right);
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            int numMatches = compare(
+                comparison, leftVector.values(), rightVector.values(), selected, numSelected, matches);
+            return removeNulls(leftVector, rightVector, matches, numMatches);
+        };
+    }
+
+    /**
+     * {@code column IS NULL}
+     */
+    static VectorFilter isNull(int column) {
+        return (batch, matches) -> {
+            ColumnVector vector = batch.column(column);
+            if (!vector.hasNulls()) {
+                return 0;
+            }
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            int numMatches = 0;
+            for (int j = 0; j < numSelected; j++) {
+                int i = selected[j];
+                if (vector.isNull(i)) {
+                    matches[numMatches++] = i;
+                }
+            }
+            return numMatches;
+        };
+    }
+
+    /**
+     * {@code column IS NOT NULL}
+     */
+    static VectorFilter isNotNull(int column) {
+        return (batch, matches) -> {
+            int[] selected = batch.selected();
+            int numSelected = batch.numSelected();
+            ColumnVector vector = batch.column(column);
+            if (!vector.hasNulls()) {
+                System.arraycopy(selected, 0, matches, 0, numSelected);
+                return numSelected;
+            }
+            int numMatches = 0;
+            for (int j = 0; j < numSelected; j++) {
+                int i = selected[j];
+                if (!vector.isNull(i)) {
+                    matches[numMatches++] = i;
+                }
+            }
+            return numMatches;
+        };
+    }
+
+    /**
+     * {@code a AND b AND ...}: each condition is only evaluated for the rows matched by the previous ones.
+     */
+    static VectorFilter and(VectorFilter... filters) {
+        return new VectorFilter() {
+
+            private int[] previousMatches = new int[0];
+
+            @Override
+            public int filter(VectorBatch batch, int[] matches) {
+                int numMatches = filters[0].filter(batch, matches);
+                if (filters.length == 1 || numMatches == 0) {
+                    return numMatches;
+                }
+                if (previousMatches.length < batch.capacity()) {
+                    previousMatches = new int[batch.capacity()];
+                }
+                int[] selected = batch.selected();
+                int numSelected = batch.numSelected();
+                try {
+                    for (int k = 1; k < filters.length && numMatches > 0; k++) {
+                        System.arraycopy(matches, 0, previousMatches, 0, numMatches);
+                        batch.select(previousMatches, numMatches);
+                        numMatches = filters[k].filter(batch, matches);
+                    }
+                } finally {
+                    batch.restoreSelection(selected, numSelected);
+                }
+                return numMatches;
+            }
+        };
+    }
+
+    /**
+     * {@code a OR b}: matches the rows matched by either condition. A null result of one condition doesn't
+     * prevent a match of the other one, like {@code null OR true} is true.
+     */
+    static VectorFilter or(VectorFilter left, VectorFilter right) {
+        return new VectorFilter() {
+
+            private int[] leftMatches = new int[0];
+            private int[] rightMatches = new int[0];
+
+            @Override
+            public int filter(VectorBatch batch, int[] matches) {
+                if (leftMatches.length < batch.capacity()) {
+                    leftMatches = new int[batch.capacity()];
+                    rightMatches = new int[batch.capacity()];
+                }
+                int numLeft = left.filter(batch, leftMatches);
+                int numRight = right.filter(batch, rightMatches);
+                // both are ascending, merge them without duplicates
+                int numMatches = 0;
+                int l = 0;
+                int r = 0;
+                while (l < numLeft && r < numRight) {
+                    int leftPos = leftMatches[l];
+                    int rightPos = rightMatches[r];
+                    if (leftPos < rightPos) {
+                        matches[numMatches++] = leftPos;
+                        l++;
+                    } else if (rightPos < leftPos) {
+                        matches[numMatches++] = rightPos;
+                        r++;
+                    } else {
+                        matches[numMatches++] = leftPos;
+                        l++;
+                        r++;
+                    }
+                }
+                while (l < numLeft) {
+                    matches[numMatches++] = leftMatches[l++];
+                }
+                while (r < numRight) {
+                    matches[numMatches++] = rightMatches[r++];
+                }
+                return numMatches;
+            }
+        };
+    }
+
+    /**
+     * There is one loop per {@link Comparison}, so that the loops don't contain any branches apart from the match.
+     * Null values are not checked, see {@link #removeNulls}.
+     */
+    private static int compare(Comparison comparison,
+                               long[] left,
+                               long[] right,
+                               int[] selected,
+                               int numSelected,
+                               int[] matches) {
+        int numMatches = 0;
+        switch (comparison) {
+            case EQ:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (left[i] == right[i]) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case LT:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (left[i] < right[i]) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case LTE:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (left[i] <= right[i]) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case GT:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (left[i] > right[i]) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case GTE:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (left[i] >= right[i]) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            default:
+                throw new IllegalStateException("Unsupported comparison: " + comparison);
+        }
+    }
+
+    private static int compare(Comparison comparison,
+                               double[] left,
+                               double[] right,
+                               int[] selected,
+                               int numSelected,
+                               int[] matches) {
+        int numMatches = 0;
+        switch (comparison) {
+            case EQ:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (Double.compare(left[i], right[i]) == 0) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case LT:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (Double.compare(left[i], right[i]) < 0) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case LTE:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (Double.compare(left[i], right[i]) <= 0) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case GT:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (Double.compare(left[i], right[i]) > 0) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            case GTE:
+                for (int j = 0; j < numSelected; j++) {
+                    int i = selected[j];
+                    if (Double.compare(left[i], right[i]) >= 0) {
+                        matches[numMatches++] = i;
+                    }
+                }
+                return numMatches;
+            default:
+                throw new IllegalStateException("Unsupported comparison: " + comparison);
+        }
+    }
+
+    /**
+     * Removes the matches where one of the operands is null, in place.
+     */
+    private static int removeNulls(ColumnVector left, ColumnVector right, int[] matches, int numMatches) {
+        if (!left.hasNulls() && !right.hasNulls()) {
+            return numMatches;
+        }
+        int numNonNull = 0;
+        for (int j = 0; j < numMatches; j++) {
+            int i = matches[j];
+            if (!left.isNull(i) && !right.isNull(i)) {
+                matches[numNonNull++] = i;
+            }
+        }
+        return numNonNull;
+    }
+}
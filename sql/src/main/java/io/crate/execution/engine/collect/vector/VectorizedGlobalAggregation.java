@@ -0,0 +1,611 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
+import io.crate.execution.dsl.projection.AggregationProjection;
+import io.crate.execution.dsl.projection.Projection;
+import io.crate.execution.engine.aggregation.AggregationFunction;
+import io.crate.execution.engine.aggregation.impl.CountAggregation;
+import io.crate.execution.engine.aggregation.impl.MaximumAggregation;
+import io.crate.execution.engine.aggregation.impl.MinimumAggregation;
+import io.crate.execution.engine.aggregation.impl.SumAggregation;
+import io.crate.execution.engine.collect.CollectTask;
+import io.crate.execution.jobs.SharedShardContext;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.predicate.IsNullPredicate;
+import io.crate.expression.predicate.NotPredicate;
+import io.crate.expression.scalar.arithmetic.ArithmeticFunctions;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Aggregation;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.InputColumn;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.RefVisitor;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.Symbols;
+import io.crate.lucene.FieldTypeLookup;
+import io.crate.lucene.LuceneQueryBuilder;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Reference;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.index.shard.IndexShard;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.crate.execution.dsl.projection.Projections.shardProjections;
+import static io.crate.execution.engine.collect.LuceneShardCollectorProvider.formatSource;
+
+/**
+ * Global aggregation on a shard which reads the columns from doc values into {@link VectorBatch}es
+ * and aggregates a whole batch per call using {@link VectorAggregators}, instead of evaluating the collect
+ * expressions and aggregations row by row.
+ * <p>
+ * Used for the partial aggregation of {@code count}, {@code sum}, {@code min} and {@code max} over numeric and
+ * timestamp columns with doc values, if enabled with {@link #ENABLED_SETTING}. {@link #tryCreate} returns null for
+ * all other aggregations, which then use the row based projectors.
+ * <p>
+ * The arguments of the aggregations can be columns, constants and the arithmetic operators {@code +}, {@code -} and
+ * {@code *}, which are evaluated by {@link VectorEvals}. The {@code FILTER} clauses of the aggregations can be
+ * comparisons, {@code IS NULL} and their combinations with {@code AND} and {@code OR}, evaluated by
+ * {@link VectorFilters}. The {@code WHERE} clause is always evaluated by the lucene query.
+ * <p>
+ * The shard is aggregated on a single thread, its collection is not split.
+ */
+public final class VectorizedGlobalAggregation {
+
+    public static final Setting<Boolean> ENABLED_SETTING = Setting.boolSetting(
+        "node.sql.vectorized_aggregation.enabled",
+        false,
+        Setting.Property.NodeScope);
+
+    static final int BATCH_SIZE = 1024;
+
+    private VectorizedGlobalAggregation() {
+    }
+
+    @Nullable
+    public static BatchIterator<Row> tryCreate(IndexShard indexShard,
+                                               DocTableInfo table,
+                                               LuceneQueryBuilder luceneQueryBuilder,
+                                               FieldTypeLookup fieldTypeLookup,
+                                               Functions functions,
+                                               RoutedCollectPhase collectPhase,
+                                               CollectTask collectTask) {
+        Collection<? extends Projection> shardProjections = shardProjections(collectPhase.projections());
+        if (shardProjections.size() != 1 || !(shardProjections.iterator().next() instanceof AggregationProjection)) {
+            return null;
+        }
+        AggregationProjection aggregationProjection = (AggregationProjection) shardProjections.iterator().next();
+        if (aggregationProjection.mode() != AggregateMode.ITER_PARTIAL
+            || Symbols.containsColumn(collectPhase.where(), DocSysColumns.SCORE)) {
+            return null;
+        }
+        BatchLayout layout = BatchLayout.create(collectPhase.toCollect(), fieldTypeLookup);
+        if (layout == null) {
+            return null;
+        }
+        List<Aggregation> aggregations = aggregationProjection.aggregations();
+        VectorAggregator[] aggregators = new VectorAggregator[aggregations.size()];
+        for (int i = 0; i < aggregations.size(); i++) {
+            VectorAggregator aggregator = aggregatorOrNull(aggregations.get(i), layout, functions);
+            if (aggregator == null) {
+                return null;
+            }
+            aggregators[i] = aggregator;
+        }
+
+        SharedShardContext sharedShardContext = collectTask.sharedShardContexts().getOrCreateContext(indexShard.shardId());
+        Engine.Searcher searcher = sharedShardContext.acquireSearcher(formatSource(collectPhase));
+        try {
+            QueryShardContext queryShardContext = sharedShardContext.indexService().newQueryShardContext();
+            collectTask.addSearcher(sharedShardContext.readerId(), searcher);
+            LuceneQueryBuilder.Context queryContext = luceneQueryBuilder.convert(
+                collectPhase.where(),
+                collectTask.txnCtx(),
+                indexShard.mapperService(),
+                indexShard.shardId().getIndexName(),
+                queryShardContext,
+                table,
+                sharedShardContext.indexService().cache()
+            );
+            return VectorAggregators.aggregate(
+                new LuceneVectorBatchIterator(
+                    searcher.searcher(),
+                    queryContext.query(),
+                    layout.loaders,
+                    LuceneVectorBatchIterator.newBatch(layout.loaders, layout.additionalColumns, BATCH_SIZE)
+                ),
+                aggregators
+            );
+        } catch (Throwable t) {
+            searcher.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return a loader for a column which is stored in doc values, or null.
+     *         Partition columns have the PARTITION granularity and system columns are read differently, both aren't
+     *         supported.
+     */
+    @Nullable
+    private static DocValuesVectorLoader loaderOrNull(Reference ref, FieldTypeLookup fieldTypeLookup) {
+        if (ref.granularity() != RowGranularity.DOC || ref.column().isSystemColumn()) {
+            return null;
+        }
+        String fqn = ref.column().fqn();
+        MappedFieldType fieldType = fieldTypeLookup.get(fqn);
+        if (fieldType == null || !fieldType.hasDocValues()) {
+            return null;
+        }
+        return DocValuesVectorLoader.of(fqn, ref.valueType());
+    }
+
+    /**
+     * @return an aggregator which returns the same partial state as the row based aggregation, or null.
+     */
+    @Nullable
+    private static VectorAggregator aggregatorOrNull(Aggregation aggregation, BatchLayout layout, Functions functions) {
+        List<VectorEval> evals = new ArrayList<>();
+        VectorAggregator aggregator = unfilteredAggregatorOrNull(aggregation, layout, functions, evals);
+        if (aggregator == null) {
+            return null;
+        }
+        aggregator = VectorEvals.evaluateBefore(evals, aggregator);
+        Symbol filter = aggregation.filter();
+        if (filter.equals(Literal.BOOLEAN_TRUE)) {
+            return aggregator;
+        }
+        VectorFilter vectorFilter = layout.filterOrNull(filter);
+        return vectorFilter == null ? null : VectorAggregators.filtered(vectorFilter, aggregator);
+    }
+
+    @Nullable
+    private static VectorAggregator unfilteredAggregatorOrNull(Aggregation aggregation,
+                                                               BatchLayout layout,
+                                                               Functions functions,
+                                                               List<VectorEval> evals) {
+        String name = aggregation.functionIdent().name();
+        List<Symbol> inputs = aggregation.inputs();
+        if (inputs.isEmpty()) {
+            if (!CountAggregation.NAME.equals(name)) {
+                return null;
+            }
+            return withPartialState(VectorAggregators.countAll(), result -> new CountAggregation.LongState((Long) result));
+        }
+        if (inputs.size() != 1) {
+            return null;
+        }
+        Symbol input = layout.resolve(inputs.get(0));
+        DataType<?> type = input.valueType();
+        if (!type.equals(aggregation.functionIdent().argumentTypes().get(0))) {
+            return null;
+        }
+        int column = layout.valueColumn(input, evals);
+        if (column < 0) {
+            return null;
+        }
+        if (CountAggregation.NAME.equals(name)) {
+            return withPartialState(VectorAggregators.count(column), result -> new CountAggregation.LongState((Long) result));
+        }
+        VectorAggregator aggregator = foldOrNull(name, type, column);
+        if (aggregator == null) {
+            return null;
+        }
+        AggregationFunction<?, ?> function = (AggregationFunction<?, ?>) functions.getQualified(aggregation.functionIdent());
+        DataType<?> partialType = function.partialType();
+        return withPartialState(aggregator, partialType::value);
+    }
+
+    @Nullable
+    private static VectorAggregator foldOrNull(String name, DataType<?> type, int column) {
+        switch (type.id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+            case LongType.ID:
+                if (SumAggregation.NAME.equals(name)) {
+                    return VectorAggregators.longSum(column);
+                }
+                return longMinMaxOrNull(name, column);
+
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return longMinMaxOrNull(name, column);
+
+            case DoubleType.ID:
+                if (SumAggregation.NAME.equals(name)) {
+                    return VectorAggregators.doubleSum(column);
+                }
+                return doubleMinMaxOrNull(name, column);
+
+            case FloatType.ID:
+                // the sum of floats is accumulated as float by the row based aggregation, min and max are exact
+                return doubleMinMaxOrNull(name, column);
+
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static VectorAggregator longMinMaxOrNull(String name, int column) {
+        switch (name) {
+            case MinimumAggregation.NAME:
+                return VectorAggregators.longMin(column);
+            case MaximumAggregation.NAME:
+                return VectorAggregators.longMax(column);
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static VectorAggregator doubleMinMaxOrNull(String name, int column) {
+        switch (name) {
+            case MinimumAggregation.NAME:
+                return VectorAggregators.doubleMin(column);
+            case MaximumAggregation.NAME:
+                return VectorAggregators.doubleMax(column);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Converts the result of the aggregator, a Long or Double, into the partial state of the row based aggregation.
+     */
+    private static VectorAggregator withPartialState(VectorAggregator aggregator,
+                                                     java.util.function.Function<Object, Object> toPartialState) {
+        return new VectorAggregator() {
+
+            @Override
+            public void aggregate(VectorBatch batch) {
+                aggregator.aggregate(batch);
+            }
+
+            @Override
+            public Object result() {
+                Object result = aggregator.result();
+                return result == null ? null : toPartialState.apply(result);
+            }
+        };
+    }
+
+    /**
+     * The columns of the {@link VectorBatch}: first the ones loaded from doc values, then the constants and the
+     * results of the {@link VectorEval}s.
+     * <p>
+     * The symbols are compiled once per shard, equal symbols share a column.
+     */
+    private static final class BatchLayout {
+
+        private final List<Symbol> toCollect;
+        private final List<DocValuesVectorLoader> loaders = new ArrayList<>();
+        private final List<ColumnVector> additionalColumns = new ArrayList<>();
+        private final Map<Symbol, Integer> columns = new HashMap<>();
+        private final Map<Symbol, VectorEval> evals = new HashMap<>();
+
+        private BatchLayout(List<Symbol> toCollect) {
+            this.toCollect = toCollect;
+        }
+
+        /**
+         * @return the layout with a loaded column for each column referenced by the collected symbols or null if
+         *         one of them cannot be loaded.
+         */
+        @Nullable
+        static BatchLayout create(List<Symbol> toCollect, FieldTypeLookup fieldTypeLookup) {
+            BatchLayout layout = new BatchLayout(toCollect);
+            List<Reference> refs = new ArrayList<>();
+            for (Symbol symbol : toCollect) {
+                RefVisitor.visitRefs(symbol, refs::add);
+            }
+            for (Reference ref : refs) {
+                if (layout.columns.containsKey(ref)) {
+                    continue;
+                }
+                DocValuesVectorLoader loader = loaderOrNull(ref, fieldTypeLookup);
+                if (loader == null) {
+                    return null;
+                }
+                layout.columns.put(ref, layout.loaders.size());
+                layout.loaders.add(loader);
+            }
+            return layout;
+        }
+
+        /**
+         * @return the collected symbol if the symbol refers to one
+         */
+        Symbol resolve(Symbol symbol) {
+            if (symbol instanceof InputColumn) {
+                return toCollect.get(((InputColumn) symbol).index());
+            }
+            return symbol;
+        }
+
+        /**
+         * @param evals the evaluations which compute the column are added to this list, in the order in which they
+         *              must be evaluated
+         * @return the column holding the value of the symbol or -1 if the symbol cannot be evaluated on batches.
+         */
+        int valueColumn(Symbol symbol, List<VectorEval> evals) {
+            symbol = resolve(symbol);
+            if (symbol instanceof Reference) {
+                return columns.getOrDefault(symbol, -1);
+            }
+            if (symbol instanceof Literal) {
+                return constantColumn((Literal<?>) symbol);
+            }
+            if (symbol instanceof Function) {
+                return arithmeticColumn((Function) symbol, evals);
+            }
+            return -1;
+        }
+
+        private int constantColumn(Literal<?> literal) {
+            Integer column = columns.get(literal);
+            if (column != null) {
+                return column;
+            }
+            Object value = literal.value();
+            if (value == null) {
+                return -1;
+            }
+            DataType<?> type = literal.valueType();
+            ColumnVector vector;
+            if (isLong(type)) {
+                LongVector longVector = new LongVector(BATCH_SIZE);
+                Arrays.fill(longVector.values(), ((Number) value).longValue());
+                vector = longVector;
+            } else if (isDouble(type)) {
+                DoubleVector doubleVector = new DoubleVector(BATCH_SIZE);
+                Arrays.fill(doubleVector.values(), ((Number) value).doubleValue());
+                vector = doubleVector;
+            } else {
+                return -1;
+            }
+            return addColumn(literal, vector);
+        }
+
+        private int arithmeticColumn(Function function, List<VectorEval> evals) {
+            VectorEvals.Operator operator = arithmeticOperatorOrNull(function.info().ident().name());
+            VectorEvals.ResultType resultType = resultTypeOrNull(function.valueType());
+            List<Symbol> arguments = function.arguments();
+            if (operator == null || resultType == null || arguments.size() != 2) {
+                return -1;
+            }
+            DataType<?> argumentType = arguments.get(0).valueType();
+            boolean longOperands = resultType == VectorEvals.ResultType.INTEGER
+                                   || resultType == VectorEvals.ResultType.LONG;
+            if (!argumentType.equals(arguments.get(1).valueType())
+                || (longOperands ? !isLong(argumentType) : !isDouble(argumentType))) {
+                return -1;
+            }
+            int left = valueColumn(arguments.get(0), evals);
+            int right = valueColumn(arguments.get(1), evals);
+            if (left < 0 || right < 0) {
+                return -1;
+            }
+            Integer column = columns.get(function);
+            VectorEval eval;
+            if (column == null) {
+                column = addColumn(function, longOperands ? new LongVector(BATCH_SIZE) : new DoubleVector(BATCH_SIZE));
+                eval = VectorEvals.arithmetic(operator, resultType, left, right, column);
+                this.evals.put(function, eval);
+            } else {
+                eval = this.evals.get(function);
+            }
+            if (!evals.contains(eval)) {
+                evals.add(eval);
+            }
+            return column;
+        }
+
+        /**
+         * @return a filter which matches the rows for which the condition is true or null if the condition cannot
+         *         be evaluated on batches.
+         */
+        @Nullable
+        VectorFilter filterOrNull(Symbol symbol) {
+            symbol = resolve(symbol);
+            if (!(symbol instanceof Function)) {
+                return null;
+            }
+            Function function = (Function) symbol;
+            List<Symbol> arguments = function.arguments();
+            String name = function.info().ident().name();
+            switch (name) {
+                case AndOperator.NAME:
+                case OrOperator.NAME: {
+                    VectorFilter left = filterOrNull(arguments.get(0));
+                    VectorFilter right = filterOrNull(arguments.get(1));
+                    if (left == null || right == null) {
+                        return null;
+                    }
+                    return name.equals(AndOperator.NAME)
+                        ? VectorFilters.and(left, right)
+                        : VectorFilters.or(left, right);
+                }
+
+                case IsNullPredicate.NAME:
+                    return isNullOrNull(arguments.get(0), false);
+
+                case NotPredicate.NAME: {
+                    // only NOT (x IS NULL), the negation of other conditions would have to keep track of nulls
+                    Symbol argument = resolve(arguments.get(0));
+                    if (argument instanceof Function
+                        && ((Function) argument).info().ident().name().equals(IsNullPredicate.NAME)) {
+                        return isNullOrNull(((Function) argument).arguments().get(0), true);
+                    }
+                    return null;
+                }
+
+                default:
+                    return comparisonOrNull(name, arguments);
+            }
+        }
+
+        @Nullable
+        private VectorFilter isNullOrNull(Symbol argument, boolean negate) {
+            List<VectorEval> evals = new ArrayList<>();
+            int column = valueColumn(argument, evals);
+            if (column < 0) {
+                return null;
+            }
+            VectorFilter filter = negate ? VectorFilters.isNotNull(column) : VectorFilters.isNull(column);
+            return VectorEvals.evaluateBefore(evals, filter);
+        }
+
+        @Nullable
+        private VectorFilter comparisonOrNull(String name, List<Symbol> arguments) {
+            VectorFilters.Comparison comparison = comparisonOrNull(name);
+            if (comparison == null || arguments.size() != 2) {
+                return null;
+            }
+            DataType<?> type = arguments.get(0).valueType();
+            if (!type.equals(arguments.get(1).valueType()) || !(isLong(type) || isDouble(type))) {
+                return null;
+            }
+            List<VectorEval> evals = new ArrayList<>();
+            int left = valueColumn(arguments.get(0), evals);
+            int right = valueColumn(arguments.get(1), evals);
+            if (left < 0 || right < 0) {
+                return null;
+            }
+            VectorFilter filter = isLong(type)
+                ? VectorFilters.longCompare(comparison, left, right)
+                : VectorFilters.doubleCompare(comparison, left, right);
+            return VectorEvals.evaluateBefore(evals, filter);
+        }
+
+        private int addColumn(Symbol symbol, ColumnVector vector) {
+            int column = loaders.size() + additionalColumns.size();
+            additionalColumns.add(vector);
+            columns.put(symbol, column);
+            return column;
+        }
+
+        @Nullable
+        private static VectorFilters.Comparison comparisonOrNull(String name) {
+            switch (name) {
+                case EqOperator.NAME:
+                    return VectorFilters.Comparison.EQ;
+                case LtOperator.NAME:
+                    return VectorFilters.Comparison.LT;
+                case LteOperator.NAME:
+                    return VectorFilters.Comparison.LTE;
+                case GtOperator.NAME:
+                    return VectorFilters.Comparison.GT;
+                case GteOperator.NAME:
+                    return VectorFilters.Comparison.GTE;
+                default:
+                    return null;
+            }
+        }
+
+        @Nullable
+        private static VectorEvals.Operator arithmeticOperatorOrNull(String name) {
+            switch (name) {
+                case ArithmeticFunctions.Names.ADD:
+                    return VectorEvals.Operator.ADD;
+                case ArithmeticFunctions.Names.SUBTRACT:
+                    return VectorEvals.Operator.SUBTRACT;
+                case ArithmeticFunctions.Names.MULTIPLY:
+                    return VectorEvals.Operator.MULTIPLY;
+                default:
+                    return null;
+            }
+        }
+
+        @Nullable
+        private static VectorEvals.ResultType resultTypeOrNull(DataType<?> type) {
+            switch (type.id()) {
+                case IntegerType.ID:
+                    return VectorEvals.ResultType.INTEGER;
+                case LongType.ID:
+                    return VectorEvals.ResultType.LONG;
+                case FloatType.ID:
+                    return VectorEvals.ResultType.FLOAT;
+                case DoubleType.ID:
+                    return VectorEvals.ResultType.DOUBLE;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return true if the values of the type are stored in a {@link LongVector}
+         */
+        private static boolean isLong(DataType<?> type) {
+            switch (type.id()) {
+                case ByteType.ID:
+                case ShortType.ID:
+                case IntegerType.ID:
+                case LongType.ID:
+                case TimestampType.ID_WITH_TZ:
+                case TimestampType.ID_WITHOUT_TZ:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @return true if the values of the type are stored in a {@link DoubleVector}
+         */
+        private static boolean isDouble(DataType<?> type) {
+            return type.id() == FloatType.ID || type.id() == DoubleType.ID;
+        }
+    }
+}
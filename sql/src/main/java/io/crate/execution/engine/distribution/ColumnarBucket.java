@@ -0,0 +1,553 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.distribution;
+
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import io.crate.Streamer;
+import io.crate.data.Row;
+import io.crate.types.ByteType;
+import io.crate.types.DoubleType;
+import io.crate.types.FloatType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.StringType;
+import io.crate.types.TimestampType;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Column-major encoding of the rows of a {@link StreamBucket}.
+ * <p>
+ * Instead of writing each row cell by cell, the values of each column are buffered and written together:
+ *
+ * <pre>
+ *     byte, short, integer, long, timestamp:   kind, nulls, zig-zag encoded vLongs of the non-null values
+ *     float, double:                           kind, nulls, the non-null values
+ *     text:                                    kind, dictionary of distinct values, vInt (ordinal + 1 or 0 for null) per row
+ *     any other type:                          kind, the values written by the {@link Streamer} of the column
+ * </pre>
+ *
+ * Values of the same column are more alike than the values of a row, so the encoded bucket is smaller and
+ * compresses better. The rows are decoded column by column into primitive arrays and values are only boxed once
+ * they're accessed.
+ */
+final class ColumnarBucket {
+
+    private static final byte GENERIC = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+
+    private ColumnarBucket() {
+    }
+
+    private static byte kindOf(Streamer<?> streamer) {
+        if (streamer instanceof ByteType) {
+            return BYTE;
+        } else if (streamer instanceof ShortType) {
+            return SHORT;
+        } else if (streamer instanceof IntegerType) {
+            return INTEGER;
+        } else if (streamer instanceof LongType || streamer instanceof TimestampType) {
+            return LONG;
+        } else if (streamer instanceof FloatType) {
+            return FLOAT;
+        } else if (streamer instanceof DoubleType) {
+            return DOUBLE;
+        } else if (streamer instanceof StringType) {
+            return STRING;
+        }
+        return GENERIC;
+    }
+
+    static final class Builder {
+
+        private final ColumnWriter[] columns;
+        private int size = 0;
+
+        Builder(Streamer<?>[] streamers) {
+            columns = new ColumnWriter[streamers.length];
+            for (int i = 0; i < streamers.length; i++) {
+                columns[i] = newWriter(streamers[i]);
+            }
+        }
+
+        /**
+         * @return the estimated number of bytes used to buffer the row
+         */
+        long add(Row row) {
+            long bytes = 0;
+            for (int i = 0; i < columns.length; i++) {
+                bytes += columns[i].add(size, row.get(i));
+            }
+            size++;
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        BytesReference build() {
+            try (BytesStreamOutput out = new BytesStreamOutput()) {
+                for (ColumnWriter column : columns) {
+                    column.writeTo(out, size);
+                }
+                return out.bytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void reset() {
+            for (ColumnWriter column : columns) {
+                column.reset();
+            }
+            size = 0;
+        }
+    }
+
+    static Iterator<Row> iterator(BytesReference bytes, Streamer<?>[] streamers, int size) throws IOException {
+        StreamInput in = bytes.streamInput();
+        ColumnReader[] columns = new ColumnReader[streamers.length];
+        for (int i = 0; i < streamers.length; i++) {
+            columns[i] = readColumn(in, streamers[i], size);
+        }
+        return new RowIterator(columns, size);
+    }
+
+    private static ColumnWriter newWriter(Streamer<?> streamer) {
+        byte kind = kindOf(streamer);
+        switch (kind) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+                return new LongColumnWriter(kind);
+
+            case FLOAT:
+            case DOUBLE:
+                return new DoubleColumnWriter(kind);
+
+            case STRING:
+                return new StringColumnWriter();
+
+            default:
+                return new GenericColumnWriter(streamer);
+        }
+    }
+
+    private static ColumnReader readColumn(StreamInput in, Streamer<?> streamer, int size) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG: {
+                long[] nulls = readNulls(in);
+                long[] values = new long[size];
+                for (int i = 0; i < size; i++) {
+                    if (isNull(nulls, i) == false) {
+                        values[i] = in.readZLong();
+                    }
+                }
+                return new LongColumnReader(kind, nulls, values);
+            }
+
+            case FLOAT:
+            case DOUBLE: {
+                long[] nulls = readNulls(in);
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    if (isNull(nulls, i) == false) {
+                        values[i] = kind == FLOAT ? in.readFloat() : in.readDouble();
+                    }
+                }
+                return new DoubleColumnReader(kind, nulls, values);
+            }
+
+            case STRING: {
+                String[] dictionary = new String[in.readVInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readString();
+                }
+                int[] ordinals = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ordinals[i] = in.readVInt() - 1;
+                }
+                return row -> {
+                    int ordinal = ordinals[row];
+                    return ordinal == -1 ? null : dictionary[ordinal];
+                };
+            }
+
+            case GENERIC: {
+                Object[] values = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = streamer.readValueFrom(in);
+                }
+                return row -> values[row];
+            }
+
+            default:
+                throw new IllegalStateException("Invalid column encoding: " + kind);
+        }
+    }
+
+    private static long[] readNulls(StreamInput in) throws IOException {
+        int numWords = in.readVInt();
+        if (numWords == 0) {
+            return null;
+        }
+        long[] nulls = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            nulls[i] = in.readLong();
+        }
+        return nulls;
+    }
+
+    private static boolean isNull(long[] nulls, int row) {
+        return nulls != null && (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private abstract static class ColumnWriter {
+
+        /**
+         * @return the estimated number of bytes used to buffer the value
+         */
+        abstract long add(int row, Object value);
+
+        abstract void writeTo(StreamOutput out, int size) throws IOException;
+
+        abstract void reset();
+    }
+
+    /**
+     * Base for columns of primitive values which keep track of null values in a bitmap
+     */
+    private abstract static class PrimitiveColumnWriter extends ColumnWriter {
+
+        private final byte kind;
+        private long[] nulls = new long[0];
+        private boolean hasNulls = false;
+
+        PrimitiveColumnWriter(byte kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        final long add(int row, Object value) {
+            if (value == null) {
+                int word = row >>> 6;
+                if (word >= nulls.length) {
+                    nulls = Arrays.copyOf(nulls, Math.max(word + 1, nulls.length * 2));
+                }
+                nulls[word] |= 1L << row;
+                hasNulls = true;
+                return 0;
+            }
+            return addValue(row, value);
+        }
+
+        abstract long addValue(int row, Object value);
+
+        abstract void writeValues(StreamOutput out, int size) throws IOException;
+
+        @Override
+        final void writeTo(StreamOutput out, int size) throws IOException {
+            out.writeByte(kind);
+            if (hasNulls) {
+                int numWords = (size + 63) >>> 6;
+                out.writeVInt(numWords);
+                for (int i = 0; i < numWords; i++) {
+                    out.writeLong(i < nulls.length ? nulls[i] : 0L);
+                }
+            } else {
+                out.writeVInt(0);
+            }
+            writeValues(out, size);
+        }
+
+        final boolean isNull(int row) {
+            return hasNulls && (row >>> 6) < nulls.length && ColumnarBucket.isNull(nulls, row);
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(nulls, 0L);
+            hasNulls = false;
+        }
+    }
+
+    private static final class LongColumnWriter extends PrimitiveColumnWriter {
+
+        private long[] values = new long[16];
+
+        LongColumnWriter(byte kind) {
+            super(kind);
+        }
+
+        @Override
+        long addValue(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+            }
+            values[row] = ((Number) value).longValue();
+            return Long.BYTES;
+        }
+
+        @Override
+        void writeValues(StreamOutput out, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (isNull(i) == false) {
+                    out.writeZLong(values[i]);
+                }
+            }
+        }
+    }
+
+    private static final class DoubleColumnWriter extends PrimitiveColumnWriter {
+
+        private final boolean isFloat;
+        private double[] values = new double[16];
+
+        DoubleColumnWriter(byte kind) {
+            super(kind);
+            this.isFloat = kind == FLOAT;
+        }
+
+        @Override
+        long addValue(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+            }
+            values[row] = ((Number) value).doubleValue();
+            return Double.BYTES;
+        }
+
+        @Override
+        void writeValues(StreamOutput out, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                if (isNull(i) == false) {
+                    if (isFloat) {
+                        out.writeFloat((float) values[i]);
+                    } else {
+                        out.writeDouble(values[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class StringColumnWriter extends ColumnWriter {
+
+        private final ObjectIntHashMap<String> ordinalByValue = new ObjectIntHashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] ordinals = new int[16];
+
+        @Override
+        long add(int row, Object value) {
+            if (row >= ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(row + 1, ordinals.length * 2));
+            }
+            if (value == null) {
+                ordinals[row] = -1;
+                return Integer.BYTES;
+            }
+            String str = (String) value;
+            int idx = ordinalByValue.indexOf(str);
+            if (ordinalByValue.indexExists(idx)) {
+                ordinals[row] = ordinalByValue.indexGet(idx);
+                return Integer.BYTES;
+            }
+            int ordinal = dictionary.size();
+            dictionary.add(str);
+            ordinalByValue.indexInsert(idx, str, ordinal);
+            ordinals[row] = ordinal;
+            return Integer.BYTES + RamUsageEstimator.sizeOf(str);
+        }
+
+        @Override
+        void writeTo(StreamOutput out, int size) throws IOException {
+            out.writeByte(STRING);
+            out.writeVInt(dictionary.size());
+            for (String value : dictionary) {
+                out.writeString(value);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeVInt(ordinals[i] + 1);
+            }
+        }
+
+        @Override
+        void reset() {
+            ordinalByValue.clear();
+            dictionary.clear();
+        }
+    }
+
+    private static final class GenericColumnWriter extends ColumnWriter {
+
+        private final Streamer<?> streamer;
+        private BytesStreamOutput values = new BytesStreamOutput();
+
+        GenericColumnWriter(Streamer<?> streamer) {
+            this.streamer = streamer;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        long add(int row, Object value) {
+            long prevSize = values.size();
+            try {
+                ((Streamer) streamer).writeValueTo(values, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return values.size() - prevSize;
+        }
+
+        @Override
+        void writeTo(StreamOutput out, int size) throws IOException {
+            out.writeByte(GENERIC);
+            values.bytes().writeTo(out);
+        }
+
+        @Override
+        void reset() {
+            values = new BytesStreamOutput(values.size());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+
+        Object get(int row);
+    }
+
+    private static final class LongColumnReader implements ColumnReader {
+
+        private final byte kind;
+        private final long[] nulls;
+        private final long[] values;
+
+        LongColumnReader(byte kind, long[] nulls, long[] values) {
+            this.kind = kind;
+            this.nulls = nulls;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int row) {
+            if (isNull(nulls, row)) {
+                return null;
+            }
+            long value = values[row];
+            switch (kind) {
+                case BYTE:
+                    return (byte) value;
+                case SHORT:
+                    return (short) value;
+                case INTEGER:
+                    return (int) value;
+                default:
+                    return value;
+            }
+        }
+    }
+
+    private static final class DoubleColumnReader implements ColumnReader {
+
+        private final byte kind;
+        private final long[] nulls;
+        private final double[] values;
+
+        DoubleColumnReader(byte kind, long[] nulls, double[] values) {
+            this.kind = kind;
+            this.nulls = nulls;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int row) {
+            if (isNull(nulls, row)) {
+                return null;
+            }
+            return kind == FLOAT ? (Object) (float) values[row] : (Object) values[row];
+        }
+    }
+
+    private static final class RowIterator implements Iterator<Row> {
+
+        private final ColumnReader[] columns;
+        private final int size;
+        private final Row row;
+        private int pos = -1;
+
+        RowIterator(ColumnReader[] columns, int size) {
+            this.columns = columns;
+            this.size = size;
+            this.row = new Row() {
+                @Override
+                public int numColumns() {
+                    return columns.length;
+                }
+
+                @Override
+                public Object get(int index) {
+                    return columns[index].get(pos);
+                }
+            };
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos + 1 < size;
+        }
+
+        @Override
+        public Row next() {
+            if (hasNext() == false) {
+                throw new NoSuchElementException("Bucket has no more rows");
+            }
+            pos++;
+            return row;
+        }
+    }
+}
@@ -24,6 +24,8 @@ package io.crate.execution.engine.distribution;
 
 import io.crate.Streamer;
 import io.crate.data.Bucket;
+import io.crate.execution.jobs.PageBucketReceiver;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.transport.TransportRequest;
@@ -37,6 +39,7 @@ public class DistributedResultRequest extends TransportRequest {
     private final byte inputId;
     private final int executionPhaseId;
     private final int bucketIdx;
+    private int pageIdx = PageBucketReceiver.UNKNOWN_PAGE_IDX;
 
     private StreamBucket rows;
     private final UUID jobId;
@@ -58,7 +61,18 @@ public class DistributedResultRequest extends TransportRequest {
                                     int bucketIdx,
                                     StreamBucket rows,
                                     boolean isLast) {
+        this(jobId, executionPhaseId, inputId, bucketIdx, PageBucketReceiver.UNKNOWN_PAGE_IDX, rows, isLast);
+    }
+
+    public DistributedResultRequest(UUID jobId,
+                                    int executionPhaseId,
+                                    byte inputId,
+                                    int bucketIdx,
+                                    int pageIdx,
+                                    StreamBucket rows,
+                                    boolean isLast) {
         this(jobId, inputId, executionPhaseId, bucketIdx);
+        this.pageIdx = pageIdx;
         this.rows = rows;
         this.isLast = isLast;
     }
@@ -90,6 +104,14 @@ public class DistributedResultRequest extends TransportRequest {
         return bucketIdx;
     }
 
+    /**
+     * The sequence number of this page within the pages of the bucket, starting at 0,
+     * or {@link PageBucketReceiver#UNKNOWN_PAGE_IDX} if the sender doesn't number its pages.
+     */
+    public int pageIdx() {
+        return pageIdx;
+    }
+
     public Bucket readRows(Streamer<?>[] streamers) {
         rows.streamers(streamers);
         return rows;
@@ -115,6 +137,9 @@ public class DistributedResultRequest extends TransportRequest {
         bucketIdx = in.readVInt();
         isLast = in.readBoolean();
         inputId = in.readByte();
+        if (in.getVersion().onOrAfter(Version.V_4_2_0)) {
+            pageIdx = in.readInt();
+        }
 
         boolean failure = in.readBoolean();
         if (failure) {
@@ -134,6 +159,9 @@ public class DistributedResultRequest extends TransportRequest {
         out.writeVInt(bucketIdx);
         out.writeBoolean(isLast);
         out.writeByte(inputId);
+        if (out.getVersion().onOrAfter(Version.V_4_2_0)) {
+            out.writeInt(pageIdx);
+        }
 
         boolean failure = throwable != null;
         out.writeBoolean(failure);
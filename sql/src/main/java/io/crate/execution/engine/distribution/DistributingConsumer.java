@@ -33,6 +33,8 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -47,11 +49,40 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The rows from the source {@link BatchIterator} are "bucketed" using a {@link MultiBucketBuilder}. So a downstream
  * can either receive a part of the data or all data.
  *
- * Every time requests to the downstreams are made consumption of the source BatchIterator is stopped until a response
- * from all downstreams is received.
+ * Each downstream grants up to {@code maxPagesInFlight} credits: a page can be sent to a downstream if less than
+ * {@code maxPagesInFlight} of its pages are waiting for a response. Pages which can't be sent yet are queued per
+ * downstream. Consumption of the source BatchIterator is stopped while any downstream has queued pages and
+ * continues once a response returned a credit and all queues could be drained:
+ *
+ * <pre>
+ *     page 1 --> n1, n2      (in flight: n1=1, n2=1)
+ *     page 2 --> n1, n2      (in flight: n1=2, n2=2)
+ *     page 3 --> queued      (source paused)
+ *     n2 responds to page 1  --> page 3 sent to n2, n1 still queued
+ *     n1 responds to page 1  --> page 3 sent to n1, source continues
+ * </pre>
+ *
+ * Pages are numbered per downstream so that the receiver can process them in order, even if they arrive out of
+ * order.
  */
 public class DistributingConsumer implements RowConsumer {
 
+    private enum State {
+        /**
+         * The source is being consumed
+         */
+        PRODUCING,
+        /**
+         * Consumption is paused until the queued pages could be sent
+         */
+        WAITING_FOR_CREDITS,
+        /**
+         * No more pages are produced; waiting for the responses of the pages in flight
+         */
+        DRAINING,
+        DONE
+    }
+
     private final Logger logger;
     private final Executor responseExecutor;
     private final UUID jobId;
@@ -60,16 +91,21 @@ public class DistributingConsumer implements RowConsumer {
     private final int bucketIdx;
     private final TransportDistributedResultAction distributedResultAction;
     private final int pageSize;
+    private final int maxPagesInFlight;
     private final StreamBucket[] buckets;
     private final List<Downstream> downstreams;
     private final boolean traceEnabled;
     private final CompletableFuture<Void> completionFuture;
+    private final Object lock = new Object();
 
     @VisibleForTesting
     final MultiBucketBuilder multiBucketBuilder;
 
     private volatile Throwable failure;
 
+    @GuardedBy("lock")
+    private State state = State.PRODUCING;
+
     public DistributingConsumer(Logger logger,
                                 Executor responseExecutor,
                                 UUID jobId,
@@ -80,6 +116,31 @@ public class DistributingConsumer implements RowConsumer {
                                 Collection<String> downstreamNodeIds,
                                 TransportDistributedResultAction distributedResultAction,
                                 int pageSize) {
+        this(logger,
+            responseExecutor,
+            jobId,
+            multiBucketBuilder,
+            targetPhaseId,
+            inputId,
+            bucketIdx,
+            downstreamNodeIds,
+            distributedResultAction,
+            pageSize,
+            1);
+    }
+
+    public DistributingConsumer(Logger logger,
+                                Executor responseExecutor,
+                                UUID jobId,
+                                MultiBucketBuilder multiBucketBuilder,
+                                int targetPhaseId,
+                                byte inputId,
+                                int bucketIdx,
+                                Collection<String> downstreamNodeIds,
+                                TransportDistributedResultAction distributedResultAction,
+                                int pageSize,
+                                int maxPagesInFlight) {
+        assert maxPagesInFlight > 0 : "maxPagesInFlight must be greater than 0";
         this.traceEnabled = logger.isTraceEnabled();
         this.logger = logger;
         this.responseExecutor = responseExecutor;
@@ -90,6 +151,7 @@ public class DistributingConsumer implements RowConsumer {
         this.bucketIdx = bucketIdx;
         this.distributedResultAction = distributedResultAction;
         this.pageSize = pageSize;
+        this.maxPagesInFlight = maxPagesInFlight;
         this.buckets = new StreamBucket[downstreamNodeIds.size()];
         this.completionFuture = new CompletableFuture<>();
         downstreams = new ArrayList<>(downstreamNodeIds.size());
@@ -117,8 +179,9 @@ public class DistributingConsumer implements RowConsumer {
             while (it.moveNext()) {
                 multiBucketBuilder.add(it.currentElement());
                 if (multiBucketBuilder.size() >= pageSize || multiBucketBuilder.ramBytesUsed() >= Paging.MAX_PAGE_BYTES) {
-                    forwardResults(it, false);
-                    return;
+                    if (forwardResults(it, false) == false) {
+                        return;
+                    }
                 }
             }
             if (it.allLoaded()) {
@@ -128,15 +191,27 @@ public class DistributingConsumer implements RowConsumer {
                     if (t == null) {
                         consumeIt(it);
                     } else {
-                        forwardFailure(it, t);
+                        onSourceFailure(it, t);
                     }
                 });
             }
         } catch (Throwable t) {
-            forwardFailure(it, t);
+            onSourceFailure(it, t);
         }
     }
 
+    /**
+     * Forwards a failure of the source right away.
+     * Pages which are still in flight are answered by the downstreams once they've processed the failure.
+     */
+    private void onSourceFailure(BatchIterator<Row> it, Throwable t) {
+        synchronized (lock) {
+            state = State.DONE;
+            dropQueuedPages();
+        }
+        forwardFailure(it, t);
+    }
+
     private void forwardFailure(@Nullable final BatchIterator it, final Throwable f) {
         Throwable failure = SQLExceptions.unwrap(f); // make sure it's streamable
         AtomicInteger numActiveRequests = new AtomicInteger(downstreams.size());
@@ -187,77 +262,188 @@ public class DistributingConsumer implements RowConsumer {
         }
     }
 
-    private void forwardResults(BatchIterator<Row> it, boolean isLast) {
+    /**
+     * Builds the buckets of a page, queues them and sends as many queued pages as the credits allow.
+     *
+     * @return true if the source can be consumed further, false if consumption must be paused.
+     */
+    private boolean forwardResults(BatchIterator<Row> it, boolean isLast) {
         multiBucketBuilder.build(buckets);
 
-        AtomicInteger numActiveRequests = new AtomicInteger(downstreams.size());
-        for (int i = 0; i < downstreams.size(); i++) {
-            Downstream downstream = downstreams.get(i);
-            if (downstream.needsMoreData == false) {
-                countdownAndMaybeContinue(it, numActiveRequests, true);
-                continue;
+        List<Runnable> sends = new ArrayList<>(downstreams.size());
+        boolean continueConsumption;
+        Runnable finishAction = null;
+        synchronized (lock) {
+            if (failure != null || noDownstreamNeedsMoreData()) {
+                state = State.DRAINING;
+                dropQueuedPages();
+                finishAction = maybeFinish(it);
+                continueConsumption = false;
+            } else {
+                for (int i = 0; i < downstreams.size(); i++) {
+                    Downstream downstream = downstreams.get(i);
+                    if (downstream.needsMoreData) {
+                        downstream.queued.add(new DistributedResultRequest(
+                            jobId, targetPhaseId, inputId, bucketIdx, downstream.nextPageIdx++, buckets[i], isLast));
+                    }
+                    buckets[i] = null;
+                    takeSendablePages(it, downstream, sends);
+                }
+                if (isLast) {
+                    state = State.DRAINING;
+                    continueConsumption = false;
+                } else if (allQueuesEmpty()) {
+                    continueConsumption = true;
+                } else {
+                    state = State.WAITING_FOR_CREDITS;
+                    continueConsumption = false;
+                }
             }
-            if (traceEnabled) {
-                logger.trace("forwardResults targetNode={} jobId={} targetPhase={}/{} bucket={} isLast={}",
-                    downstream.nodeId, jobId, targetPhaseId, inputId, bucketIdx, isLast);
+        }
+        for (Runnable send : sends) {
+            send.run();
+        }
+        if (finishAction != null) {
+            finishAction.run();
+        }
+        return continueConsumption;
+    }
+
+    @GuardedBy("lock")
+    private void takeSendablePages(BatchIterator<Row> it, Downstream downstream, List<Runnable> sends) {
+        while (downstream.inFlight < maxPagesInFlight && downstream.queued.isEmpty() == false) {
+            DistributedResultRequest request = downstream.queued.poll();
+            downstream.inFlight++;
+            sends.add(() -> sendPage(it, downstream, request));
+        }
+    }
+
+    private void sendPage(BatchIterator<Row> it, Downstream downstream, DistributedResultRequest request) {
+        if (traceEnabled) {
+            logger.trace("forwardResults targetNode={} jobId={} targetPhase={}/{} bucket={} page={} isLast={}",
+                downstream.nodeId, jobId, targetPhaseId, inputId, bucketIdx, request.pageIdx(), request.isLast());
+        }
+        distributedResultAction.pushResult(
+            downstream.nodeId,
+            request,
+            new ActionListener<>() {
+                @Override
+                public void onResponse(DistributedResultResponse response) {
+                    onPageProcessed(it, downstream, response.needMore());
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    failure = e;
+                    // continue because it's necessary to send something to downstreams still waiting for data
+                    onPageProcessed(it, downstream, false);
+                }
             }
-            distributedResultAction.pushResult(
-                downstream.nodeId,
-                new DistributedResultRequest(jobId, targetPhaseId, inputId, bucketIdx, buckets[i], isLast),
-                new ActionListener<>() {
-                    @Override
-                    public void onResponse(DistributedResultResponse response) {
-                        downstream.needsMoreData = response.needMore();
-                        countdownAndMaybeContinue(it, numActiveRequests, false);
-                    }
+        );
+    }
 
-                    @Override
-                    public void onFailure(Exception e) {
-                        failure = e;
-                        downstream.needsMoreData = false;
-                        // continue because it's necessary to send something to downstreams still waiting for data
-                        countdownAndMaybeContinue(it, numActiveRequests, false);
-                    }
+    private void onPageProcessed(BatchIterator<Row> it, Downstream downstream, boolean needMore) {
+        List<Runnable> sends = new ArrayList<>(1);
+        boolean resume = false;
+        Runnable finishAction = null;
+        synchronized (lock) {
+            downstream.inFlight--;
+            if (needMore == false) {
+                downstream.needsMoreData = false;
+                downstream.queued.clear();
+            }
+            takeSendablePages(it, downstream, sends);
+            if (state == State.WAITING_FOR_CREDITS) {
+                if (failure != null || noDownstreamNeedsMoreData()) {
+                    state = State.DRAINING;
+                    dropQueuedPages();
+                } else if (allQueuesEmpty()) {
+                    state = State.PRODUCING;
+                    resume = true;
                 }
-            );
+            }
+            if (state == State.DRAINING) {
+                finishAction = maybeFinish(it);
+            }
+        }
+        for (Runnable send : sends) {
+            send.run();
+        }
+        if (resume) {
+            // try to dispatch to different executor, if it fails, forward the error in the same thread
+            try {
+                responseExecutor.execute(() -> consumeIt(it));
+            } catch (EsRejectedExecutionException e) {
+                onSourceFailure(it, e);
+            }
+        }
+        if (finishAction != null) {
+            finishAction.run();
         }
     }
 
-    private void countdownAndMaybeContinue(BatchIterator<Row> it, AtomicInteger numActiveRequests, boolean sameExecutor) {
-        if (numActiveRequests.decrementAndGet() == 0) {
-            if (downstreams.stream().anyMatch(Downstream::needsMoreData)) {
-                if (failure == null) {
-                    if (sameExecutor) {
-                        consumeIt(it);
-                    } else {
-                        // try to dispatch to different executor, if it fails, forward the error in the same thread
-                        try {
-                            responseExecutor.execute(() -> consumeIt(it));
-                        } catch (EsRejectedExecutionException e) {
-                            failure = e;
-                            forwardFailure(it, failure);
-                        }
-                    }
-                } else {
-                    forwardFailure(it, failure);
-                }
-            } else {
-                // If we've a failure we either communicated it to the other downstreams already,
-                // or were able to send results to all downstreams. In either case, *this* operation succeeded and the
-                // downstreams need to deal with failures.
+    /**
+     * @return the action to run once the responses of all pages in flight have been received, otherwise null.
+     */
+    @GuardedBy("lock")
+    @Nullable
+    private Runnable maybeFinish(BatchIterator<Row> it) {
+        assert state == State.DRAINING : "maybeFinish must only be called while draining";
+        for (int i = 0; i < downstreams.size(); i++) {
+            Downstream downstream = downstreams.get(i);
+            if (downstream.inFlight > 0 || downstream.queued.isEmpty() == false) {
+                return null;
+            }
+        }
+        state = State.DONE;
+        if (failure != null && noDownstreamNeedsMoreData() == false) {
+            Throwable f = failure;
+            return () -> forwardFailure(it, f);
+        }
+        // If we've a failure we either communicated it to the other downstreams already,
+        // or were able to send results to all downstreams. In either case, *this* operation succeeded and the
+        // downstreams need to deal with failures.
 
-                // The NodeDisconnectJobMonitorService takes care of node disconnects, so we don't have to manage
-                // that scenario.
-                it.close();
-                completionFuture.complete(null);
+        // The NodeDisconnectJobMonitorService takes care of node disconnects, so we don't have to manage
+        // that scenario.
+        return () -> {
+            it.close();
+            completionFuture.complete(null);
+        };
+    }
+
+    @GuardedBy("lock")
+    private void dropQueuedPages() {
+        for (int i = 0; i < downstreams.size(); i++) {
+            downstreams.get(i).queued.clear();
+        }
+    }
+
+    @GuardedBy("lock")
+    private boolean allQueuesEmpty() {
+        for (int i = 0; i < downstreams.size(); i++) {
+            if (downstreams.get(i).queued.isEmpty() == false) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private boolean noDownstreamNeedsMoreData() {
+        return downstreams.stream().noneMatch(Downstream::needsMoreData);
     }
 
     private static class Downstream {
 
         private final String nodeId;
-        private boolean needsMoreData = true;
+        private volatile boolean needsMoreData = true;
+
+        /**
+         * Pages which have been built but can't be sent until a credit is returned
+         */
+        private final ArrayDeque<DistributedResultRequest> queued = new ArrayDeque<>();
+        private int inFlight = 0;
+        private int nextPageIdx = 0;
 
         Downstream(String nodeId) {
             this.nodeId = nodeId;
@@ -272,6 +458,8 @@ public class DistributingConsumer implements RowConsumer {
             return "Downstream{" +
                    nodeId + '\'' +
                    ", needsMoreData=" + needsMoreData +
+                   ", inFlight=" + inFlight +
+                   ", queued=" + queued.size() +
                    '}';
         }
     }
@@ -283,6 +471,7 @@ public class DistributingConsumer implements RowConsumer {
                ", targetPhaseId=" + targetPhaseId +
                ", inputId=" + inputId +
                ", bucketIdx=" + bucketIdx +
+               ", maxPagesInFlight=" + maxPagesInFlight +
                ", downstreams=" + downstreams +
                '}';
     }
@@ -32,9 +32,14 @@ import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.StreamerVisitor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.ArrayList;
@@ -47,15 +52,24 @@ public class DistributingConsumerFactory {
 
     private static final String RESPONSE_EXECUTOR_NAME = ThreadPool.Names.SEARCH;
 
+    public static final Setting<Integer> MAX_PAGES_IN_FLIGHT_SETTING = Setting.intSetting(
+        "node.sql.distribution.max_pages_in_flight",
+        2,
+        1,
+        Setting.Property.NodeScope);
+
     private final ClusterService clusterService;
     private final Executor responseExecutor;
     private final TransportDistributedResultAction transportDistributedResultAction;
     private final Logger distributingDownstreamLogger;
+    private final int maxPagesInFlight;
 
     @Inject
-    public DistributingConsumerFactory(ClusterService clusterService,
+    public DistributingConsumerFactory(Settings settings,
+                                       ClusterService clusterService,
                                        ThreadPool threadPool,
                                        TransportDistributedResultAction transportDistributedResultAction) {
+        this.maxPagesInFlight = MAX_PAGES_IN_FLIGHT_SETTING.get(settings);
         this.clusterService = clusterService;
         this.responseExecutor = threadPool.executor(RESPONSE_EXECUTOR_NAME);
         this.transportDistributedResultAction = transportDistributedResultAction;
@@ -74,6 +88,9 @@ public class DistributingConsumerFactory {
 
         byte phaseInputId = nodeOperation.downstreamExecutionPhaseInputId();
         int bucketIdx = getBucketIdx(nodeOperation.executionPhase().nodeIds(), phaseInputId);
+        // columnar buckets and pages numbered for pipelining can only be processed by nodes on 4.2 or later
+        boolean onOrAfter42 = allDownstreamsOnOrAfter(nodeOperation.downstreamNodes(), Version.V_4_2_0);
+        boolean columnar = onOrAfter42;
 
         MultiBucketBuilder multiBucketBuilder;
         switch (distributionInfo.distributionType()) {
@@ -82,14 +99,16 @@ public class DistributingConsumerFactory {
                     multiBucketBuilder = new BroadcastingBucketBuilder(
                         streamers,
                         nodeOperation.downstreamNodes().size(),
-                        ramAccounting
+                        ramAccounting,
+                        columnar
                     );
                 } else {
                     multiBucketBuilder = new ModuloBucketBuilder(
                         streamers,
                         nodeOperation.downstreamNodes().size(),
                         distributionInfo.distributeByColumn(),
-                        ramAccounting
+                        ramAccounting,
+                        columnar
                     );
                 }
                 break;
@@ -97,7 +116,8 @@ public class DistributingConsumerFactory {
                 multiBucketBuilder = new BroadcastingBucketBuilder(
                     streamers,
                     nodeOperation.downstreamNodes().size(),
-                    ramAccounting
+                    ramAccounting,
+                    columnar
                 );
                 break;
             default:
@@ -114,10 +134,22 @@ public class DistributingConsumerFactory {
             bucketIdx,
             nodeOperation.downstreamNodes(),
             transportDistributedResultAction,
-            pageSize
+            pageSize,
+            onOrAfter42 ? maxPagesInFlight : 1
         );
     }
 
+    private boolean allDownstreamsOnOrAfter(Collection<String> downstreamNodeIds, Version version) {
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        for (String nodeId : downstreamNodeIds) {
+            DiscoveryNode node = nodes.get(nodeId);
+            if (node == null || node.getVersion().before(version)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return bucketIdx (= phaseInputID (8bit) | idx of localNode in nodeIds (24bit) )
      *
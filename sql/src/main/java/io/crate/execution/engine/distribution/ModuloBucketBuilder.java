@@ -42,11 +42,19 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
     private int size = 0;
 
     public ModuloBucketBuilder(Streamer<?>[] streamers, int numBuckets, int distributedByColumnIdx, RamAccounting ramAccounting) {
+        this(streamers, numBuckets, distributedByColumnIdx, ramAccounting, false);
+    }
+
+    public ModuloBucketBuilder(Streamer<?>[] streamers,
+                               int numBuckets,
+                               int distributedByColumnIdx,
+                               RamAccounting ramAccounting,
+                               boolean columnar) {
         this.numBuckets = numBuckets;
         this.distributedByColumnIdx = distributedByColumnIdx;
         this.bucketBuilders = new ArrayList<>(numBuckets);
         for (int i = 0; i < numBuckets; i++) {
-            bucketBuilders.add(new StreamBucket.Builder(streamers, ramAccounting));
+            bucketBuilders.add(new StreamBucket.Builder(streamers, ramAccounting, columnar));
         }
     }
 
@@ -28,6 +28,7 @@ import io.crate.data.Bucket;
 import io.crate.data.Row;
 import io.crate.data.RowN;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -48,6 +49,7 @@ public class StreamBucket implements Bucket, Writeable {
     private Streamer<?>[] streamers;
     private int size = -1;
     private BytesReference bytes;
+    private boolean columnar = false;
 
     public static class Builder implements Accountable {
 
@@ -58,18 +60,37 @@ public class StreamBucket implements Bucket, Writeable {
         private int size = 0;
         private BytesStreamOutput out;
         private int prevOutSize = 0;
+        @Nullable
+        private final ColumnarBucket.Builder columnarBuilder;
 
         public Builder(Streamer<?>[] streamers, RamAccounting ramAccounting) {
+            this(streamers, ramAccounting, false);
+        }
+
+        /**
+         * @param columnar if true the rows are encoded column by column, see {@link ColumnarBucket}.
+         *                 Only nodes on or after 4.2 can read such buckets.
+         */
+        public Builder(Streamer<?>[] streamers, RamAccounting ramAccounting, boolean columnar) {
             this.ramAccounting = requireNonNull(ramAccounting, "RamAccounting must not be null");
             assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
             this.streamers = streamers;
-            out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            if (columnar) {
+                columnarBuilder = new ColumnarBucket.Builder(streamers);
+            } else {
+                columnarBuilder = null;
+                out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            }
         }
 
         public void add(Row row) {
             assert streamers.length == row.numColumns() : "number of streamer must match row size";
 
             size++;
+            if (columnarBuilder != null) {
+                ramAccounting.addBytes(columnarBuilder.add(row));
+                return;
+            }
             for (int i = 0; i < row.numColumns(); i++) {
                 try {
                     //noinspection unchecked
@@ -85,12 +106,21 @@ public class StreamBucket implements Bucket, Writeable {
         public StreamBucket build() {
             StreamBucket sb = new StreamBucket(streamers);
             sb.size = size;
-            sb.bytes = out.bytes();
+            if (columnarBuilder == null) {
+                sb.bytes = out.bytes();
+            } else {
+                sb.bytes = columnarBuilder.build();
+                sb.columnar = true;
+            }
             return sb;
         }
 
         public void reset() {
-            out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            if (columnarBuilder == null) {
+                out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            } else {
+                columnarBuilder.reset();
+            }
             size = 0;
         }
 
@@ -179,6 +209,9 @@ public class StreamBucket implements Bucket, Writeable {
         }
         assert streamers != null : "streamers must not be null";
         try {
+            if (columnar) {
+                return ColumnarBucket.iterator(bytes, streamers, size);
+            }
             return new RowIterator(bytes.streamInput(), streamers, size);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -201,6 +234,9 @@ public class StreamBucket implements Bucket, Writeable {
     public StreamBucket(StreamInput in) throws IOException {
         size = in.readVInt();
         if (size > 0) {
+            if (in.getVersion().onOrAfter(Version.V_4_2_0)) {
+                columnar = in.readBoolean();
+            }
             bytes = in.readBytesReference();
         }
     }
@@ -217,7 +253,30 @@ public class StreamBucket implements Bucket, Writeable {
         assert size > -1 : "size must be > -1";
         out.writeVInt(size);
         if (size > 0) {
-            out.writeBytesReference(bytes);
+            if (out.getVersion().onOrAfter(Version.V_4_2_0)) {
+                out.writeBoolean(columnar);
+                out.writeBytesReference(bytes);
+            } else if (columnar) {
+                out.writeBytesReference(rowEncodedBytes());
+            } else {
+                out.writeBytesReference(bytes);
+            }
+        }
+    }
+
+    /**
+     * Re-encodes a columnar bucket row by row for nodes which can't read the columnar encoding.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private BytesReference rowEncodedBytes() throws IOException {
+        assert streamers != null : "streamers must not be null";
+        try (BytesStreamOutput rowOut = new BytesStreamOutput()) {
+            for (Row row : this) {
+                for (int i = 0; i < streamers.length; i++) {
+                    ((Streamer) streamers[i]).writeValueTo(rowOut, row.get(i));
+                }
+            }
+            return rowOut.bytes();
         }
     }
 }
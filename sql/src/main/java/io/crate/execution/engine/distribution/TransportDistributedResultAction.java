@@ -150,6 +150,7 @@ public class TransportDistributedResultAction implements NodeAction<DistributedR
             SendResponsePageResultListener pageResultListener = new SendResponsePageResultListener();
             pageBucketReceiver.setBucket(
                 request.bucketIdx(),
+                request.pageIdx(),
                 request.readRows(pageBucketReceiver.streamers()),
                 request.isLast(),
                 pageResultListener
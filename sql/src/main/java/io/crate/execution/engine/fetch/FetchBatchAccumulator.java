@@ -57,7 +57,8 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
     private final int fetchSize;
     private final FetchRowInputSymbolVisitor.Context collectRowContext;
     private final InputRow outputRow;
-    private final ArrayList<Object[]> inputValues = new ArrayList<>();
+    private ArrayList<Object[]> inputValues = new ArrayList<>();
+    private CompletableFuture<?> previousBatch = CompletableFuture.completedFuture(null);
 
     public FetchBatchAccumulator(TransactionContext txnCtx,
                                  FetchOperation fetchOperation,
@@ -82,7 +83,6 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
     @Override
     public void onItem(Row row) {
         Object[] cells = row.materialize();
-        collectRowContext.inputRow().cells(cells);
         for (int i : collectRowContext.fetchIdPositions()) {
             Object fetchId = cells[i];
             if (fetchId != null) {
@@ -92,13 +92,36 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
         inputValues.add(cells);
     }
 
+    /**
+     * Fetches the docs required by the items received since the last call.
+     * <p>
+     * The items and the docs to fetch are taken over by the batch, so that the items of the next batch can be
+     * received while this batch is being fetched and consumed.
+     * The last batch closes the fetch tasks on the nodes, so it is only sent once the previous batch has been fetched.
+     */
     @Override
     public CompletableFuture<Iterator<? extends Row>> processBatch(boolean isLastBatch) {
+        IntObjectHashMap<ReaderBucket> readerBuckets = context.takeReaderBuckets();
+        ArrayList<Object[]> batchValues = inputValues;
+        inputValues = new ArrayList<>(batchValues.size());
+        if (isLastBatch) {
+            return previousBatch
+                .handle((ignored, err) -> null)
+                .thenCompose(ignored -> fetch(readerBuckets, batchValues, true));
+        }
+        CompletableFuture<Iterator<? extends Row>> batch = fetch(readerBuckets, batchValues, false);
+        previousBatch = batch;
+        return batch;
+    }
+
+    private CompletableFuture<Iterator<? extends Row>> fetch(IntObjectHashMap<ReaderBucket> readerBuckets,
+                                                             ArrayList<Object[]> batchValues,
+                                                             boolean isLastBatch) {
         List<CompletableFuture<IntObjectMap<? extends Bucket>>> futures = new ArrayList<>();
         Iterator<Map.Entry<String, IntSet>> it = context.nodeToReaderIds.entrySet().iterator();
         while (it.hasNext()) {
             Map.Entry<String, IntSet> entry = it.next();
-            IntObjectHashMap<IntContainer> toFetch = generateToFetch(entry.getValue());
+            IntObjectHashMap<IntContainer> toFetch = generateToFetch(readerBuckets, entry.getValue());
             if (toFetch.isEmpty() && !isLastBatch) {
                 continue;
             }
@@ -112,28 +135,39 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
                 it.remove();
             }
         }
-        return CompletableFutures.allAsList(futures).thenApply(this::getRows);
+        return CompletableFutures.allAsList(futures).thenApply(results -> getRows(results, readerBuckets, batchValues));
     }
 
+    /**
+     * Closes the fetch tasks on the nodes.
+     * A batch may still be fetched in the background, so the close requests are only sent once it has completed.
+     * Otherwise the fetch tasks could release their searchers while they are still in use.
+     */
     @Override
     public void close() {
-        for (String nodeId : context.nodeToReaderIds.keySet()) {
-            fetchOperation.fetch(nodeId, new IntObjectHashMap<>(0), true)
-                .exceptionally(e -> {
-                    LOGGER.error("An error happened while sending close fetchRequest to node=" + nodeId, e);
-                    return null;
-                });
-        }
+        List<String> nodeIds = new ArrayList<>(context.nodeToReaderIds.keySet());
+        previousBatch.whenComplete((ignored, err) -> {
+            for (String nodeId : nodeIds) {
+                fetchOperation.fetch(nodeId, new IntObjectHashMap<>(0), true)
+                    .exceptionally(e -> {
+                        LOGGER.error("An error happened while sending close fetchRequest to node=" + nodeId, e);
+                        return null;
+                    });
+            }
+        });
     }
 
     @Override
     public void reset() {
         context.clearBuckets();
         inputValues.clear();
+        previousBatch = CompletableFuture.completedFuture(null);
     }
 
-    private Iterator<? extends Row> getRows(List<IntObjectMap<? extends Bucket>> results) {
-        applyResultToReaderBuckets(results);
+    private Iterator<? extends Row> getRows(List<IntObjectMap<? extends Bucket>> results,
+                                            IntObjectHashMap<ReaderBucket> readerBuckets,
+                                            ArrayList<Object[]> batchValues) {
+        applyResultToReaderBuckets(results, readerBuckets);
         return new Iterator<Row>() {
 
             final int[] fetchIdPositions = collectRowContext.fetchIdPositions();
@@ -146,7 +180,7 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
 
             @Override
             public boolean hasNext() {
-                return idx < inputValues.size();
+                return idx < batchValues.size();
             }
 
             @Override
@@ -154,7 +188,7 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
                 if (!hasNext()) {
                     throw new NoSuchElementException("Iterator is exhausted");
                 }
-                Object[] cells = inputValues.get(idx);
+                Object[] cells = batchValues.get(idx);
                 inputRow.cells(cells);
                 for (int i = 0; i < fetchIdPositions.length; i++) {
                     Object fetchIdObj = cells[fetchIdPositions[i]];
@@ -165,7 +199,7 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
                     long fetchId = (long) fetchIdObj;
                     int readerId = FetchId.decodeReaderId(fetchId);
                     int docId = FetchId.decodeDocId(fetchId);
-                    ReaderBucket readerBucket = context.getReaderBucket(readerId);
+                    ReaderBucket readerBucket = readerBuckets.get(readerId);
                     assert readerBucket != null : "readerBucket must not be null";
                     setPartitionRow(partitionRows, i, readerBucket);
                     fetchRows[i].cells(readerBucket.get(docId));
@@ -176,7 +210,8 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
                 if (!hasNext()) {
                     // free up memory - in case we're streaming data to the client
                     // this would otherwise grow to hold the whole result in-memory
-                    reset();
+                    batchValues.clear();
+                    readerBuckets.clear();
                 }
                 return outputRow;
             }
@@ -188,24 +223,26 @@ public class FetchBatchAccumulator implements BatchAccumulator<Row, Iterator<? e
         return fetchSize;
     }
 
-    private void applyResultToReaderBuckets(List<IntObjectMap<? extends Bucket>> results) {
+    private static void applyResultToReaderBuckets(List<IntObjectMap<? extends Bucket>> results,
+                                                   IntObjectHashMap<ReaderBucket> readerBuckets) {
         for (IntObjectMap<? extends Bucket> result : results) {
             if (result == null) {
                 continue;
             }
             for (IntObjectCursor<? extends Bucket> cursor : result) {
-                ReaderBucket readerBucket = context.getReaderBucket(cursor.key);
+                ReaderBucket readerBucket = readerBuckets.get(cursor.key);
                 readerBucket.fetched(cursor.value);
             }
         }
     }
 
-    private IntObjectHashMap<IntContainer> generateToFetch(IntSet readerIds) {
+    private static IntObjectHashMap<IntContainer> generateToFetch(IntObjectHashMap<ReaderBucket> readerBuckets,
+                                                                  IntSet readerIds) {
         IntObjectHashMap<IntContainer> toFetch = new IntObjectHashMap<>(readerIds.size());
         for (IntCursor readerIdCursor : readerIds) {
-            ReaderBucket readerBucket = context.readerBucket(readerIdCursor.value);
+            ReaderBucket readerBucket = readerBuckets.get(readerIdCursor.value);
             if (readerBucket != null && readerBucket.fetchRequired() && readerBucket.docs.size() > 0) {
-                toFetch.put(readerIdCursor.value, readerBucket.docs.keys());
+                toFetch.put(readerIdCursor.value, readerBucket.docIdsToFetch());
             }
         }
         return toFetch;
@@ -23,64 +23,135 @@
 package io.crate.execution.engine.fetch;
 
 import com.carrotsearch.hppc.IntContainer;
-import com.carrotsearch.hppc.cursors.IntCursor;
 import io.crate.Streamer;
 import io.crate.breaker.RamAccounting;
 import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.expression.InputRow;
 import io.crate.expression.reference.doc.lucene.CollectorContext;
 import io.crate.expression.reference.doc.lucene.LuceneCollectorExpression;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.List;
 
+/**
+ * Loads the values of the fetched columns of the docs of one reader.
+ * <p>
+ * A collector is re-used for the fetch requests of the same job, see {@link FetchTask#acquireCollector}.
+ * It must not be used concurrently.
+ */
 class FetchCollector {
 
+    /**
+     * Minimum number of sorted doc ids within a segment to use a stored fields reader optimized for
+     * sequential access, which decompresses each block of stored fields only once.
+     */
+    static final int MIN_SEQUENTIAL_DOCS = 10;
+
     private final LuceneCollectorExpression[] collectorExpressions;
     private final InputRow row;
     private final Streamer<?>[] streamers;
     private final List<LeafReaderContext> readerContexts;
-    private final RamAccounting ramAccounting;
+    private final CollectorContext collectorContext;
 
     FetchCollector(List<LuceneCollectorExpression<?>> collectorExpressions,
                    Streamer<?>[] streamers,
                    Engine.Searcher searcher,
                    IndexFieldDataService indexFieldDataService,
-                   RamAccounting ramAccounting,
                    int readerId) {
         // use toArray to avoid iterator allocations in docIds loop
         this.collectorExpressions = collectorExpressions.toArray(new LuceneCollectorExpression[0]);
         this.streamers = streamers;
         this.readerContexts = searcher.searcher().getIndexReader().leaves();
-        this.ramAccounting = ramAccounting;
-        CollectorContext collectorContext = new CollectorContext(indexFieldDataService::getForField, readerId);
+        this.collectorContext = new CollectorContext(indexFieldDataService::getForField, readerId);
         for (LuceneCollectorExpression<?> collectorExpression : this.collectorExpressions) {
             collectorExpression.startCollect(collectorContext);
         }
         this.row = new InputRow(collectorExpressions);
-
     }
 
-    private void setNextDocId(LeafReaderContext readerContext, int doc) throws IOException {
+    private void setNextReader(LeafReaderContext readerContext) throws IOException {
         for (LuceneCollectorExpression e : collectorExpressions) {
             e.setNextReader(readerContext);
+        }
+    }
+
+    private void setNextDocId(int doc) throws IOException {
+        for (LuceneCollectorExpression e : collectorExpressions) {
             e.setNextDocId(doc);
         }
     }
 
-    public StreamBucket collect(IntContainer docIds) throws IOException {
+    /**
+     * Collects the rows of the given docs, in the order of the doc ids.
+     * <p>
+     * If the doc ids are sorted, the expressions move forward through each segment once.
+     * Otherwise the segment is set again for each doc.
+     */
+    public StreamBucket collect(IntContainer docIds, RamAccounting ramAccounting) throws IOException {
         StreamBucket.Builder builder = new StreamBucket.Builder(streamers, ramAccounting);
-        for (IntCursor cursor : docIds) {
-            int docId = cursor.value;
-            int readerIndex = ReaderUtil.subIndex(docId, readerContexts);
-            LeafReaderContext subReaderContext = readerContexts.get(readerIndex);
-            setNextDocId(subReaderContext, docId - subReaderContext.docBase);
-            builder.add(row);
+        int[] ids = docIds.toArray();
+        boolean sorted = isSorted(ids);
+        LeafReaderContext subReaderContext = null;
+        int subReaderEnd = -1;
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                int docId = ids[i];
+                if (sorted == false || docId >= subReaderEnd) {
+                    int readerIndex = ReaderUtil.subIndex(docId, readerContexts);
+                    subReaderContext = readerContexts.get(readerIndex);
+                    subReaderEnd = subReaderContext.docBase + subReaderContext.reader().maxDoc();
+                    collectorContext.sourceLookup().setStoredFieldsReader(
+                        sorted ? sequentialStoredFieldsReader(subReaderContext, ids, i, subReaderEnd) : null);
+                    setNextReader(subReaderContext);
+                }
+                setNextDocId(docId - subReaderContext.docBase);
+                builder.add(row);
+            }
+        } finally {
+            collectorContext.sourceLookup().setStoredFieldsReader(null);
         }
         return builder.build();
     }
+
+    private static boolean isSorted(int[] ids) {
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i - 1] > ids[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a stored fields reader for sequential access if there are at least {@link #MIN_SEQUENTIAL_DOCS} docs of
+     *         the segment starting at {@code from}, otherwise null. The ids must be sorted, but may have gaps.
+     */
+    @Nullable
+    static StoredFieldsReader sequentialStoredFieldsReader(LeafReaderContext readerContext,
+                                                           int[] ids,
+                                                           int from,
+                                                           int subReaderEnd) {
+        int to = from;
+        while (to < ids.length && ids[to] < subReaderEnd) {
+            to++;
+        }
+        int numDocs = to - from;
+        if (numDocs < MIN_SEQUENTIAL_DOCS) {
+            return null;
+        }
+        LeafReader reader = FilterLeafReader.unwrap(readerContext.reader());
+        if (reader instanceof CodecReader) {
+            return ((CodecReader) reader).getFieldsReader().getMergeInstance();
+        }
+        return null;
+    }
 }
@@ -66,7 +66,8 @@ public class FetchProjector implements Projector {
                 outputSymbols,
                 fetchProjectorContext,
                 fetchSize
-            )
+            ),
+            true // fetch the next batch while the current one is consumed
         );
     }
 
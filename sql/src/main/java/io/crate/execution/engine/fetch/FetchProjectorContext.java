@@ -26,7 +26,6 @@ import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.IntSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
-import com.carrotsearch.hppc.cursors.ObjectCursor;
 import io.crate.Streamer;
 import io.crate.expression.symbol.Symbols;
 import io.crate.metadata.PartitionName;
@@ -47,7 +46,7 @@ public class FetchProjectorContext {
 
     private final TreeMap<Integer, String> readerIdToIndex;
     private final Map<String, RelationName> indexToTable;
-    private final IntObjectHashMap<ReaderBucket> readerBuckets = new IntObjectHashMap<>();
+    private IntObjectHashMap<ReaderBucket> readerBuckets = new IntObjectHashMap<>();
     private Map<String, IntObjectHashMap<Streamer[]>> nodeIdToReaderIdToStreamers;
 
     public FetchProjectorContext(Map<RelationName, FetchSource> tableToFetchSource,
@@ -61,10 +60,6 @@ public class FetchProjectorContext {
     }
 
 
-    ReaderBucket readerBucket(int readerId) {
-        return readerBuckets.get(readerId);
-    }
-
     ReaderBucket require(long fetchId) {
         int readerId = FetchId.decodeReaderId(fetchId);
         int docId = FetchId.decodeDocId(fetchId);
@@ -99,10 +94,6 @@ public class FetchProjectorContext {
         return partitionValues;
     }
 
-    ReaderBucket getReaderBucket(int readerId) {
-        return readerBuckets.get(readerId);
-    }
-
     @Nullable
     private FetchSource getFetchSource(int readerId) {
         String index = readerIdToIndex.floorEntry(readerId).getValue();
@@ -129,9 +120,17 @@ public class FetchProjectorContext {
         return nodeIdToReaderIdToStreamers;
     }
 
+    /**
+     * Returns the reader buckets of the docs required since the last call and starts with empty ones,
+     * so that the docs of the next batch can be required while the current batch is being fetched.
+     */
+    IntObjectHashMap<ReaderBucket> takeReaderBuckets() {
+        IntObjectHashMap<ReaderBucket> result = readerBuckets;
+        readerBuckets = new IntObjectHashMap<>(result.size());
+        return result;
+    }
+
     void clearBuckets() {
-        for (ObjectCursor<ReaderBucket> bucketCursor : readerBuckets.values()) {
-            bucketCursor.value.docs.clear();
-        }
+        readerBuckets = new IntObjectHashMap<>();
     }
 }
@@ -44,6 +44,7 @@ import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.ShardId;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -60,6 +61,7 @@ public class FetchTask extends AbstractTask {
 
     private final IntObjectHashMap<Engine.Searcher> searchers = new IntObjectHashMap<>();
     private final IntObjectHashMap<SharedShardContext> shardContexts = new IntObjectHashMap<>();
+    private final IntObjectHashMap<FetchCollector> idleCollectors = new IntObjectHashMap<>();
     private final FetchPhase phase;
     private final String localNodeId;
     private final SharedShardContexts sharedShardContexts;
@@ -177,6 +179,9 @@ public class FetchTask extends AbstractTask {
     }
 
     protected void innerClose() {
+        synchronized (idleCollectors) {
+            idleCollectors.clear();
+        }
         for (IntObjectCursor<Engine.Searcher> cursor : searchers) {
             cursor.value.close();
         }
@@ -234,6 +239,29 @@ public class FetchTask extends AbstractTask {
         return sharedShardContext.indexService();
     }
 
+    /**
+     * Takes a collector of a previous fetch request for the given reader, so that the expressions and the
+     * per-reader state don't have to be created again for each batch of the same job.
+     *
+     * @return the collector or null if there is none, in which case the caller has to create one.
+     *         The collector must be handed back using {@link #releaseCollector(int, FetchCollector)}.
+     */
+    @Nullable
+    FetchCollector acquireCollector(int readerId) {
+        synchronized (idleCollectors) {
+            return idleCollectors.remove(readerId);
+        }
+    }
+
+    void releaseCollector(int readerId, FetchCollector collector) {
+        if (isClosed()) {
+            return;
+        }
+        synchronized (idleCollectors) {
+            idleCollectors.put(readerId, collector);
+        }
+    }
+
     @Override
     public String toString() {
         return "FetchTask{" +
@@ -76,7 +76,16 @@ public class NodeFetchOperation {
             this.streamers = Symbols.streamerArray(refs);
         }
 
-        FetchCollector createCollector(int readerId, RamAccounting ramAccounting) {
+        FetchCollector acquireCollector(int readerId) {
+            FetchCollector collector = fetchTask.acquireCollector(readerId);
+            return collector == null ? createCollector(readerId) : collector;
+        }
+
+        void releaseCollector(int readerId, FetchCollector collector) {
+            fetchTask.releaseCollector(readerId, collector);
+        }
+
+        private FetchCollector createCollector(int readerId) {
             IndexService indexService = fetchTask.indexService(readerId);
             var mapperService = indexService.mapperService();
             LuceneReferenceResolver resolver = new LuceneReferenceResolver(
@@ -93,7 +102,6 @@ public class NodeFetchOperation {
                 streamers,
                 fetchTask.searcher(readerId),
                 indexService.fieldData(),
-                ramAccounting,
                 readerId
             );
         }
@@ -193,11 +201,10 @@ public class NodeFetchOperation {
             assert tfi != null : "tfi must not be null";
 
             CollectRunnable collectRunnable = new CollectRunnable(
-                tfi.createCollector(
-                    readerId,
-                    new BlockBasedRamAccounting(
-                        ramAccounting::addBytes,
-                        BlockBasedRamAccounting.MAX_BLOCK_SIZE_IN_BYTES)),
+                tfi,
+                new BlockBasedRamAccounting(
+                    ramAccounting::addBytes,
+                    BlockBasedRamAccounting.MAX_BLOCK_SIZE_IN_BYTES),
                 docIds,
                 fetched,
                 readerId,
@@ -226,7 +233,8 @@ public class NodeFetchOperation {
     }
 
     private static class CollectRunnable implements Runnable {
-        private final FetchCollector collector;
+        private final TableFetchInfo tableFetchInfo;
+        private final RamAccounting ramAccounting;
         private final IntContainer docIds;
         private final IntObjectHashMap<StreamBucket> fetched;
         private final int readerId;
@@ -235,7 +243,8 @@ public class NodeFetchOperation {
         private final CompletableFuture<IntObjectMap<StreamBucket>> resultFuture;
         private final AtomicBoolean contextKilledRef;
 
-        CollectRunnable(FetchCollector collector,
+        CollectRunnable(TableFetchInfo tableFetchInfo,
+                        RamAccounting ramAccounting,
                         IntContainer docIds,
                         IntObjectHashMap<StreamBucket> fetched,
                         int readerId,
@@ -243,7 +252,8 @@ public class NodeFetchOperation {
                         AtomicInteger threadLatch,
                         CompletableFuture<IntObjectMap<StreamBucket>> resultFuture,
                         AtomicBoolean contextKilledRef) {
-            this.collector = collector;
+            this.tableFetchInfo = tableFetchInfo;
+            this.ramAccounting = ramAccounting;
             this.docIds = docIds;
             this.fetched = fetched;
             this.readerId = readerId;
@@ -256,7 +266,10 @@ public class NodeFetchOperation {
         @Override
         public void run() {
             try {
-                StreamBucket bucket = collector.collect(docIds);
+                FetchCollector collector = tableFetchInfo.acquireCollector(readerId);
+                StreamBucket bucket = collector.collect(docIds, ramAccounting);
+                // only re-use a collector if it didn't fail, its state might be inconsistent otherwise
+                tableFetchInfo.releaseCollector(readerId, collector);
                 synchronized (fetched) {
                     fetched.put(readerId, bucket);
                 }
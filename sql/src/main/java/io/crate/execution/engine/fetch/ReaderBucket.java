@@ -22,12 +22,13 @@
 
 package io.crate.execution.engine.fetch;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntObjectHashMap;
-import com.carrotsearch.hppc.cursors.IntCursor;
 import io.crate.data.Bucket;
 import io.crate.data.Row;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Locale;
 
@@ -36,6 +37,8 @@ class ReaderBucket {
     private final boolean fetchRequired;
     final Object[] partitionValues;
     final IntObjectHashMap<Object[]> docs = new IntObjectHashMap<>();
+    @Nullable
+    private int[] requestedDocIds;
 
     ReaderBucket(boolean fetchRequired, @Nullable Object[] partitionValues) {
         this.fetchRequired = fetchRequired;
@@ -50,13 +53,25 @@ class ReaderBucket {
         return docs.get(doc);
     }
 
+    /**
+     * @return the ids of the required docs in ascending order, which allows sequential access of the stored fields.
+     *         The fetched rows must be in the same order.
+     */
+    IntArrayList docIdsToFetch() {
+        int[] docIds = docs.keys().toArray();
+        Arrays.sort(docIds);
+        requestedDocIds = docIds;
+        return IntArrayList.from(docIds);
+    }
+
     void fetched(Bucket bucket) {
-        assert bucket.size() == docs.size()
-            : String.format(Locale.ENGLISH, "requested %d docs but got %d", docs.size(), bucket.size());
+        assert requestedDocIds != null : "docIdsToFetch must be called before fetched";
+        assert bucket.size() == requestedDocIds.length
+            : String.format(Locale.ENGLISH, "requested %d docs but got %d", requestedDocIds.length, bucket.size());
 
         Iterator<Row> rowIterator = bucket.iterator();
-        for (IntCursor intCursor : docs.keys()) {
-            docs.indexReplace(intCursor.index, rowIterator.next().materialize());
+        for (int docId : requestedDocIds) {
+            docs.put(docId, rowIterator.next().materialize());
         }
         assert !rowIterator.hasNext() : "no more rows should exist";
     }
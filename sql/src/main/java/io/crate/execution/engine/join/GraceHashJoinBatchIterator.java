@@ -0,0 +1,212 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.CloseAssertingBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.SentinelRow;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Partitioned (grace) hash join, used if the build side doesn't fit into memory.
+ * <p>
+ * Both sides are first hash partitioned into files using {@link SpilledRowPartitions}, the left side once
+ * {@link SpillableLeftRows} detects memory pressure.
+ * Afterwards the partitions are joined pairwise by the regular block hash join:
+ *
+ * <pre>
+ *     for (partition in 0 .. numPartitions) {
+ *         join(leftPartitions[partition], rightPartitions[partition])
+ *         release the memory accounted for the left partition
+ *     }
+ * </pre>
+ * <p>
+ * Rows with equal join keys have equal hashes and so end up in the same partition. This makes it possible to join
+ * each pair of partitions independently, including the emission of unmatched rows for left, right and full outer
+ * joins.
+ * Each side is read once from its source and (in case a partition still fits into memory) once from disk, instead
+ * of scanning the right side once per block.
+ * <p>
+ * This iterator takes ownership of the partitions and deletes them on {@link #close()}.
+ */
+public class GraceHashJoinBatchIterator implements BatchIterator<Row> {
+
+    /**
+     * Upper bound for the number of partitions per side, to limit the number of files open while partitioning.
+     * If a partition doesn't fit into memory, the partition join falls back to loading the left partition block-wise.
+     */
+    static final int MAX_PARTITIONS = 256;
+
+    /**
+     * Lower bound for the number of partitions per side, used if the left side is expected to fit into memory.
+     */
+    static final int MIN_PARTITIONS = 8;
+
+    @FunctionalInterface
+    public interface PartitionJoin {
+
+        BatchIterator<Row> create(RamAccountingBatchIterator<Row> left, BatchIterator<Row> right, int numLeftRows);
+    }
+
+    private final SpilledRowPartitions left;
+    private final SpilledRowPartitions right;
+    private final PartitionJoin partitionJoin;
+    private final RowAccounting<Row> rowAccounting;
+
+    private int partition = 0;
+    @Nullable
+    private BatchIterator<Row> current;
+
+    public static BatchIterator<Row> newInstance(SpilledRowPartitions left,
+                                                 SpilledRowPartitions right,
+                                                 PartitionJoin partitionJoin,
+                                                 RowAccounting<Row> rowAccounting) {
+        return new CloseAssertingBatchIterator<>(
+            new GraceHashJoinBatchIterator(left, right, partitionJoin, rowAccounting));
+    }
+
+    private GraceHashJoinBatchIterator(SpilledRowPartitions left,
+                                       SpilledRowPartitions right,
+                                       PartitionJoin partitionJoin,
+                                       RowAccounting<Row> rowAccounting) {
+        assert left.numPartitions() == right.numPartitions() : "Both sides must have the same number of partitions";
+        this.left = left;
+        this.right = right;
+        this.partitionJoin = partitionJoin;
+        this.rowAccounting = rowAccounting;
+        this.current = createPartitionJoin(0);
+    }
+
+    /**
+     * Calculates the number of partitions needed so that a left partition is expected to fit into memory.
+     * <p>
+     * The planner only decides whether the left side is consumed completely before the right side, as all parallel
+     * executions of a distributed join must switch from consuming the left to consuming the right side at the same
+     * time. Each execution calculates the number of partitions itself, using the limit of its own query circuit
+     * breaker. Whether the rows are actually partitioned is decided at runtime, see {@link SpillableLeftRows}.
+     *
+     * @param limit the memory limit for queries, the limit of the query circuit breaker of the executing node
+     * @param numberOfRowsForLeft the number of left rows a single join execution is expected to receive
+     * @return the number of partitions, at least {@link #MIN_PARTITIONS} for the case that the left side is expected
+     *         to fit into memory but other operations put the circuit breaker under pressure.
+     */
+    public static int numberOfPartitions(long limit,
+                                         long estimatedRowSizeForLeft,
+                                         long numberOfRowsForLeft) {
+        if (estimatedRowSizeForLeft <= 0 || numberOfRowsForLeft <= 0 || limit <= 0) {
+            return MIN_PARTITIONS;
+        }
+        // leave room for the right side, the result and any concurrent operations
+        long budget = Math.max(1, limit / 2);
+        long estimatedSizeOfLeft = estimatedRowSizeForLeft * numberOfRowsForLeft;
+        // twice as many partitions as strictly necessary, to compensate for skew
+        long numPartitions = 2 * ((estimatedSizeOfLeft + budget - 1) / budget);
+        return (int) Math.max(MIN_PARTITIONS, Math.min(MAX_PARTITIONS, numPartitions));
+    }
+
+    private BatchIterator<Row> createPartitionJoin(int partition) {
+        return partitionJoin.create(
+            new RamAccountingBatchIterator<>(left.iterator(partition), rowAccounting),
+            right.iterator(partition),
+            left.numRows(partition)
+        );
+    }
+
+    private void closeCurrent() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        rowAccounting.release();
+    }
+
+    @Override
+    public Row currentElement() {
+        return current == null ? SentinelRow.SENTINEL : current.currentElement();
+    }
+
+    @Override
+    public void moveToStart() {
+        closeCurrent();
+        partition = 0;
+        current = createPartitionJoin(0);
+    }
+
+    @Override
+    public boolean moveNext() {
+        while (current != null) {
+            if (current.moveNext()) {
+                return true;
+            }
+            if (current.allLoaded() == false) {
+                return false;
+            }
+            closeCurrent();
+            partition++;
+            if (partition < left.numPartitions()) {
+                current = createPartitionJoin(partition);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeCurrent();
+        } finally {
+            left.close();
+            right.close();
+        }
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() throws Exception {
+        if (current == null) {
+            throw new IllegalStateException("BatchIterator already fully loaded");
+        }
+        return current.loadNextBatch();
+    }
+
+    @Override
+    public boolean allLoaded() {
+        return current == null || current.allLoaded();
+    }
+
+    @Override
+    public void kill(@Nonnull Throwable throwable) {
+        if (current != null) {
+            current.kill(throwable);
+        }
+    }
+
+    @Override
+    public boolean hasLazyResultSet() {
+        return true;
+    }
+}
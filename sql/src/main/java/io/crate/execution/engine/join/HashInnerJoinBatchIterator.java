@@ -22,7 +22,6 @@
 
 package io.crate.execution.engine.join;
 
-import com.carrotsearch.hppc.IntObjectHashMap;
 import io.crate.data.BatchIterator;
 import io.crate.data.Paging;
 import io.crate.data.Row;
@@ -30,9 +29,6 @@ import io.crate.data.UnsafeArrayRow;
 import io.crate.data.join.CombinedRow;
 import io.crate.data.join.JoinBatchIterator;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.function.IntSupplier;
 import java.util.function.Predicate;
@@ -75,6 +71,8 @@ import java.util.function.ToIntFunction;
  * <p>
  * This information is not available for the {@link HashInnerJoinBatchIterator}, so it's the responsibility of the
  * caller to provide those two functions that operate on the left and right rows accordingly and return the hash values.
+ * <p>
+ * The rows of a block are kept in a {@link HashJoinBuffer}, by default an {@link OnHeapHashJoinBuffer}.
  */
 public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row> {
 
@@ -87,14 +85,14 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
     private final ToIntFunction<Row> hashBuilderForLeft;
     private final ToIntFunction<Row> hashBuilderForRight;
     private final IntSupplier calculateBlockSize;
-    private final IntObjectHashMap<List<Object[]>> buffer;
+    private final HashJoinBuffer buffer;
 
     private int blockSize;
     private int numberOfRowsInBuffer = 0;
     private boolean leftBatchHasItems = false;
     private int numberOfLeftBatchesForBlock;
     private int numberOfLeftBatchesLoadedForBlock;
-    private Iterator<Object[]> leftMatchingRowsIterator;
+    private int leftMatchingPosition = HashJoinBuffer.NO_POSITION;
 
     public HashInnerJoinBatchIterator(RamAccountingBatchIterator<Row> left,
                                       BatchIterator<Row> right,
@@ -103,13 +101,31 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
                                       ToIntFunction<Row> hashBuilderForLeft,
                                       ToIntFunction<Row> hashBuilderForRight,
                                       IntSupplier calculateBlockSize) {
+        this(left,
+             right,
+             combiner,
+             joinCondition,
+             hashBuilderForLeft,
+             hashBuilderForRight,
+             calculateBlockSize,
+             new OnHeapHashJoinBuffer());
+    }
+
+    public HashInnerJoinBatchIterator(RamAccountingBatchIterator<Row> left,
+                                      BatchIterator<Row> right,
+                                      CombinedRow combiner,
+                                      Predicate<Row> joinCondition,
+                                      ToIntFunction<Row> hashBuilderForLeft,
+                                      ToIntFunction<Row> hashBuilderForRight,
+                                      IntSupplier calculateBlockSize,
+                                      HashJoinBuffer buffer) {
         super(left, right, combiner);
         this.joinCondition = joinCondition;
         this.hashBuilderForLeft = hashBuilderForLeft;
         this.hashBuilderForRight = hashBuilderForRight;
         this.calculateBlockSize = calculateBlockSize;
         // resized upon block size calculation
-        this.buffer = new IntObjectHashMap<>(0);
+        this.buffer = buffer;
         recreateBuffer();
         // initially 1 page/batch is loaded
         numberOfLeftBatchesLoadedForBlock = 1;
@@ -128,7 +144,7 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
         activeIt = left;
         recreateBuffer();
         ((RamAccountingBatchIterator) left).releaseAccountedRows();
-        leftMatchingRowsIterator = null;
+        leftMatchingPosition = HashJoinBuffer.NO_POSITION;
     }
 
     @Override
@@ -164,8 +180,7 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
 
     private void recreateBuffer() {
         blockSize = calculateBlockSize.getAsInt();
-        buffer.release();
-        buffer.ensureCapacity(blockSize);
+        buffer.clear(blockSize);
         numberOfRowsInBuffer = 0;
 
         // A batch is not guaranteed to deliver PAGE_SIZE number of rows. It could be more or less.
@@ -178,9 +193,9 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
     private boolean buildBufferAndMatchRight() {
         if (activeIt == left) {
             while (leftBatchHasItems = left.moveNext()) {
-                Object[] currentRow = left.currentElement().materialize();
                 int hash = hashBuilderForLeft.applyAsInt(left.currentElement());
-                addToBuffer(currentRow, hash);
+                buffer.add(left.currentElement(), hash);
+                numberOfRowsInBuffer++;
                 if (numberOfRowsInBuffer == blockSize) {
                     break;
                 }
@@ -197,15 +212,13 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
         }
 
         // In case of multiple matches on the left side (duplicate values or hash collisions)
-        if (leftMatchingRowsIterator != null && findMatchingRows()) {
+        if (findMatchingRows()) {
             return true;
         }
-        leftMatchingRowsIterator = null;
         while (right.moveNext()) {
             int rightHash = hashBuilderForRight.applyAsInt(right.currentElement());
-            List<Object[]> leftMatchingRows = buffer.get(rightHash);
-            if (leftMatchingRows != null) {
-                leftMatchingRowsIterator = leftMatchingRows.iterator();
+            leftMatchingPosition = buffer.firstPosition(rightHash);
+            if (leftMatchingPosition != HashJoinBuffer.NO_POSITION) {
                 combiner.setRight(right.currentElement());
                 if (findMatchingRows()) {
                     return true;
@@ -217,20 +230,10 @@ public class HashInnerJoinBatchIterator extends JoinBatchIterator<Row, Row, Row>
         return false;
     }
 
-    private void addToBuffer(Object[] currentRow, int hash) {
-        List<Object[]> existingRows = buffer.get(hash);
-        if (existingRows == null) {
-            existingRows = new ArrayList<>();
-            buffer.put(hash, existingRows);
-        }
-        existingRows.add(currentRow);
-        numberOfRowsInBuffer++;
-    }
-
-    @SuppressWarnings("unchecked")
     private boolean findMatchingRows() {
-        while (leftMatchingRowsIterator.hasNext()) {
-            leftRow.cells(leftMatchingRowsIterator.next());
+        while (leftMatchingPosition != HashJoinBuffer.NO_POSITION) {
+            leftRow.cells(buffer.get(leftMatchingPosition));
+            leftMatchingPosition = buffer.nextPosition(leftMatchingPosition);
             combiner.setLeft(leftRow);
             if (joinCondition.test(combiner.currentElement())) {
                 return true;
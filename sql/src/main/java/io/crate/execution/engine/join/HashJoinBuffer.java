@@ -0,0 +1,177 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.data.Row;
+
+import java.util.Arrays;
+
+/**
+ * Holds the rows of the current block of the left (build) side of a hash join.
+ * <p>
+ * Rows are addressed by their position, which is the order in which they've been added.
+ * The positions of rows with the same hash are chained in insertion order and the first and the last position of
+ * each chain are kept in a primitive open-addressing table:
+ *
+ * <pre>
+ *     hash(row) -> slot: [hash, firstPosition, lastPosition]
+ *     nextPosition[position] -> next position with the same hash or -1
+ * </pre>
+ *
+ * How the rows themselves are stored is up to the implementations.
+ */
+public abstract class HashJoinBuffer {
+
+    static final int NO_POSITION = -1;
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] slotHashes = new int[0];
+    private int[] slotFirstPositions = new int[0];
+    private int[] slotLastPositions = new int[0];
+    private int mask;
+    private int usedSlots;
+    private int resizeAt;
+
+    private int[] nextPositions = new int[0];
+    private int size;
+
+    /**
+     * Removes all rows and prepares the buffer to hold {@code expectedRows} rows without resizing.
+     */
+    public final void clear(int expectedRows) {
+        size = 0;
+        usedSlots = 0;
+        int capacity = capacityFor(expectedRows);
+        if (slotHashes.length == capacity) {
+            Arrays.fill(slotFirstPositions, NO_POSITION);
+        } else {
+            allocateSlots(capacity);
+        }
+        if (nextPositions.length < expectedRows) {
+            nextPositions = new int[expectedRows];
+        }
+        clearRows(expectedRows);
+    }
+
+    /**
+     * Adds a row to the buffer. Its position is the current {@link #size()}.
+     */
+    public final void add(Row row, int hash) {
+        int position = size;
+        addRow(row);
+        if (position == nextPositions.length) {
+            nextPositions = Arrays.copyOf(nextPositions, Math.max(MIN_CAPACITY, position + (position >> 1)));
+        }
+        nextPositions[position] = NO_POSITION;
+
+        int slot = findSlot(hash);
+        if (slotFirstPositions[slot] == NO_POSITION) {
+            slotHashes[slot] = hash;
+            slotFirstPositions[slot] = position;
+            usedSlots++;
+        } else {
+            nextPositions[slotLastPositions[slot]] = position;
+        }
+        slotLastPositions[slot] = position;
+        size++;
+        if (usedSlots > resizeAt) {
+            rehash();
+        }
+    }
+
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * @return the position of the first row with the given hash or {@link #NO_POSITION}
+     */
+    public final int firstPosition(int hash) {
+        return slotFirstPositions[findSlot(hash)];
+    }
+
+    /**
+     * @return the position of the next row with the same hash as the row at the given position or {@link #NO_POSITION}
+     */
+    public final int nextPosition(int position) {
+        return nextPositions[position];
+    }
+
+    /**
+     * @return the cells of the row at the given position.
+     *         The array may be re-used by the next call, callers must not hold on to it.
+     */
+    public abstract Object[] get(int position);
+
+    protected abstract void addRow(Row row);
+
+    protected abstract void clearRows(int expectedRows);
+
+    private int findSlot(int hash) {
+        int slot = mix(hash) & mask;
+        while (slotFirstPositions[slot] != NO_POSITION && slotHashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int capacityFor(int expectedRows) {
+        long required = (long) Math.ceil(Math.max(1, expectedRows) / LOAD_FACTOR) + 1;
+        long capacity = Math.max(MIN_CAPACITY, Long.highestOneBit(required - 1) << 1);
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Hash join buffer cannot hold " + expectedRows + " rows");
+        }
+        return (int) capacity;
+    }
+
+    private void allocateSlots(int capacity) {
+        slotHashes = new int[capacity];
+        slotFirstPositions = new int[capacity];
+        slotLastPositions = new int[capacity];
+        Arrays.fill(slotFirstPositions, NO_POSITION);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        int[] oldHashes = slotHashes;
+        int[] oldFirstPositions = slotFirstPositions;
+        int[] oldLastPositions = slotLastPositions;
+        allocateSlots(oldHashes.length << 1);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldFirstPositions[i] != NO_POSITION) {
+                int slot = findSlot(oldHashes[i]);
+                slotHashes[slot] = oldHashes[i];
+                slotFirstPositions[slot] = oldFirstPositions[i];
+                slotLastPositions[slot] = oldLastPositions[i];
+            }
+        }
+    }
+}
@@ -22,27 +22,66 @@
 
 package io.crate.execution.engine.join;
 
+import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowAccounting;
+import io.crate.breaker.RowAccountingWithEstimators;
 import io.crate.concurrent.CompletionListenable;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.CapturingRowConsumer;
 import io.crate.data.Paging;
 import io.crate.data.Row;
 import io.crate.data.RowConsumer;
 import io.crate.data.join.CombinedRow;
+import io.crate.exceptions.SQLExceptions;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.InputFactory;
 import io.crate.expression.symbol.Symbol;
 import io.crate.metadata.TransactionContext;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
 import java.util.function.Predicate;
 import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
 
 public class HashJoinOperation implements CompletionListenable {
 
+    /**
+     * The rows of the left side are kept in memory as they are, so they're accounted for without any container size.
+     * 32 extra bytes per row =
+     *    16 bytes for a slot of the HashJoinBuffer (3 ints with a load factor of 0.75)
+     *    4 bytes for the position of the next row with the same hash
+     *    8 bytes for the pointer to the row or the address of the row off-heap
+     *    4 bytes for the unused capacity of growing arrays
+     */
+    private static final int EXTRA_BYTES_PER_LEFT_ROW = 32;
+
+    /**
+     * Used for left rows which are already accounted for while they were buffered by {@link SpillableLeftRows}.
+     */
+    private static final RowAccounting<Row> ALREADY_ACCOUNTED = new RowAccounting<>() {
+
+        @Override
+        public void accountForAndMaybeBreak(Row row) {
+        }
+
+        @Override
+        public void release() {
+        }
+    };
+
     private final CapturingRowConsumer leftConsumer;
     private final CapturingRowConsumer rightConsumer;
     private final RowConsumer resultConsumer;
@@ -50,34 +89,78 @@ public class HashJoinOperation implements CompletionListenable {
     public HashJoinOperation(int numLeftCols,
                              int numRightCols,
                              RowConsumer nlResultConsumer,
+                             JoinType joinType,
                              Predicate<Row> joinPredicate,
                              List<Symbol> joinLeftInputs,
                              List<Symbol> joinRightInputs,
-                             RowAccounting<Row> rowAccounting,
+                             RamAccounting ramAccounting,
                              TransactionContext txnCtx,
                              InputFactory inputFactory,
                              CircuitBreaker circuitBreaker,
                              long estimatedRowSizeForLeft,
-                             long numberOfRowsForLeft) {
+                             long numberOfRowsForLeft,
+                             int numPartitions,
+                             Collection<DataType> leftOutputTypes,
+                             @Nullable Collection<DataType> rightOutputTypes,
+                             SpillPolicy spillPolicy,
+                             HashJoinBuffer buffer) {
 
         this.resultConsumer = nlResultConsumer;
+        RowAccounting<Row> rowAccounting =
+            new RowAccountingWithEstimators(leftOutputTypes, ramAccounting, EXTRA_BYTES_PER_LEFT_ROW);
         this.leftConsumer = new CapturingRowConsumer(false, nlResultConsumer.completionFuture());
         this.rightConsumer = new CapturingRowConsumer(true, nlResultConsumer.completionFuture());
         CompletableFuture.allOf(leftConsumer.capturedBatchIterator(), rightConsumer.capturedBatchIterator())
             .whenComplete((result, failure) -> {
                 if (failure == null) {
+                    BatchIterator<Row> left = leftConsumer.capturedBatchIterator().join();
+                    BatchIterator<Row> right = rightConsumer.capturedBatchIterator().join();
+                    ToIntFunction<Row> hashBuilderForLeft = getHashBuilderFromSymbols(txnCtx, inputFactory, joinLeftInputs);
+                    ToIntFunction<Row> hashBuilderForRight = getHashBuilderFromSymbols(txnCtx, inputFactory, joinRightInputs);
+
+                    // The types of the right side are missing if the phase was created by a node < 4.2.0
+                    if (numPartitions > 0 && rightOutputTypes != null) {
+                        createGraceHashJoinIterator(
+                            left,
+                            numLeftCols,
+                            leftOutputTypes,
+                            right,
+                            numRightCols,
+                            rightOutputTypes,
+                            joinType,
+                            joinPredicate,
+                            hashBuilderForLeft,
+                            hashBuilderForRight,
+                            ramAccounting,
+                            rowAccounting,
+                            circuitBreaker,
+                            estimatedRowSizeForLeft,
+                            spillPolicy,
+                            numPartitions,
+                            buffer
+                        ).whenComplete((joinIterator, err) -> {
+                            if (err == null) {
+                                nlResultConsumer.accept(joinIterator, null);
+                            } else {
+                                nlResultConsumer.accept(null, SQLExceptions.unwrap(err));
+                            }
+                        });
+                        return;
+                    }
+
                     BatchIterator<Row> joinIterator;
                     try {
                         joinIterator = createHashJoinIterator(
-                            leftConsumer.capturedBatchIterator().join(),
+                            new RamAccountingBatchIterator<>(left, rowAccounting),
                             numLeftCols,
-                            rightConsumer.capturedBatchIterator().join(),
+                            right,
                             numRightCols,
+                            joinType,
                             joinPredicate,
-                            getHashBuilderFromSymbols(txnCtx, inputFactory, joinLeftInputs),
-                            getHashBuilderFromSymbols(txnCtx, inputFactory, joinRightInputs),
-                            rowAccounting,
-                            new RamBlockSizeCalculator(Paging.PAGE_SIZE, circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft)
+                            hashBuilderForLeft,
+                            hashBuilderForRight,
+                            new RamBlockSizeCalculator(Paging.PAGE_SIZE, circuitBreaker, estimatedRowSizeForLeft, numberOfRowsForLeft),
+                            buffer
                         );
                         nlResultConsumer.accept(joinIterator, null);
                     } catch (Exception e) {
@@ -121,23 +204,180 @@ public class HashJoinOperation implements CompletionListenable {
         };
     }
 
-    private static BatchIterator<Row> createHashJoinIterator(BatchIterator<Row> left,
+    /**
+     * Consumes the left side completely before the right side is consumed. The left rows are kept in memory unless
+     * the {@link SpillPolicy} detects memory pressure while they are consumed; only then both sides are partitioned
+     * into files and joined partition by partition, see {@link GraceHashJoinBatchIterator}.
+     * <p>
+     * Whether the left side is consumed completely first must be decided by the planner, as all executions of a
+     * distributed join must consume their sides in the same order. The number of partitions is calculated by each
+     * execution, see {@link GraceHashJoinBatchIterator#numberOfPartitions(long, long, long)}.
+     */
+    private static CompletableFuture<BatchIterator<Row>> createGraceHashJoinIterator(BatchIterator<Row> left,
+                                                                                  int leftNumCols,
+                                                                                  Collection<DataType> leftOutputTypes,
+                                                                                  BatchIterator<Row> right,
+                                                                                  int rightNumCols,
+                                                                                  Collection<DataType> rightOutputTypes,
+                                                                                  JoinType joinType,
+                                                                                  Predicate<Row> joinCondition,
+                                                                                  ToIntFunction<Row> hashBuilderForLeft,
+                                                                                  ToIntFunction<Row> hashBuilderForRight,
+                                                                                  RamAccounting ramAccounting,
+                                                                                  RowAccounting<Row> rowAccounting,
+                                                                                  CircuitBreaker circuitBreaker,
+                                                                                  long estimatedRowSizeForLeft,
+                                                                                  SpillPolicy spillPolicy,
+                                                                                  int numPartitions,
+                                                                                  HashJoinBuffer buffer) {
+        SpillableLeftRows leftRows = new SpillableLeftRows(
+            spillPolicy,
+            ramAccounting,
+            rowAccounting,
+            numPartitions,
+            DataTypes.getStreamers(leftOutputTypes),
+            hashBuilderForLeft
+        );
+        CompletableFuture<BatchIterator<Row>> joinIterator = writeInto(
+            left, leftRows, SpillableLeftRows::add, SpillableLeftRows::finishWriting)
+            .thenCompose(ignored -> {
+                SpilledRowPartitions leftPartitions = leftRows.partitions();
+                if (leftPartitions == null) {
+                    // the rows are accounted for until the operation completes, so the join must not account them again.
+                    // They are all in memory already, so they're joined as a single block instead of re-checking the
+                    // breaker, which could split them into tiny blocks and rescan the right side for each of them.
+                    int blockSize = Math.max(1, leftRows.numInMemoryRows());
+                    return CompletableFuture.completedFuture(createHashJoinIterator(
+                        new RamAccountingBatchIterator<>(leftRows.inMemoryRows(), ALREADY_ACCOUNTED),
+                        leftNumCols,
+                        right,
+                        rightNumCols,
+                        joinType,
+                        joinCondition,
+                        hashBuilderForLeft,
+                        hashBuilderForRight,
+                        () -> blockSize,
+                        buffer
+                    ));
+                }
+                return partitionRight(right, rightOutputTypes, hashBuilderForRight, spillPolicy, leftRows.numPartitions())
+                    .thenApply(rightPartitions -> GraceHashJoinBatchIterator.newInstance(
+                        leftPartitions,
+                        rightPartitions,
+                        (leftPartition, rightPartition, numLeftRows) -> createHashJoinIterator(
+                            leftPartition,
+                            leftNumCols,
+                            rightPartition,
+                            rightNumCols,
+                            joinType,
+                            joinCondition,
+                            hashBuilderForLeft,
+                            hashBuilderForRight,
+                            // the number of rows of a partition is exact, use at least 1 to avoid the default block size
+                            new RamBlockSizeCalculator(
+                                Paging.PAGE_SIZE, circuitBreaker, estimatedRowSizeForLeft, Math.max(1, numLeftRows)),
+                            // the partitions are joined one after another, so they can share the buffer
+                            buffer
+                        ),
+                        rowAccounting
+                    ));
+            });
+        return joinIterator.whenComplete((it, err) -> {
+            if (err != null) {
+                leftRows.close();
+                // a failure on the left side means that the right side hasn't been consumed at all
+                right.close();
+            }
+        });
+    }
+
+    private static CompletableFuture<SpilledRowPartitions> partitionRight(BatchIterator<Row> right,
+                                                                         Collection<DataType> rightOutputTypes,
+                                                                         ToIntFunction<Row> hashBuilderForRight,
+                                                                         SpillPolicy spillPolicy,
+                                                                         int numPartitions) {
+        SpilledRowPartitions rightPartitions;
+        try {
+            rightPartitions = new SpilledRowPartitions(
+                spillPolicy.directory(),
+                "right",
+                numPartitions,
+                DataTypes.getStreamers(rightOutputTypes),
+                hashBuilderForRight
+            );
+        } catch (IOException e) {
+            right.close();
+            return CompletableFuture.failedFuture(e);
+        }
+        return writeInto(right, rightPartitions, SpilledRowPartitions::add, SpilledRowPartitions::finishWriting)
+            .whenComplete((ignored, err) -> {
+                if (err != null) {
+                    rightPartitions.close();
+                }
+            })
+            .thenApply(ignored -> rightPartitions);
+    }
+
+    private static <T> CompletableFuture<Void> writeInto(BatchIterator<Row> source,
+                                                         T target,
+                                                         BiConsumer<T, Row> add,
+                                                         FinishWriting<T> finishWriting) {
+        return BatchIterators.collect(source, Collector.of(() -> target, add, (a, b) -> a))
+            .whenComplete((result, err) -> source.close())
+            .thenAccept(result -> {
+                try {
+                    finishWriting.finish(result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    @FunctionalInterface
+    private interface FinishWriting<T> {
+
+        void finish(T target) throws IOException;
+    }
+
+    private static BatchIterator<Row> createHashJoinIterator(RamAccountingBatchIterator<Row> left,
                                                              int leftNumCols,
                                                              BatchIterator<Row> right,
                                                              int rightNumCols,
+                                                             JoinType joinType,
                                                              Predicate<Row> joinCondition,
                                                              ToIntFunction<Row> hashBuilderForLeft,
                                                              ToIntFunction<Row> hashBuilderForRight,
-                                                             RowAccounting<Row> rowAccounting,
-                                                             RamBlockSizeCalculator blockSizeCalculator) {
+                                                             IntSupplier blockSizeCalculator,
+                                                             HashJoinBuffer buffer) {
         CombinedRow combiner = new CombinedRow(leftNumCols, rightNumCols);
-        return new HashInnerJoinBatchIterator(
-            new RamAccountingBatchIterator<>(left, rowAccounting),
-            right,
-            combiner,
-            joinCondition,
-            hashBuilderForLeft,
-            hashBuilderForRight,
-            blockSizeCalculator);
+        switch (joinType) {
+            case INNER:
+                return new HashInnerJoinBatchIterator(
+                    left,
+                    right,
+                    combiner,
+                    joinCondition,
+                    hashBuilderForLeft,
+                    hashBuilderForRight,
+                    blockSizeCalculator,
+                    buffer);
+
+            case LEFT:
+            case RIGHT:
+            case FULL:
+                return new HashOuterJoinBatchIterator(
+                    left,
+                    right,
+                    combiner,
+                    joinType,
+                    joinCondition,
+                    hashBuilderForLeft,
+                    hashBuilderForRight,
+                    blockSizeCalculator,
+                    buffer);
+
+            default:
+                throw new AssertionError("Invalid joinType for hash join: " + joinType);
+        }
     }
 }
@@ -0,0 +1,308 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.data.BatchIterator;
+import io.crate.data.Paging;
+import io.crate.data.Row;
+import io.crate.data.UnsafeArrayRow;
+import io.crate.data.join.CombinedRow;
+import io.crate.data.join.JoinBatchIterator;
+import io.crate.planner.node.dql.join.JoinType;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Block hash join for the join types which need to keep track of the rows that found a match:
+ * {@link JoinType#LEFT}, {@link JoinType#RIGHT} and {@link JoinType#FULL}.
+ * <p>
+ * The left side is the build side and is loaded block-wise into the buffer exactly like in
+ * {@link HashInnerJoinBatchIterator}. In addition:
+ *
+ * <pre>
+ *     Probe Phase (per block):
+ *     for (rightRow in right) {
+ *         for (leftRow in Buffer matching hash(rightRow)) {
+ *             if (joinCondition matches) {
+ *                 mark leftRow and rightRow as matched
+ *                 emit(combinedRow)
+ *             }
+ *         }
+ *         RIGHT/FULL: if (lastBlock && rightRow never matched) emit(null, rightRow)
+ *     }
+ *
+ *     After the right side is exhausted:
+ *     LEFT/FULL: for (leftRow in Buffer not matched) emit(leftRow, null)
+ * </pre>
+ * <p>
+ * Matches of the build side only have to be tracked per block, because every block sees the whole right side.
+ * Matches of the right side are tracked by the position of the row within the right side across all blocks, so
+ * that unmatched right rows can be emitted while the right side is scanned for the last block.
+ * <p>
+ * The rows of a block are kept in a {@link HashJoinBuffer}, by default an {@link OnHeapHashJoinBuffer}.
+ */
+public class HashOuterJoinBatchIterator extends JoinBatchIterator<Row, Row, Row> {
+
+    private final Predicate<Row> joinCondition;
+    private final boolean emitsUnmatchedLeft;
+    private final boolean emitsUnmatchedRight;
+
+    /**
+     * Used to avoid instantiating multiple times RowN in {@link #findMatchingRows()}
+     */
+    private final UnsafeArrayRow leftRow = new UnsafeArrayRow();
+    private final ToIntFunction<Row> hashBuilderForLeft;
+    private final ToIntFunction<Row> hashBuilderForRight;
+    private final IntSupplier calculateBlockSize;
+
+    private final HashJoinBuffer buffer;
+    private final BitSet matchedLeftRows = new BitSet();
+    private final BitSet matchedRightRows = new BitSet();
+
+    private int blockSize;
+    private int numberOfRowsInBuffer = 0;
+    private boolean leftBatchHasItems = false;
+    private int numberOfLeftBatchesForBlock;
+    private int numberOfLeftBatchesLoadedForBlock;
+    private boolean isLastBlock = false;
+
+    private int rightPosition = -1;
+    private int unmatchedLeftPosition = 0;
+    private int leftMatchingPosition = HashJoinBuffer.NO_POSITION;
+
+    public HashOuterJoinBatchIterator(RamAccountingBatchIterator<Row> left,
+                                      BatchIterator<Row> right,
+                                      CombinedRow combiner,
+                                      JoinType joinType,
+                                      Predicate<Row> joinCondition,
+                                      ToIntFunction<Row> hashBuilderForLeft,
+                                      ToIntFunction<Row> hashBuilderForRight,
+                                      IntSupplier calculateBlockSize) {
+        this(left,
+             right,
+             combiner,
+             joinType,
+             joinCondition,
+             hashBuilderForLeft,
+             hashBuilderForRight,
+             calculateBlockSize,
+             new OnHeapHashJoinBuffer());
+    }
+
+    public HashOuterJoinBatchIterator(RamAccountingBatchIterator<Row> left,
+                                      BatchIterator<Row> right,
+                                      CombinedRow combiner,
+                                      JoinType joinType,
+                                      Predicate<Row> joinCondition,
+                                      ToIntFunction<Row> hashBuilderForLeft,
+                                      ToIntFunction<Row> hashBuilderForRight,
+                                      IntSupplier calculateBlockSize,
+                                      HashJoinBuffer buffer) {
+        super(left, right, combiner);
+        assert joinType == JoinType.LEFT || joinType == JoinType.RIGHT || joinType == JoinType.FULL
+            : "HashOuterJoinBatchIterator doesn't support joinType=" + joinType;
+        this.joinCondition = joinCondition;
+        this.emitsUnmatchedLeft = joinType == JoinType.LEFT || joinType == JoinType.FULL;
+        this.emitsUnmatchedRight = joinType == JoinType.RIGHT || joinType == JoinType.FULL;
+        this.hashBuilderForLeft = hashBuilderForLeft;
+        this.hashBuilderForRight = hashBuilderForRight;
+        this.calculateBlockSize = calculateBlockSize;
+        // resized upon block size calculation
+        this.buffer = buffer;
+        recreateBuffer();
+        // initially 1 page/batch is loaded
+        numberOfLeftBatchesLoadedForBlock = 1;
+        this.activeIt = left;
+    }
+
+    @Override
+    public Row currentElement() {
+        return combiner.currentElement();
+    }
+
+    @Override
+    public void moveToStart() {
+        left.moveToStart();
+        right.moveToStart();
+        activeIt = left;
+        recreateBuffer();
+        ((RamAccountingBatchIterator) left).releaseAccountedRows();
+        matchedRightRows.clear();
+        rightPosition = -1;
+        isLastBlock = false;
+        leftMatchingPosition = HashJoinBuffer.NO_POSITION;
+    }
+
+    @Override
+    public CompletionStage<?> loadNextBatch() throws Exception {
+        if (activeIt == left) {
+            numberOfLeftBatchesLoadedForBlock++;
+        }
+        return super.loadNextBatch();
+    }
+
+    @Override
+    public boolean moveNext() {
+        while (buildBufferAndMatchRight() == false) {
+            if (right.allLoaded() && leftBatchHasItems == false && left.allLoaded()) {
+                // both sides are fully loaded, we're done here
+                return false;
+            } else if (activeIt == left) {
+                // left needs the next batch loaded
+                return false;
+            } else if (right.allLoaded()) {
+                right.moveToStart();
+                rightPosition = -1;
+                activeIt = left;
+                recreateBuffer();
+                ((RamAccountingBatchIterator) left).releaseAccountedRows();
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recreateBuffer() {
+        blockSize = calculateBlockSize.getAsInt();
+        buffer.clear(blockSize);
+        matchedLeftRows.clear();
+        numberOfRowsInBuffer = 0;
+        unmatchedLeftPosition = 0;
+
+        // A batch is not guaranteed to deliver PAGE_SIZE number of rows. It could be more or less.
+        // So we cannot rely on that to decide if processing 1 block is done, we must also know and track how much
+        // batches should be required for processing 1 block.
+        numberOfLeftBatchesForBlock = Math.max(1, (int) Math.ceil((double) blockSize / Paging.PAGE_SIZE));
+        numberOfLeftBatchesLoadedForBlock = leftBatchHasItems ? 1 : 0;
+    }
+
+    private boolean buildBufferAndMatchRight() {
+        if (activeIt == left) {
+            while (leftBatchHasItems = left.moveNext()) {
+                int hash = hashBuilderForLeft.applyAsInt(left.currentElement());
+                buffer.add(left.currentElement(), hash);
+                numberOfRowsInBuffer++;
+                if (numberOfRowsInBuffer == blockSize) {
+                    break;
+                }
+            }
+
+            if (mustLoadLeftNextBatch()) {
+                // we should load the left side
+                return false;
+            }
+
+            if (mustSwitchToRight()) {
+                activeIt = right;
+                // Unmatched right rows can only be emitted once the right side was probed against all blocks
+                isLastBlock = left.allLoaded() && leftBatchHasItems == false;
+            }
+        }
+
+        // In case of multiple matches on the left side (duplicate values or hash collisions)
+        if (leftMatchingPosition != HashJoinBuffer.NO_POSITION) {
+            if (findMatchingRows()) {
+                return true;
+            }
+            if (isUnmatchedRightRow()) {
+                return true;
+            }
+        }
+        while (right.moveNext()) {
+            rightPosition++;
+            combiner.setRight(right.currentElement());
+            int rightHash = hashBuilderForRight.applyAsInt(right.currentElement());
+            leftMatchingPosition = buffer.firstPosition(rightHash);
+            if (findMatchingRows()) {
+                return true;
+            }
+            if (isUnmatchedRightRow()) {
+                return true;
+            }
+        }
+        if (right.allLoaded()) {
+            return moveToNextUnmatchedLeftRow();
+        }
+        // need to load the next batch of the right relation
+        return false;
+    }
+
+    private boolean findMatchingRows() {
+        while (leftMatchingPosition != HashJoinBuffer.NO_POSITION) {
+            int leftPosition = leftMatchingPosition;
+            leftMatchingPosition = buffer.nextPosition(leftPosition);
+            leftRow.cells(buffer.get(leftPosition));
+            combiner.setLeft(leftRow);
+            if (joinCondition.test(combiner.currentElement())) {
+                matchedLeftRows.set(leftPosition);
+                if (emitsUnmatchedRight) {
+                    matchedRightRows.set(rightPosition);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUnmatchedRightRow() {
+        if (emitsUnmatchedRight && isLastBlock && matchedRightRows.get(rightPosition) == false) {
+            combiner.nullLeft();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean moveToNextUnmatchedLeftRow() {
+        if (emitsUnmatchedLeft == false) {
+            return false;
+        }
+        int leftPosition = matchedLeftRows.nextClearBit(unmatchedLeftPosition);
+        if (leftPosition < numberOfRowsInBuffer) {
+            unmatchedLeftPosition = leftPosition + 1;
+            leftRow.cells(buffer.get(leftPosition));
+            combiner.setLeft(leftRow);
+            combiner.nullRight();
+            return true;
+        }
+        unmatchedLeftPosition = numberOfRowsInBuffer;
+        return false;
+    }
+
+    private boolean mustSwitchToRight() {
+        return left.allLoaded()
+               || numberOfRowsInBuffer == blockSize
+               || (leftBatchHasItems == false && numberOfLeftBatchesLoadedForBlock == numberOfLeftBatchesForBlock);
+    }
+
+    private boolean mustLoadLeftNextBatch() {
+        return leftBatchHasItems == false
+               && left.allLoaded() == false
+               && numberOfRowsInBuffer < blockSize
+               && numberOfLeftBatchesLoadedForBlock < numberOfLeftBatchesForBlock;
+    }
+}
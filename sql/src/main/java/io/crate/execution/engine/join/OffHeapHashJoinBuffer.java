@@ -0,0 +1,138 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.data.Row;
+import io.crate.memory.MemoryManager;
+import io.netty.buffer.ByteBuf;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A {@link HashJoinBuffer} which serializes the rows using the {@link Streamer}s of the column types into
+ * {@link ByteBuf} pages allocated by a {@link MemoryManager}.
+ * <p>
+ * Each row is stored as its length followed by the serialized values. The heap only holds the page and offset of
+ * each row, so the footprint of a block on the heap is independent of the size of the rows.
+ * <p>
+ * The pages are owned by the {@link MemoryManager} and are re-used for the next block once the buffer is cleared.
+ */
+public final class OffHeapHashJoinBuffer extends HashJoinBuffer {
+
+    static final int PAGE_SIZE_IN_BYTES = 1 << 20;
+
+    private final MemoryManager memoryManager;
+    private final Streamer[] streamers;
+    private final Object[] cells;
+    private final ArrayList<ByteBuf> pages = new ArrayList<>();
+    private final BytesStreamOutput rowOut = new BytesStreamOutput();
+    private byte[] rowIn = new byte[0];
+
+    /**
+     * page index (upper 32 bits) and offset within the page (lower 32 bits) of each row
+     */
+    private long[] rowAddresses = new long[0];
+    private int currentPage = -1;
+
+    public OffHeapHashJoinBuffer(MemoryManager memoryManager, Streamer<?>[] streamers) {
+        this.memoryManager = memoryManager;
+        this.streamers = streamers;
+        this.cells = new Object[streamers.length];
+    }
+
+    @Override
+    public Object[] get(int position) {
+        long address = rowAddresses[position];
+        ByteBuf page = pages.get((int) (address >>> 32));
+        int offset = (int) address;
+        int length = page.getInt(offset);
+        if (rowIn.length < length) {
+            rowIn = new byte[length];
+        }
+        page.getBytes(offset + Integer.BYTES, rowIn, 0, length);
+        StreamInput in = StreamInput.wrap(rowIn, 0, length);
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                cells[i] = streamers[i].readValueFrom(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return cells;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void addRow(Row row) {
+        rowOut.reset();
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                streamers[i].writeValueTo(rowOut, row.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BytesRef bytes = rowOut.bytes().toBytesRef();
+        ByteBuf page = pageFor(Integer.BYTES + bytes.length);
+
+        int position = size();
+        if (position == rowAddresses.length) {
+            rowAddresses = Arrays.copyOf(rowAddresses, Math.max(16, position + (position >> 1)));
+        }
+        rowAddresses[position] = ((long) currentPage << 32) | page.writerIndex();
+        page.writeInt(bytes.length);
+        page.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+    }
+
+    private ByteBuf pageFor(int numBytes) {
+        if (currentPage >= 0 && pages.get(currentPage).writableBytes() >= numBytes) {
+            return pages.get(currentPage);
+        }
+        currentPage++;
+        if (currentPage < pages.size() && pages.get(currentPage).capacity() >= numBytes) {
+            return pages.get(currentPage);
+        }
+        // Pages must not be released by us, a page that is too small stays behind the new one to be re-used later
+        ByteBuf page = memoryManager.allocate(Math.max(PAGE_SIZE_IN_BYTES, numBytes));
+        pages.add(currentPage, page);
+        return page;
+    }
+
+    @Override
+    protected void clearRows(int expectedRows) {
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).clear();
+        }
+        currentPage = -1;
+        if (rowAddresses.length < expectedRows) {
+            rowAddresses = new long[expectedRows];
+        }
+    }
+}
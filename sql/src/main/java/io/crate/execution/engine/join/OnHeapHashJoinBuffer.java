@@ -0,0 +1,51 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.data.Row;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link HashJoinBuffer} which keeps the rows materialized on the heap.
+ */
+public final class OnHeapHashJoinBuffer extends HashJoinBuffer {
+
+    private final ArrayList<Object[]> rows = new ArrayList<>();
+
+    @Override
+    public Object[] get(int position) {
+        return rows.get(position);
+    }
+
+    @Override
+    protected void addRow(Row row) {
+        rows.add(row.materialize());
+    }
+
+    @Override
+    protected void clearRows(int expectedRows) {
+        rows.clear();
+        rows.ensureCapacity(expectedRows);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.breaker.RowAccounting;
+import io.crate.common.collections.Lists2;
+import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import io.crate.execution.engine.SpillPolicy;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.function.ToIntFunction;
+
+/**
+ * The rows of the left side of a hash join which is consumed completely before the right side.
+ * <p>
+ * The rows are kept in memory until the {@link SpillPolicy} detects that the circuit breaker is under pressure.
+ * Then the buffered rows and all following rows are hash partitioned into {@link SpilledRowPartitions} and the
+ * memory accounted for the buffered rows is released. The number of partitions is only used once the rows are
+ * spilled; if the rows fit into memory, the join is executed in memory.
+ */
+final class SpillableLeftRows implements Closeable {
+
+    private final SpillPolicy spillPolicy;
+    private final RamAccounting ramAccounting;
+    private final RowAccounting<Row> rowAccounting;
+    private final int numPartitions;
+    private final Streamer<?>[] streamers;
+    private final ToIntFunction<Row> hashBuilder;
+    private final ArrayList<Object[]> rows = new ArrayList<>();
+
+    @Nullable
+    private SpilledRowPartitions partitions;
+
+    /**
+     * @param ramAccounting the RamAccounting used by {@code rowAccounting}. It is released after the rows are spilled,
+     *                      so it must not be shared with other operations.
+     */
+    SpillableLeftRows(SpillPolicy spillPolicy,
+                      RamAccounting ramAccounting,
+                      RowAccounting<Row> rowAccounting,
+                      int numPartitions,
+                      Streamer<?>[] streamers,
+                      ToIntFunction<Row> hashBuilder) {
+        this.spillPolicy = spillPolicy;
+        this.ramAccounting = ramAccounting;
+        this.rowAccounting = rowAccounting;
+        this.numPartitions = numPartitions;
+        this.streamers = streamers;
+        this.hashBuilder = hashBuilder;
+    }
+
+    void add(Row row) {
+        if (partitions != null) {
+            partitions.add(row);
+            return;
+        }
+        rowAccounting.accountForAndMaybeBreak(row);
+        rows.add(row.materialize());
+        if (spillPolicy.shouldSpill(ramAccounting.totalBytes())) {
+            spill();
+        }
+    }
+
+    private void spill() {
+        try {
+            partitions = new SpilledRowPartitions(
+                spillPolicy.directory(), "left", numPartitions, streamers, hashBuilder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        RowN row = new RowN(streamers.length);
+        for (Object[] cells : rows) {
+            row.cells(cells);
+            partitions.add(row);
+        }
+        rows.clear();
+        rows.trimToSize();
+        ramAccounting.release();
+    }
+
+    /**
+     * Must be called after all rows have been added.
+     */
+    void finishWriting() throws IOException {
+        if (partitions != null) {
+            partitions.finishWriting();
+        }
+    }
+
+    /**
+     * @return the partitions of the rows or null if the rows fit into memory.
+     */
+    @Nullable
+    SpilledRowPartitions partitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the number of partitions the right side must be split into, the same as the left side.
+     */
+    int numPartitions() {
+        return numPartitions;
+    }
+
+    int numInMemoryRows() {
+        return rows.size();
+    }
+
+    /**
+     * @return the rows held in memory if they haven't been spilled. They stay accounted for until the operation
+     *         releases the RamAccounting.
+     */
+    BatchIterator<Row> inMemoryRows() {
+        assert partitions == null : "The rows have been spilled";
+        return InMemoryBatchIterator.of(Lists2.map(rows, RowN::new), SentinelRow.SENTINEL, true);
+    }
+
+    @Override
+    public void close() {
+        if (partitions != null) {
+            partitions.close();
+        }
+    }
+}
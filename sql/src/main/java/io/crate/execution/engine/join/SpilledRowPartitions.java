@@ -0,0 +1,212 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.data.SentinelRow;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * The rows of one side of a {@link GraceHashJoinBatchIterator}, hash partitioned into one file per partition.
+ * <p>
+ * Rows are written using the {@link Streamer}s of the column types. The number of rows per partition is kept in
+ * memory, so a partition file is a plain sequence of values without any framing.
+ * <p>
+ * Rows with the same hash always end up in the same partition, so joining the partitions pairwise covers all
+ * matches.
+ */
+public final class SpilledRowPartitions implements Closeable {
+
+    private final Path[] files;
+    private final StreamOutput[] outputs;
+    private final int[] numRows;
+    private final Streamer[] streamers;
+    private final ToIntFunction<Row> hashBuilder;
+    private final List<StreamInput> openInputs = new ArrayList<>();
+
+    public SpilledRowPartitions(Path directory,
+                                String prefix,
+                                int numPartitions,
+                                Streamer<?>[] streamers,
+                                ToIntFunction<Row> hashBuilder) throws IOException {
+        assert numPartitions > 0 : "numPartitions must be greater than 0";
+        this.files = new Path[numPartitions];
+        this.outputs = new StreamOutput[numPartitions];
+        this.numRows = new int[numPartitions];
+        this.streamers = streamers;
+        this.hashBuilder = hashBuilder;
+        Files.createDirectories(directory);
+        try {
+            for (int i = 0; i < numPartitions; i++) {
+                files[i] = Files.createTempFile(directory, prefix + '-' + i + '-', ".spill");
+                outputs[i] = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(files[i])));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the hash of a row to a partition.
+     * The higher bits are mixed in, because the partitions are
+     * hashed again by the same hash function to build the hash table of the join.
+     */
+    static int partitionFor(int hash, int numPartitions) {
+        return Math.floorMod(hash ^ (hash >>> 16), numPartitions);
+    }
+
+    public int numPartitions() {
+        return files.length;
+    }
+
+    public int numRows(int partition) {
+        return numRows[partition];
+    }
+
+    @SuppressWarnings("unchecked")
+    public void add(Row row) {
+        int partition = partitionFor(hashBuilder.applyAsInt(row), files.length);
+        StreamOutput out = outputs[partition];
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                streamers[i].writeValueTo(out, row.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        numRows[partition]++;
+    }
+
+    /**
+     * Must be called after all rows have been added and before any partition is read.
+     */
+    public void finishWriting() throws IOException {
+        for (int i = 0; i < outputs.length; i++) {
+            StreamOutput out = outputs[i];
+            outputs[i] = null;
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Creates a BatchIterator over the rows of a partition.
+     * Each {@link BatchIterator#moveToStart()} reads the partition file again.
+     */
+    public BatchIterator<Row> iterator(int partition) {
+        return InMemoryBatchIterator.of(() -> readRows(partition), SentinelRow.SENTINEL, true);
+    }
+
+    private Iterator<Row> readRows(int partition) {
+        assert outputs[partition] == null : "finishWriting() must be called before reading a partition";
+        StreamInput in;
+        try {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(files[partition])));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (openInputs) {
+            openInputs.add(in);
+        }
+        int rowsInPartition = numRows[partition];
+        Object[] cells = new Object[streamers.length];
+        RowN row = new RowN(cells);
+        return new Iterator<>() {
+
+            int idx = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (idx < rowsInPartition) {
+                    return true;
+                }
+                closeInput(in);
+                return false;
+            }
+
+            @Override
+            public Row next() {
+                if (idx >= rowsInPartition) {
+                    throw new NoSuchElementException("Partition " + partition + " has no more rows");
+                }
+                try {
+                    for (int i = 0; i < cells.length; i++) {
+                        cells[i] = streamers[i].readValueFrom(in);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                idx++;
+                return row;
+            }
+        };
+    }
+
+    private void closeInput(StreamInput in) {
+        synchronized (openInputs) {
+            if (openInputs.remove(in)) {
+                IOUtils.closeWhileHandlingException(in);
+            }
+        }
+    }
+
+    /**
+     * Closes all open readers and writers and deletes the partition files.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeWhileHandlingException(outputs);
+        synchronized (openInputs) {
+            IOUtils.closeWhileHandlingException(openInputs);
+            openInputs.clear();
+        }
+        for (Path file : files) {
+            if (file != null) {
+                IOUtils.deleteFilesIgnoringExceptions(file);
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ package io.crate.execution.engine.pipeline;
 import com.google.common.collect.Iterables;
 import io.crate.analyze.NumberOfReplicas;
 import io.crate.analyze.SymbolEvaluator;
+import io.crate.breaker.BlockBasedRamAccounting;
 import io.crate.breaker.RamAccounting;
 import io.crate.breaker.RowAccountingWithEstimators;
 import io.crate.breaker.RowCellsAccountingWithEstimators;
@@ -60,6 +61,7 @@ import io.crate.execution.dsl.projection.WindowAggProjection;
 import io.crate.execution.dsl.projection.WriterProjection;
 import io.crate.execution.engine.aggregation.AggregationContext;
 import io.crate.execution.engine.aggregation.AggregationPipe;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.aggregation.GroupingProjector;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.collect.NestableCollectExpression;
@@ -74,12 +76,14 @@ import io.crate.execution.engine.indexing.IndexWriterProjector;
 import io.crate.execution.engine.indexing.ShardDMLExecutor;
 import io.crate.execution.engine.indexing.ShardingUpsertExecutor;
 import io.crate.execution.engine.indexing.UpsertResultContext;
+import io.crate.execution.engine.sort.ExternalSort;
 import io.crate.execution.engine.sort.OrderingByPosition;
 import io.crate.execution.engine.sort.SortingProjector;
 import io.crate.execution.engine.sort.SortingTopNProjector;
 import io.crate.execution.engine.window.WindowProjector;
 import io.crate.execution.jobs.NodeJobsCounter;
 import io.crate.execution.support.ThreadPools;
+import io.crate.expression.ExpressionCompiler;
 import io.crate.expression.InputFactory;
 import io.crate.expression.RowFilter;
 import io.crate.expression.eval.EvaluatingNormalizer;
@@ -114,6 +118,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -156,6 +161,8 @@ public class ProjectionToProjectorVisitor
     @Nullable
     private final ShardId shardId;
     private final int numProcessors;
+    @Nullable
+    private final SpillPolicy spillPolicy;
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         NodeJobsCounter nodeJobsCounter,
@@ -169,7 +176,8 @@ public class ProjectionToProjectorVisitor
                                         Function<RelationName, StaticTableDefinition<?>> staticTableDefinitionGetter,
                                         Version indexVersionCreated,
                                         BigArrays bigArrays,
-                                        @Nullable ShardId shardId) {
+                                        @Nullable ShardId shardId,
+                                        @Nullable SpillPolicy spillPolicy) {
         this.clusterService = clusterService;
         this.nodeJobsCounter = nodeJobsCounter;
         this.functions = functions;
@@ -184,6 +192,37 @@ public class ProjectionToProjectorVisitor
         this.bigArrays = bigArrays;
         this.shardId = shardId;
         this.numProcessors = EsExecutors.numberOfProcessors(settings);
+        this.spillPolicy = spillPolicy;
+    }
+
+    public ProjectionToProjectorVisitor(ClusterService clusterService,
+                                        NodeJobsCounter nodeJobsCounter,
+                                        Functions functions,
+                                        ThreadPool threadPool,
+                                        Settings settings,
+                                        TransportActionProvider transportActionProvider,
+                                        InputFactory inputFactory,
+                                        EvaluatingNormalizer normalizer,
+                                        Function<RelationName, SysRowUpdater<?>> sysUpdaterGetter,
+                                        Function<RelationName, StaticTableDefinition<?>> staticTableDefinitionGetter,
+                                        Version indexVersionCreated,
+                                        BigArrays bigArrays,
+                                        @Nullable ShardId shardId) {
+        this(clusterService,
+            nodeJobsCounter,
+            functions,
+            threadPool,
+            settings,
+            transportActionProvider,
+            inputFactory,
+            normalizer,
+            sysUpdaterGetter,
+            staticTableDefinitionGetter,
+            indexVersionCreated,
+            bigArrays,
+            shardId,
+            null
+        );
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
@@ -207,12 +246,40 @@ public class ProjectionToProjectorVisitor
             normalizer,
             sysUpdaterGetter,
             staticTableDefinitionGetter,
-            Version.CURRENT,
             bigArrays,
             null
         );
     }
 
+    public ProjectionToProjectorVisitor(ClusterService clusterService,
+                                        NodeJobsCounter nodeJobsCounter,
+                                        Functions functions,
+                                        ThreadPool threadPool,
+                                        Settings settings,
+                                        TransportActionProvider transportActionProvider,
+                                        InputFactory inputFactory,
+                                        EvaluatingNormalizer normalizer,
+                                        Function<RelationName, SysRowUpdater<?>> sysUpdaterGetter,
+                                        Function<RelationName, StaticTableDefinition<?>> staticTableDefinitionGetter,
+                                        BigArrays bigArrays,
+                                        @Nullable SpillPolicy spillPolicy) {
+        this(clusterService,
+            nodeJobsCounter,
+            functions,
+            threadPool,
+            settings,
+            transportActionProvider,
+            inputFactory,
+            normalizer,
+            sysUpdaterGetter,
+            staticTableDefinitionGetter,
+            Version.CURRENT,
+            bigArrays,
+            null,
+            spillPolicy
+        );
+    }
+
     @Override
     public RowGranularity supportedGranularity() {
         if (this.shardId == null) {
@@ -245,10 +312,21 @@ public class ProjectionToProjectorVisitor
             orderByIndices[idx++] = i;
         }
 
+        List<Symbol> rowSymbols = Lists2.concat(projection.outputs(), projection.orderBy());
+        Comparator<Object[]> ordering = OrderingByPosition.arrayOrdering(
+            orderByIndices, projection.reverseFlags(), projection.nullsFirst());
+        RamAccounting ramAccounting = context.ramAccounting;
+        ExternalSort externalSort = null;
+        if (spillPolicy != null) {
+            // the sort releases its RamAccounting after spilling, so it must not share it with other operations
+            ramAccounting = new BlockBasedRamAccounting(
+                context.ramAccounting::addBytes, spillPolicy.ramAccountingBlockSizeInBytes());
+            externalSort = new ExternalSort(spillPolicy, ramAccounting, Symbols.streamerArray(rowSymbols), ordering);
+        }
         int rowMemoryOverhead = 32; // priority queues implementation are backed by an arrayList
         RowCellsAccountingWithEstimators rowAccounting = new RowCellsAccountingWithEstimators(
-            Symbols.typeView(Lists2.concat(projection.outputs(), projection.orderBy())),
-            context.ramAccounting,
+            Symbols.typeView(rowSymbols),
+            ramAccounting,
             rowMemoryOverhead
         );
         if (projection.limit() > TopN.NO_LIMIT) {
@@ -257,10 +335,11 @@ public class ProjectionToProjectorVisitor
                 inputs,
                 ctx.expressions(),
                 numOutputs,
-                OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
+                ordering,
                 projection.limit(),
                 projection.offset(),
-                UNBOUNDED_COLLECTOR_THRESHOLD
+                UNBOUNDED_COLLECTOR_THRESHOLD,
+                externalSort
             );
         }
         return new SortingProjector(
@@ -268,8 +347,9 @@ public class ProjectionToProjectorVisitor
             inputs,
             ctx.expressions(),
             numOutputs,
-            OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
-            projection.offset()
+            ordering,
+            projection.offset(),
+            externalSort
         );
     }
 
@@ -290,8 +370,12 @@ public class ProjectionToProjectorVisitor
 
     @Override
     public Projector visitEvalProjection(EvalProjection projection, Context context) {
-        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(context.txnCtx, projection.outputs());
-        return new InputRowProjector(ctx.topLevelInputs(), ctx.expressions());
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(context.txnCtx);
+        List<Input<?>> inputs = new ArrayList<>(projection.outputs().size());
+        for (Symbol output : projection.outputs()) {
+            inputs.add(ExpressionCompiler.compile(output, ctx));
+        }
+        return new InputRowProjector(inputs, ctx.expressions());
     }
 
     @Override
@@ -311,7 +395,8 @@ public class ProjectionToProjectorVisitor
             context.ramAccounting,
             context.memoryManager,
             clusterService.state().getNodes().getMinNodeVersion(),
-            indexVersionCreated
+            indexVersionCreated,
+            spillPolicy
         );
     }
 
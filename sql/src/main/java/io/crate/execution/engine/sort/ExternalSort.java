@@ -0,0 +1,278 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.sort;
+
+import com.google.common.collect.Iterators;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.ArrayRow;
+import io.crate.data.Bucket;
+import io.crate.data.Buckets;
+import io.crate.data.Row;
+import io.crate.execution.engine.SpillPolicy;
+import io.crate.execution.engine.distribution.StreamBucket;
+import io.crate.execution.engine.distribution.merge.KeyIterable;
+import io.crate.execution.engine.distribution.merge.SortedPagingIterator;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * External merge sort for the rows buffered by a {@link SortingProjector} or an {@link UnboundedSortingTopNCollector}.
+ * <p>
+ * If the circuit breaker is under pressure, the rows held in memory are sorted and written to a run file
+ * and the memory accounted for them is released:
+ *
+ * <pre>
+ *     run file: [StreamBucket][StreamBucket]...   (each with up to {@link #ROWS_PER_BUCKET} rows)
+ * </pre>
+ *
+ * The result is a k-way merge of all runs and the rows remaining in memory using a {@link SortedPagingIterator}.
+ * If the number of runs reaches {@link #MAX_RUNS}, they are merged into a single run first, to limit the number of
+ * files which are open at the same time.
+ * <p>
+ * The run files are deleted on {@link #close()}.
+ */
+public final class ExternalSort implements Closeable {
+
+    static final int MAX_RUNS = 64;
+    static final int ROWS_PER_BUCKET = 1000;
+
+    private final SpillPolicy spillPolicy;
+    private final RamAccounting ramAccounting;
+    private final Streamer<?>[] streamers;
+    private final Comparator<Object[]> comparator;
+    private final List<Path> files = new ArrayList<>();
+    private final List<Integer> numRows = new ArrayList<>();
+    private final List<StreamInput> openInputs = new ArrayList<>();
+
+    /**
+     * @param ramAccounting the RamAccounting used for the buffered rows. It is released after each spill, so it
+     *                      must not be shared with other operations.
+     * @param streamers     the streamers of all cells of the buffered rows
+     * @param comparator    the ordering of the rows
+     */
+    public ExternalSort(SpillPolicy spillPolicy,
+                        RamAccounting ramAccounting,
+                        Streamer<?>[] streamers,
+                        Comparator<Object[]> comparator) {
+        this.spillPolicy = spillPolicy;
+        this.ramAccounting = ramAccounting;
+        this.streamers = streamers;
+        this.comparator = comparator;
+    }
+
+    boolean shouldSpill() {
+        return spillPolicy.shouldSpill(ramAccounting.totalBytes());
+    }
+
+    boolean hasSpilled() {
+        return !files.isEmpty();
+    }
+
+    int numRuns() {
+        return files.size();
+    }
+
+    /**
+     * Writes the rows as a new run and releases the memory accounted for them.
+     *
+     * @param sortedRows rows sorted by the comparator of this ExternalSort
+     */
+    void spill(Iterator<Object[]> sortedRows) {
+        try {
+            Files.createDirectories(spillPolicy.directory());
+            writeRun(sortedRows);
+            if (files.size() >= MAX_RUNS) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ramAccounting.release();
+    }
+
+    private void writeRun(Iterator<Object[]> sortedRows) throws IOException {
+        Path file = Files.createTempFile(spillPolicy.directory(), "sort-", ".run");
+        files.add(file);
+        int count = 0;
+        try (StreamOutput out = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            StreamBucket.Builder builder = new StreamBucket.Builder(streamers, RamAccounting.NO_ACCOUNTING);
+            ArrayRow row = new ArrayRow();
+            while (sortedRows.hasNext()) {
+                row.cells(sortedRows.next());
+                builder.add(row);
+                count++;
+                if (builder.size() == ROWS_PER_BUCKET) {
+                    builder.build().writeTo(out);
+                    builder.reset();
+                }
+            }
+            if (builder.size() > 0) {
+                builder.build().writeTo(out);
+            }
+        } finally {
+            numRows.add(count);
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Path> oldFiles = new ArrayList<>(files);
+        Iterator<Object[]> merged = merge(Collections.emptyList());
+        files.clear();
+        numRows.clear();
+        try {
+            writeRun(merged);
+        } finally {
+            closeInputs();
+            IOUtils.deleteFilesIgnoringExceptions(oldFiles);
+        }
+    }
+
+    /**
+     * @param sortedRowsInMemory the rows which haven't been spilled, sorted by the comparator of this ExternalSort
+     * @param numOutputs         the number of cells of each row that are part of the result
+     * @param offset             the number of rows to skip
+     * @param limit              the maximum number of rows of the result
+     * @return the merged rows of all runs and the rows in memory. Each iteration reads the runs again.
+     */
+    Bucket result(List<Object[]> sortedRowsInMemory, int numOutputs, int offset, int limit) {
+        long totalRows = sortedRowsInMemory.size();
+        for (Integer rowsInRun : numRows) {
+            totalRows += rowsInRun;
+        }
+        int size = (int) Math.max(0, Math.min(limit, totalRows - offset));
+        return new Bucket() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Row> iterator() {
+                Iterator<Object[]> merged = merge(sortedRowsInMemory);
+                Iterators.advance(merged, offset);
+                return Iterators.transform(Iterators.limit(merged, size), Buckets.arrayToSharedRow(numOutputs)::apply);
+            }
+        };
+    }
+
+    private Iterator<Object[]> merge(List<Object[]> sortedRowsInMemory) {
+        SortedPagingIterator<Integer, Object[]> mergedRows = new SortedPagingIterator<>(comparator, false);
+        List<KeyIterable<Integer, Object[]>> runs = new ArrayList<>(files.size() + 1);
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            int rowsInRun = numRows.get(i);
+            runs.add(new KeyIterable<>(i, () -> readRun(file, rowsInRun)));
+        }
+        runs.add(new KeyIterable<>(files.size(), sortedRowsInMemory));
+        mergedRows.merge(runs);
+        mergedRows.finish();
+        return mergedRows;
+    }
+
+    private Iterator<Object[]> readRun(Path file, int rowsInRun) {
+        StreamInput in;
+        try {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (openInputs) {
+            openInputs.add(in);
+        }
+        return new Iterator<>() {
+
+            int remaining = rowsInRun;
+            Iterator<Row> bucketRows = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (remaining > 0) {
+                    return true;
+                }
+                closeInput(in);
+                return false;
+            }
+
+            @Override
+            public Object[] next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException("Run " + file + " has no more rows");
+                }
+                if (!bucketRows.hasNext()) {
+                    try {
+                        bucketRows = new StreamBucket(in, streamers).iterator();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                remaining--;
+                return bucketRows.next().materialize();
+            }
+        };
+    }
+
+    private void closeInput(StreamInput in) {
+        synchronized (openInputs) {
+            if (openInputs.remove(in)) {
+                IOUtils.closeWhileHandlingException(in);
+            }
+        }
+    }
+
+    private void closeInputs() {
+        synchronized (openInputs) {
+            IOUtils.closeWhileHandlingException(openInputs);
+            openInputs.clear();
+        }
+    }
+
+    /**
+     * Closes all open readers and deletes the run files.
+     */
+    @Override
+    public void close() {
+        closeInputs();
+        IOUtils.deleteFilesIgnoringExceptions(files);
+        files.clear();
+        numRows.clear();
+    }
+}
@@ -25,6 +25,7 @@ package io.crate.execution.engine.sort;
 import com.google.common.base.Preconditions;
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.Bucket;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.CollectionBucket;
@@ -33,6 +34,8 @@ import io.crate.data.Projector;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
@@ -44,6 +47,9 @@ import java.util.stream.Collectors;
  * <p>
  * Compared to {@link SortingTopNProjector} this projector does not support limiting,
  * while the {@link SortingTopNProjector} does not work WITHOUT a limit.
+ * <p>
+ * If an {@link ExternalSort} is provided, the rows are spilled to disk in sorted runs once the circuit breaker
+ * is under pressure and the runs are merged when the result is consumed.
  */
 public class SortingProjector implements Projector {
 
@@ -54,6 +60,8 @@ public class SortingProjector implements Projector {
     private final int offset;
     private final int numOutputs;
     private final RowAccounting<Object[]> rowAccounting;
+    @Nullable
+    private final ExternalSort externalSort;
 
     /**
      * @param rowAccounting               sorting is a pipeline breaker so account for the used memory
@@ -69,6 +77,19 @@ public class SortingProjector implements Projector {
                             int numOutputs,
                             Comparator<Object[]> comparator,
                             int offset) {
+        this(rowAccounting, inputs, collectExpressions, numOutputs, comparator, offset, null);
+    }
+
+    /**
+     * @param externalSort used to spill the rows to disk. Its RamAccounting must be the one used by the rowAccounting.
+     */
+    public SortingProjector(RowAccounting<Object[]> rowAccounting,
+                            Collection<? extends Input<?>> inputs,
+                            Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                            int numOutputs,
+                            Comparator<Object[]> comparator,
+                            int offset,
+                            @Nullable ExternalSort externalSort) {
         Preconditions.checkArgument(offset >= 0, "invalid offset %s", offset);
         this.rowAccounting = rowAccounting;
         this.numOutputs = numOutputs;
@@ -76,17 +97,57 @@ public class SortingProjector implements Projector {
         this.collectExpressions = collectExpressions;
         this.comparator = comparator;
         this.offset = offset;
+        this.externalSort = externalSort;
     }
 
-
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
+        if (externalSort != null) {
+            return applyWithExternalSort(batchIterator, externalSort);
+        }
         Collector<Row, ?, Bucket> collector = Collectors.mapping(
             this::getCells,
             Collectors.collectingAndThen(Collectors.toList(), this::sortAndCreateBucket));
         return CollectingBatchIterator.newInstance(batchIterator, collector);
     }
 
+    private BatchIterator<Row> applyWithExternalSort(BatchIterator<Row> batchIterator, ExternalSort externalSort) {
+        Collector<Row, ArrayList<Object[]>, Bucket> collector = Collector.of(
+            ArrayList::new,
+            (rows, row) -> {
+                rows.add(getCells(row));
+                if (externalSort.shouldSpill()) {
+                    rows.sort(comparator);
+                    externalSort.spill(rows.iterator());
+                    rows.clear();
+                    rows.trimToSize();
+                }
+            },
+            (rows1, rows2) -> {
+                throw new UnsupportedOperationException("combine not supported");
+            },
+            rows -> {
+                if (externalSort.hasSpilled()) {
+                    rows.sort(comparator);
+                    return externalSort.result(rows, numOutputs, offset, Integer.MAX_VALUE);
+                }
+                return sortAndCreateBucket(rows);
+            }
+        );
+        return CollectingBatchIterator.newInstance(
+            () -> {
+                try {
+                    batchIterator.close();
+                } finally {
+                    externalSort.close();
+                }
+            },
+            batchIterator::kill,
+            () -> BatchIterators.collect(batchIterator, collector),
+            batchIterator.hasLazyResultSet()
+        );
+    }
+
     @Override
     public boolean providesIndependentScroll() {
         return true;
@@ -24,6 +24,7 @@ package io.crate.execution.engine.sort;
 
 import io.crate.breaker.RowAccounting;
 import io.crate.data.BatchIterator;
+import io.crate.data.BatchIterators;
 import io.crate.data.Bucket;
 import io.crate.data.CollectingBatchIterator;
 import io.crate.data.Input;
@@ -31,6 +32,7 @@ import io.crate.data.Projector;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.stream.Collector;
@@ -38,6 +40,8 @@ import java.util.stream.Collector;
 public class SortingTopNProjector implements Projector {
 
     private final Collector<Row, ?, Bucket> collector;
+    @Nullable
+    private final ExternalSort externalSort;
 
     /**
      * @param rowAccounting               sorting is a pipeline breaker so account for the used memory
@@ -58,6 +62,24 @@ public class SortingTopNProjector implements Projector {
                                 int limit,
                                 int offset,
                                 int unboundedCollectorThreshold) {
+        this(rowAccounting, inputs, collectExpressions, numOutputs, ordering, limit, offset,
+            unboundedCollectorThreshold, null);
+    }
+
+    /**
+     * @param externalSort used to spill the rows of an unbounded collector to disk.
+     *                     Its RamAccounting must be the one used by the rowAccounting.
+     */
+    public SortingTopNProjector(RowAccounting<Object[]> rowAccounting,
+                                Collection<? extends Input<?>> inputs,
+                                Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                                int numOutputs,
+                                Comparator<Object[]> ordering,
+                                int limit,
+                                int offset,
+                                int unboundedCollectorThreshold,
+                                @Nullable ExternalSort externalSort) {
+        this.externalSort = externalSort;
         /**
          * We'll use an unbounded queue with the initial capacity of {@link unboundedCollectorThreshold}
          * if the maximum number of rows we have to accommodate in the queue in order to maintain correctness is
@@ -75,7 +97,8 @@ public class SortingTopNProjector implements Projector {
                 ordering,
                 unboundedCollectorThreshold,
                 limit,
-                offset
+                offset,
+                externalSort
             );
         } else {
             collector = new BoundedSortingTopNCollector(
@@ -92,7 +115,21 @@ public class SortingTopNProjector implements Projector {
 
     @Override
     public BatchIterator<Row> apply(BatchIterator<Row> batchIterator) {
-        return CollectingBatchIterator.newInstance(batchIterator, collector);
+        if (externalSort == null) {
+            return CollectingBatchIterator.newInstance(batchIterator, collector);
+        }
+        return CollectingBatchIterator.newInstance(
+            () -> {
+                try {
+                    batchIterator.close();
+                } finally {
+                    externalSort.close();
+                }
+            },
+            batchIterator::kill,
+            () -> BatchIterators.collect(batchIterator, collector),
+            batchIterator.hasLazyResultSet()
+        );
     }
 
     @Override
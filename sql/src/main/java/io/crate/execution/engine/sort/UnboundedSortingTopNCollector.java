@@ -31,6 +31,8 @@ import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 import org.apache.lucene.util.ArrayUtil;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -47,6 +49,9 @@ import java.util.stream.Collector;
  * Collector implementation which collects rows into an unbounded priorityQueue in order to sort the rows and apply a
  * limit + offset.
  * The final result is a sorted bucket with limit and offset applied.
+ * <p>
+ * If an {@link ExternalSort} is provided, the queue is spilled to disk as a sorted run once the circuit breaker is
+ * under pressure. The result is then the merge of all runs and the rows remaining in the queue.
  */
 public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQueue<Object[]>, Bucket> {
 
@@ -58,6 +63,8 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
     private final int offset;
     private final int maxNumberOfRowsInQueue;
     private final RowAccounting<Object[]> rowAccounting;
+    @Nullable
+    private final ExternalSort externalSort;
 
     /**
      * @param rowAccounting   sorting is a pipeline breaker so account for the used memory
@@ -77,6 +84,21 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
                                          int initialCapacity,
                                          int limit,
                                          int offset) {
+        this(rowAccounting, inputs, expressions, numOutputs, comparator, initialCapacity, limit, offset, null);
+    }
+
+    /**
+     * @param externalSort used to spill the queue to disk. Its RamAccounting must be the one used by the rowAccounting.
+     */
+    public UnboundedSortingTopNCollector(RowAccounting<Object[]> rowAccounting,
+                                         Collection<? extends Input<?>> inputs,
+                                         Iterable<? extends CollectExpression<Row, ?>> expressions,
+                                         int numOutputs,
+                                         Comparator<Object[]> comparator,
+                                         int initialCapacity,
+                                         int limit,
+                                         int offset,
+                                         @Nullable ExternalSort externalSort) {
         Preconditions.checkArgument(
             initialCapacity > 0, "Invalid initial capacity: value must be > 0; got: " + initialCapacity);
         Preconditions.checkArgument(limit > 0, "Invalid LIMIT: value must be > 0; got: " + limit);
@@ -90,6 +112,7 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
         this.initialCapacity = initialCapacity;
         this.offset = offset;
         this.maxNumberOfRowsInQueue = limit + offset;
+        this.externalSort = externalSort;
 
         if (maxNumberOfRowsInQueue >= ArrayUtil.MAX_ARRAY_LENGTH || maxNumberOfRowsInQueue < 0) {
             // Throw exception to prevent confusing OOME in PriorityQueue
@@ -147,18 +170,34 @@ public class UnboundedSortingTopNCollector implements Collector<Row, PriorityQue
         } else {
             pq.add(rowCells);
         }
+        if (externalSort != null && externalSort.shouldSpill()) {
+            externalSort.spill(Arrays.asList(pollSorted(pq, pq.size())).iterator());
+        }
+    }
+
+    /**
+     * Removes the given number of rows with the highest order from the queue.
+     *
+     * @return the removed rows, in order
+     */
+    private static Object[][] pollSorted(PriorityQueue<Object[]> pq, int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = numRows - 1; i >= 0; i--) {
+            rows[i] = pq.poll();
+        }
+        return rows;
     }
 
     private Bucket pqToIterable(PriorityQueue<Object[]> pq) {
+        if (externalSort != null && externalSort.hasSpilled()) {
+            return externalSort.result(
+                Arrays.asList(pollSorted(pq, pq.size())), numOutputs, offset, maxNumberOfRowsInQueue - offset);
+        }
         if (offset > pq.size()) {
             return new ArrayBucket(new Object[0][0], numOutputs);
         }
         int resultSize = Math.max(Math.min(maxNumberOfRowsInQueue - offset, pq.size() - offset), 0);
 
-        Object[][] rows = new Object[resultSize][];
-        for (int i = resultSize - 1; i >= 0; i--) {
-            rows[i] = pq.poll();
-        }
-        return new ArrayBucket(rows, numOutputs);
+        return new ArrayBucket(pollSorted(pq, resultSize), numOutputs);
     }
 }
@@ -36,9 +36,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -52,6 +54,10 @@ import java.util.concurrent.RejectedExecutionException;
  * A {@link PageBucketReceiver} which receives buckets from upstreams, wait to receive the page from all upstreams
  * and forwards the merged bucket results to the consumers for further processing. It then continues to receive
  * the buckets from the next page from all upstreams.
+ * <p>
+ * Upstreams may send numbered pages ahead of time. These are buffered per bucket and only become part of a page
+ * once the consumer requested more data of the bucket. Their listeners are responded to once that page has been
+ * processed, so the number of buffered pages is bounded by the number of pages an upstream keeps in flight.
  */
 public class CumulativePageBucketReceiver implements PageBucketReceiver {
 
@@ -69,6 +75,8 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
     private final Map<Integer, PageResultListener> listenersByBucketIdx;
     @GuardedBy("lock")
     private final Map<Integer, Bucket> bucketsByIdx;
+    @GuardedBy("lock")
+    private final Map<Integer, BufferedPages> bufferedPagesByIdx;
     private final RowConsumer consumer;
     private final PagingIterator<Integer, Row> pagingIterator;
     private final BatchIterator<Row> batchPagingIterator;
@@ -96,6 +104,7 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
         this.exhausted = Collections.newSetFromMap(new IntObjectHashMap<>(numBuckets));
         this.bucketsByIdx = new IntObjectHashMap<>(numBuckets);
         this.listenersByBucketIdx = new IntObjectHashMap<>(numBuckets);
+        this.bufferedPagesByIdx = new IntObjectHashMap<>(numBuckets);
         processingFuture.whenComplete((result, ex) -> {
             synchronized (listenersByBucketIdx) {
                 for (PageResultListener resultListener : listenersByBucketIdx.values()) {
@@ -103,6 +112,15 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
                 }
                 listenersByBucketIdx.clear();
             }
+            List<PageResultListener> bufferedListeners = new ArrayList<>();
+            synchronized (lock) {
+                for (BufferedPages pages : bufferedPagesByIdx.values()) {
+                    pages.drainListeners(bufferedListeners);
+                }
+            }
+            for (PageResultListener listener : bufferedListeners) {
+                listener.needMore(false);
+            }
         });
         batchPagingIterator = new BatchPagingIterator<>(
             pagingIterator,
@@ -120,7 +138,55 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
     }
 
     @Override
-    public void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
+    public void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
+        if (pageIdx == UNKNOWN_PAGE_IDX) {
+            addBucketToPage(bucketIdx, rows, isLast, pageResultListener);
+            return;
+        }
+        synchronized (lock) {
+            if (processingFuture.isDone()) {
+                // checked while holding the lock, so that the listener is either responded to here or when the
+                // buffered pages are released on completion
+                pageResultListener.needMore(false);
+                return;
+            }
+            BufferedPages pages = bufferedPagesByIdx.get(bucketIdx);
+            if (pages == null) {
+                pages = new BufferedPages();
+                bufferedPagesByIdx.put(bucketIdx, pages);
+            }
+            if (pages.waitingForRequest || pageIdx != pages.nextPageIdx) {
+                if (traceEnabled) {
+                    LOGGER.trace("method=setBucket phaseId={} bucket={} page={} buffered", phaseId, bucketIdx, pageIdx);
+                }
+                pages.buffer(pageIdx, new BufferedPage(rows, isLast, pageResultListener));
+                return;
+            }
+            pages.markTaken(isLast);
+        }
+        addBucketToPage(bucketIdx, rows, isLast, pageResultListener);
+    }
+
+    /**
+     * Adds the next buffered page of a bucket to the current page, if it has already been received.
+     * Must be called after the consumer requested more data of the bucket.
+     */
+    private void takeBufferedPage(int bucketIdx) {
+        BufferedPage page;
+        synchronized (lock) {
+            BufferedPages pages = bufferedPagesByIdx.get(bucketIdx);
+            if (pages == null) {
+                return;
+            }
+            pages.waitingForRequest = false;
+            page = pages.takeNext();
+        }
+        if (page != null) {
+            addBucketToPage(bucketIdx, page.rows, page.isLast, page.listener);
+        }
+    }
+
+    private void addBucketToPage(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
         final boolean isLastOrHasError;
         synchronized (listenersByBucketIdx) {
             isLastOrHasError = isLast || lastThrowable != null;
@@ -254,15 +320,21 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
             }
             pageResultListener.needMore(true);
         }
+        takeBufferedPage(exhaustedBucket);
     }
 
     private void fetchFromUnExhausted() {
+        List<Integer> requestedBuckets;
         synchronized (listenersByBucketIdx) {
             for (PageResultListener listener : listenersByBucketIdx.values()) {
                 listener.needMore(true);
             }
+            requestedBuckets = new ArrayList<>(listenersByBucketIdx.keySet());
             listenersByBucketIdx.clear();
         }
+        for (Integer bucketIdx : requestedBuckets) {
+            takeBufferedPage(bucketIdx);
+        }
     }
 
     @Override
@@ -298,6 +370,58 @@ public class CumulativePageBucketReceiver implements PageBucketReceiver {
         }
     }
 
+    private static class BufferedPage {
+
+        private final Bucket rows;
+        private final boolean isLast;
+        private final PageResultListener listener;
+
+        BufferedPage(Bucket rows, boolean isLast, PageResultListener listener) {
+            this.rows = rows;
+            this.isLast = isLast;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * The pages of a bucket which have been received ahead of time
+     */
+    private static class BufferedPages {
+
+        private final Map<Integer, BufferedPage> pagesByIdx = new HashMap<>();
+        private int nextPageIdx = 0;
+
+        /**
+         * true if the last page taken isn't processed yet, the next page must wait until the consumer requests it
+         */
+        private boolean waitingForRequest = false;
+
+        void buffer(int pageIdx, BufferedPage page) {
+            pagesByIdx.put(pageIdx, page);
+        }
+
+        void markTaken(boolean isLast) {
+            nextPageIdx++;
+            waitingForRequest = isLast == false;
+        }
+
+        @Nullable
+        BufferedPage takeNext() {
+            BufferedPage page = pagesByIdx.remove(nextPageIdx);
+            if (page != null) {
+                markTaken(page.isLast);
+            }
+            return page;
+        }
+
+        void drainListeners(List<PageResultListener> listeners) {
+            for (BufferedPage page : pagesByIdx.values()) {
+                listeners.add(page.listener);
+            }
+            pagesByIdx.clear();
+        }
+    }
+
     @Override
     public String toString() {
         return "CumulativePageBucketReceiver{" +
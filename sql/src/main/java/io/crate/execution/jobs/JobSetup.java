@@ -63,6 +63,8 @@ import io.crate.execution.dsl.projection.AggregationProjection;
 import io.crate.execution.dsl.projection.GroupProjection;
 import io.crate.execution.dsl.projection.Projection;
 import io.crate.execution.engine.aggregation.AggregationPipe;
+import io.crate.execution.engine.SpillPolicy;
+import io.crate.execution.engine.aggregation.GroupingCollector;
 import io.crate.execution.engine.aggregation.GroupingProjector;
 import io.crate.execution.engine.collect.CollectTask;
 import io.crate.execution.engine.collect.MapSideDataCollectOperation;
@@ -75,8 +77,11 @@ import io.crate.execution.engine.distribution.SingleBucketBuilder;
 import io.crate.execution.engine.distribution.StreamBucket;
 import io.crate.execution.engine.distribution.merge.PagingIterator;
 import io.crate.execution.engine.fetch.FetchTask;
+import io.crate.execution.engine.join.GraceHashJoinBatchIterator;
 import io.crate.execution.engine.join.HashJoinOperation;
 import io.crate.execution.engine.join.NestedLoopOperation;
+import io.crate.execution.engine.join.OffHeapHashJoinBuffer;
+import io.crate.execution.engine.join.OnHeapHashJoinBuffer;
 import io.crate.execution.engine.pipeline.ProjectingRowConsumer;
 import io.crate.execution.engine.pipeline.ProjectionToProjectorVisitor;
 import io.crate.execution.engine.pipeline.ProjectorFactory;
@@ -85,6 +90,7 @@ import io.crate.expression.RowFilter;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.memory.MemoryManager;
 import io.crate.memory.MemoryManagerFactory;
+import io.crate.memory.OffHeapMemoryManager;
 import io.crate.metadata.Functions;
 import io.crate.metadata.Routing;
 import io.crate.metadata.Schemas;
@@ -105,12 +111,17 @@ import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -143,6 +154,7 @@ public class JobSetup {
     private final PKLookupOperation pkLookupOperation;
     private final Executor searchTp;
     private final String nodeName;
+    private final SpillPolicy spillPolicy;
     private final Schemas schemas;
 
     @Inject
@@ -161,7 +173,9 @@ public class JobSetup {
                     PageCacheRecycler pageCacheRecycler,
                     SystemCollectSource systemCollectSource,
                     ShardCollectSource shardCollectSource,
-                    MemoryManagerFactory memoryManagerFactory) {
+                    MemoryManagerFactory memoryManagerFactory,
+                    NodeEnvironment nodeEnvironment,
+                    Environment environment) {
         this.nodeName = Node.NODE_NAME_SETTING.get(settings);
         this.schemas = schemas;
         this.collectOperation = collectOperation;
@@ -169,6 +183,7 @@ public class JobSetup {
         this.circuitBreakerService = circuitBreakerService;
         this.countOperation = countOperation;
         this.memoryManagerFactory = memoryManagerFactory;
+        this.spillPolicy = new SpillPolicy(spillDirectory(nodeEnvironment, environment, "spill"), this::breaker);
         this.pkLookupOperation = new PKLookupOperation(indicesService, shardCollectSource);
         this.distributingConsumerFactory = distributingConsumerFactory;
         innerPreparer = new InnerPreparer();
@@ -187,10 +202,27 @@ public class JobSetup {
             normalizer,
             systemCollectSource::getRowUpdater,
             systemCollectSource::tableDefinition,
-            bigArrays
+            bigArrays,
+            spillPolicy
         );
     }
 
+    /**
+     * Directory for the data of operations that don't fit into memory, like the partitions of hash joins or
+     * the groups of a GROUP BY and the sorted runs of an ORDER BY. Files left behind by a previous run of the node
+     * are removed.
+     */
+    private static Path spillDirectory(NodeEnvironment nodeEnvironment, Environment environment, String name) {
+        Path baseDirectory = nodeEnvironment.hasNodeFile() ? nodeEnvironment.nodeDataPaths()[0] : environment.tmpFile();
+        Path spillDirectory = baseDirectory.resolve(name);
+        try {
+            IOUtils.rm(spillDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't remove the spill directory " + spillDirectory, e);
+        }
+        return spillDirectory;
+    }
+
     public List<CompletableFuture<StreamBucket>> prepareOnRemote(SessionSettings sessionInfo,
                                                                  Collection<? extends NodeOperation> nodeOperations,
                                                                  RootTask.Builder contextBuilder,
@@ -685,10 +717,12 @@ public class JobSetup {
                 if (firstProjection instanceof GroupProjection) {
                     GroupProjection groupProjection = (GroupProjection) firstProjection;
 
+                    // Not ramAccountingForMerge: if the groups are spilled, the released memory must be returned
+                    // to the circuit breaker instead of being kept as a reserved block
                     GroupingProjector groupingProjector = (GroupingProjector) projectorFactory.create(
                         groupProjection,
                         context.txnCtx(),
-                        ramAccountingForMerge,
+                        ramAccounting,
                         memoryManager,
                         phase.jobId()
                     );
@@ -718,7 +752,12 @@ public class JobSetup {
                 memoryManager,
                 projectorFactory
             );
+            Collector<Row, ?, Iterable<Row>> finalCollector = collector;
             consumer.completionFuture().whenComplete((result, error) -> {
+                if (finalCollector instanceof GroupingCollector) {
+                    // deletes the groups which have been spilled to disk
+                    ((GroupingCollector<?>) finalCollector).close();
+                }
                 memoryManager.close();
                 ramAccounting.close();
             });
@@ -950,24 +989,40 @@ public class JobSetup {
                 projectorFactory
             );
             Predicate<Row> joinCondition = RowFilter.create(context.transactionContext, inputFactory, phase.joinCondition());
+            int numPartitions = 0;
+            if (phase.graceHashJoin()) {
+                long numberOfRowsForLeft = phase.numberOfRowsForLeft();
+                int numJoinExecutions = phase.nodeIds().size();
+                if (numberOfRowsForLeft > 0 && numJoinExecutions > 1) {
+                    // a distributed join receives only the rows of its modulo
+                    numberOfRowsForLeft = (numberOfRowsForLeft + numJoinExecutions - 1) / numJoinExecutions;
+                }
+                numPartitions = GraceHashJoinBatchIterator.numberOfPartitions(
+                    breaker.getLimit(), phase.estimatedRowSizeForLeft(), numberOfRowsForLeft);
+            }
 
             HashJoinOperation joinOperation = new HashJoinOperation(
                 phase.numLeftOutputs(),
                 phase.numRightOutputs(),
                 firstConsumer,
+                phase.joinType(),
                 joinCondition,
                 phase.leftJoinConditionInputs(),
                 phase.rightJoinConditionInputs(),
-                // 110 extra bytes per row =
-                //    96 bytes for each ArrayList +
-                //    7 bytes per key for the IntHashObjectHashMap  (should be 4 but the map pre-allocates more)
-                //    7 bytes perv value (pointer from the map to the list) (should be 4 but the map pre-allocates more)
-                new RowAccountingWithEstimators(phase.leftOutputTypes(), ramAccounting, 110),
+                // the join releases the memory of the left rows after spilling them, so it needs a RamAccounting of its own
+                new BlockBasedRamAccounting(ramAccounting::addBytes, spillPolicy.ramAccountingBlockSizeInBytes()),
                 context.transactionContext,
                 inputFactory,
                 breaker(),
                 phase.estimatedRowSizeForLeft(),
-                phase.numberOfRowsForLeft());
+                phase.numberOfRowsForLeft(),
+                numPartitions,
+                phase.leftOutputTypes(),
+                phase.rightOutputTypes(),
+                spillPolicy,
+                memoryManager instanceof OffHeapMemoryManager
+                    ? new OffHeapHashJoinBuffer(memoryManager, DataTypes.getStreamers(phase.leftOutputTypes()))
+                    : new OnHeapHashJoinBuffer());
             DistResultRXTask left = pageDownstreamContextForNestedLoop(
                 phase.phaseId(),
                 context,
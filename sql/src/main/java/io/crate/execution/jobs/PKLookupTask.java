@@ -35,10 +35,13 @@ import io.crate.expression.InputFactory;
 import io.crate.expression.InputRow;
 import io.crate.expression.reference.Doc;
 import io.crate.expression.reference.DocRefResolver;
+import io.crate.expression.reference.doc.lucene.SourceParser;
+import io.crate.expression.symbol.RefVisitor;
 import io.crate.expression.symbol.Symbol;
 import io.crate.memory.MemoryManager;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.TransactionContext;
+import io.crate.metadata.doc.DocSysColumns;
 import io.crate.planner.operators.PKAndVersion;
 import org.elasticsearch.index.shard.ShardId;
 
@@ -61,6 +64,7 @@ public final class PKLookupTask extends AbstractTask {
     private final RowConsumer consumer;
     private final InputRow inputRow;
     private final List<CollectExpression<Doc, ?>> expressions;
+    private final SourceParser sourceParser;
     private final String name;
     private final Function<RamAccounting, MemoryManager> memoryManagerFactory;
     private final int ramAccountingBlockSizeInBytes;
@@ -100,12 +104,29 @@ public final class PKLookupTask extends AbstractTask {
         ctx.add(toCollect);
         expressions = ctx.expressions();
         inputRow = new InputRow(ctx.topLevelInputs());
+
+        sourceParser = new SourceParser();
+        for (Symbol symbol : toCollect) {
+            RefVisitor.visitRefs(symbol, ref -> registerColumn(sourceParser, ref.column()));
+        }
+    }
+
+    private static void registerColumn(SourceParser sourceParser, ColumnIdent column) {
+        if (column.name().equals(DocSysColumns.Names.DOC)) {
+            sourceParser.register(column.path());
+        } else if (!column.isSystemColumn()) {
+            ArrayList<String> path = new ArrayList<>(column.path().size() + 1);
+            path.add(column.name());
+            path.addAll(column.path());
+            sourceParser.register(path);
+        }
     }
 
     @Override
     protected void innerStart() {
         if (shardProjections.isEmpty()) {
-            BatchIterator<Doc> batchIterator = pkLookupOperation.lookup(ignoreMissing, idsByShard, consumer.requiresScroll());
+            BatchIterator<Doc> batchIterator = pkLookupOperation.lookup(
+                ignoreMissing, idsByShard, consumer.requiresScroll(), sourceParser);
             consumer.accept(BatchIterators.map(batchIterator, this::resultToRow), null);
         } else {
             pkLookupOperation.runWithShardProjections(
@@ -117,7 +138,8 @@ public final class PKLookupTask extends AbstractTask {
                 idsByShard,
                 shardProjections,
                 consumer,
-                this::resultToRow
+                this::resultToRow,
+                sourceParser
             );
         }
         close();
@@ -61,6 +61,12 @@ import java.util.concurrent.CompletableFuture;
  */
 public interface PageBucketReceiver extends CompletionListenable, Killable {
 
+    /**
+     * Page index used by upstreams which don't number their pages. These upstreams
+     * only send the next page once the previous one has been responded to.
+     */
+    int UNKNOWN_PAGE_IDX = -1;
+
     /**
      * Receives a bucket from an upstream which holds result data. This method should be
      * called multiple times for each bucketIdx if the corresponding
@@ -70,7 +76,21 @@ public interface PageBucketReceiver extends CompletionListenable, Killable {
      * @param isLast Indicates whether this is the last bucket with this id.
      * @param pageResultListener The ResultListener which is informed if more data is needed (for an additional page).
      */
-    void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener);
+    default void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
+        setBucket(bucketIdx, UNKNOWN_PAGE_IDX, rows, isLast, pageResultListener);
+    }
+
+    /**
+     * Receives a numbered bucket from an upstream.
+     * <p>
+     * Upstreams with several pages in flight may send the next pages of a bucket before the previous one has been
+     * responded to, and the pages may arrive out of order. Implementations must process them in the order of their
+     * {@code pageIdx}.
+     *
+     * @param pageIdx the sequence number of the page within the pages of this bucket, starting at 0,
+     *                or {@link #UNKNOWN_PAGE_IDX}.
+     */
+    void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener);
 
     Streamer<?>[] streamers();
 
@@ -0,0 +1,698 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.expression;
+
+import io.crate.data.Input;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.GteOperator;
+import io.crate.expression.operator.LtOperator;
+import io.crate.expression.operator.LteOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.predicate.IsNullPredicate;
+import io.crate.expression.predicate.NotPredicate;
+import io.crate.expression.scalar.arithmetic.ArithmeticFunctions;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.types.BooleanType;
+import io.crate.types.ByteType;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.IntegerType;
+import io.crate.types.LongType;
+import io.crate.types.ShortType;
+import io.crate.types.TimestampType;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Compiles a bound symbol tree into a tree of type specialized evaluators.
+ * <p>
+ * The inputs created by {@link InputFactory} evaluate each function via {@code Scalar.evaluate(txnCtx, Input[])},
+ * which boxes every intermediate result and goes through a megamorphic call per function and row.
+ * For arithmetic on {@code integer}, {@code bigint}, {@code timestamp} and {@code double precision} values,
+ * comparisons, {@code AND}, {@code OR}, {@code NOT} and {@code IS NULL} this compiler instead creates evaluators
+ * which pass unboxed primitives between each other:
+ *
+ * <pre>
+ *     a + b * 2 > c
+ *
+ *     LongComparison(GT)
+ *       LongArithmetic(ADD)
+ *         LongInput(a)
+ *         LongArithmetic(MULTIPLY)
+ *           LongInput(b)
+ *           LongConstant(2)
+ *       LongInput(c)
+ * </pre>
+ *
+ * Only the leaves read (boxed) values from the regular inputs.
+ * Any other symbol, including unsupported functions, becomes such a leaf and is evaluated by the interpreter.
+ * <p>
+ * Null handling and errors are the same as for the interpreted functions,
+ * except that {@code AND} and {@code OR} don't evaluate their second argument if the first decides the result.
+ */
+public final class ExpressionCompiler {
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Creates an input for {@code symbol}, compiled if possible.
+     * Linked expressions of the leaves are added to the expressions of {@code ctx}.
+     */
+    public static Input<?> compile(Symbol symbol, InputFactory.Context<?> ctx) {
+        Node<?> node = tryCompile(symbol, ctx);
+        return node == null ? ctx.add(symbol) : node;
+    }
+
+    /**
+     * Creates a condition for a boolean {@code symbol} which matches if the symbol evaluates to true.
+     *
+     * @see InputCondition#matches(Input)
+     */
+    @SuppressWarnings("unchecked")
+    public static BooleanSupplier compileCondition(Symbol symbol, InputFactory.Context<?> ctx) {
+        Node<?> node = tryCompile(symbol, ctx);
+        if (node instanceof BooleanNode) {
+            return (BooleanNode) node;
+        }
+        Input<Boolean> condition = (Input<Boolean>) (node == null ? ctx.add(symbol) : node);
+        return () -> InputCondition.matches(condition);
+    }
+
+    private enum Kind {
+        INTEGER,
+        LONG,
+        DOUBLE,
+        BOOLEAN
+    }
+
+    @Nullable
+    private static Kind kindOf(DataType<?> type) {
+        switch (type.id()) {
+            case ByteType.ID:
+            case ShortType.ID:
+            case IntegerType.ID:
+                return Kind.INTEGER;
+
+            case LongType.ID:
+            case TimestampType.ID_WITH_TZ:
+            case TimestampType.ID_WITHOUT_TZ:
+                return Kind.LONG;
+
+            case DoubleType.ID:
+                return Kind.DOUBLE;
+
+            case BooleanType.ID:
+                return Kind.BOOLEAN;
+
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Node<?> tryCompile(Symbol symbol, InputFactory.Context<?> ctx) {
+        if (!(symbol instanceof Function)) {
+            return null;
+        }
+        Function function = (Function) symbol;
+        FunctionIdent ident = function.info().ident();
+        if (ident.fqnName().schema() != null) {
+            // user defined function
+            return null;
+        }
+        List<Symbol> arguments = function.arguments();
+        List<DataType> argumentTypes = ident.argumentTypes();
+        switch (ident.name()) {
+            case ArithmeticFunctions.Names.ADD:
+                return arithmetic(Arithmetic.ADD, arguments, argumentTypes, ctx);
+            case ArithmeticFunctions.Names.SUBTRACT:
+                return arithmetic(Arithmetic.SUBTRACT, arguments, argumentTypes, ctx);
+            case ArithmeticFunctions.Names.MULTIPLY:
+                return arithmetic(Arithmetic.MULTIPLY, arguments, argumentTypes, ctx);
+            case ArithmeticFunctions.Names.DIVIDE:
+                return arithmetic(Arithmetic.DIVIDE, arguments, argumentTypes, ctx);
+            case ArithmeticFunctions.Names.MOD:
+            case ArithmeticFunctions.Names.MODULUS:
+                return arithmetic(Arithmetic.MODULUS, arguments, argumentTypes, ctx);
+
+            case EqOperator.NAME:
+                return comparison(Comparison.EQ, arguments, argumentTypes, ctx);
+            case LtOperator.NAME:
+                return comparison(Comparison.LT, arguments, argumentTypes, ctx);
+            case LteOperator.NAME:
+                return comparison(Comparison.LTE, arguments, argumentTypes, ctx);
+            case GtOperator.NAME:
+                return comparison(Comparison.GT, arguments, argumentTypes, ctx);
+            case GteOperator.NAME:
+                return comparison(Comparison.GTE, arguments, argumentTypes, ctx);
+
+            case AndOperator.NAME:
+                if (arguments.size() != 2) {
+                    return null;
+                }
+                return new And(booleanNode(arguments.get(0), ctx), booleanNode(arguments.get(1), ctx));
+            case OrOperator.NAME:
+                if (arguments.size() != 2) {
+                    return null;
+                }
+                return new Or(booleanNode(arguments.get(0), ctx), booleanNode(arguments.get(1), ctx));
+            case NotPredicate.NAME:
+                if (arguments.size() != 1) {
+                    return null;
+                }
+                return new Not(booleanNode(arguments.get(0), ctx));
+            case IsNullPredicate.NAME:
+                if (arguments.size() != 1) {
+                    return null;
+                }
+                return new IsNull(compile(arguments.get(0), ctx));
+
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Kind commonKind(List<Symbol> arguments, List<DataType> argumentTypes) {
+        if (arguments.size() != 2 || argumentTypes.size() != 2 || !argumentTypes.get(0).equals(argumentTypes.get(1))) {
+            return null;
+        }
+        return kindOf(argumentTypes.get(0));
+    }
+
+    @Nullable
+    private static Node<?> arithmetic(Arithmetic op,
+                                      List<Symbol> arguments,
+                                      List<DataType> argumentTypes,
+                                      InputFactory.Context<?> ctx) {
+        Kind kind = commonKind(arguments, argumentTypes);
+        if (kind == Kind.INTEGER || kind == Kind.LONG) {
+            return new LongArithmetic(
+                op, kind, longNode(arguments.get(0), kind, ctx), longNode(arguments.get(1), kind, ctx));
+        }
+        if (kind == Kind.DOUBLE) {
+            return new DoubleArithmetic(op, doubleNode(arguments.get(0), ctx), doubleNode(arguments.get(1), ctx));
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Node<?> comparison(Comparison op,
+                                      List<Symbol> arguments,
+                                      List<DataType> argumentTypes,
+                                      InputFactory.Context<?> ctx) {
+        Kind kind = commonKind(arguments, argumentTypes);
+        if (kind == Kind.INTEGER || kind == Kind.LONG) {
+            return new LongComparison(op, longNode(arguments.get(0), kind, ctx), longNode(arguments.get(1), kind, ctx));
+        }
+        if (kind == Kind.DOUBLE) {
+            return new DoubleComparison(op, doubleNode(arguments.get(0), ctx), doubleNode(arguments.get(1), ctx));
+        }
+        return null;
+    }
+
+    private static LongNode longNode(Symbol symbol, Kind kind, InputFactory.Context<?> ctx) {
+        if (symbol instanceof Literal) {
+            Object value = ((Literal<?>) symbol).value();
+            return new LongConstant(kind, value == null ? null : ((Number) value).longValue());
+        }
+        Node<?> node = tryCompile(symbol, ctx);
+        if (node instanceof LongNode && node.kind == kind) {
+            return (LongNode) node;
+        }
+        return new LongInput(kind, node == null ? ctx.add(symbol) : node);
+    }
+
+    private static DoubleNode doubleNode(Symbol symbol, InputFactory.Context<?> ctx) {
+        if (symbol instanceof Literal) {
+            Object value = ((Literal<?>) symbol).value();
+            return new DoubleConstant(value == null ? null : ((Number) value).doubleValue());
+        }
+        Node<?> node = tryCompile(symbol, ctx);
+        if (node instanceof DoubleNode) {
+            return (DoubleNode) node;
+        }
+        return new DoubleInput(node == null ? ctx.add(symbol) : node);
+    }
+
+    private static BooleanNode booleanNode(Symbol symbol, InputFactory.Context<?> ctx) {
+        Node<?> node = tryCompile(symbol, ctx);
+        if (node instanceof BooleanNode) {
+            return (BooleanNode) node;
+        }
+        return new BooleanInput(node == null ? ctx.add(symbol) : node);
+    }
+
+    /**
+     * Base of all compiled evaluators.
+     * Evaluators of primitive values set {@link #wasNull} instead of returning null.
+     */
+    private abstract static class Node<T> implements Input<T> {
+
+        final Kind kind;
+        boolean wasNull;
+
+        Node(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    private abstract static class LongNode extends Node<Number> {
+
+        LongNode(Kind kind) {
+            super(kind);
+        }
+
+        abstract long evaluate();
+
+        @Override
+        public Number value() {
+            long value = evaluate();
+            if (wasNull) {
+                return null;
+            }
+            return kind == Kind.INTEGER ? (Number) Integer.valueOf((int) value) : (Number) Long.valueOf(value);
+        }
+    }
+
+    private abstract static class DoubleNode extends Node<Double> {
+
+        DoubleNode() {
+            super(Kind.DOUBLE);
+        }
+
+        abstract double evaluate();
+
+        @Override
+        public Double value() {
+            double value = evaluate();
+            return wasNull ? null : value;
+        }
+    }
+
+    private abstract static class BooleanNode extends Node<Boolean> implements BooleanSupplier {
+
+        BooleanNode() {
+            super(Kind.BOOLEAN);
+        }
+
+        abstract boolean evaluate();
+
+        @Override
+        public Boolean value() {
+            boolean value = evaluate();
+            return wasNull ? null : value;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            boolean value = evaluate();
+            return !wasNull && value;
+        }
+    }
+
+    private static final class LongConstant extends LongNode {
+
+        private final long value;
+
+        LongConstant(Kind kind, @Nullable Long value) {
+            super(kind);
+            this.wasNull = value == null;
+            this.value = value == null ? 0L : value;
+        }
+
+        @Override
+        long evaluate() {
+            return value;
+        }
+    }
+
+    private static final class DoubleConstant extends DoubleNode {
+
+        private final double value;
+
+        DoubleConstant(@Nullable Double value) {
+            this.wasNull = value == null;
+            this.value = value == null ? 0.0 : value;
+        }
+
+        @Override
+        double evaluate() {
+            return value;
+        }
+    }
+
+    private static final class LongInput extends LongNode {
+
+        private final Input<?> input;
+
+        LongInput(Kind kind, Input<?> input) {
+            super(kind);
+            this.input = input;
+        }
+
+        @Override
+        long evaluate() {
+            Object value = input.value();
+            if (value == null) {
+                wasNull = true;
+                return 0L;
+            }
+            wasNull = false;
+            return ((Number) value).longValue();
+        }
+    }
+
+    private static final class DoubleInput extends DoubleNode {
+
+        private final Input<?> input;
+
+        DoubleInput(Input<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        double evaluate() {
+            Object value = input.value();
+            if (value == null) {
+                wasNull = true;
+                return 0.0;
+            }
+            wasNull = false;
+            return ((Number) value).doubleValue();
+        }
+    }
+
+    private static final class BooleanInput extends BooleanNode {
+
+        private final Input<?> input;
+
+        BooleanInput(Input<?> input) {
+            this.input = input;
+        }
+
+        @Override
+        boolean evaluate() {
+            Boolean value = (Boolean) input.value();
+            if (value == null) {
+                wasNull = true;
+                return false;
+            }
+            wasNull = false;
+            return value;
+        }
+    }
+
+    private enum Arithmetic {
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        MODULUS
+    }
+
+    private static final class LongArithmetic extends LongNode {
+
+        private final Arithmetic op;
+        private final LongNode left;
+        private final LongNode right;
+
+        LongArithmetic(Arithmetic op, Kind kind, LongNode left, LongNode right) {
+            super(kind);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long evaluate() {
+            long a = left.evaluate();
+            long b = right.evaluate();
+            if (left.wasNull || right.wasNull) {
+                wasNull = true;
+                return 0L;
+            }
+            wasNull = false;
+            try {
+                return kind == Kind.INTEGER ? evaluate(op, (int) a, (int) b) : evaluate(op, a, b);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+
+        private static long evaluate(Arithmetic op, long a, long b) {
+            switch (op) {
+                case ADD:
+                    return Math.addExact(a, b);
+                case SUBTRACT:
+                    return Math.subtractExact(a, b);
+                case MULTIPLY:
+                    return Math.multiplyExact(a, b);
+                case DIVIDE:
+                    return a / b;
+                case MODULUS:
+                    return a % b;
+                default:
+                    throw new AssertionError("Unexpected arithmetic operation: " + op);
+            }
+        }
+
+        private static int evaluate(Arithmetic op, int a, int b) {
+            switch (op) {
+                case ADD:
+                    return Math.addExact(a, b);
+                case SUBTRACT:
+                    return Math.subtractExact(a, b);
+                case MULTIPLY:
+                    return Math.multiplyExact(a, b);
+                case DIVIDE:
+                    return a / b;
+                case MODULUS:
+                    return a % b;
+                default:
+                    throw new AssertionError("Unexpected arithmetic operation: " + op);
+            }
+        }
+    }
+
+    private static final class DoubleArithmetic extends DoubleNode {
+
+        private final Arithmetic op;
+        private final DoubleNode left;
+        private final DoubleNode right;
+
+        DoubleArithmetic(Arithmetic op, DoubleNode left, DoubleNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate() {
+            double a = left.evaluate();
+            double b = right.evaluate();
+            if (left.wasNull || right.wasNull) {
+                wasNull = true;
+                return 0.0;
+            }
+            wasNull = false;
+            switch (op) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case MODULUS:
+                    return a % b;
+                default:
+                    throw new AssertionError("Unexpected arithmetic operation: " + op);
+            }
+        }
+    }
+
+    private enum Comparison {
+        EQ,
+        LT,
+        LTE,
+        GT,
+        GTE;
+
+        boolean matches(int cmpResult) {
+            switch (this) {
+                case EQ:
+                    return cmpResult == 0;
+                case LT:
+                    return cmpResult < 0;
+                case LTE:
+                    return cmpResult <= 0;
+                case GT:
+                    return cmpResult > 0;
+                case GTE:
+                    return cmpResult >= 0;
+                default:
+                    throw new AssertionError("Unexpected comparison: " + this);
+            }
+        }
+    }
+
+    private static final class LongComparison extends BooleanNode {
+
+        private final Comparison op;
+        private final LongNode left;
+        private final LongNode right;
+
+        LongComparison(Comparison op, LongNode left, LongNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluate() {
+            long a = left.evaluate();
+            long b = right.evaluate();
+            wasNull = left.wasNull || right.wasNull;
+            return !wasNull && op.matches(Long.compare(a, b));
+        }
+    }
+
+    /**
+     * Uses {@link Double#compare(double, double)} like the interpreted operators, which differs from the
+     * primitive comparison operators for {@code NaN} and {@code -0.0}.
+     */
+    private static final class DoubleComparison extends BooleanNode {
+
+        private final Comparison op;
+        private final DoubleNode left;
+        private final DoubleNode right;
+
+        DoubleComparison(Comparison op, DoubleNode left, DoubleNode right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluate() {
+            double a = left.evaluate();
+            double b = right.evaluate();
+            wasNull = left.wasNull || right.wasNull;
+            return !wasNull && op.matches(Double.compare(a, b));
+        }
+    }
+
+    private static final class And extends BooleanNode {
+
+        private final BooleanNode left;
+        private final BooleanNode right;
+
+        And(BooleanNode left, BooleanNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluate() {
+            boolean a = left.evaluate();
+            if (!left.wasNull && !a) {
+                wasNull = false;
+                return false;
+            }
+            boolean b = right.evaluate();
+            if (!right.wasNull && !b) {
+                wasNull = false;
+                return false;
+            }
+            wasNull = left.wasNull || right.wasNull;
+            return !wasNull;
+        }
+    }
+
+    private static final class Or extends BooleanNode {
+
+        private final BooleanNode left;
+        private final BooleanNode right;
+
+        Or(BooleanNode left, BooleanNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluate() {
+            boolean a = left.evaluate();
+            if (!left.wasNull && a) {
+                wasNull = false;
+                return true;
+            }
+            boolean b = right.evaluate();
+            if (!right.wasNull && b) {
+                wasNull = false;
+                return true;
+            }
+            wasNull = left.wasNull || right.wasNull;
+            return false;
+        }
+    }
+
+    private static final class Not extends BooleanNode {
+
+        private final BooleanNode argument;
+
+        Not(BooleanNode argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        boolean evaluate() {
+            boolean value = argument.evaluate();
+            wasNull = argument.wasNull;
+            return !wasNull && !value;
+        }
+    }
+
+    private static final class IsNull extends BooleanNode {
+
+        private final Input<?> argument;
+
+        IsNull(Input<?> argument) {
+            this.argument = argument;
+        }
+
+        @Override
+        boolean evaluate() {
+            return argument.value() == null;
+        }
+    }
+}
@@ -22,7 +22,6 @@
 
 package io.crate.expression;
 
-import io.crate.data.Input;
 import io.crate.data.Row;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.expression.symbol.Symbol;
@@ -30,11 +29,12 @@ import io.crate.metadata.TransactionContext;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 
 public class RowFilter implements Predicate<Row> {
 
-    private final Input<Boolean> filterCondition;
+    private final BooleanSupplier filterCondition;
     private final List<CollectExpression<Row, ?>> expressions;
 
     public static Predicate<Row> create(TransactionContext txnCtx, InputFactory inputFactory, @Nullable Symbol filterSymbol) {
@@ -46,8 +46,7 @@ public class RowFilter implements Predicate<Row> {
 
     private RowFilter(TransactionContext txnCtx, InputFactory inputFactory, Symbol filterSymbol) {
         InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx);
-        //noinspection unchecked
-        filterCondition = (Input) ctx.add(filterSymbol);
+        filterCondition = ExpressionCompiler.compileCondition(filterSymbol, ctx);
         expressions = ctx.expressions();
     }
 
@@ -58,7 +57,7 @@ public class RowFilter implements Predicate<Row> {
             CollectExpression<Row, ?> expression = expressions.get(i);
             expression.setNextRow(row);
         }
-        return InputCondition.matches(filterCondition);
+        return filterCondition.getAsBoolean();
     }
 
     @Override
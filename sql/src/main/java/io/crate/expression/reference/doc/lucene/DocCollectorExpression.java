@@ -41,6 +41,7 @@ public class DocCollectorExpression extends LuceneCollectorExpression<Map<String
     @Override
     public void startCollect(CollectorContext context) {
         sourceLookup = context.sourceLookup();
+        sourceLookup.registerAll();
     }
 
     @Override
@@ -92,6 +93,7 @@ public class DocCollectorExpression extends LuceneCollectorExpression<Map<String
         @Override
         public void startCollect(CollectorContext context) {
             sourceLookup = context.sourceLookup();
+            sourceLookup.register(path);
         }
 
         @Override
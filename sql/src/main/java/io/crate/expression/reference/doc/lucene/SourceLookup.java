@@ -23,12 +23,12 @@
 package io.crate.expression.reference.doc.lucene;
 
 
+import org.apache.lucene.codecs.StoredFieldsReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.xcontent.XContentHelper;
-import org.elasticsearch.common.xcontent.XContentType;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,7 +38,10 @@ import java.util.RandomAccess;
 public final class SourceLookup {
 
     private final SourceFieldVisitor fieldsVisitor = new SourceFieldVisitor();
+    private final SourceParser sourceParser = new SourceParser();
     private LeafReader reader;
+    @Nullable
+    private StoredFieldsReader storedFieldsReader;
     private int doc;
     private Map<String, Object> source;
     private boolean docVisited = false;
@@ -58,16 +61,49 @@ public final class SourceLookup {
         this.doc = doc;
     }
 
+    /**
+     * Sets a reader which is used instead of the reader of the segment to load the source of the following documents,
+     * for example a reader optimized for sequential access. Must be reset when the segment changes.
+     */
+    public void setStoredFieldsReader(@Nullable StoredFieldsReader storedFieldsReader) {
+        this.storedFieldsReader = storedFieldsReader;
+    }
+
+    /**
+     * Registers a column which will be looked up using {@link #get(List)}.
+     * Only registered columns are extracted when the source is parsed.
+     */
+    public void register(List<String> path) {
+        sourceParser.register(path);
+    }
+
+    /**
+     * Registers that the whole source will be looked up using {@link #sourceAsMap()}.
+     */
+    public void registerAll() {
+        sourceParser.registerAll();
+    }
+
     public Object get(List<String> path) {
+        ensureCovered(path);
         ensureSourceParsed();
         return extractValue(source, path, 0);
     }
 
     public Map<String, Object> sourceAsMap() {
+        ensureCovered(List.of());
         ensureSourceParsed();
         return source;
     }
 
+    private void ensureCovered(List<String> path) {
+        if (!sourceParser.covers(path)) {
+            // not registered upfront; parse the current document again including the column
+            sourceParser.register(path);
+            source = null;
+        }
+    }
+
     public BytesReference rawSource() {
         ensureDocVisited();
         return fieldsVisitor.source();
@@ -75,7 +111,7 @@ public final class SourceLookup {
 
     private Map<String, Object> loadSource() {
         ensureDocVisited();
-        return XContentHelper.convertToMap(fieldsVisitor.source(), false, XContentType.JSON).v2();
+        return sourceParser.parse(fieldsVisitor.source());
     }
 
     private void ensureSourceParsed() {
@@ -89,7 +125,11 @@ public final class SourceLookup {
             return;
         }
         try {
-            reader.document(doc, fieldsVisitor);
+            if (storedFieldsReader == null) {
+                reader.document(doc, fieldsVisitor);
+            } else {
+                storedFieldsReader.visitDocument(doc, fieldsVisitor);
+            }
             docVisited = true;
         } catch (IOException e) {
             throw new RuntimeException(e);
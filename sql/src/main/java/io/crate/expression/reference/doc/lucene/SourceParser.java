@@ -0,0 +1,187 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.expression.reference.doc.lucene;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the JSON {@code _source} of a document into a Map which only contains the registered columns.
+ * <p>
+ * The source is parsed in a single streaming pass: the values of registered columns are materialized,
+ * all other sub-trees are skipped by the parser without creating any objects for them.
+ * The resulting map has the same structure as the full source, so values can be extracted from it as usual.
+ * <p>
+ * If no column, or the whole source, has been registered, the full source is parsed.
+ * A SourceParser can be shared between threads once all columns have been registered.
+ */
+public final class SourceParser {
+
+    private static final class Node {
+
+        /**
+         * The child columns which are required, or null if the whole value of this column is required.
+         */
+        @Nullable
+        private Map<String, Node> children;
+
+        Node(@Nullable Map<String, Node> children) {
+            this.children = children;
+        }
+    }
+
+    private final Node root = new Node(new HashMap<>());
+
+    /**
+     * Registers a column which must be contained in the parsed source.
+     *
+     * @param path the path of the column starting at the root of the source, e.g. [o, x] for o['x'].
+     *             An empty path registers the whole source.
+     */
+    public void register(List<String> path) {
+        Node node = root;
+        for (int i = 0; i < path.size(); i++) {
+            if (node.children == null) {
+                // a parent column is already fully required
+                return;
+            }
+            node = node.children.computeIfAbsent(path.get(i), k -> new Node(new HashMap<>()));
+        }
+        node.children = null;
+    }
+
+    public void registerAll() {
+        root.children = null;
+    }
+
+    /**
+     * @return true if the value of the column with the given path is fully contained in the parsed source.
+     */
+    public boolean covers(List<String> path) {
+        if (parsesAll()) {
+            return true;
+        }
+        Node node = root;
+        for (int i = 0; i < path.size(); i++) {
+            node = node.children.get(path.get(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.children == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean parsesAll() {
+        return root.children == null || root.children.isEmpty();
+    }
+
+    public Map<String, Object> parse(BytesReference source) {
+        if (parsesAll()) {
+            return XContentHelper.convertToMap(source, false, XContentType.JSON).v2();
+        }
+        try (XContentParser parser = XContentHelper.createParser(
+            NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source, XContentType.JSON)) {
+
+            parser.nextToken();
+            // the parser is closed anyway, so there is no need to move to the end of the source
+            // once all top-level columns have been found
+            return parseObject(parser, root.children, true);
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("Failed to parse content to map", e);
+        }
+    }
+
+    private static Map<String, Object> parseObject(XContentParser parser,
+                                                   Map<String, Node> requiredColumns,
+                                                   boolean stopIfComplete) throws IOException {
+        HashMap<String, Object> values = new HashMap<>();
+        for (var token = parser.nextToken(); token == XContentParser.Token.FIELD_NAME; token = parser.nextToken()) {
+            String fieldName = parser.currentName();
+            token = parser.nextToken();
+            Node node = requiredColumns.get(fieldName);
+            if (node == null) {
+                parser.skipChildren();
+            } else {
+                values.put(fieldName, parseValue(parser, token, node));
+                if (stopIfComplete && values.size() == requiredColumns.size()) {
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Object parseValue(XContentParser parser, XContentParser.Token token, Node node) throws IOException {
+        if (node.children == null) {
+            return readValue(parser, token);
+        }
+        if (token == XContentParser.Token.START_OBJECT) {
+            return parseObject(parser, node.children, false);
+        } else if (token == XContentParser.Token.START_ARRAY) {
+            // the required child columns are extracted from each object of an array
+            ArrayList<Object> values = new ArrayList<>();
+            for (token = parser.nextToken(); token != XContentParser.Token.END_ARRAY; token = parser.nextToken()) {
+                values.add(parseValue(parser, token, node));
+            }
+            return values;
+        }
+        return readValue(parser, token);
+    }
+
+    /**
+     * Reads a value the same way as {@link XContentParser#map()} does
+     */
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.text();
+            case VALUE_NUMBER:
+                return parser.numberValue();
+            case VALUE_BOOLEAN:
+                return parser.booleanValue();
+            case START_OBJECT:
+                return parser.map();
+            case START_ARRAY:
+                return parser.list();
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.binaryValue();
+            default:
+                return null;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 
 package io.crate.expression.reference.sys.node;
 
+import io.crate.execution.engine.collect.QueryResultCacheStats;
 import io.crate.monitor.ExtendedOsStats;
 import io.crate.protocols.ConnectionStats;
 import io.crate.types.DataTypes;
@@ -38,6 +39,7 @@ import org.elasticsearch.monitor.os.OsInfo;
 import org.elasticsearch.monitor.os.OsStats;
 import org.elasticsearch.monitor.process.ProcessStats;
 import org.elasticsearch.threadpool.ThreadPoolStats;
+import org.elasticsearch.transport.TransportStats;
 
 import java.io.IOException;
 
@@ -62,6 +64,8 @@ public class NodeStatsContext implements Writeable {
     private ThreadPoolStats threadPools;
     private HttpStats httpStats;
     private ConnectionStats psqlStats;
+    private QueryResultCacheStats queryResultCacheStats;
+    private TransportStats transportStats;
 
     private String osName;
     private String osArch;
@@ -195,6 +199,14 @@ public class NodeStatsContext implements Writeable {
         return psqlStats;
     }
 
+    public QueryResultCacheStats queryResultCacheStats() {
+        return queryResultCacheStats;
+    }
+
+    public TransportStats transportStats() {
+        return transportStats;
+    }
+
     public long openTransportConnections() {
         return openTransportConnections;
     }
@@ -291,6 +303,14 @@ public class NodeStatsContext implements Writeable {
         this.psqlStats = psqlStats;
     }
 
+    public void queryResultCacheStats(QueryResultCacheStats queryResultCacheStats) {
+        this.queryResultCacheStats = queryResultCacheStats;
+    }
+
+    void transportStats(TransportStats transportStats) {
+        this.transportStats = transportStats;
+    }
+
     void openTransportConnections(long openTransportConnections) {
         this.openTransportConnections = openTransportConnections;
     }
@@ -326,6 +346,10 @@ public class NodeStatsContext implements Writeable {
         this.jvmName = DataTypes.STRING.readValueFrom(in);
         this.jvmVendor = DataTypes.STRING.readValueFrom(in);
         this.jvmVersion = DataTypes.STRING.readValueFrom(in);
+        if (in.getVersion().onOrAfter(Version.V_4_2_0)) {
+            this.queryResultCacheStats = in.readOptionalWriteable(QueryResultCacheStats::new);
+            this.transportStats = in.readOptionalWriteable(TransportStats::new);
+        }
     }
 
     @Override
@@ -365,5 +389,9 @@ public class NodeStatsContext implements Writeable {
         DataTypes.STRING.writeValueTo(out, jvmName);
         DataTypes.STRING.writeValueTo(out, jvmVendor);
         DataTypes.STRING.writeValueTo(out, jvmVersion);
+        if (out.getVersion().onOrAfter(Version.V_4_2_0)) {
+            out.writeOptionalWriteable(queryResultCacheStats);
+            out.writeOptionalWriteable(transportStats);
+        }
     }
 }
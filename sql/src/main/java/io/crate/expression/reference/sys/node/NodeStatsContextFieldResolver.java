@@ -24,6 +24,8 @@ package io.crate.expression.reference.sys.node;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import io.crate.execution.engine.collect.QueryResultCache;
+import io.crate.execution.engine.collect.QueryResultCacheStats;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.sys.SysNodesTableInfo;
 import io.crate.monitor.ExtendedNodeInfo;
@@ -49,6 +51,7 @@ import org.elasticsearch.monitor.process.ProcessService;
 import org.elasticsearch.node.NodeService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.transport.TransportStats;
 
 import javax.annotation.Nullable;
 import java.net.InetAddress;
@@ -79,6 +82,8 @@ public class NodeStatsContextFieldResolver {
     private final JvmService jvmService;
     private final FsService fsService;
     private final LongSupplier clusterStateVersion;
+    private final Supplier<QueryResultCacheStats> queryResultCacheStats;
+    private final Supplier<TransportStats> transportStats;
 
     @Inject
     @SuppressWarnings("unused")
@@ -88,7 +93,8 @@ public class NodeStatsContextFieldResolver {
                                          TransportService transportService,
                                          ThreadPool threadPool,
                                          ExtendedNodeInfo extendedNodeInfo,
-                                         PostgresNetty postgresNetty) {
+                                         PostgresNetty postgresNetty,
+                                         QueryResultCache queryResultCache) {
         this(
             clusterService::localNode,
             nodeService.getMonitorService(),
@@ -105,7 +111,9 @@ public class NodeStatsContextFieldResolver {
                 return boundTransportAddress.publishAddress();
             },
             () -> transportService.stats().getServerOpen(),
-            () -> clusterService.state().version()
+            () -> clusterService.state().version(),
+            queryResultCache::stats,
+            transportService::stats
         );
     }
 
@@ -119,7 +127,9 @@ public class NodeStatsContextFieldResolver {
                                   Supplier<ConnectionStats> psqlStats,
                                   Supplier<TransportAddress> boundPostgresAddress,
                                   LongSupplier numOpenTransportConnections,
-                                  LongSupplier clusterStateVersion) {
+                                  LongSupplier clusterStateVersion,
+                                  Supplier<QueryResultCacheStats> queryResultCacheStats,
+                                  Supplier<TransportStats> transportStats) {
         this.localNode = localNode;
         processService = monitorService.processService();
         osService = monitorService.osService();
@@ -133,6 +143,8 @@ public class NodeStatsContextFieldResolver {
         this.boundPostgresAddress = boundPostgresAddress;
         this.numOpenTransportConnections = numOpenTransportConnections;
         this.clusterStateVersion = clusterStateVersion;
+        this.queryResultCacheStats = queryResultCacheStats;
+        this.transportStats = transportStats;
     }
 
     public NodeStatsContext forTopColumnIdents(Collection<ColumnIdent> topColumnIdents) {
@@ -243,6 +255,18 @@ public class NodeStatsContextFieldResolver {
                     nodeStatsContext.openTransportConnections(numOpenTransportConnections.getAsLong());
                 }
             })
+            .put(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE, new Consumer<NodeStatsContext>() {
+                @Override
+                public void accept(NodeStatsContext context) {
+                    context.queryResultCacheStats(queryResultCacheStats.get());
+                }
+            })
+            .put(SysNodesTableInfo.Columns.TRANSPORT_COMPRESSION, new Consumer<NodeStatsContext>() {
+                @Override
+                public void accept(NodeStatsContext context) {
+                    context.transportStats(transportStats.get());
+                }
+            })
             .put(SysNodesTableInfo.Columns.OS, new Consumer<NodeStatsContext>() {
                 @Override
                 public void accept(NodeStatsContext context) {
@@ -22,8 +22,6 @@
 
 package io.crate.lucene;
 
-import io.crate.data.Input;
-import io.crate.expression.InputCondition;
 import io.crate.expression.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.expression.symbol.Function;
 import io.crate.expression.symbol.RefVisitor;
@@ -46,6 +44,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 /**
  * Query implementation which filters docIds by evaluating {@code condition} on each docId to verify if it matches.
@@ -56,11 +55,11 @@ class GenericFunctionQuery extends Query {
 
     private final Function function;
     private final LuceneCollectorExpression[] expressions;
-    private final Input<Boolean> condition;
+    private final BooleanSupplier condition;
 
     GenericFunctionQuery(Function function,
                          Collection<? extends LuceneCollectorExpression<?>> expressions,
-                         Input<Boolean> condition) {
+                         BooleanSupplier condition) {
         this.function = function;
         // inner loop iterates over expressions - call toArray to avoid iterator allocations
         this.expressions = expressions.toArray(new LuceneCollectorExpression[0]);
@@ -138,11 +137,11 @@ class GenericFunctionQuery extends Query {
 
     private static class FilteredTwoPhaseIterator extends TwoPhaseIterator {
 
-        private final Input<Boolean> condition;
+        private final BooleanSupplier condition;
         private final LuceneCollectorExpression[] expressions;
 
         FilteredTwoPhaseIterator(LeafReader reader,
-                                 Input<Boolean> condition,
+                                 BooleanSupplier condition,
                                  LuceneCollectorExpression[] expressions) {
             super(DocIdSetIterator.all(reader.maxDoc()));
             this.condition = condition;
@@ -155,7 +154,7 @@ class GenericFunctionQuery extends Query {
             for (LuceneCollectorExpression expression : expressions) {
                 expression.setNextDocId(doc);
             }
-            return InputCondition.matches(condition);
+            return condition.getAsBoolean();
         }
 
         @Override
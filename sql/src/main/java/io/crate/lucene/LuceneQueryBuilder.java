@@ -28,6 +28,7 @@ import io.crate.data.Input;
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.exceptions.VersioninigValidationException;
 import io.crate.execution.engine.collect.DocInputFactory;
+import io.crate.expression.ExpressionCompiler;
 import io.crate.expression.InputFactory;
 import io.crate.expression.eval.EvaluatingNormalizer;
 import io.crate.expression.operator.AndOperator;
@@ -97,6 +98,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 import static io.crate.expression.eval.NullEliminator.eliminateNullsIfPossible;
@@ -586,8 +588,7 @@ public class LuceneQueryBuilder {
                  || r.valueType() == DataTypes.GEO_POINT);
 
         final InputFactory.Context<? extends LuceneCollectorExpression<?>> ctx = context.docInputFactory.getCtx(context.txnCtx);
-        @SuppressWarnings("unchecked")
-        final Input<Boolean> condition = (Input<Boolean>) ctx.add(function);
+        final BooleanSupplier condition = ExpressionCompiler.compileCondition(function, ctx);
         @SuppressWarnings("unchecked")
         final Collection<? extends LuceneCollectorExpression<?>> expressions = ctx.expressions();
         final CollectorContext collectorContext = new CollectorContext(context.queryShardContext::getForField);
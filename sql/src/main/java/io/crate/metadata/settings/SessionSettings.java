@@ -24,6 +24,7 @@ package io.crate.metadata.settings;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.metadata.SearchPath;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -36,11 +37,17 @@ public final class SessionSettings implements Writeable {
     private final String userName;
     private final SearchPath searchPath;
     private final boolean hashJoinsEnabled;
+    private final boolean resultCacheEnabled;
 
     public SessionSettings(StreamInput in) throws IOException {
         this.userName = in.readString();
         this.searchPath = SearchPath.createSearchPathFrom(in);
         this.hashJoinsEnabled = in.readBoolean();
+        if (in.getVersion().onOrAfter(Version.V_4_2_0)) {
+            this.resultCacheEnabled = in.readBoolean();
+        } else {
+            this.resultCacheEnabled = true;
+        }
     }
 
     @VisibleForTesting
@@ -49,9 +56,17 @@ public final class SessionSettings implements Writeable {
     }
 
     public SessionSettings(String userName, SearchPath searchPath, boolean hashJoinsEnabled) {
+        this(userName, searchPath, hashJoinsEnabled, true);
+    }
+
+    public SessionSettings(String userName,
+                           SearchPath searchPath,
+                           boolean hashJoinsEnabled,
+                           boolean resultCacheEnabled) {
         this.userName = userName;
         this.searchPath = searchPath;
         this.hashJoinsEnabled = hashJoinsEnabled;
+        this.resultCacheEnabled = resultCacheEnabled;
     }
 
     public String userName() {
@@ -70,11 +85,18 @@ public final class SessionSettings implements Writeable {
         return hashJoinsEnabled;
     }
 
+    public boolean resultCacheEnabled() {
+        return resultCacheEnabled;
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeString(userName);
         searchPath.writeTo(out);
         out.writeBoolean(hashJoinsEnabled);
+        if (out.getVersion().onOrAfter(Version.V_4_2_0)) {
+            out.writeBoolean(resultCacheEnabled);
+        }
     }
 
     @Override
@@ -88,11 +110,12 @@ public final class SessionSettings implements Writeable {
         SessionSettings that = (SessionSettings) o;
         return Objects.equals(userName, that.userName) &&
                Objects.equals(searchPath, that.searchPath) &&
-               Objects.equals(hashJoinsEnabled, that.hashJoinsEnabled);
+               Objects.equals(hashJoinsEnabled, that.hashJoinsEnabled) &&
+               Objects.equals(resultCacheEnabled, that.resultCacheEnabled);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(userName, searchPath, hashJoinsEnabled);
+        return Objects.hash(userName, searchPath, hashJoinsEnabled, resultCacheEnabled);
     }
 }
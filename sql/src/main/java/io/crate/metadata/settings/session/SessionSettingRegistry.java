@@ -38,6 +38,7 @@ public class SessionSettingRegistry {
 
     private static final String SEARCH_PATH_KEY = "search_path";
     public static final String HASH_JOIN_KEY = "enable_hashjoin";
+    static final String RESULT_CACHE_KEY = "enable_result_cache";
     static final String MAX_INDEX_KEYS = "max_index_keys";
     private static final String SERVER_VERSION_NUM = "server_version_num";
     private static final String SERVER_VERSION = "server_version";
@@ -65,6 +66,19 @@ public class SessionSettingRegistry {
                     () -> String.valueOf(true),
                     "Considers using the Hash Join instead of the Nested Loop Join implementation.",
                     DataTypes.BOOLEAN.getName()))
+            .put(RESULT_CACHE_KEY,
+                new SessionSetting<>(
+                    objects -> {
+                        if (objects.length != 1) {
+                            throw new IllegalArgumentException(RESULT_CACHE_KEY + " should have only one argument.");
+                        }
+                    },
+                    objects -> DataTypes.BOOLEAN.value(objects[0]),
+                    SessionContext::setResultCacheEnabled,
+                    s -> Boolean.toString(s.resultCacheEnabled()),
+                    () -> String.valueOf(true),
+                    "Enables the use of the query result cache.",
+                    DataTypes.BOOLEAN.getName()))
             .put(MAX_INDEX_KEYS,
                 new SessionSetting<>(
                     objects -> {},
@@ -61,6 +61,8 @@ public class SysNodesTableInfo {
     private static final String SYS_COL_OS_INFO = "os_info";
     private static final String SYS_COL_PROCESS = "process";
     private static final String SYS_COL_FS = "fs";
+    private static final String SYS_COL_QUERY_RESULT_CACHE = "query_result_cache";
+    private static final String SYS_COL_TRANSPORT_COMPRESSION = "transport_compression";
 
     public static class Columns {
         public static final ColumnIdent ID = new ColumnIdent(SYS_COL_ID);
@@ -92,6 +94,10 @@ public class SysNodesTableInfo {
         public static final ColumnIdent PROCESS = new ColumnIdent(SYS_COL_PROCESS);
 
         public static final ColumnIdent FS = new ColumnIdent(SYS_COL_FS);
+
+        public static final ColumnIdent QUERY_RESULT_CACHE = new ColumnIdent(SYS_COL_QUERY_RESULT_CACHE);
+
+        public static final ColumnIdent TRANSPORT_COMPRESSION = new ColumnIdent(SYS_COL_TRANSPORT_COMPRESSION);
     }
 
 
@@ -229,6 +235,20 @@ public class SysNodesTableInfo {
                     .add("percent", SHORT, x -> x.processStats().getCpu().getPercent())
                 .endObject()
             .endObject()
+            .startObject("query_result_cache")
+                .add("entries", LONG, x -> x.queryResultCacheStats().entries())
+                .add("size", LONG, x -> x.queryResultCacheStats().sizeInBytes())
+                .add("hits", LONG, x -> x.queryResultCacheStats().hits())
+                .add("misses", LONG, x -> x.queryResultCacheStats().misses())
+                .add("evictions", LONG, x -> x.queryResultCacheStats().evictions())
+            .endObject()
+            .startObject("transport_compression")
+                .add("messages", LONG, x -> x.transportStats().txCompressedCount())
+                .add("uncompressed_size", LONG, x -> x.transportStats().txUncompressedSize().getBytes())
+                .add("compressed_size", LONG, x -> x.transportStats().txCompressedSize().getBytes())
+                .add("ratio", DOUBLE, x -> x.transportStats().txCompressionRatio())
+                .add("time", LONG, x -> x.transportStats().txCompressionTime().millis())
+            .endObject()
             .startObject("fs")
                 .startObject("total")
                     .add("size", LONG, x -> FsInfoHelpers.Path.size(x.fsInfo().getTotal()))
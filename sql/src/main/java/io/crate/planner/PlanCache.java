@@ -0,0 +1,206 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.action.sql.SessionContext;
+import io.crate.analyze.AnalyzedInsertStatement;
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.ParamTypeHints;
+import io.crate.analyze.Relations;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.metadata.SearchPath;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.common.settings.Setting;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Per node cache of parsed statements and of {@link LogicalPlan}s.
+ * <p>
+ * Logical plans bind parameters and sub-query results only once they are executed, so the plan of a statement can
+ * be re-used for any parameters. Plans are keyed by:
+ *
+ * <ul>
+ *     <li>the SQL text</li>
+ *     <li>the session properties that affect analysis and planning (user, search path, hash join setting)</li>
+ *     <li>the parameter type hints</li>
+ *     <li>the version of the cluster metadata, which changes on any schema or table change</li>
+ *     <li>the version of the {@link io.crate.statistics.TableStats}, which changes if the statistics are updated,
+ *     as they affect the join order and the join algorithm</li>
+ * </ul>
+ *
+ * All plans are dropped if the cluster metadata changes.
+ * <p>
+ * Only plans of SELECT and INSERT statements are cached, and only if they don't contain non-deterministic functions
+ * like {@code current_timestamp} or sub-queries.
+ * <p>
+ * The statement must still be analyzed for each execution, as the analysis also checks the privileges of the user.
+ */
+public final class PlanCache implements ClusterStateListener {
+
+    public static final Setting<Integer> NODE_PLAN_CACHE_SIZE_SETTING = Setting.intSetting(
+        "node.sql.plan_cache.size",
+        1000,
+        0,
+        Setting.Property.NodeScope);
+
+    private static final Predicate<Symbol> NOT_CACHEABLE =
+        s -> s instanceof SelectSymbol || (s instanceof Function && !((Function) s).info().isDeterministic());
+
+    private final boolean enabled;
+    private final Cache<String, Statement> statements;
+    private final Cache<Key, LogicalPlan> plans;
+
+    public PlanCache(int maxSize) {
+        this.enabled = maxSize > 0;
+        this.statements = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        this.plans = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Parses the query or returns a previously parsed statement for the same query.
+     */
+    public Statement parse(String query) {
+        if (!enabled) {
+            return SqlParser.createStatement(query);
+        }
+        Statement statement = statements.getIfPresent(query);
+        if (statement == null) {
+            statement = SqlParser.createStatement(query);
+            statements.put(query, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Returns the cached plan of the statement or creates it using {@code planner} and caches it if possible.
+     */
+    public Plan getOrPlan(String query,
+                          AnalyzedStatement analyzedStatement,
+                          ParamTypeHints paramTypeHints,
+                          SessionContext sessionContext,
+                          long metaDataVersion,
+                          long tableStatsVersion,
+                          Supplier<Plan> planner) {
+        if (!enabled || !isCacheable(analyzedStatement)) {
+            return planner.get();
+        }
+        Key key = new Key(query, sessionContext, paramTypeHints, metaDataVersion, tableStatsVersion);
+        LogicalPlan cachedPlan = plans.getIfPresent(key);
+        if (cachedPlan != null) {
+            return cachedPlan;
+        }
+        Plan plan = planner.get();
+        if (plan instanceof LogicalPlan) {
+            plans.put(key, (LogicalPlan) plan);
+        }
+        return plan;
+    }
+
+    @VisibleForTesting
+    public long numCachedPlans() {
+        return plans.size();
+    }
+
+    private static boolean isCacheable(AnalyzedStatement analyzedStatement) {
+        if (!(analyzedStatement instanceof AnalyzedRelation || analyzedStatement instanceof AnalyzedInsertStatement)) {
+            return false;
+        }
+        boolean[] cacheable = new boolean[] { true };
+        Relations.traverseDeepSymbols(analyzedStatement, symbol -> {
+            if (cacheable[0] && SymbolVisitors.any(NOT_CACHEABLE, symbol)) {
+                cacheable[0] = false;
+            }
+        });
+        return cacheable[0];
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged()) {
+            plans.invalidateAll();
+        }
+    }
+
+    private static final class Key {
+
+        private final String query;
+        private final String userName;
+        private final SearchPath searchPath;
+        private final boolean hashJoinEnabled;
+        private final ParamTypeHints paramTypeHints;
+        private final long metaDataVersion;
+        private final long tableStatsVersion;
+
+        Key(String query,
+            SessionContext sessionContext,
+            ParamTypeHints paramTypeHints,
+            long metaDataVersion,
+            long tableStatsVersion) {
+            this.query = query;
+            this.userName = sessionContext.user().name();
+            this.searchPath = sessionContext.searchPath();
+            this.hashJoinEnabled = sessionContext.isHashJoinEnabled();
+            this.paramTypeHints = paramTypeHints;
+            this.metaDataVersion = metaDataVersion;
+            this.tableStatsVersion = tableStatsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hashJoinEnabled == key.hashJoinEnabled &&
+                   metaDataVersion == key.metaDataVersion &&
+                   tableStatsVersion == key.tableStatsVersion &&
+                   query.equals(key.query) &&
+                   userName.equals(key.userName) &&
+                   searchPath.equals(key.searchPath) &&
+                   paramTypeHints.equals(key.paramTypeHints);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                query, userName, searchPath, hashJoinEnabled, paramTypeHints, metaDataVersion, tableStatsVersion);
+        }
+    }
+}
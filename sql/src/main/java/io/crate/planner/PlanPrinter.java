@@ -241,7 +241,9 @@ public final class PlanPrinter {
             return createMap(plan, createSubMap()
                 .put("left", process(plan.left(), context).build())
                 .put("right", process(plan.right(), context).build())
-                .put("joinPhase", phaseMap(plan.joinPhase())));
+                .put("joinPhase", phaseMap(plan.joinPhase()))
+                .put("estimatedRows", plan.estimatedRows())
+                .put("estimatedCost", plan.estimatedCost()));
         }
 
         @Override
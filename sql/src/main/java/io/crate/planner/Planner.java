@@ -31,6 +31,7 @@ import io.crate.analyze.AnalyzedAlterTableRename;
 import io.crate.analyze.AnalyzedAlterUser;
 import io.crate.analyze.AnalyzedAnalyze;
 import io.crate.analyze.AnalyzedBegin;
+import io.crate.analyze.AnalyzedClose;
 import io.crate.analyze.AnalyzedCommit;
 import io.crate.analyze.AnalyzedCopyFrom;
 import io.crate.analyze.AnalyzedCopyTo;
@@ -42,6 +43,7 @@ import io.crate.analyze.AnalyzedCreateSnapshot;
 import io.crate.analyze.AnalyzedCreateTable;
 import io.crate.analyze.AnalyzedCreateUser;
 import io.crate.analyze.AnalyzedDeallocate;
+import io.crate.analyze.AnalyzedDeclare;
 import io.crate.analyze.AnalyzedDecommissionNode;
 import io.crate.analyze.AnalyzedDeleteStatement;
 import io.crate.analyze.AnalyzedDropAnalyzer;
@@ -51,6 +53,7 @@ import io.crate.analyze.AnalyzedDropSnapshot;
 import io.crate.analyze.AnalyzedDropTable;
 import io.crate.analyze.AnalyzedDropUser;
 import io.crate.analyze.AnalyzedDropView;
+import io.crate.analyze.AnalyzedFetch;
 import io.crate.analyze.AnalyzedGCDanglingArtifacts;
 import io.crate.analyze.AnalyzedInsertStatement;
 import io.crate.analyze.AnalyzedKill;
@@ -475,6 +478,21 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
         return NoopPlan.INSTANCE;
     }
 
+    @Override
+    public Plan visitDeclare(AnalyzedDeclare analysis, PlannerContext context) {
+        return NoopPlan.INSTANCE;
+    }
+
+    @Override
+    public Plan visitFetch(AnalyzedFetch analysis, PlannerContext context) {
+        return NoopPlan.INSTANCE;
+    }
+
+    @Override
+    public Plan visitClose(AnalyzedClose analysis, PlannerContext context) {
+        return NoopPlan.INSTANCE;
+    }
+
     @Override
     public Plan visitExplainStatement(ExplainAnalyzedStatement explainAnalyzedStatement, PlannerContext context) {
         ProfilingContext ctx = explainAnalyzedStatement.context();
@@ -532,5 +550,9 @@ public class Planner extends AnalyzedStatementVisitor<PlannerContext, Plan> {
     public Functions functions() {
         return functions;
     }
+
+    public TableStats tableStats() {
+        return tableStats;
+    }
 }
 
@@ -69,6 +69,9 @@ public class Join implements ExecutionPlan, ResultDescription {
     @Nullable
     private PositionalOrderBy orderBy;
 
+    private final long estimatedRows;
+    private final long estimatedCost;
+
     public Join(JoinPhase joinPhase,
                 ExecutionPlan left,
                 ExecutionPlan right,
@@ -76,7 +79,9 @@ public class Join implements ExecutionPlan, ResultDescription {
                 int offset,
                 int maxRowsPerNode,
                 int numOutputs,
-                @Nullable PositionalOrderBy orderBy) {
+                @Nullable PositionalOrderBy orderBy,
+                long estimatedRows,
+                long estimatedCost) {
         this.left = left;
         this.right = right;
         this.joinPhase = joinPhase;
@@ -85,6 +90,8 @@ public class Join implements ExecutionPlan, ResultDescription {
         this.maxRowsPerNode = maxRowsPerNode;
         this.orderBy = orderBy;
         this.numOutputs = numOutputs;
+        this.estimatedRows = estimatedRows;
+        this.estimatedCost = estimatedCost;
     }
 
     public ExecutionPlan left() {
@@ -99,6 +106,20 @@ public class Join implements ExecutionPlan, ResultDescription {
         return joinPhase;
     }
 
+    /**
+     * @return the number of rows the planner expects the join to produce, -1 if unknown
+     */
+    public long estimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * @return the estimated cost of the join in number of processed rows, -1 if statistics are missing
+     */
+    public long estimatedCost() {
+        return estimatedCost;
+    }
+
     @Override
     public ResultDescription resultDescription() {
         return this;
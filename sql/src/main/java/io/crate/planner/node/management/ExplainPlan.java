@@ -30,6 +30,7 @@ import io.crate.data.InMemoryBatchIterator;
 import io.crate.data.Row;
 import io.crate.data.Row1;
 import io.crate.data.RowConsumer;
+import io.crate.execution.MultiPhaseExecutor;
 import io.crate.execution.dsl.phases.ExecutionPhase;
 import io.crate.execution.dsl.phases.NodeOperation;
 import io.crate.execution.dsl.phases.NodeOperationGrouper;
@@ -37,15 +38,19 @@ import io.crate.execution.dsl.phases.NodeOperationTree;
 import io.crate.execution.engine.profile.TransportCollectProfileNodeAction;
 import io.crate.execution.engine.profile.TransportCollectProfileOperation;
 import io.crate.execution.support.OneRowActionListener;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
 import io.crate.planner.DependencyCarrier;
 import io.crate.planner.ExecutionPlan;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanPrinter;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.operators.ExplainLogicalPlan;
+import io.crate.planner.operators.HashJoin;
 import io.crate.planner.operators.LogicalPlan;
 import io.crate.planner.operators.LogicalPlanner;
 import io.crate.planner.operators.SubQueryResults;
+import io.crate.planner.optimizer.rule.PushRuntimeFilterBeneathHashJoin;
 import io.crate.planner.statement.CopyFromPlan;
 import io.crate.profile.ProfilingContext;
 import io.crate.profile.Timer;
@@ -101,32 +106,27 @@ public class ExplainPlan implements Plan {
         if (context != null) {
             assert subPlan instanceof LogicalPlan : "subPlan must be a LogicalPlan";
             LogicalPlan plan = (LogicalPlan) subPlan;
-            /**
-             * EXPLAIN ANALYZE does not support analyzing {@link io.crate.planner.MultiPhasePlan}s
-             */
-            if (plan.dependencies().isEmpty()) {
-                UUID jobId = plannerContext.jobId();
-                BaseResultReceiver resultReceiver = new BaseResultReceiver();
-                RowConsumer noopRowConsumer = new RowConsumerToResultReceiver(resultReceiver, 0, t -> {});
-
-                Timer timer = context.createTimer(Phase.Execute.name());
-                timer.start();
-
-                NodeOperationTree operationTree = LogicalPlanner.getNodeOperationTree(
-                    plan, dependencies, plannerContext, params, subQueryResults);
-
-                resultReceiver.completionFuture()
-                    .whenComplete(createResultConsumer(dependencies, consumer, jobId, timer, operationTree));
-
-                LogicalPlanner.executeNodeOpTree(
-                    dependencies,
-                    plannerContext.transactionContext(),
-                    jobId,
-                    noopRowConsumer,
-                    true,
-                    operationTree
-                );
+            Map<SelectSymbol, HashJoin> joinByRuntimeFilter = new HashMap<>();
+            collectRuntimeFilters(plan, joinByRuntimeFilter);
+            Map<LogicalPlan, SelectSymbol> planDependencies = plan.dependencies();
+            if (planDependencies.isEmpty()) {
+                analyze(plan, dependencies, plannerContext, consumer, params, subQueryResults, Map.of());
+            } else if (joinByRuntimeFilter.keySet().containsAll(planDependencies.values())) {
+                // The keys of runtime filters are collected upfront like the results of sub-queries, but only the
+                // plan which uses them is profiled.
+                MultiPhaseExecutor.execute(planDependencies, dependencies, plannerContext, params)
+                    .whenComplete((keysByRuntimeFilter, failure) -> {
+                        if (failure == null) {
+                            analyze(plan, dependencies, plannerContext, consumer, params, keysByRuntimeFilter,
+                                explainRuntimeFilters(joinByRuntimeFilter, keysByRuntimeFilter));
+                        } else {
+                            consumer.accept(null, failure);
+                        }
+                    });
             } else {
+                /**
+                 * EXPLAIN ANALYZE does not support analyzing {@link io.crate.planner.MultiPhasePlan}s
+                 */
                 consumer.accept(null,
                     new UnsupportedOperationException("EXPLAIN ANALYZE does not support profiling multi-phase plans, " +
                                                       "such as queries with scalar subselects."));
@@ -135,7 +135,8 @@ public class ExplainPlan implements Plan {
             try {
                 Map<String, Object> map;
                 if (subPlan instanceof LogicalPlan) {
-                    map = ExplainLogicalPlan.explainMap((LogicalPlan) subPlan, plannerContext, dependencies.projectionBuilder());
+                    map = ExplainLogicalPlan.explainMap(
+                        (LogicalPlan) subPlan, plannerContext, dependencies.projectionBuilder(), params, subQueryResults);
                 } else if (subPlan instanceof CopyFromPlan) {
                     ExecutionPlan executionPlan = CopyFromPlan.planCopyFromExecution(
                         ((CopyFromPlan) subPlan).copyFrom(),
@@ -156,18 +157,89 @@ public class ExplainPlan implements Plan {
         }
     }
 
+    private void analyze(LogicalPlan plan,
+                         DependencyCarrier dependencies,
+                         PlannerContext plannerContext,
+                         RowConsumer consumer,
+                         Row params,
+                         SubQueryResults subQueryResults,
+                         Map<String, Object> runtimeFilters) {
+        UUID jobId = plannerContext.jobId();
+        BaseResultReceiver resultReceiver = new BaseResultReceiver();
+        RowConsumer noopRowConsumer = new RowConsumerToResultReceiver(resultReceiver, 0, t -> {});
+
+        Timer timer = context.createTimer(Phase.Execute.name());
+        timer.start();
+
+        NodeOperationTree operationTree;
+        try {
+            operationTree = LogicalPlanner.getNodeOperationTree(
+                plan, dependencies, plannerContext, params, subQueryResults);
+        } catch (Throwable t) {
+            consumer.accept(null, t);
+            return;
+        }
+
+        resultReceiver.completionFuture()
+            .whenComplete(createResultConsumer(dependencies, consumer, jobId, timer, operationTree, runtimeFilters));
+
+        LogicalPlanner.executeNodeOpTree(
+            dependencies,
+            plannerContext.transactionContext(),
+            jobId,
+            noopRowConsumer,
+            true,
+            operationTree
+        );
+    }
+
+    private static void collectRuntimeFilters(LogicalPlan plan, Map<SelectSymbol, HashJoin> joinByRuntimeFilter) {
+        if (plan instanceof HashJoin) {
+            HashJoin hashJoin = (HashJoin) plan;
+            for (SelectSymbol keys : hashJoin.runtimeFilters().values()) {
+                joinByRuntimeFilter.put(keys, hashJoin);
+            }
+        }
+        for (LogicalPlan source : plan.sources()) {
+            collectRuntimeFilters(source, joinByRuntimeFilter);
+        }
+    }
+
+    /**
+     * Shows for each runtime filter the filter, the number of collected keys and whether there were too many keys,
+     * in which case the filter is not applied.
+     */
+    @VisibleForTesting
+    public static Map<String, Object> explainRuntimeFilters(Map<SelectSymbol, HashJoin> joinByRuntimeFilter,
+                                                            SubQueryResults keysByRuntimeFilter) {
+        Map<String, Object> runtimeFilters = new HashMap<>(joinByRuntimeFilter.size());
+        for (Map.Entry<SelectSymbol, HashJoin> entry : joinByRuntimeFilter.entrySet()) {
+            SelectSymbol keys = entry.getKey();
+            Object values = keysByRuntimeFilter.getSafe(keys);
+            int numKeys = values instanceof Object[] ? ((Object[]) values).length : ((Collection<?>) values).size();
+            Symbol filter = entry.getValue().runtimeFilter(keys);
+            runtimeFilters.put(keys.toString(), ImmutableMap.of(
+                "filter", filter == null ? keys.toString() : filter.toString(),
+                "keys", numKeys,
+                "overflowed", numKeys > PushRuntimeFilterBeneathHashJoin.MAX_KEYS
+            ));
+        }
+        return Collections.unmodifiableMap(runtimeFilters);
+    }
+
     private BiConsumer<Void, Throwable> createResultConsumer(DependencyCarrier executor,
                                                              RowConsumer consumer,
                                                              UUID jobId,
                                                              Timer timer,
-                                                             NodeOperationTree operationTree) {
+                                                             NodeOperationTree operationTree,
+                                                             Map<String, Object> runtimeFilters) {
         assert context != null : "profilingContext must be available if createResultconsumer is used";
         return (ignored, t) -> {
             context.stopTimerAndStoreDuration(timer);
             if (t == null) {
                 OneRowActionListener<Map<String, Map<String, Object>>> actionListener =
                     new OneRowActionListener<>(consumer,
-                        resp -> buildResponse(context.getDurationInMSByTimer(), resp, operationTree));
+                        resp -> buildResponse(context.getDurationInMSByTimer(), resp, operationTree, runtimeFilters));
                 collectTimingResults(jobId, executor, operationTree.nodeOperations())
                     .whenComplete(actionListener);
             } else {
@@ -184,9 +256,13 @@ public class ExplainPlan implements Plan {
 
     private Row buildResponse(Map<String, Object> apeTimings,
                               Map<String, Map<String, Object>> timingsByNodeId,
-                              NodeOperationTree operationTree) {
+                              NodeOperationTree operationTree,
+                              Map<String, Object> runtimeFilters) {
         MapBuilder<String, Object> mapBuilder = MapBuilder.newMapBuilder();
         apeTimings.forEach(mapBuilder::put);
+        if (!runtimeFilters.isEmpty()) {
+            mapBuilder.put("RuntimeFilters", runtimeFilters);
+        }
 
         // Each node collects the timings for each phase it executes. We want to extract the phases from each node
         // under a dedicated "Phases" key so it's easier for the user to follow the execution.
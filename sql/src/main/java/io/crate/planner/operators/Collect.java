@@ -82,8 +82,9 @@ public class Collect implements LogicalPlan {
     final TableInfo tableInfo;
     private final long numExpectedRows;
     private final long estimatedRowSize;
+    private final Stats stats;
 
-    WhereClause where;
+    final WhereClause where;
 
     public static LogicalPlan create(AbstractTableRelation<?> relation,
                                      List<Symbol> toCollect,
@@ -98,7 +99,8 @@ public class Collect implements LogicalPlan {
             toCollect,
             where,
             SelectivityFunctions.estimateNumRows(stats, where.queryOrFallback(), params),
-            stats.averageSizePerRowInBytes()
+            stats.averageSizePerRowInBytes(),
+            stats
         );
     }
 
@@ -107,12 +109,14 @@ public class Collect implements LogicalPlan {
                    List<Symbol> outputs,
                    WhereClause where,
                    long numExpectedRows,
-                   long estimatedRowSize) {
+                   long estimatedRowSize,
+                   Stats stats) {
         this.preferSourceLookup = preferSourceLookup;
         this.outputs = outputs;
         this.baseTables = List.of(relation);
         this.numExpectedRows = numExpectedRows;
         this.estimatedRowSize = estimatedRowSize;
+        this.stats = stats;
         if (where.hasQuery() && !(relation instanceof DocTableRelation)) {
             EnsureNoMatchPredicate.ensureNoMatchPredicate(where.queryOrFallback(), "Cannot use MATCH on system tables");
         }
@@ -130,15 +134,8 @@ public class Collect implements LogicalPlan {
                                @Nullable Integer pageSizeHint,
                                Row params,
                                SubQueryResults subQueryResults) {
-        EvaluatingNormalizer normalizer = new EvaluatingNormalizer(
-            plannerContext.functions(),
-            RowGranularity.CLUSTER,
-            null,
-            relation
-        );
-        var binder = new SubQueryAndParamBinder(params, subQueryResults)
-            .andThen(x -> normalizer.normalize(x, plannerContext.transactionContext()));
-        RoutedCollectPhase collectPhase = createPhase(plannerContext, binder);
+        var binder = binder(plannerContext, params, subQueryResults);
+        RoutedCollectPhase collectPhase = createPhase(plannerContext, bindWhere(plannerContext, binder), binder);
         PositionalOrderBy positionalOrderBy = getPositionalOrderBy(order, outputs);
         if (positionalOrderBy != null) {
             collectPhase.orderBy(
@@ -168,6 +165,13 @@ public class Collect implements LogicalPlan {
         return where;
     }
 
+    /**
+     * The statistics of the collected table, {@link Stats#EMPTY} if none have been gathered yet.
+     */
+    public Stats stats() {
+        return stats;
+    }
+
     public AbstractTableRelation relation() {
         return relation;
     }
@@ -220,18 +224,43 @@ public class Collect implements LogicalPlan {
         }
     }
 
-    private RoutedCollectPhase createPhase(PlannerContext plannerContext, java.util.function.Function<Symbol, Symbol> binder) {
-        SessionContext sessionContext = plannerContext.transactionContext().sessionContext();
+    private java.util.function.Function<Symbol, Symbol> binder(PlannerContext plannerContext,
+                                                               Row params,
+                                                               SubQueryResults subQueryResults) {
+        EvaluatingNormalizer normalizer = new EvaluatingNormalizer(
+            plannerContext.functions(),
+            RowGranularity.CLUSTER,
+            null,
+            relation
+        );
+        return new SubQueryAndParamBinder(params, subQueryResults)
+            .andThen(x -> normalizer.normalize(x, plannerContext.transactionContext()));
+    }
 
-        // bind all parameters and possible subQuery values and re-analyze the query
-        // (could result in a NO_MATCH, routing could've changed, etc).
-        // the <p>where</p> instance variable must be overwritten as the plan creation of outer operators relies on it
-        // (e.g. GroupHashAggregate will build different plans based on the collect routing)
-        where = WhereClauseAnalyzer.resolvePartitions(
+    /**
+     * Binds all parameters and possible subQuery values and re-analyzes the query
+     * (could result in a NO_MATCH, routing could've changed, etc).
+     * <p>
+     * The plan creation of outer operators may rely on the bound where clause
+     * (e.g. GroupHashAggregate will build different plans based on the collect routing).
+     * The {@link #where} of this plan stays untouched, so that the plan can be executed again with other parameters.
+     */
+    WhereClause bindWhere(PlannerContext plannerContext, Row params, SubQueryResults subQueryResults) {
+        return bindWhere(plannerContext, binder(plannerContext, params, subQueryResults));
+    }
+
+    private WhereClause bindWhere(PlannerContext plannerContext, java.util.function.Function<Symbol, Symbol> binder) {
+        return WhereClauseAnalyzer.resolvePartitions(
             where.map(binder),
             relation,
             plannerContext.functions(),
             plannerContext.transactionContext());
+    }
+
+    private RoutedCollectPhase createPhase(PlannerContext plannerContext,
+                                           WhereClause where,
+                                           java.util.function.Function<Symbol, Symbol> binder) {
+        SessionContext sessionContext = plannerContext.transactionContext().sessionContext();
         if (where.hasVersions()) {
             throw VersioninigValidationException.versionInvalidUsage();
         } else if (where.hasSeqNoAndPrimaryTerm()) {
@@ -298,7 +327,8 @@ public class Collect implements LogicalPlan {
             newOutputs,
             where,
             numExpectedRows,
-            estimatedRowSize
+            estimatedRowSize,
+            stats
         );
     }
 
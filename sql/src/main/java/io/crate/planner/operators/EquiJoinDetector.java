@@ -41,7 +41,8 @@ import java.util.Set;
  * <p>
  * Using hash join is possible under following assumptions:
  * <ul>
- * <li>it's a {@link JoinType#INNER} join type</li>
+ * <li>it's a {@link JoinType#INNER}, {@link JoinType#LEFT}, {@link JoinType#RIGHT} or {@link JoinType#FULL} join
+ * type (outer joins track their matched rows inside the hash join)</li>
  * <li>the join condition contains no {@link OrOperator}</li>
  * <li>the join condition contains at least one {@link EqOperator}</li>
  * <li>at least one argument of the {@link EqOperator} must NOT contain fields to multiple tables</li>
@@ -52,14 +53,20 @@ public class EquiJoinDetector {
     private static final Visitor VISITOR = new Visitor();
 
     public static boolean isHashJoinPossible(JoinType joinType, Symbol joinCondition) {
-        if (joinType != JoinType.INNER) {
-            return false;
+        switch (joinType) {
+            case INNER:
+            case LEFT:
+            case RIGHT:
+            case FULL:
+                break;
+            default:
+                return false;
         }
         return isEquiJoin(joinCondition);
     }
 
     private static boolean isEquiJoin(Symbol joinCondition) {
-        assert joinCondition != null : "join condition must not be null on inner joins";
+        assert joinCondition != null : "join condition must not be null on equi joins";
         Context context = new Context();
         joinCondition.accept(VISITOR, context);
         return context.isHashJoinPossible;
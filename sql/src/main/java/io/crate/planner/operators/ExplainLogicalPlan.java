@@ -24,6 +24,7 @@ package io.crate.planner.operators;
 
 import com.google.common.collect.ImmutableMap;
 import io.crate.analyze.OrderBy;
+import io.crate.analyze.WhereClause;
 import io.crate.common.collections.Lists2;
 import io.crate.data.Row;
 import io.crate.execution.dsl.projection.Projection;
@@ -49,6 +50,18 @@ public class ExplainLogicalPlan {
     public static Map<String, Object> explainMap(LogicalPlan logicalPlan,
                                                 PlannerContext plannerContext,
                                                 ProjectionBuilder projectionBuilder) {
+        return explainMap(logicalPlan, plannerContext, projectionBuilder, Row.EMPTY, SubQueryResults.EMPTY);
+    }
+
+    /**
+     * Like {@link #explainMap(LogicalPlan, PlannerContext, ProjectionBuilder)}, but binds the given parameters and
+     * sub-query results, so that the printed plan shows the values instead of the placeholders.
+     */
+    public static Map<String, Object> explainMap(LogicalPlan logicalPlan,
+                                                PlannerContext plannerContext,
+                                                ProjectionBuilder projectionBuilder,
+                                                Row params,
+                                                SubQueryResults subQueryResults) {
         try {
             ExecutionPlan executionPlan = logicalPlan.build(
                 plannerContext,
@@ -57,16 +70,18 @@ public class ExplainLogicalPlan {
                 0,
                 null,
                 null,
-                Row.EMPTY,
-                SubQueryResults.EMPTY);
+                params,
+                subQueryResults);
             return PlanPrinter.objectMap(executionPlan);
         } catch (Exception e) {
-            return logicalPlan.accept(VISITOR, new Context(plannerContext, projectionBuilder)).build();
+            return logicalPlan.accept(
+                VISITOR, new Context(plannerContext, projectionBuilder, params, subQueryResults)).build();
         }
     }
 
     private static Map<String, Object> explainMap(LogicalPlan logicalPlan, Context context) {
-        return explainMap(logicalPlan, context.plannerContext, context.projectionBuilder);
+        return explainMap(
+            logicalPlan, context.plannerContext, context.projectionBuilder, context.params, context.subQueryResults);
     }
 
     private ExplainLogicalPlan() {
@@ -75,10 +90,17 @@ public class ExplainLogicalPlan {
     private static class Context {
         private final PlannerContext plannerContext;
         private final ProjectionBuilder projectionBuilder;
+        private final Row params;
+        private final SubQueryResults subQueryResults;
 
-        public Context(PlannerContext plannerContext, ProjectionBuilder projectionBuilder) {
+        public Context(PlannerContext plannerContext,
+                       ProjectionBuilder projectionBuilder,
+                       Row params,
+                       SubQueryResults subQueryResults) {
             this.plannerContext = plannerContext;
             this.projectionBuilder = projectionBuilder;
+            this.params = params;
+            this.subQueryResults = subQueryResults;
         }
     }
 
@@ -121,7 +143,16 @@ public class ExplainLogicalPlan {
         public ImmutableMap.Builder<String, Object> visitCollect(Collect logicalPlan, Context context) {
             return createMap(logicalPlan, createSubMap()
                 .put("toCollect", Lists2.joinOn(", ", logicalPlan.outputs(), Symbol::toString))
-                .put("where", logicalPlan.where.queryOrFallback().toString()));
+                .put("where", boundWhere(logicalPlan, context).queryOrFallback().toString()));
+        }
+
+        private static WhereClause boundWhere(Collect collect, Context context) {
+            try {
+                return collect.bindWhere(context.plannerContext, context.params, context.subQueryResults);
+            } catch (Exception e) {
+                // missing parameters or sub-query results, print the placeholders
+                return collect.where;
+            }
         }
 
         @Override
@@ -174,7 +205,8 @@ public class ExplainLogicalPlan {
             ImmutableMap.Builder<String, Object> mapBuilder = createMap(logicalPlan, createSubMap()
                 .put("left", explainMap(logicalPlan.lhs, context))
                 .put("right", explainMap(logicalPlan.rhs, context))
-                .put("joinType", logicalPlan.joinType()));
+                .put("joinType", logicalPlan.joinType())
+                .put("estimatedRows", logicalPlan.numExpectedRows()));
 
             Symbol joinCondition = logicalPlan.joinCondition();
             if (joinCondition != null) {
@@ -185,12 +217,27 @@ public class ExplainLogicalPlan {
 
         @Override
         public ImmutableMap.Builder<String, Object> visitHashJoin(HashJoin logicalPlan, Context context) {
-            return createMap(logicalPlan, createSubMap()
+            ImmutableMap.Builder<String, Object> details = createSubMap()
                 .put("left", explainMap(logicalPlan.lhs, context))
                 .put("right", explainMap(logicalPlan.rhs, context))
                 .put("joinType", logicalPlan.joinType())
                 .put("joinCondition",
-                    logicalPlan.joinCondition().toString()));
+                    logicalPlan.joinCondition().toString())
+                .put("estimatedRows", logicalPlan.numExpectedRows());
+            if (!logicalPlan.runtimeFilters().isEmpty()) {
+                Map<String, Map<String, Object>> runtimeFilters = new HashMap<>(logicalPlan.runtimeFilters().size());
+                for (Map.Entry<LogicalPlan, SelectSymbol> entry : logicalPlan.runtimeFilters().entrySet()) {
+                    ImmutableMap.Builder<String, Object> runtimeFilter = ImmutableMap.builder();
+                    Symbol filter = logicalPlan.runtimeFilter(entry.getValue());
+                    if (filter != null) {
+                        runtimeFilter.put("filter", filter.toString());
+                    }
+                    runtimeFilter.put("keys", explainMap(entry.getKey(), context));
+                    runtimeFilters.put(entry.getValue().toString(), runtimeFilter.build());
+                }
+                details.put("runtimeFilters", runtimeFilters);
+            }
+            return createMap(logicalPlan, details);
         }
 
         @Override
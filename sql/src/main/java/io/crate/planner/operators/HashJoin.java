@@ -33,8 +33,10 @@ import io.crate.execution.dsl.phases.MergePhase;
 import io.crate.execution.dsl.projection.EvalProjection;
 import io.crate.execution.dsl.projection.builder.InputColumns;
 import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.execution.engine.join.GraceHashJoinBatchIterator;
 import io.crate.execution.engine.join.JoinOperations;
 import io.crate.execution.engine.pipeline.TopN;
+import io.crate.expression.operator.AndOperator;
 import io.crate.expression.symbol.SelectSymbol;
 import io.crate.expression.symbol.Symbol;
 import io.crate.expression.symbol.SymbolVisitors;
@@ -47,6 +49,7 @@ import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.distribution.DistributionType;
 import io.crate.planner.node.dql.join.Join;
 import io.crate.planner.node.dql.join.JoinType;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.collect.Tuple;
 
 import javax.annotation.Nullable;
@@ -62,26 +65,77 @@ import static io.crate.planner.operators.LogicalPlanner.NO_LIMIT;
 
 public class HashJoin implements LogicalPlan {
 
+    private final JoinType joinType;
     private final Symbol joinCondition;
     @VisibleForTesting
     final AnalyzedRelation concreteRelation;
+    private final AnalyzedRelation topMostLeftRelation;
     private final List<Symbol> outputs;
     final LogicalPlan rhs;
     final LogicalPlan lhs;
+    private final boolean rewriteFilterOnOuterJoinToInnerJoinDone;
+    private final Map<LogicalPlan, SelectSymbol> runtimeFilters;
 
     public HashJoin(LogicalPlan lhs,
                     LogicalPlan rhs,
+                    JoinType joinType,
                     Symbol joinCondition,
-                    AnalyzedRelation concreteRelation) {
+                    AnalyzedRelation concreteRelation,
+                    AnalyzedRelation topMostLeftRelation) {
+        this(lhs, rhs, joinType, joinCondition, concreteRelation, topMostLeftRelation, false);
+    }
+
+    public HashJoin(LogicalPlan lhs,
+                    LogicalPlan rhs,
+                    JoinType joinType,
+                    Symbol joinCondition,
+                    AnalyzedRelation concreteRelation,
+                    AnalyzedRelation topMostLeftRelation,
+                    boolean rewriteFilterOnOuterJoinToInnerJoinDone) {
+        this(lhs, rhs, joinType, joinCondition, concreteRelation, topMostLeftRelation,
+            rewriteFilterOnOuterJoinToInnerJoinDone, Map.of());
+    }
+
+    /**
+     * @param runtimeFilters plans which collect the join keys of one side, used to filter the other side.
+     *                       See {@link io.crate.planner.optimizer.rule.PushRuntimeFilterBeneathHashJoin}
+     */
+    public HashJoin(LogicalPlan lhs,
+                    LogicalPlan rhs,
+                    JoinType joinType,
+                    Symbol joinCondition,
+                    AnalyzedRelation concreteRelation,
+                    AnalyzedRelation topMostLeftRelation,
+                    boolean rewriteFilterOnOuterJoinToInnerJoinDone,
+                    Map<LogicalPlan, SelectSymbol> runtimeFilters) {
         this.outputs = Lists2.concat(lhs.outputs(), rhs.outputs());
         this.lhs = lhs;
         this.rhs = rhs;
+        this.joinType = joinType;
         this.concreteRelation = concreteRelation;
+        this.topMostLeftRelation = topMostLeftRelation;
         this.joinCondition = joinCondition;
+        this.rewriteFilterOnOuterJoinToInnerJoinDone = rewriteFilterOnOuterJoinToInnerJoinDone;
+        this.runtimeFilters = runtimeFilters;
     }
 
     public JoinType joinType() {
-        return JoinType.INNER;
+        return joinType;
+    }
+
+    public boolean isRewriteFilterOnOuterJoinToInnerJoinDone() {
+        return rewriteFilterOnOuterJoinToInnerJoinDone;
+    }
+
+    public AnalyzedRelation concreteRelation() {
+        return concreteRelation;
+    }
+
+    /**
+     * The left-most relation of the join tree, used if the join has to be executed as a {@link NestedLoopJoin}
+     */
+    public AnalyzedRelation topMostLeftRelation() {
+        return topMostLeftRelation;
     }
 
     public Symbol joinCondition() {
@@ -96,13 +150,37 @@ public class HashJoin implements LogicalPlan {
         return rhs;
     }
 
+    public Map<LogicalPlan, SelectSymbol> runtimeFilters() {
+        return runtimeFilters;
+    }
+
+    /**
+     * @return the part of the where clause of the filtered side which uses the keys of the given runtime filter,
+     *         or null if it can't be found
+     */
+    @Nullable
+    public Symbol runtimeFilter(SelectSymbol keys) {
+        for (LogicalPlan source : List.of(lhs, rhs)) {
+            if (source instanceof Collect) {
+                for (Symbol part : AndOperator.split(((Collect) source).where().queryOrFallback())) {
+                    if (SymbolVisitors.any(s -> s == keys, part)) {
+                        return part;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public Map<LogicalPlan, SelectSymbol> dependencies() {
         Map<LogicalPlan, SelectSymbol> leftDeps = lhs.dependencies();
         Map<LogicalPlan, SelectSymbol> rightDeps = rhs.dependencies();
-        HashMap<LogicalPlan, SelectSymbol> deps = new HashMap<>(leftDeps.size() + rightDeps.size());
+        HashMap<LogicalPlan, SelectSymbol> deps = new HashMap<>(
+            leftDeps.size() + rightDeps.size() + runtimeFilters.size());
         deps.putAll(leftDeps);
         deps.putAll(rightDeps);
+        deps.putAll(runtimeFilters);
         return deps;
     }
 
@@ -115,6 +193,12 @@ public class HashJoin implements LogicalPlan {
                                @Nullable Integer pageSizeHint,
                                Row params,
                                SubQueryResults subQueryResults) {
+        if (joinType != JoinType.INNER &&
+            !plannerContext.clusterState().getNodes().getMinNodeVersion().onOrAfter(Version.V_4_2_0)) {
+            // Nodes before 4.2 execute every hash join phase as an inner join
+            return new NestedLoopJoin(lhs, rhs, joinType, joinCondition, true, topMostLeftRelation)
+                .build(plannerContext, projectionBuilder, limit, offset, order, pageSizeHint, params, subQueryResults);
+        }
         ExecutionPlan leftExecutionPlan = lhs.build(
             plannerContext, projectionBuilder, NO_LIMIT, 0, null, null, params, subQueryResults);
         ExecutionPlan rightExecutionPlan = rhs.build(
@@ -123,11 +207,13 @@ public class HashJoin implements LogicalPlan {
         LogicalPlan leftLogicalPlan = lhs;
         LogicalPlan rightLogicalPlan = rhs;
 
+        JoinType joinType = this.joinType;
         boolean tablesSwitched = false;
         // We move smaller table to the right side since benchmarking
         // revealed that this improves performance in most cases.
-        if (lhs.numExpectedRows() < rhs.numExpectedRows()) {
+        if (joinType.supportsInversion() && lhs.numExpectedRows() < rhs.numExpectedRows()) {
             tablesSwitched = true;
+            joinType = joinType.invert();
             leftLogicalPlan = rhs;
             rightLogicalPlan = lhs;
 
@@ -190,12 +276,15 @@ public class HashJoin implements LogicalPlan {
             leftOutputs.size(),
             rightOutputs.size(),
             joinExecutionNodes,
+            joinType,
             InputColumns.create(joinCondition, joinOutputs),
             InputColumns.create(hashSymbols.v1(), new InputColumns.SourceSymbols(leftOutputs)),
             InputColumns.create(hashSymbols.v2(), new InputColumns.SourceSymbols(rightOutputs)),
             Symbols.typeView(leftOutputs),
+            Symbols.typeView(rightOutputs),
             leftLogicalPlan.estimatedRowSize(),
-            leftLogicalPlan.numExpectedRows());
+            leftLogicalPlan.numExpectedRows(),
+            isGraceHashJoin(leftLogicalPlan));
         return new Join(
             joinPhase,
             leftExecutionPlan,
@@ -204,10 +293,23 @@ public class HashJoin implements LogicalPlan {
             0,
             TopN.NO_LIMIT,
             outputs.size(),
-            null
+            null,
+            numExpectedRows(),
+            JoinCostModel.hashJoinCost(JoinCostModel.estimatedRows(lhs), JoinCostModel.estimatedRows(rhs))
         );
     }
 
+    /**
+     * Decides once for all join executions whether the left side is consumed completely before the right side, so
+     * that both sides can be partitioned to disk if the left side doesn't fit into memory.
+     * This is the case if statistics are available; the number of partitions and whether the rows are actually
+     * partitioned is decided by each execution, using the limit of its query circuit breaker,
+     * see {@link GraceHashJoinBatchIterator#numberOfPartitions(long, long, long)}.
+     */
+    private static boolean isGraceHashJoin(LogicalPlan left) {
+        return left.estimatedRowSize() > 0 && left.numExpectedRows() > 0;
+    }
+
     @Override
     public List<Symbol> outputs() {
         return outputs;
@@ -228,8 +330,12 @@ public class HashJoin implements LogicalPlan {
         return new HashJoin(
             sources.get(0),
             sources.get(1),
+            joinType,
             joinCondition,
-            concreteRelation
+            concreteRelation,
+            topMostLeftRelation,
+            rewriteFilterOnOuterJoinToInnerJoinDone,
+            runtimeFilters
         );
     }
 
@@ -251,8 +357,12 @@ public class HashJoin implements LogicalPlan {
         return new HashJoin(
             newLhs,
             newRhs,
+            joinType,
             joinCondition,
-            concreteRelation
+            concreteRelation,
+            topMostLeftRelation,
+            rewriteFilterOnOuterJoinToInnerJoinDone,
+            runtimeFilters
         );
     }
 
@@ -275,7 +385,11 @@ public class HashJoin implements LogicalPlan {
 
     @Override
     public long numExpectedRows() {
-        // We don't have any cardinality estimates, so just take the bigger table
+        long estimatedRows = JoinCostModel.estimateRows(lhs, rhs, joinType, joinCondition);
+        if (estimatedRows >= 0) {
+            return estimatedRows;
+        }
+        // Without column statistics there are no cardinality estimates, so just take the bigger table
         return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
     }
 
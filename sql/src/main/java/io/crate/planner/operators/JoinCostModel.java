@@ -0,0 +1,297 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner.operators;
+
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.ScopedSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.Reference;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.selectivity.SelectivityFunctions;
+import io.crate.statistics.ColumnStats;
+import io.crate.statistics.Stats;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Estimates the number of rows produced by a join and the cost of executing it, based on the statistics collected
+ * by {@code ANALYZE}.
+ * <p>
+ * The selectivity of an equi-join condition is estimated like PostgreSQL does in `eqjoinsel` (without the matching
+ * of the most common values): Every row of the side with fewer distinct values is expected to find a join partner,
+ * so {@code selectivity = (1 - nullFraction(lhs)) * (1 - nullFraction(rhs)) / max(distinct(lhs), distinct(rhs))}.
+ * <p>
+ * Costs are measured in the number of rows that have to be processed:
+ * <ul>
+ *     <li>A hash join distributes every row of both sides and then either adds it to the hash table or uses it to
+ *     probe the hash table: {@code 2 * (lhs + rhs)}</li>
+ *     <li>A nested loop join compares every row of one side with every row of the other side: {@code lhs * rhs}</li>
+ * </ul>
+ * All methods return -1 if the statistics required for an estimate are missing.
+ */
+final class JoinCostModel {
+
+    static final long UNKNOWN = -1L;
+
+    /**
+     * Selectivity of join condition parts which are not an equality between columns of both sides.
+     * Same magic number as in {@link io.crate.planner.selectivity.SelectivityFunctions}.
+     */
+    private static final double MAGIC_SEL = 0.333;
+
+    private static final int HASH_JOIN_ROW_COST = 2;
+
+    /**
+     * The maximum number of rows of the tables of both sides of a join which is executed as nested loop join
+     * although a hash join would be possible.
+     * The statistics may be outdated, so the tables must be small enough that the cost of a nested loop join is
+     * still acceptable if they have grown since they were analyzed.
+     */
+    static final long NESTED_LOOP_MAX_TABLE_ROWS = 1_000L;
+
+    private JoinCostModel() {
+    }
+
+    /**
+     * @return the estimated number of rows of the plan if it is based on table statistics, otherwise -1
+     */
+    static long estimatedRows(LogicalPlan plan) {
+        if (!hasStats(plan)) {
+            return UNKNOWN;
+        }
+        long numRows = plan.numExpectedRows();
+        return numRows < 0 ? UNKNOWN : numRows;
+    }
+
+    /**
+     * Like {@link #estimatedRows(LogicalPlan)} but takes a filter into account which will be applied to the plan.
+     */
+    static long estimatedRows(LogicalPlan plan, @Nullable Symbol filter) {
+        if (filter != null && plan instanceof Collect) {
+            Collect collect = (Collect) plan;
+            Stats stats = collect.stats();
+            if (stats.numDocs() < 0) {
+                return UNKNOWN;
+            }
+            return SelectivityFunctions.estimateNumRows(stats, collect.where().add(filter).queryOrFallback(), null);
+        }
+        return estimatedRows(plan);
+    }
+
+    private static boolean hasStats(LogicalPlan plan) {
+        if (plan instanceof Collect) {
+            return ((Collect) plan).stats().numDocs() >= 0;
+        }
+        List<LogicalPlan> sources = plan.sources();
+        if (sources.isEmpty()) {
+            return plan.numExpectedRows() >= 0;
+        }
+        for (LogicalPlan source : sources) {
+            if (!hasStats(source)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the fraction of the cross product of lhs and rhs which matches the join condition.
+     *
+     * @return the selectivity or -1 if the condition contains no equality between columns of lhs and rhs
+     *         for which statistics are available.
+     */
+    static double selectivity(LogicalPlan lhs, LogicalPlan rhs, @Nullable Symbol joinCondition) {
+        if (joinCondition == null) {
+            return 1.0;
+        }
+        boolean hasEquiJoinEstimate = false;
+        double selectivity = 1.0;
+        for (Symbol part : AndOperator.split(joinCondition)) {
+            double partSelectivity = eqSelectivity(lhs, rhs, part);
+            if (partSelectivity < 0) {
+                selectivity *= MAGIC_SEL;
+            } else {
+                hasEquiJoinEstimate = true;
+                selectivity *= partSelectivity;
+            }
+        }
+        return hasEquiJoinEstimate ? selectivity : UNKNOWN;
+    }
+
+    private static double eqSelectivity(LogicalPlan lhs, LogicalPlan rhs, Symbol part) {
+        if (!(part instanceof Function) || !((Function) part).info().ident().name().equals(EqOperator.NAME)) {
+            return UNKNOWN;
+        }
+        List<Symbol> arguments = ((Function) part).arguments();
+        Symbol first = arguments.get(0);
+        Symbol second = arguments.get(1);
+        ColumnStats<?> lhsStats = columnStats(lhs, first);
+        ColumnStats<?> rhsStats = columnStats(rhs, second);
+        long lhsRows = estimatedRows(lhs);
+        long rhsRows = estimatedRows(rhs);
+        if (lhsStats == null || rhsStats == null) {
+            lhsStats = columnStats(lhs, second);
+            rhsStats = columnStats(rhs, first);
+        }
+        if (lhsStats == null || rhsStats == null || lhsRows < 0 || rhsRows < 0) {
+            return UNKNOWN;
+        }
+        // A filter on a side can only reduce the number of distinct values
+        double lhsDistinct = Math.max(1.0, Math.min(lhsStats.approxDistinct(), lhsRows));
+        double rhsDistinct = Math.max(1.0, Math.min(rhsStats.approxDistinct(), rhsRows));
+        return (1.0 - lhsStats.nullFraction()) * (1.0 - rhsStats.nullFraction()) / Math.max(lhsDistinct, rhsDistinct);
+    }
+
+    /**
+     * Looks up the statistics of a column which is collected by a table within the given plan.
+     * Only plans that don't change the values of the collected columns are looked into.
+     */
+    @Nullable
+    private static ColumnStats<?> columnStats(LogicalPlan plan, Symbol column) {
+        if (plan instanceof Collect) {
+            Collect collect = (Collect) plan;
+            if (column instanceof ScopedSymbol) {
+                ScopedSymbol field = (ScopedSymbol) column;
+                if (field.relation().equals(collect.relation().relationName())) {
+                    return collect.stats().statsByColumn().get(field.column());
+                }
+            } else if (column instanceof Reference) {
+                Reference ref = (Reference) column;
+                if (ref.ident().tableIdent().equals(collect.relation().relationName())) {
+                    return collect.stats().statsByColumn().get(ref.column());
+                }
+            }
+            return null;
+        }
+        if (plan instanceof Rename) {
+            // SELECT ... FROM tbl AS t -> t.x is mapped to the x of tbl
+            int idx = plan.outputs().indexOf(column);
+            LogicalPlan source = plan.sources().get(0);
+            return idx < 0 ? null : columnStats(source, source.outputs().get(idx));
+        }
+        if (plan instanceof Filter || plan instanceof HashJoin || plan instanceof NestedLoopJoin) {
+            for (LogicalPlan source : plan.sources()) {
+                ColumnStats<?> stats = columnStats(source, column);
+                if (stats != null) {
+                    return stats;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Estimates the number of rows a join of lhs and rhs produces.
+     */
+    static long estimateRows(LogicalPlan lhs, LogicalPlan rhs, JoinType joinType, @Nullable Symbol joinCondition) {
+        long lhsRows = estimatedRows(lhs);
+        long rhsRows = estimatedRows(rhs);
+        if (lhsRows < 0 || rhsRows < 0) {
+            return UNKNOWN;
+        }
+        double selectivity = selectivity(lhs, rhs, joinCondition);
+        if (selectivity < 0) {
+            return UNKNOWN;
+        }
+        long matches = saturatedRows((double) lhsRows * rhsRows * selectivity);
+        switch (joinType) {
+            case LEFT:
+                return Math.max(matches, lhsRows);
+            case RIGHT:
+                return Math.max(matches, rhsRows);
+            case FULL:
+                return Math.max(matches, Math.max(lhsRows, rhsRows));
+            case SEMI:
+                return Math.min(matches, lhsRows);
+            case ANTI:
+                return lhsRows - Math.min(matches, lhsRows);
+            default:
+                return matches;
+        }
+    }
+
+    static long hashJoinCost(long lhsRows, long rhsRows) {
+        if (lhsRows < 0 || rhsRows < 0) {
+            return UNKNOWN;
+        }
+        return saturatedRows(HASH_JOIN_ROW_COST * ((double) lhsRows + rhsRows));
+    }
+
+    static long nestedLoopCost(long lhsRows, long rhsRows) {
+        if (lhsRows < 0 || rhsRows < 0) {
+            return UNKNOWN;
+        }
+        return saturatedRows((double) lhsRows * rhsRows);
+    }
+
+    /**
+     * A nested loop join is preferred over a hash join if one side is expected to contain so few rows that
+     * broadcasting it and comparing it with every row of the other side is cheaper than re-distributing both sides.
+     * <p>
+     * The hash join is kept unless the tables of both sides are small (see {@link #NESTED_LOOP_MAX_TABLE_ROWS}) and
+     * the estimates of both sides are at least one row. An estimate of 0 rows is either the result of a rounded down
+     * selectivity or of a table which was empty when it was analyzed, neither is reliable enough to risk the
+     * quadratic cost of a nested loop.
+     * <p>
+     * Only inner joins are taken into account, other join types can't be executed as distributed nested loop join.
+     */
+    static boolean isNestedLoopCheaper(LogicalPlan lhs, LogicalPlan rhs, JoinType joinType) {
+        if (joinType != JoinType.INNER || !hasOnlySmallTables(lhs) || !hasOnlySmallTables(rhs)) {
+            return false;
+        }
+        long lhsRows = estimatedRows(lhs);
+        long rhsRows = estimatedRows(rhs);
+        if (lhsRows <= 0 || rhsRows <= 0) {
+            return false;
+        }
+        return nestedLoopCost(lhsRows, rhsRows) < hashJoinCost(lhsRows, rhsRows);
+    }
+
+    /**
+     * @return true if all tables collected by the plan are known to contain at least one and at most
+     *         {@link #NESTED_LOOP_MAX_TABLE_ROWS} rows.
+     */
+    private static boolean hasOnlySmallTables(LogicalPlan plan) {
+        if (plan instanceof Collect) {
+            long numDocs = ((Collect) plan).stats().numDocs();
+            return numDocs > 0 && numDocs <= NESTED_LOOP_MAX_TABLE_ROWS;
+        }
+        List<LogicalPlan> sources = plan.sources();
+        if (sources.isEmpty()) {
+            return false;
+        }
+        for (LogicalPlan source : sources) {
+            if (!hasOnlySmallTables(source)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long saturatedRows(double rows) {
+        return rows >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) rows;
+    }
+}
@@ -26,11 +26,13 @@ import com.carrotsearch.hppc.ObjectIntHashMap;
 import com.google.common.annotations.VisibleForTesting;
 import io.crate.metadata.RelationName;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -57,6 +59,76 @@ final class JoinOrdering {
             implicitJoinConditions);
     }
 
+    /**
+     * Greedily orders the relations so that the estimated number of rows of the intermediate join results stays
+     * as small as possible:
+     * <p>
+     * The pair of relations with the smallest estimated join result is joined first. Then the relation which
+     * results in the smallest next intermediate result is joined, as long as there are relations left.
+     * Relations with a join condition on the already joined relations are preferred over cross joins.
+     *
+     * @param rowsByRelation     the estimated number of rows of each relation
+     * @param selectivityByPair  the estimated selectivity of the join condition of each pair of relations
+     *                           which is joined explicitly or implicitly, see {@link JoinCostModel#selectivity}
+     * @return the ordered relations or null if there is no join condition to start with
+     */
+    @Nullable
+    static Collection<RelationName> orderByEstimatedRows(Map<RelationName, Long> rowsByRelation,
+                                                         Map<? extends Set<RelationName>, Double> selectivityByPair) {
+        Set<RelationName> firstPair = null;
+        double rowsOfFirstPair = Double.MAX_VALUE;
+        for (Map.Entry<? extends Set<RelationName>, Double> entry : selectivityByPair.entrySet()) {
+            double rows = entry.getValue();
+            for (RelationName name : entry.getKey()) {
+                rows *= rowsByRelation.get(name);
+            }
+            if (rows < rowsOfFirstPair) {
+                rowsOfFirstPair = rows;
+                firstPair = entry.getKey();
+            }
+        }
+        if (firstPair == null) {
+            return null;
+        }
+        LinkedHashSet<RelationName> bestOrder = new LinkedHashSet<>();
+        for (RelationName name : rowsByRelation.keySet()) {
+            if (firstPair.contains(name)) {
+                bestOrder.add(name);
+            }
+        }
+        double intermediateRows = rowsOfFirstPair;
+        while (bestOrder.size() < rowsByRelation.size()) {
+            RelationName next = null;
+            boolean nextIsJoined = false;
+            double rowsWithNext = Double.MAX_VALUE;
+            for (Map.Entry<RelationName, Long> candidate : rowsByRelation.entrySet()) {
+                RelationName name = candidate.getKey();
+                if (bestOrder.contains(name)) {
+                    continue;
+                }
+                boolean isJoined = false;
+                double rows = intermediateRows * candidate.getValue();
+                for (RelationName joined : bestOrder) {
+                    Double selectivity = selectivityByPair.get(Set.of(name, joined));
+                    if (selectivity != null) {
+                        isJoined = true;
+                        rows *= selectivity;
+                    }
+                }
+                if (next == null
+                    || (isJoined && !nextIsJoined)
+                    || (isJoined == nextIsJoined && rows < rowsWithNext)) {
+                    next = name;
+                    nextIsJoined = isJoined;
+                    rowsWithNext = rows;
+                }
+            }
+            bestOrder.add(next);
+            intermediateRows = rowsWithNext;
+        }
+        return bestOrder;
+    }
+
     /**
      * Returns a the relation re-ordered to apply join conditions further down in the tree.
      * <p>
@@ -36,6 +36,7 @@ import org.elasticsearch.common.util.set.Sets;
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -55,7 +56,11 @@ import static io.crate.planner.operators.EquiJoinDetector.isHashJoinPossible;
  * <p>
  * We currently support the {@link NestedLoopJoin} and {@link HashJoin} operators (the hash join operator is
  * enabled by the {@link io.crate.metadata.settings.session.SessionSettingRegistry#HASH_JOIN_KEY} setting and its
- * application is mandated by {@link EquiJoinDetector}).
+ * application is mandated by {@link EquiJoinDetector}, for inner, left, right and full outer joins; semi and
+ * anti joins always use a nested loop).
+ * <p>
+ * If statistics are available, the relations are ordered and the join operators are chosen based on the
+ * estimates of the {@link JoinCostModel}.
  */
 public class JoinPlanBuilder {
 
@@ -72,11 +77,18 @@ public class JoinPlanBuilder {
             JoinOperations.buildRelationsToJoinPairsMap(
                 JoinOperations.convertImplicitJoinConditionsToJoinPairs(joinPairs, queryParts));
 
-        Collection<RelationName> orderedRelationNames = JoinOrdering.getOrderedRelationNames(
-            Lists2.map(from, AnalyzedRelation::relationName),
-            joinPairsByRelations.keySet(),
-            queryParts.keySet()
-        );
+        LinkedHashMap<RelationName, LogicalPlan> plansByName = new LinkedHashMap<>(from.size());
+        for (AnalyzedRelation relation : from) {
+            plansByName.put(relation.relationName(), plan.apply(relation));
+        }
+        Collection<RelationName> orderedRelationNames = orderByEstimatedRows(plansByName, joinPairsByRelations, queryParts);
+        if (orderedRelationNames == null) {
+            orderedRelationNames = JoinOrdering.getOrderedRelationNames(
+                Lists2.map(from, AnalyzedRelation::relationName),
+                joinPairsByRelations.keySet(),
+                queryParts.keySet()
+            );
+        }
 
         Iterator<RelationName> it = orderedRelationNames.iterator();
 
@@ -101,8 +113,8 @@ public class JoinPlanBuilder {
             .collect(Collectors.toMap(AnalyzedRelation::relationName, rel -> rel));
         AnalyzedRelation lhs = sources.get(lhsName);
         AnalyzedRelation rhs = sources.get(rhsName);
-        LogicalPlan lhsPlan = plan.apply(lhs);
-        LogicalPlan rhsPlan = plan.apply(rhs);
+        LogicalPlan lhsPlan = plansByName.get(lhsName);
+        LogicalPlan rhsPlan = plansByName.get(rhsName);
         Symbol query = removeParts(queryParts, lhsName, rhsName);
         LogicalPlan joinPlan = createJoinPlan(
             lhsPlan,
@@ -119,9 +131,9 @@ public class JoinPlanBuilder {
         while (it.hasNext()) {
             AnalyzedRelation nextRel = sources.get(it.next());
             joinPlan = joinWithNext(
-                plan,
                 joinPlan,
                 nextRel,
+                plansByName.get(nextRel.relationName()),
                 joinNames,
                 joinPairsByRelations,
                 queryParts,
@@ -147,12 +159,16 @@ public class JoinPlanBuilder {
                                               AnalyzedRelation rhs,
                                               Symbol query,
                                               boolean hashJoinEnabled) {
-        if (hashJoinEnabled && isHashJoinPossible(joinType, joinCondition)) {
+        if (hashJoinEnabled
+            && isHashJoinPossible(joinType, joinCondition)
+            && !JoinCostModel.isNestedLoopCheaper(lhsPlan, rhsPlan, joinType)) {
             return new HashJoin(
                 lhsPlan,
                 rhsPlan,
+                joinType,
                 joinCondition,
-                rhs);
+                rhs,
+                lhs);
         } else {
             return new NestedLoopJoin(
                 lhsPlan,
@@ -164,6 +180,49 @@ public class JoinPlanBuilder {
         }
     }
 
+    /**
+     * Orders the relations of inner and cross joins by the estimated number of rows of the intermediate results,
+     * see {@link JoinOrdering#orderByEstimatedRows(Map, Map)}.
+     *
+     * @return the ordered relations or null if the statistics required for the estimates are missing or if the
+     *         relations are (also) joined by outer, semi or anti joins, which cannot be re-ordered freely.
+     */
+    @Nullable
+    private static Collection<RelationName> orderByEstimatedRows(Map<RelationName, LogicalPlan> plansByName,
+                                                                 Map<Set<RelationName>, JoinPair> joinPairsByRelations,
+                                                                 Map<Set<RelationName>, Symbol> queryParts) {
+        if (plansByName.size() <= 2) {
+            return null;
+        }
+        LinkedHashMap<RelationName, Long> rowsByRelation = new LinkedHashMap<>(plansByName.size());
+        for (Map.Entry<RelationName, LogicalPlan> entry : plansByName.entrySet()) {
+            RelationName name = entry.getKey();
+            long rows = JoinCostModel.estimatedRows(entry.getValue(), queryParts.get(Collections.singleton(name)));
+            if (rows < 0) {
+                return null;
+            }
+            rowsByRelation.put(name, rows);
+        }
+        Map<Set<RelationName>, Double> selectivityByPair = new HashMap<>(joinPairsByRelations.size());
+        for (Map.Entry<Set<RelationName>, JoinPair> entry : joinPairsByRelations.entrySet()) {
+            JoinPair joinPair = entry.getValue();
+            if (joinPair.joinType() != JoinType.INNER && joinPair.joinType() != JoinType.CROSS) {
+                return null;
+            }
+            LogicalPlan left = plansByName.get(joinPair.left());
+            LogicalPlan right = plansByName.get(joinPair.right());
+            if (left == null || right == null) {
+                return null;
+            }
+            double selectivity = JoinCostModel.selectivity(left, right, joinPair.condition());
+            if (selectivity < 0) {
+                return null;
+            }
+            selectivityByPair.put(entry.getKey(), selectivity);
+        }
+        return JoinOrdering.orderByEstimatedRows(rowsByRelation, selectivityByPair);
+    }
+
     private static JoinType maybeInvertPair(RelationName rhsName, JoinPair pair) {
         // A matching joinPair for two relations is retrieved using pairByQualifiedNames.remove(setOf(a, b))
         // This returns a pair for both cases: (a ⋈ b) and (b ⋈ a) -> invert joinType to execute correct join
@@ -175,9 +234,9 @@ public class JoinPlanBuilder {
         return pair.joinType().invert();
     }
 
-    private static LogicalPlan joinWithNext(Function<AnalyzedRelation, LogicalPlan> plan,
-                                            LogicalPlan source,
+    private static LogicalPlan joinWithNext(LogicalPlan source,
                                             AnalyzedRelation nextRel,
+                                            LogicalPlan nextPlan,
                                             Set<RelationName> joinNames,
                                             Map<Set<RelationName>, JoinPair> joinPairs,
                                             Map<Set<RelationName>, Symbol> queryParts,
@@ -196,7 +255,6 @@ public class JoinPlanBuilder {
             condition = joinPair.condition();
         }
 
-        LogicalPlan nextPlan = plan.apply(nextRel);
         Symbol query = AndOperator.join(
             Stream.of(
                 removeMatch(queryParts, joinNames, nextName),
@@ -66,6 +66,7 @@ import io.crate.planner.optimizer.Optimizer;
 import io.crate.planner.optimizer.rule.DeduplicateOrder;
 import io.crate.planner.optimizer.rule.MergeAggregateAndCollectToCount;
 import io.crate.planner.optimizer.rule.MergeFilterAndCollect;
+import io.crate.planner.optimizer.rule.PushRuntimeFilterBeneathHashJoin;
 import io.crate.planner.optimizer.rule.MergeFilters;
 import io.crate.planner.optimizer.rule.MoveFilterBeneathFetchOrEval;
 import io.crate.planner.optimizer.rule.MoveFilterBeneathGroupBy;
@@ -128,6 +129,7 @@ public class LogicalPlanner {
                 new MoveFilterBeneathGroupBy(),
                 new MoveFilterBeneathWindowAgg(),
                 new MergeFilterAndCollect(),
+                new PushRuntimeFilterBeneathHashJoin(),
                 new RewriteFilterOnOuterJoinToInnerJoin(functions),
                 new MoveOrderBeneathUnion(),
                 new MoveOrderBeneathNestedLoop(),
@@ -222,7 +222,9 @@ public class NestedLoopJoin implements LogicalPlan {
             0,
             TopN.NO_LIMIT,
             outputs.size(),
-            orderByFromLeft
+            orderByFromLeft,
+            numExpectedRows(),
+            JoinCostModel.nestedLoopCost(JoinCostModel.estimatedRows(lhs), JoinCostModel.estimatedRows(rhs))
         );
     }
 
@@ -325,10 +327,14 @@ public class NestedLoopJoin implements LogicalPlan {
 
     @Override
     public long numExpectedRows() {
+        long estimatedRows = JoinCostModel.estimateRows(lhs, rhs, joinType, joinCondition);
+        if (estimatedRows >= 0) {
+            return estimatedRows;
+        }
         if (joinType == JoinType.CROSS) {
             return lhs.numExpectedRows() * rhs.numExpectedRows();
         } else {
-            // We don't have any cardinality estimates, so just take the bigger table
+            // Without column statistics there are no cardinality estimates, so just take the bigger table
             return Math.max(lhs.numExpectedRows(), rhs.numExpectedRows());
         }
     }
@@ -0,0 +1,279 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner.optimizer.rule;
+
+import io.crate.analyze.QueriedSelectRelation;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.expression.operator.AndOperator;
+import io.crate.expression.operator.EqOperator;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.operator.any.AnyOperators;
+import io.crate.expression.scalar.ArrayUpperFunction;
+import io.crate.expression.symbol.Function;
+import io.crate.expression.symbol.Literal;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.SymbolVisitors;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Reference;
+import io.crate.metadata.TransactionContext;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.operators.Collect;
+import io.crate.planner.operators.HashJoin;
+import io.crate.planner.operators.Limit;
+import io.crate.planner.operators.LogicalPlan;
+import io.crate.planner.operators.RootRelationBoundary;
+import io.crate.planner.optimizer.Rule;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.matcher.Pattern;
+import io.crate.statistics.TableStats;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+import static io.crate.planner.optimizer.matcher.Pattern.typeOf;
+
+/**
+ * Filters the larger side of an inner hash join by the join keys of the smaller side:
+ *
+ * <pre>
+ *     HashJoin[small.x = large.y]
+ *       - Collect[small, where=q1]
+ *       - Collect[large, where=q2]
+ *
+ *     becomes
+ *
+ *     HashJoin[small.x = large.y]                       runtimeFilters:
+ *       - Collect[small, where=q1]                         $1 = Limit[MAX_KEYS + 1]
+ *       - Collect[large, where=q2 AND                          - Collect[small, [x], where=q1]
+ *                        (y = ANY($1) OR array_length($1, 1) > MAX_KEYS)]
+ * </pre>
+ *
+ * The keys are collected upfront as a dependency, the same way as the result of a sub-query is.
+ * This allows Lucene to skip the documents of the larger side which cannot match instead of
+ * loading them and discarding them in the join.
+ *
+ * The rule only applies if statistics are available and show that the smaller side has few rows
+ * and that the larger side is much larger, because the smaller side is collected twice.
+ * As the statistics may be outdated, the number of keys is also capped at execution time:
+ * At most {@link #MAX_KEYS} + 1 keys are collected and if the cap is exceeded the filter
+ * normalizes to true once the keys are bound, so the larger side is collected unfiltered.
+ */
+public class PushRuntimeFilterBeneathHashJoin implements Rule<HashJoin> {
+
+    /**
+     * Maximum number of keys of the smaller side, the keys are kept in memory and turned into a terms query.
+     * Checked against the statistics when planning and enforced when the keys are collected.
+     */
+    public static final long MAX_KEYS = 10_000L;
+
+    /**
+     * How much larger the larger side must be than the smaller side to make collecting the smaller side twice worth it
+     */
+    static final long MIN_SIZE_RATIO = 10L;
+
+    private final Pattern<HashJoin> pattern;
+
+    public PushRuntimeFilterBeneathHashJoin() {
+        this.pattern = typeOf(HashJoin.class)
+            .with(join -> join.joinType() == JoinType.INNER
+                          && join.runtimeFilters().isEmpty()
+                          && join.lhs() instanceof Collect
+                          && join.rhs() instanceof Collect);
+    }
+
+    @Override
+    public Pattern<HashJoin> pattern() {
+        return pattern;
+    }
+
+    @Override
+    public LogicalPlan apply(HashJoin join,
+                             Captures captures,
+                             TableStats tableStats,
+                             TransactionContext txnCtx) {
+        Collect lhs = (Collect) join.lhs();
+        Collect rhs = (Collect) join.rhs();
+        boolean filterLhs = lhs.numExpectedRows() > rhs.numExpectedRows();
+        Collect small = filterLhs ? rhs : lhs;
+        Collect large = filterLhs ? lhs : rhs;
+        if (!isWorthFiltering(small, large)) {
+            return null;
+        }
+        Reference[] keys = findKeys(join.joinCondition(), small, large);
+        if (keys == null) {
+            return null;
+        }
+        Reference smallKey = keys[0];
+        Reference largeKey = keys[1];
+        DataType<?> keyType = largeKey.valueType();
+
+        LogicalPlan keysPlan = new RootRelationBoundary(new Limit(
+            new Collect(
+                small.preferSourceLookup(),
+                small.relation(),
+                List.of(smallKey),
+                small.where(),
+                small.numExpectedRows(),
+                small.estimatedRowSize(),
+                small.stats()
+            ),
+            Literal.of(MAX_KEYS + 1),
+            Literal.of(0L)
+        ));
+        SelectSymbol keysSymbol = new SelectSymbol(
+            new QueriedSelectRelation(
+                false,
+                List.of(small.relation()),
+                List.of(),
+                List.of(smallKey),
+                small.where().queryOrFallback(),
+                List.of(),
+                null,
+                null,
+                null,
+                null
+            ),
+            new ArrayType<>(keyType),
+            SelectSymbol.ResultType.SINGLE_COLUMN_MULTIPLE_VALUES
+        );
+        Function runtimeFilter = new Function(
+            OrOperator.INFO,
+            List.of(anyEq(largeKey, keysSymbol, keyType), exceedsMaxKeys(keysSymbol, keyType))
+        );
+        Collect filteredLarge = new Collect(
+            large.preferSourceLookup(),
+            large.relation(),
+            large.outputs(),
+            large.where().add(runtimeFilter),
+            large.numExpectedRows(),
+            large.estimatedRowSize(),
+            large.stats()
+        );
+        return new HashJoin(
+            filterLhs ? filteredLarge : lhs,
+            filterLhs ? rhs : filteredLarge,
+            join.joinType(),
+            join.joinCondition(),
+            join.concreteRelation(),
+            join.topMostLeftRelation(),
+            join.isRewriteFilterOnOuterJoinToInnerJoinDone(),
+            Map.of(keysPlan, keysSymbol)
+        );
+    }
+
+    private static Function anyEq(Reference largeKey, SelectSymbol keysSymbol, DataType<?> keyType) {
+        return new Function(
+            new FunctionInfo(
+                new FunctionIdent(AnyOperators.Names.EQ, List.of(keyType, new ArrayType<>(keyType))),
+                DataTypes.BOOLEAN
+            ),
+            List.of(largeKey, keysSymbol)
+        );
+    }
+
+    /**
+     * array_length($1, 1) > MAX_KEYS; the keys are truncated to MAX_KEYS + 1 so they must not be used to filter.
+     */
+    private static Function exceedsMaxKeys(SelectSymbol keysSymbol, DataType<?> keyType) {
+        Function numKeys = new Function(
+            new FunctionInfo(
+                new FunctionIdent(
+                    ArrayUpperFunction.ARRAY_LENGTH,
+                    List.of(new ArrayType<>(keyType), DataTypes.INTEGER)
+                ),
+                DataTypes.INTEGER
+            ),
+            List.of(keysSymbol, Literal.of(1))
+        );
+        return new Function(
+            new FunctionInfo(
+                new FunctionIdent(GtOperator.NAME, List.of(DataTypes.INTEGER, DataTypes.INTEGER)),
+                DataTypes.BOOLEAN
+            ),
+            List.of(numKeys, Literal.of((int) MAX_KEYS))
+        );
+    }
+
+    private static boolean isWorthFiltering(Collect small, Collect large) {
+        if (small.stats().numDocs() < 0 || large.stats().numDocs() < 0) {
+            return false;
+        }
+        if (!(large.relation() instanceof DocTableRelation)) {
+            return false;
+        }
+        // The keys are collected without any sub-query results bound
+        if (SymbolVisitors.any(s -> s instanceof SelectSymbol, small.where().queryOrFallback())) {
+            return false;
+        }
+        long smallRows = small.numExpectedRows();
+        long largeRows = large.numExpectedRows();
+        return smallRows >= 0
+               && smallRows <= MAX_KEYS
+               && largeRows >= MIN_SIZE_RATIO * Math.max(1L, smallRows);
+    }
+
+    /**
+     * @return the key of the smaller and the key of the larger side of the first equality
+     *         between two columns of the same primitive type, or null if there is none.
+     */
+    @Nullable
+    private static Reference[] findKeys(Symbol joinCondition, Collect small, Collect large) {
+        for (Symbol part : AndOperator.split(joinCondition)) {
+            if (!(part instanceof Function)) {
+                continue;
+            }
+            Function function = (Function) part;
+            if (!function.info().ident().name().equals(EqOperator.NAME)) {
+                continue;
+            }
+            List<Symbol> args = function.arguments();
+            if (!(args.get(0) instanceof Reference) || !(args.get(1) instanceof Reference)) {
+                continue;
+            }
+            Reference left = (Reference) args.get(0);
+            Reference right = (Reference) args.get(1);
+            if (!left.valueType().equals(right.valueType())
+                || !DataTypes.PRIMITIVE_TYPES.contains(left.valueType())) {
+                continue;
+            }
+            if (belongsTo(left, small) && belongsTo(right, large)) {
+                return new Reference[] { left, right };
+            }
+            if (belongsTo(right, small) && belongsTo(left, large)) {
+                return new Reference[] { right, left };
+            }
+        }
+        return null;
+    }
+
+    private static boolean belongsTo(Reference ref, Collect collect) {
+        return ref.ident().tableIdent().equals(collect.relation().relationName());
+    }
+}
@@ -35,6 +35,7 @@ import io.crate.metadata.RelationName;
 import io.crate.metadata.TransactionContext;
 import io.crate.planner.node.dql.join.JoinType;
 import io.crate.planner.operators.Filter;
+import io.crate.planner.operators.HashJoin;
 import io.crate.planner.operators.LogicalPlan;
 import io.crate.planner.operators.NestedLoopJoin;
 import io.crate.planner.optimizer.Rule;
@@ -62,7 +63,7 @@ import static io.crate.planner.optimizer.rule.FilterOnJoinsUtil.getNewSource;
  * <pre>
  *     Filter (lhs.x = 1 AND rhs.x = 2)
  *       |
- *     NestedLoop (outerJoin)
+ *     NestedLoop or HashJoin (outerJoin)
  *       /  \
  *     LHS  RHS
  * </pre>
@@ -72,7 +73,7 @@ import static io.crate.planner.optimizer.rule.FilterOnJoinsUtil.getNewSource;
  * <pre>
  *     Filter
  *       |
- *     NestedLoop (innerJoin)
+ *     NestedLoop or HashJoin (innerJoin)
  *       /      \
  *   Filter      Filter
  * (lhs.x = 1)    (rhs.x = 2)
@@ -101,19 +102,31 @@ import static io.crate.planner.optimizer.rule.FilterOnJoinsUtil.getNewSource;
  */
 public final class RewriteFilterOnOuterJoinToInnerJoin implements Rule<Filter> {
 
-    private final Capture<NestedLoopJoin> nlCapture;
+    private final Capture<LogicalPlan> joinCapture;
     private final Pattern<Filter> pattern;
     private final EvaluatingNormalizer normalizer;
 
     public RewriteFilterOnOuterJoinToInnerJoin(Functions functions) {
         this.normalizer = EvaluatingNormalizer.functionOnlyNormalizer(functions);
-        this.nlCapture = new Capture<>();
+        this.joinCapture = new Capture<>();
         this.pattern = typeOf(Filter.class)
-                .with(source(), typeOf(NestedLoopJoin.class).capturedAs(nlCapture)
-                    .with(nl -> nl.joinType().isOuter() && !nl.isRewriteFilterOnOuterJoinToInnerJoinDone())
+                .with(source(), typeOf(LogicalPlan.class).capturedAs(joinCapture)
+                    .with(RewriteFilterOnOuterJoinToInnerJoin::isOuterJoinToRewrite)
                 );
     }
 
+    private static boolean isOuterJoinToRewrite(LogicalPlan plan) {
+        if (plan instanceof NestedLoopJoin) {
+            NestedLoopJoin nl = (NestedLoopJoin) plan;
+            return nl.joinType().isOuter() && !nl.isRewriteFilterOnOuterJoinToInnerJoinDone();
+        }
+        if (plan instanceof HashJoin) {
+            HashJoin hashJoin = (HashJoin) plan;
+            return hashJoin.joinType().isOuter() && !hashJoin.isRewriteFilterOnOuterJoinToInnerJoinDone();
+        }
+        return false;
+    }
+
     @Override
     public Pattern<Filter> pattern() {
         return pattern;
@@ -124,14 +137,17 @@ public final class RewriteFilterOnOuterJoinToInnerJoin implements Rule<Filter> {
                              Captures captures,
                              TableStats tableStats,
                              TransactionContext txnCtx) {
-        NestedLoopJoin nl = captures.get(nlCapture);
+        LogicalPlan join = captures.get(joinCapture);
+        JoinType joinType = join instanceof HashJoin
+            ? ((HashJoin) join).joinType()
+            : ((NestedLoopJoin) join).joinType();
         Symbol query = filter.query();
         Map<Set<RelationName>, Symbol> splitQueries = QuerySplitter.split(query);
         if (splitQueries.size() == 1 && splitQueries.keySet().iterator().next().size() > 1) {
             return null;
         }
-        LogicalPlan lhs = nl.sources().get(0);
-        LogicalPlan rhs = nl.sources().get(1);
+        LogicalPlan lhs = join.sources().get(0);
+        LogicalPlan rhs = join.sources().get(1);
         Set<RelationName> leftName = lhs.getRelationNames();
         Set<RelationName> rightName = rhs.getRelationNames();
 
@@ -141,7 +157,7 @@ public final class RewriteFilterOnOuterJoinToInnerJoin implements Rule<Filter> {
         final LogicalPlan newLhs;
         final LogicalPlan newRhs;
         final boolean newJoinIsInnerJoin;
-        switch (nl.joinType()) {
+        switch (joinType) {
             case LEFT:
                 /* LEFT OUTER JOIN -> NULL rows are generated for the RHS if the join-condition doesn't match
                  *
@@ -245,22 +261,38 @@ public final class RewriteFilterOnOuterJoinToInnerJoin implements Rule<Filter> {
                 break;
             default:
                 throw new UnsupportedOperationException(
-                    "The Rule to rewrite filter+outer-joins to inner joins must not be run on joins of type=" + nl.joinType());
+                    "The Rule to rewrite filter+outer-joins to inner joins must not be run on joins of type=" + joinType);
         }
         if (newLhs == lhs && newRhs == rhs) {
             return null;
         }
-        NestedLoopJoin newJoin = new NestedLoopJoin(
-            newLhs,
-            newRhs,
-            newJoinIsInnerJoin ? JoinType.INNER : nl.joinType(),
-            nl.joinCondition(),
-            nl.isFiltered(),
-            nl.topMostLeftRelation(),
-            nl.orderByWasPushedDown(),
-            true
-        );
-        assert newJoin.outputs().equals(nl.outputs()) : "Outputs after rewrite must be the same as before";
+        JoinType newJoinType = newJoinIsInnerJoin ? JoinType.INNER : joinType;
+        LogicalPlan newJoin;
+        if (join instanceof HashJoin) {
+            HashJoin hashJoin = (HashJoin) join;
+            newJoin = new HashJoin(
+                newLhs,
+                newRhs,
+                newJoinType,
+                hashJoin.joinCondition(),
+                hashJoin.concreteRelation(),
+                hashJoin.topMostLeftRelation(),
+                true
+            );
+        } else {
+            NestedLoopJoin nl = (NestedLoopJoin) join;
+            newJoin = new NestedLoopJoin(
+                newLhs,
+                newRhs,
+                newJoinType,
+                nl.joinCondition(),
+                nl.isFiltered(),
+                nl.topMostLeftRelation(),
+                nl.orderByWasPushedDown(),
+                true
+            );
+        }
+        assert newJoin.outputs().equals(join.outputs()) : "Outputs after rewrite must be the same as before";
         return splitQueries.isEmpty() ? newJoin : new Filter(newJoin, AndOperator.join(splitQueries.values()));
     }
 
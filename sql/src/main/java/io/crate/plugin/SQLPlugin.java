@@ -22,6 +22,7 @@
 package io.crate.plugin;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.action.sql.Cursors;
 import io.crate.action.sql.SQLOperations;
 import io.crate.analyze.repositories.RepositorySettingsModule;
 import io.crate.auth.AuthSettings;
@@ -31,8 +32,13 @@ import io.crate.cluster.gracefulstop.DecommissioningService;
 import io.crate.execution.TransportExecutorModule;
 import io.crate.execution.engine.aggregation.impl.AggregationImplModule;
 import io.crate.execution.engine.collect.CollectOperationModule;
+import io.crate.execution.engine.collect.QueryResultCache;
+import io.crate.execution.engine.collect.SegmentAggregationCache;
 import io.crate.execution.engine.collect.files.FileCollectModule;
+import io.crate.execution.engine.collect.files.StdinFileInputFactory;
 import io.crate.execution.engine.collect.stats.JobsLogService;
+import io.crate.execution.engine.collect.vector.VectorizedGlobalAggregation;
+import io.crate.execution.engine.distribution.DistributingConsumerFactory;
 import io.crate.execution.engine.window.WindowFunctionModule;
 import io.crate.execution.jobs.JobModule;
 import io.crate.execution.jobs.TasksService;
@@ -60,6 +66,7 @@ import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.upgrade.IndexTemplateUpgrader;
 import io.crate.metadata.upgrade.MetaDataIndexUpgrader;
 import io.crate.metadata.view.ViewsMetaData;
+import io.crate.planner.PlanCache;
 import io.crate.monitor.MonitorModule;
 import io.crate.protocols.postgres.PostgresNetty;
 import io.crate.protocols.ssl.SslConfigSettings;
@@ -122,6 +129,14 @@ public class SQLPlugin extends Plugin implements ActionPlugin, MapperPlugin, Clu
         List<Setting<?>> settings = new ArrayList<>();
         settings.add(AnalyzerSettings.CUSTOM_ANALYSIS_SETTING_GROUP);
         settings.add(SQLOperations.NODE_READ_ONLY_SETTING);
+        settings.add(PlanCache.NODE_PLAN_CACHE_SIZE_SETTING);
+        settings.add(Cursors.MAX_CURSORS_SETTING);
+        settings.add(Cursors.IDLE_TIMEOUT_SETTING);
+        settings.add(DistributingConsumerFactory.MAX_PAGES_IN_FLIGHT_SETTING);
+        settings.add(QueryResultCache.SIZE_SETTING);
+        settings.add(SegmentAggregationCache.SIZE_SETTING);
+        settings.add(VectorizedGlobalAggregation.ENABLED_SETTING);
+        settings.add(StdinFileInputFactory.MAX_CONCURRENT_SETTING);
 
         // Postgres settings are node settings
         settings.add(PostgresNetty.PSQL_ENABLED_SETTING.setting());
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.netty.channel.Channel;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * Stream of the CopyData messages a client sends during a {@code COPY ... FROM STDIN}.
+ * <p>
+ * Messages are added on the event loop and consumed by the thread reading the file input of the COPY FROM.
+ * If the reader falls behind, auto read of the channel is disabled until most of the buffered data is consumed.
+ * <p>
+ * Failures are thrown as {@link UncheckedIOException} because the reader of a COPY FROM treats {@link IOException}s
+ * as per-line failures and would continue reading.
+ * <p>
+ * Only CopyDone ends the stream. Reads of a closed stream, e.g. closed by a KILL of the COPY FROM, fail, so that
+ * a partially received last line isn't read as if it was complete.
+ */
+class CopyInStream extends InputStream {
+
+    private static final long HIGH_WATERMARK_IN_BYTES = 4 * 1024 * 1024;
+    private static final long LOW_WATERMARK_IN_BYTES = 1024 * 1024;
+
+    private final Channel channel;
+    private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+
+    private byte[] current;
+    private int position;
+    private long bufferedBytes;
+    private boolean readPaused;
+    private boolean finished;
+    private boolean closed;
+    @Nullable
+    private String failure;
+
+    CopyInStream(Channel channel) {
+        this.channel = channel;
+    }
+
+    synchronized void add(byte[] data) {
+        if (finished || closed || data.length == 0) {
+            return;
+        }
+        chunks.add(data);
+        bufferedBytes += data.length;
+        if (bufferedBytes > HIGH_WATERMARK_IN_BYTES && readPaused == false) {
+            readPaused = true;
+            channel.config().setAutoRead(false);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Called if the client sent CopyDone, marks the end of the stream.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Called if the client sent CopyFail or disconnected, the reader fails with the given message.
+     */
+    synchronized void fail(String message) {
+        if (failure == null) {
+            failure = message;
+        }
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (current == null || position == current.length || failure != null || closed) {
+            if (failure != null) {
+                throw new UncheckedIOException(new IOException(failure));
+            }
+            if (closed) {
+                throw new UncheckedIOException(new IOException("COPY FROM STDIN stream is closed"));
+            }
+            byte[] next = chunks.poll();
+            if (next != null) {
+                current = next;
+                position = 0;
+                bufferedBytes -= next.length;
+                if (readPaused && bufferedBytes < LOW_WATERMARK_IN_BYTES) {
+                    resumeRead();
+                }
+            } else if (finished) {
+                return -1;
+            } else {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for COPY data"));
+                }
+            }
+        }
+        int numBytes = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, numBytes);
+        position += numBytes;
+        return numBytes;
+    }
+
+    @Override
+    public synchronized int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    /**
+     * Discards all buffered data. Data added afterwards is ignored and further reads fail.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        chunks.clear();
+        current = null;
+        bufferedBytes = 0;
+        if (readPaused) {
+            resumeRead();
+        }
+        notifyAll();
+    }
+
+    private void resumeRead() {
+        readPaused = false;
+        channel.config().setAutoRead(true);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.action.sql.BaseResultReceiver;
+import io.crate.data.Row;
+import io.netty.channel.Channel;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends the rows of a {@code COPY ... TO STDOUT} as CopyData messages, one JSON document per row.
+ * <p>
+ * The query is executed with a fetch size and only resumed once the channel is writable again,
+ * so a slow client slows down the consumption of the result instead of buffering it in memory.
+ */
+class CopyOutReceiver extends BaseResultReceiver {
+
+    private final String query;
+    private final Channel channel;
+    private final Function<Throwable, Exception> wrapError;
+    @Nullable
+    private final List<String> columnNames;
+    private final Consumer<CopyOutReceiver> resume;
+
+    private long rowCount = 0;
+    private boolean waitingForWritability = false;
+
+    /**
+     * @param columnNames names of the columns to write the rows as JSON objects or null to write them as JSON arrays.
+     * @param resume called on the event loop to continue the execution after a batch has been sent.
+     */
+    CopyOutReceiver(String query,
+                    Channel channel,
+                    Function<Throwable, Exception> wrapError,
+                    @Nullable List<String> columnNames,
+                    Consumer<CopyOutReceiver> resume) {
+        this.query = query;
+        this.channel = channel;
+        this.wrapError = wrapError;
+        this.columnNames = columnNames;
+        this.resume = resume;
+    }
+
+    @Override
+    public void setNextRow(Row row) {
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder();
+            if (columnNames == null) {
+                builder.startArray();
+                for (int i = 0; i < row.numColumns(); i++) {
+                    builder.value(row.get(i));
+                }
+                builder.endArray();
+            } else {
+                builder.startObject();
+                for (int i = 0; i < columnNames.size(); i++) {
+                    builder.field(columnNames.get(i), row.get(i));
+                }
+                builder.endObject();
+            }
+            Messages.sendCopyDataRow(channel, BytesReference.bytes(builder).toBytesRef());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rowCount++;
+    }
+
+    @Override
+    public void batchFinished() {
+        channel.flush();
+        channel.eventLoop().execute(this::resumeIfWritable);
+    }
+
+    private void resumeIfWritable() {
+        if (completionFuture().isDone()) {
+            return;
+        }
+        if (channel.isWritable()) {
+            resume.accept(this);
+        } else {
+            waitingForWritability = true;
+        }
+    }
+
+    /**
+     * Must be called on the event loop if the channel becomes writable again.
+     */
+    void channelWritable() {
+        if (waitingForWritability) {
+            waitingForWritability = false;
+            resume.accept(this);
+        }
+    }
+
+    @Override
+    public void allFinished(boolean interrupted) {
+        if (interrupted) {
+            super.allFinished(true);
+        } else {
+            Messages.sendCopyDone(channel);
+            Messages.sendCommandComplete(channel, query, rowCount).addListener(f -> super.allFinished(false));
+        }
+    }
+
+    @Override
+    public void fail(@Nonnull Throwable throwable) {
+        final Exception e = wrapError.apply(throwable);
+        Messages.sendErrorResponse(channel, e).addListener(f -> super.fail(e));
+    }
+}
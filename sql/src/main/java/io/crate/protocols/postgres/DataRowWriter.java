@@ -0,0 +1,105 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.data.Row;
+import io.crate.protocols.postgres.types.PGType;
+import io.crate.types.DataType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Writes the rows of a result set as DataRow messages.
+ * <p>
+ * The {@link PGType}s and format codes of the columns are resolved once and many rows are encoded into a single
+ * pooled buffer, which is written and flushed once it exceeds {@link #FLUSH_THRESHOLD_IN_BYTES}.
+ * This avoids a buffer allocation and a channel write per row.
+ */
+final class DataRowWriter {
+
+    static final int FLUSH_THRESHOLD_IN_BYTES = 64 * 1024;
+    private static final int INITIAL_BUFFER_SIZE_IN_BYTES = 8 * 1024;
+
+    private final Channel channel;
+    private final PGType[] pgTypes;
+    private final FormatCodes.FormatCode[] formatCodes;
+
+    @Nullable
+    private ByteBuf buffer;
+
+    DataRowWriter(Channel channel, List<? extends DataType> columnTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
+        this.channel = channel;
+        this.pgTypes = Messages.pgTypes(columnTypes);
+        this.formatCodes = Messages.columnFormatCodes(formatCodes, columnTypes.size());
+    }
+
+    void write(Row row) {
+        assert pgTypes.length == row.numColumns()
+            : "Number of columns in the row must match number of columnTypes. Row: " + row;
+        if (buffer == null) {
+            buffer = channel.alloc().ioBuffer(INITIAL_BUFFER_SIZE_IN_BYTES);
+        }
+        int startWriterIndex = buffer.writerIndex();
+        try {
+            Messages.writeDataRow(buffer, row, pgTypes, formatCodes);
+        } catch (Exception e) {
+            // drop the partially written row, the rows before are still valid
+            buffer.writerIndex(startWriterIndex);
+            throw e;
+        }
+        if (buffer.readableBytes() >= FLUSH_THRESHOLD_IN_BYTES) {
+            ByteBuf fullBuffer = buffer;
+            buffer = null;
+            channel.writeAndFlush(fullBuffer);
+        }
+    }
+
+    /**
+     * Writes the pending rows to the channel without flushing it.
+     * Must be called before any other message is sent to keep the order of the messages.
+     */
+    void finish() {
+        ByteBuf pending = buffer;
+        buffer = null;
+        if (pending != null) {
+            if (pending.isReadable()) {
+                channel.write(pending);
+            } else {
+                pending.release();
+            }
+        }
+    }
+
+    /**
+     * Discards the pending rows.
+     */
+    void release() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
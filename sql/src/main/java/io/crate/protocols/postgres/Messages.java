@@ -35,6 +35,7 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
 
 import javax.annotation.Nullable;
 import java.nio.charset.StandardCharsets;
@@ -95,6 +96,10 @@ public class Messages {
          */
         if ("BEGIN".equals(query)) {
             commandTag = "BEGIN";
+        } else if ("DECLARE".equals(query)) {
+            commandTag = "DECLARE CURSOR";
+        } else if ("CLOSE".equals(query)) {
+            commandTag = "CLOSE CURSOR";
         } else if ("INSERT".equals(query)) {
             commandTag = "INSERT 0 " + rowCount;
         } else {
@@ -288,48 +293,71 @@ public class Messages {
      * The value of the column, in the format indicated by the associated format code. n is the above length.
      */
     static void sendDataRow(Channel channel, Row row, List<? extends DataType> columnTypes, @Nullable FormatCodes.FormatCode[] formatCodes) {
-        int length = 4 + 2;
         assert columnTypes.size() == row.numColumns()
             : "Number of columns in the row must match number of columnTypes. Row: " + row + " types: " + columnTypes;
 
         ByteBuf buffer = channel.alloc().buffer();
+        try {
+            writeDataRow(buffer, row, pgTypes(columnTypes), columnFormatCodes(formatCodes, columnTypes.size()));
+        } catch (Exception e) {
+            buffer.release();
+            throw e;
+        }
+        channel.write(buffer);
+    }
+
+    /**
+     * Encodes a DataRow message into {@code buffer}, see {@link #sendDataRow(Channel, Row, List, FormatCodes.FormatCode[])}.
+     *
+     * @param pgTypes the types of the columns, see {@link #pgTypes(List)}
+     * @param formatCodes one format code per column, see {@link #columnFormatCodes(FormatCodes.FormatCode[], int)}
+     */
+    @SuppressWarnings("unchecked")
+    static void writeDataRow(ByteBuf buffer, Row row, PGType[] pgTypes, FormatCodes.FormatCode[] formatCodes) {
+        int startWriterIndex = buffer.writerIndex();
+        int length = 4 + 2;
         buffer.writeByte('D');
         buffer.writeInt(0); // will be set at the end
-        buffer.writeShort(row.numColumns());
-
-        for (int i = 0; i < row.numColumns(); i++) {
-            DataType dataType = columnTypes.get(i);
-            PGType pgType;
-            Object value;
-            try {
-                pgType = PGTypes.get(dataType);
-                value = row.get(i);
-            } catch (Exception e) {
-                buffer.release();
-                throw e;
-            }
+        buffer.writeShort(pgTypes.length);
+
+        for (int i = 0; i < pgTypes.length; i++) {
+            Object value = row.get(i);
             if (value == null) {
                 buffer.writeInt(-1);
                 length += 4;
             } else {
-                FormatCodes.FormatCode formatCode = FormatCodes.getFormatCode(formatCodes, i);
+                FormatCodes.FormatCode formatCode = formatCodes[i];
                 switch (formatCode) {
                     case TEXT:
-                        length += pgType.writeAsText(buffer, value);
+                        length += pgTypes[i].writeAsText(buffer, value);
                         break;
                     case BINARY:
-                        length += pgType.writeAsBinary(buffer, value);
+                        length += pgTypes[i].writeAsBinary(buffer, value);
                         break;
 
                     default:
-                        buffer.release();
                         throw new AssertionError("Unrecognized formatCode: " + formatCode);
                 }
             }
         }
 
-        buffer.setInt(1, length);
-        channel.write(buffer);
+        buffer.setInt(startWriterIndex + 1, length);
+    }
+
+    static PGType[] pgTypes(List<? extends DataType> columnTypes) {
+        PGType[] pgTypes = new PGType[columnTypes.size()];
+        for (int i = 0; i < pgTypes.length; i++) {
+            pgTypes[i] = PGTypes.get(columnTypes.get(i));
+        }
+        return pgTypes;
+    }
+
+    static FormatCodes.FormatCode[] columnFormatCodes(@Nullable FormatCodes.FormatCode[] formatCodes, int numColumns) {
+        FormatCodes.FormatCode[] columnFormatCodes = new FormatCodes.FormatCode[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columnFormatCodes[i] = FormatCodes.getFormatCode(formatCodes, i);
+        }
+        return columnFormatCodes;
     }
 
     static void writeCString(ByteBuf buffer, byte[] valBytes) {
@@ -481,6 +509,60 @@ public class Messages {
         sendShortMsg(channel, '3', "sentCloseComplete");
     }
 
+    /**
+     * CopyInResponse
+     * | 'G' | int32 len | int8 format | int16 numCols
+     * <p>
+     * The data is always sent in the textual format, 0 columns means that the number of columns isn't known upfront.
+     */
+    static void sendCopyInResponse(Channel channel) {
+        sendCopyResponse(channel, 'G', "sentCopyInResponse");
+    }
+
+    /**
+     * CopyOutResponse
+     * | 'H' | int32 len | int8 format | int16 numCols
+     */
+    static void sendCopyOutResponse(Channel channel) {
+        sendCopyResponse(channel, 'H', "sentCopyOutResponse");
+    }
+
+    private static void sendCopyResponse(Channel channel, char msgType, final String traceLogMsg) {
+        ByteBuf buffer = channel.alloc().buffer(8);
+        buffer.writeByte(msgType);
+        buffer.writeInt(7);
+        buffer.writeByte(0);
+        buffer.writeShort(0);
+        ChannelFuture channelFuture = channel.writeAndFlush(buffer);
+        if (LOGGER.isTraceEnabled()) {
+            channelFuture.addListener((ChannelFutureListener) future -> LOGGER.trace(traceLogMsg));
+        }
+    }
+
+    /**
+     * CopyData containing a single row, terminated by a new line
+     * | 'd' | int32 len | byte[] row | '\n'
+     * <p>
+     * The message is only written, the caller is responsible for flushing the channel.
+     */
+    static void sendCopyDataRow(Channel channel, BytesRef row) {
+        int length = 4 + row.length + 1;
+        ByteBuf buffer = channel.alloc().buffer(length + 1);
+        buffer.writeByte('d');
+        buffer.writeInt(length);
+        buffer.writeBytes(row.bytes, row.offset, row.length);
+        buffer.writeByte('\n');
+        channel.write(buffer);
+    }
+
+    /**
+     * CopyDone
+     * | 'c' | int32 len |
+     */
+    static void sendCopyDone(Channel channel) {
+        sendShortMsg(channel, 'c', "sentCopyDone");
+    }
+
     /**
      * AuthenticationCleartextPassword (B)
      *
@@ -27,6 +27,7 @@ import com.carrotsearch.hppc.IntSet;
 import io.crate.action.sql.SQLOperations;
 import io.crate.auth.Authentication;
 import io.crate.auth.user.UserManager;
+import io.crate.execution.engine.collect.files.StdinFileInputFactory;
 import io.crate.netty.CrateChannelBootstrapFactory;
 import io.crate.protocols.ssl.SslConfigSettings;
 import io.crate.protocols.ssl.SslContextProvider;
@@ -90,6 +91,7 @@ public class PostgresNetty extends AbstractLifecycleComponent {
     private UserManager userManager;
     @Nullable
     private final SslContextProvider sslContextProvider;
+    private final StdinFileInputFactory stdinFileInputs;
 
     private ServerBootstrap bootstrap;
 
@@ -106,13 +108,15 @@ public class PostgresNetty extends AbstractLifecycleComponent {
                          UserManager userManager,
                          NetworkService networkService,
                          Authentication authentication,
-                         SslContextProvider sslContextProvider) {
+                         SslContextProvider sslContextProvider,
+                         StdinFileInputFactory stdinFileInputs) {
         this.settings = settings;
         this.userManager = userManager;
         namedLogger = LogManager.getLogger("psql");
         this.sqlOperations = sqlOperations;
         this.networkService = networkService;
         this.authentication = authentication;
+        this.stdinFileInputs = stdinFileInputs;
 
         if (SslConfigSettings.isPSQLSslEnabled(settings)) {
             namedLogger.info("PSQL SSL support is enabled.");
@@ -150,7 +154,8 @@ public class PostgresNetty extends AbstractLifecycleComponent {
                     sqlOperations,
                     userManager::getAccessControl,
                     authentication,
-                    sslContextProvider);
+                    sslContextProvider,
+                    stdinFileInputs);
                 pipeline.addLast("frame-decoder", postgresWireProtocol.decoder);
                 pipeline.addLast("handler", postgresWireProtocol.handler);
             }
@@ -23,11 +23,13 @@
 package io.crate.protocols.postgres;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMultimap;
 import io.crate.action.sql.DescribeResult;
 import io.crate.action.sql.ResultReceiver;
 import io.crate.action.sql.SQLOperations;
 import io.crate.action.sql.Session;
 import io.crate.action.sql.SessionContext;
+import io.crate.analyze.copy.NodeFilters;
 import io.crate.auth.Authentication;
 import io.crate.auth.AuthenticationMethod;
 import io.crate.auth.Protocol;
@@ -35,11 +37,27 @@ import io.crate.auth.user.AccessControl;
 import io.crate.auth.user.User;
 import io.crate.common.collections.Lists2;
 import io.crate.exceptions.SQLExceptions;
+import io.crate.exceptions.UnsupportedFeatureException;
+import io.crate.execution.engine.collect.files.StdinFileInputFactory;
 import io.crate.expression.symbol.Symbol;
+import io.crate.expression.symbol.Symbols;
 import io.crate.protocols.http.CrateNettyHttpServerTransport;
 import io.crate.protocols.postgres.types.PGType;
 import io.crate.protocols.postgres.types.PGTypes;
 import io.crate.protocols.ssl.SslContextProvider;
+import io.crate.sql.ExpressionFormatter;
+import io.crate.sql.SqlFormatter;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Assignment;
+import io.crate.sql.tree.CopyFrom;
+import io.crate.sql.tree.CopyTo;
+import io.crate.sql.tree.Expression;
+import io.crate.sql.tree.GenericProperties;
+import io.crate.sql.tree.GenericProperty;
+import io.crate.sql.tree.ObjectLiteral;
+import io.crate.sql.tree.QualifiedNameReference;
+import io.crate.sql.tree.Statement;
+import io.crate.sql.tree.StringLiteral;
 import io.crate.types.DataType;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
@@ -50,10 +68,12 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSession;
 import java.net.InetAddress;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -61,6 +81,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
@@ -129,6 +150,42 @@ import static io.crate.protocols.postgres.PostgresWireProtocol.State.STARTUP_HEA
  *          |     ReadyForQuery                |
  *          |<---------------------------------|
  *
+ * Copy (simple query only, COPY ... FROM STDIN / COPY ... TO STDOUT):
+ *
+ *          +                                  +
+ *          |   Q (COPY .. FROM STDIN)         |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CopyInResponse               |
+ *          |<---------------------------------|
+ *          |                                  |
+ *          |   CopyData                       |
+ *          |--------------------------------->|
+ *          |   CopyDone | CopyFail            |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CommandComplete |            |
+ *          |     ErrorResponse                |
+ *          |<---------------------------------|
+ *          |     ReadyForQuery                |
+ *          |<---------------------------------|
+ *
+ *
+ *          +                                  +
+ *          |   Q (COPY .. TO STDOUT)          |
+ *          |--------------------------------->|
+ *          |                                  |
+ *          |     CopyOutResponse              |
+ *          |<---------------------------------|
+ *          |     CopyData                     |
+ *          |<---------------------------------|
+ *          |     CopyDone                     |
+ *          |<---------------------------------|
+ *          |     CommandComplete              |
+ *          |<---------------------------------|
+ *          |     ReadyForQuery                |
+ *          |<---------------------------------|
+ *
  * Extended Query
  *
  *          +                                  +
@@ -188,12 +245,18 @@ public class PostgresWireProtocol {
     public static int SERVER_VERSION_NUM = 100500;
     public static String PG_SERVER_VERSION = "10.5";
 
+    /**
+     * Number of rows sent per batch by {@code COPY ... TO STDOUT} before checking if the channel is still writable
+     */
+    static final int COPY_OUT_FETCH_SIZE = 1000;
+
     final MessageDecoder decoder;
     final MessageHandler handler;
     private final SQLOperations sqlOperations;
     private final Function<SessionContext, AccessControl> getAccessControl;
     private final Authentication authService;
     private final SslReqHandler sslReqHandler;
+    private final StdinFileInputFactory stdinFileInputs;
 
     private int msgLength;
     private byte msgType;
@@ -202,6 +265,11 @@ public class PostgresWireProtocol {
     private AuthenticationContext authContext;
     private Properties properties;
 
+    @Nullable
+    private CopyInStream copyIn;
+    @Nullable
+    private CopyOutReceiver copyOut;
+
     enum State {
         PRE_STARTUP,
         STARTUP_HEADER,
@@ -215,11 +283,13 @@ public class PostgresWireProtocol {
     PostgresWireProtocol(SQLOperations sqlOperations,
                          Function<SessionContext, AccessControl> getAcessControl,
                          Authentication authService,
-                         @Nullable SslContextProvider sslContextProvider) {
+                         @Nullable SslContextProvider sslContextProvider,
+                         StdinFileInputFactory stdinFileInputs) {
         this.sqlOperations = sqlOperations;
         this.getAccessControl = getAcessControl;
         this.authService = authService;
         this.sslReqHandler = new SslReqHandler(sslContextProvider);
+        this.stdinFileInputs = stdinFileInputs;
         this.decoder = new MessageDecoder();
         this.handler = new MessageHandler();
     }
@@ -365,6 +435,15 @@ public class PostgresWireProtocol {
                 case 'C':
                     handleClose(buffer, channel);
                     return;
+                case 'd':
+                    handleCopyData(buffer);
+                    return;
+                case 'c':
+                    handleCopyDone();
+                    return;
+                case 'f':
+                    handleCopyFail(buffer);
+                    return;
                 case 'X': // Terminate (called when jdbc connection is closed)
                     closeSession();
                     channel.close();
@@ -387,9 +466,22 @@ public class PostgresWireProtocol {
             LOGGER.error("Uncaught exception: ", cause);
         }
 
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            CopyOutReceiver receiver = copyOut;
+            if (receiver != null && ctx.channel().isWritable()) {
+                receiver.channelWritable();
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
         @Override
         public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
             LOGGER.trace("channelDisconnected");
+            CopyInStream stream = copyIn;
+            if (stream != null) {
+                stream.fail("Client disconnected during COPY FROM STDIN");
+            }
             closeSession();
             super.channelUnregistered(ctx);
         }
@@ -701,6 +793,12 @@ public class PostgresWireProtocol {
         }
 
         try {
+            Statement copyStatement = parseCopyWithStdio(query);
+            if (copyStatement instanceof CopyFrom) {
+                return handleCopyFromStdin(query, (CopyFrom<Expression>) copyStatement, channel);
+            } else if (copyStatement instanceof CopyTo) {
+                return handleCopyToStdout(query, (CopyTo<Expression>) copyStatement, channel);
+            }
             session.parse("", query, Collections.emptyList());
             session.bind("", "", Collections.emptyList(), null);
             DescribeResult describeResult = session.describe('P', "");
@@ -730,6 +828,222 @@ public class PostgresWireProtocol {
         }
     }
 
+    /**
+     * @return the statement if the query is a {@code COPY ... FROM STDIN} or {@code COPY ... TO STDOUT}, otherwise null.
+     *         Parser errors are ignored here, they're raised by the regular query handling.
+     */
+    @Nullable
+    @VisibleForTesting
+    static Statement parseCopyWithStdio(String query) {
+        if (query.stripLeading().regionMatches(true, 0, "COPY", 0, 4) == false) {
+            return null;
+        }
+        Statement statement;
+        try {
+            statement = SqlParser.createStatement(query);
+        } catch (Exception e) {
+            return null;
+        }
+        if (statement instanceof CopyFrom && isIdentifier(((CopyFrom<Expression>) statement).path(), "stdin")) {
+            return statement;
+        }
+        if (statement instanceof CopyTo) {
+            CopyTo<Expression> copyTo = (CopyTo<Expression>) statement;
+            if (copyTo.directoryUri() == false && isIdentifier(copyTo.targetUri(), "stdout")) {
+                return statement;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIdentifier(Expression expression, String name) {
+        return expression instanceof QualifiedNameReference
+               && ((QualifiedNameReference) expression).getName().getParts().equals(List.of(name));
+    }
+
+    /**
+     * Executes a {@code COPY ... FROM STDIN} as a regular {@code COPY FROM} which reads the CopyData messages
+     * of this connection via a {@link StdinFileInputFactory} URI. The stream only exists on this node, so the
+     * {@code COPY FROM} is restricted to it using the {@code node_filters} option.
+     */
+    private CompletableFuture<?> handleCopyFromStdin(String query, CopyFrom<Expression> copyFrom, Channel channel) {
+        if (copyFrom.isReturnSummary()) {
+            throw new UnsupportedFeatureException("COPY FROM STDIN doesn't support RETURN SUMMARY");
+        }
+        if (copyFrom.properties().properties().containsKey(NodeFilters.NAME)) {
+            throw new UnsupportedFeatureException("COPY FROM STDIN doesn't support the " + NodeFilters.NAME + " option");
+        }
+        DiscoveryNode localNode = stdinFileInputs.localNode();
+        if (localNode.isDataNode() == false) {
+            throw new UnsupportedFeatureException(
+                "COPY FROM STDIN is only supported on data nodes, node " + localNode.getName() + " isn't a data node");
+        }
+        CopyInStream stream = new CopyInStream(channel);
+        URI uri = stdinFileInputs.register(stream);
+        try {
+            GenericProperties<Expression> properties = new GenericProperties<>();
+            for (Map.Entry<String, Expression> property : copyFrom.properties().properties().entrySet()) {
+                properties.add(new GenericProperty<>(property.getKey(), property.getValue()));
+            }
+            properties.add(new GenericProperty<>(
+                NodeFilters.NAME,
+                new ObjectLiteral(ImmutableMultimap.of("id", new StringLiteral(localNode.getId())))
+            ));
+            String copyFromUri = SqlFormatter.formatSql(
+                new CopyFrom<>(copyFrom.table(), new StringLiteral(uri.toString()), properties, false));
+
+            session.parse("", copyFromUri, Collections.emptyList());
+            session.bind("", "", Collections.emptyList(), null);
+            RowCountReceiver rowCountReceiver = new RowCountReceiver(
+                query,
+                channel,
+                SQLExceptions.forWireTransmission(getAccessControl.apply(session.sessionContext()))
+            );
+            session.execute("", 0, rowCountReceiver);
+            copyIn = stream;
+            Messages.sendCopyInResponse(channel);
+            return session.sync().whenComplete((result, t) -> finishCopyIn(stream, uri));
+        } catch (Throwable t) {
+            finishCopyIn(stream, uri);
+            throw t;
+        }
+    }
+
+    private void finishCopyIn(CopyInStream stream, URI uri) {
+        stdinFileInputs.unregister(uri);
+        // discards the data which hasn't been consumed and re-enables auto read
+        stream.close();
+        if (copyIn == stream) {
+            copyIn = null;
+        }
+    }
+
+    /**
+     * CopyData | 'd' | int32 len | byte[] data
+     * <p>
+     * Messages which arrive after the COPY FROM STDIN finished (e.g. because it failed) are discarded.
+     */
+    private void handleCopyData(ByteBuf buffer) {
+        CopyInStream stream = copyIn;
+        if (stream == null) {
+            buffer.skipBytes(msgLength);
+            return;
+        }
+        byte[] data = new byte[msgLength];
+        buffer.readBytes(data);
+        stream.add(data);
+    }
+
+    /**
+     * CopyDone | 'c' | int32 len
+     */
+    private void handleCopyDone() {
+        CopyInStream stream = copyIn;
+        if (stream != null) {
+            stream.finish();
+        }
+    }
+
+    /**
+     * CopyFail | 'f' | int32 len | string errorMessage
+     */
+    private void handleCopyFail(ByteBuf buffer) {
+        String message = readCString(buffer);
+        CopyInStream stream = copyIn;
+        if (stream != null) {
+            stream.fail("COPY FROM STDIN failed: " + message);
+        }
+    }
+
+    /**
+     * Executes a {@code COPY ... TO STDOUT} as a query on the table and sends each row as a JSON document in a
+     * CopyData message. Like the files written by {@code COPY TO} rows are written as JSON objects unless columns
+     * are specified, which can be overridden using the {@code format} option.
+     */
+    private CompletableFuture<?> handleCopyToStdout(String query, CopyTo<Expression> copyTo, Channel channel) {
+        String format = null;
+        for (Map.Entry<String, Expression> property : copyTo.properties().properties().entrySet()) {
+            if ("format".equals(property.getKey()) && property.getValue() instanceof StringLiteral) {
+                format = ((StringLiteral) property.getValue()).getValue();
+            } else {
+                throw new UnsupportedFeatureException(
+                    "COPY TO STDOUT doesn't support the option: " + property.getKey() + "=" + property.getValue());
+            }
+        }
+        boolean asArray;
+        if (format == null) {
+            asArray = copyTo.columns().isEmpty() == false;
+        } else if ("json_array".equals(format)) {
+            asArray = true;
+        } else if ("json_object".equals(format)) {
+            asArray = false;
+        } else {
+            throw new IllegalArgumentException("Invalid format for COPY TO STDOUT: " + format);
+        }
+        if (asArray && copyTo.columns().isEmpty()) {
+            throw new UnsupportedFeatureException("Output format not supported without specifying columns.");
+        }
+
+        session.parse("", selectForCopyTo(copyTo), Collections.emptyList());
+        session.bind("", "", Collections.emptyList(), null);
+        List<Symbol> fields = session.describe('P', "").getFields();
+        assert fields != null : "A SELECT must have outputs";
+
+        CopyOutReceiver receiver = new CopyOutReceiver(
+            query,
+            channel,
+            SQLExceptions.forWireTransmission(getAccessControl.apply(session.sessionContext())),
+            asArray ? null : Lists2.map(fields, field -> Symbols.pathFromSymbol(field).sqlFqn()),
+            this::resumeCopyOut
+        );
+        session.execute("", COPY_OUT_FETCH_SIZE, receiver);
+        copyOut = receiver;
+        Messages.sendCopyOutResponse(channel);
+        return session.sync()
+            .thenCompose(ignored -> receiver.completionFuture())
+            .whenComplete((result, t) -> {
+                if (copyOut == receiver) {
+                    copyOut = null;
+                }
+            });
+    }
+
+    private void resumeCopyOut(CopyOutReceiver receiver) {
+        try {
+            session.execute("", COPY_OUT_FETCH_SIZE, receiver);
+            session.sync();
+        } catch (Throwable t) {
+            receiver.fail(t);
+        }
+    }
+
+    @VisibleForTesting
+    static String selectForCopyTo(CopyTo<Expression> copyTo) {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        if (copyTo.columns().isEmpty()) {
+            sb.append("*");
+        } else {
+            sb.append(Lists2.joinOn(", ", copyTo.columns(), ExpressionFormatter::formatStandaloneExpression));
+        }
+        sb.append(" FROM ");
+        sb.append(ExpressionFormatter.formatStandaloneExpression(new QualifiedNameReference(copyTo.table().getName())));
+
+        List<String> conditions = new ArrayList<>();
+        for (Assignment<Expression> partitionProperty : copyTo.table().partitionProperties()) {
+            conditions.add(
+                ExpressionFormatter.formatStandaloneExpression(partitionProperty.columnName())
+                + " = "
+                + ExpressionFormatter.formatStandaloneExpression(partitionProperty.expression()));
+        }
+        copyTo.whereClause().ifPresent(
+            where -> conditions.add("(" + ExpressionFormatter.formatStandaloneExpression(where) + ")"));
+        if (conditions.isEmpty() == false) {
+            sb.append(" WHERE ");
+            sb.append(String.join(" AND ", conditions));
+        }
+        return sb.toString();
+    }
+
 
     /**
      * FrameDecoder that makes sure that a full message is in the buffer before delegating work to the MessageHandler
@@ -37,10 +37,7 @@ class ResultSetReceiver extends BaseResultReceiver {
     private final String query;
     private final Channel channel;
     private final Function<Throwable, Exception> wrapError;
-    private final List<? extends DataType> columnTypes;
-
-    @Nullable
-    private final FormatCodes.FormatCode[] formatCodes;
+    private final DataRowWriter dataRowWriter;
 
     private long rowCount = 0;
 
@@ -52,21 +49,18 @@ class ResultSetReceiver extends BaseResultReceiver {
         this.query = query;
         this.channel = channel;
         this.wrapError = wrapError;
-        this.columnTypes = columnTypes;
-        this.formatCodes = formatCodes;
+        this.dataRowWriter = new DataRowWriter(channel, columnTypes, formatCodes);
     }
 
     @Override
     public void setNextRow(Row row) {
         rowCount++;
-        Messages.sendDataRow(channel, row, columnTypes, formatCodes);
-        if (rowCount % 1000 == 0) {
-            channel.flush();
-        }
+        dataRowWriter.write(row);
     }
 
     @Override
     public void batchFinished() {
+        dataRowWriter.finish();
         Messages.sendPortalSuspended(channel);
         Messages.sendReadyForQuery(channel);
     }
@@ -74,14 +68,17 @@ class ResultSetReceiver extends BaseResultReceiver {
     @Override
     public void allFinished(boolean interrupted) {
         if (interrupted) {
+            dataRowWriter.release();
             super.allFinished(true);
         } else {
+            dataRowWriter.finish();
             Messages.sendCommandComplete(channel, query, rowCount).addListener(f -> super.allFinished(false));
         }
     }
 
     @Override
     public void fail(@Nonnull Throwable throwable) {
+        dataRowWriter.finish();
         final Exception e = wrapError.apply(throwable);
         Messages.sendErrorResponse(channel, e).addListener(f -> super.fail(e));
     }
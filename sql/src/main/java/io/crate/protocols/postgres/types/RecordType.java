@@ -64,6 +64,7 @@ public class RecordType extends PGType<Row> {
             var value = record.get(i);
             if (value == null) {
                 buffer.writeInt(-1); // -1 data length signals a NULL
+                bytesWritten += 4;
                 continue;
             }
 
@@ -24,6 +24,7 @@ package io.crate.protocols.postgres.types;
 
 import io.crate.types.DataTypes;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 import javax.annotation.Nonnull;
 import java.nio.charset.StandardCharsets;
@@ -61,10 +62,12 @@ class VarCharType extends PGType<Object> {
 
     @Override
     public int writeAsBinary(ByteBuf buffer, @Nonnull Object value) {
-        byte[] bytes = DataTypes.STRING.value(value).getBytes(StandardCharsets.UTF_8);
-        buffer.writeInt(bytes.length);
-        buffer.writeBytes(bytes);
-        return INT32_BYTE_SIZE + bytes.length;
+        // encode directly into the buffer instead of creating an intermediate byte[]
+        int lengthIndex = buffer.writerIndex();
+        buffer.writeInt(0);
+        int bytesWritten = ByteBufUtil.writeUtf8(buffer, DataTypes.STRING.value(value));
+        buffer.setInt(lengthIndex, bytesWritten);
+        return INT32_BYTE_SIZE + bytesWritten;
     }
 
     @Override
@@ -0,0 +1,298 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.rest.action;
+
+import io.crate.action.sql.ResultReceiver;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.Row;
+import io.crate.expression.symbol.Symbol;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Writes a result set as chunked HTTP response while it is being consumed, instead of building the whole
+ * response in memory.
+ * <p>
+ * The query is executed with a fetch size, so that the receiver gets a {@link #batchFinished()} call every
+ * {@code fetchSize} rows. Each batch is written as a chunk and the execution is only resumed once the channel is
+ * writable again, so a slow client slows down the consumption of the result.
+ * <p>
+ * The response head is sent together with the first chunk. Errors which happen before that are propagated via
+ * {@link #completionFuture()} and result in a regular error response. After the head has been sent the status can't
+ * be changed anymore, so the connection is closed instead and the client sees an incomplete response.
+ */
+class RestStreamingResultSetReceiver implements ResultReceiver<XContentBuilder> {
+
+    enum Format {
+        /**
+         * The same JSON object as a regular response: {"cols": [..], "rows": [..], "rowcount": .., "duration": ..}
+         */
+        JSON(XContentType.JSON.mediaType()),
+
+        /**
+         * Newline-delimited JSON: a line with the columns, a line per row and a line with row count and duration.
+         */
+        NDJSON("application/x-ndjson");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        String mediaType() {
+            return mediaType;
+        }
+
+        static Format of(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported response format: " + value);
+            }
+        }
+    }
+
+    private static final byte NEW_LINE = '\n';
+
+    private final Channel channel;
+    private final HttpResponse head;
+    private final boolean closeConnection;
+    private final Format format;
+    private final List<Symbol> outputFields;
+    private final long startTimeNs;
+    private final RowAccounting<Row> rowAccounting;
+    private final Consumer<RestStreamingResultSetReceiver> resume;
+    private final CompletableFuture<XContentBuilder> result = new CompletableFuture<>();
+    private final BytesStreamOutput buffer = new BytesStreamOutput();
+
+    /**
+     * Builder of the whole response for {@link Format#JSON}, null for {@link Format#NDJSON}
+     */
+    @Nullable
+    private final XContentBuilder jsonBuilder;
+    @Nullable
+    private final ResultToXContentBuilder jsonResultBuilder;
+
+    private boolean headSent = false;
+    private boolean waitingForWritability = false;
+    private long rowCount;
+
+    /**
+     * @param head the response head, sent together with the first chunk
+     * @param resume resumes the execution after a batch has been written, it's invoked on the event loop.
+     */
+    RestStreamingResultSetReceiver(Channel channel,
+                                   HttpResponse head,
+                                   boolean closeConnection,
+                                   Format format,
+                                   List<Symbol> outputFields,
+                                   long startTimeNs,
+                                   RowAccounting<Row> rowAccounting,
+                                   boolean includeTypesOnResponse,
+                                   Consumer<RestStreamingResultSetReceiver> resume) throws IOException {
+        this.channel = channel;
+        this.head = head;
+        this.closeConnection = closeConnection;
+        this.format = format;
+        this.outputFields = outputFields;
+        this.startTimeNs = startTimeNs;
+        this.rowAccounting = rowAccounting;
+        this.resume = resume;
+        ResultToXContentBuilder header;
+        if (format == Format.JSON) {
+            jsonBuilder = new XContentBuilder(JsonXContent.jsonXContent, buffer);
+            jsonResultBuilder = ResultToXContentBuilder.builder(jsonBuilder);
+            header = jsonResultBuilder;
+        } else {
+            jsonBuilder = null;
+            jsonResultBuilder = null;
+            header = ResultToXContentBuilder.builder(newLine());
+        }
+        header.cols(outputFields);
+        if (includeTypesOnResponse) {
+            header.colTypes(outputFields);
+        }
+        if (format == Format.JSON) {
+            jsonResultBuilder.startRows();
+        } else {
+            finishLine(header.build());
+        }
+    }
+
+    private XContentBuilder newLine() throws IOException {
+        return new XContentBuilder(JsonXContent.jsonXContent, buffer);
+    }
+
+    private void finishLine(XContentBuilder line) throws IOException {
+        line.flush();
+        buffer.writeByte(NEW_LINE);
+    }
+
+    @Override
+    public void setNextRow(Row row) {
+        try {
+            rowAccounting.accountForAndMaybeBreak(row);
+            int numCols = outputFields.size();
+            if (format == Format.JSON) {
+                jsonResultBuilder.addRow(row, numCols);
+            } else {
+                XContentBuilder line = newLine();
+                line.startArray();
+                for (int i = 0; i < numCols; i++) {
+                    line.value(row.get(i));
+                }
+                line.endArray();
+                finishLine(line);
+            }
+            rowCount++;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void batchFinished() {
+        try {
+            writeChunk(false);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        // Resuming from the event loop prevents a deep call stack for large results and makes sure that the
+        // writability check can't race with channelWritable()
+        channel.eventLoop().execute(this::resumeIfWritable);
+    }
+
+    private void resumeIfWritable() {
+        if (result.isDone()) {
+            return;
+        }
+        if (channel.isWritable()) {
+            resume.accept(this);
+        } else {
+            waitingForWritability = true;
+        }
+    }
+
+    /**
+     * Must be called on the event loop if the channel becomes writable again.
+     */
+    void channelWritable() {
+        if (waitingForWritability) {
+            waitingForWritability = false;
+            resume.accept(this);
+        }
+    }
+
+    @Override
+    public void allFinished(boolean interrupted) {
+        if (interrupted) {
+            // closed while suspended, e.g. because the client disconnected
+            rowAccounting.release();
+            if (headSent) {
+                channel.close();
+            }
+            result.complete(null);
+            return;
+        }
+        try {
+            if (format == Format.JSON) {
+                jsonResultBuilder
+                    .finishRows()
+                    .rowCount(rowCount)
+                    .duration(startTimeNs)
+                    .build();
+            } else {
+                finishLine(ResultToXContentBuilder.builder(newLine())
+                    .rowCount(rowCount)
+                    .duration(startTimeNs)
+                    .build());
+            }
+            ChannelFuture lastWrite = writeChunk(true);
+            if (closeConnection) {
+                lastWrite.addListener(ChannelFutureListener.CLOSE);
+            }
+            result.complete(null);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void fail(@Nonnull Throwable t) {
+        rowAccounting.release();
+        if (headSent) {
+            channel.close();
+            result.complete(null);
+        } else {
+            result.completeExceptionally(t);
+        }
+    }
+
+    private ChannelFuture writeChunk(boolean last) throws IOException {
+        if (jsonBuilder != null) {
+            jsonBuilder.flush();
+        }
+        byte[] bytes = BytesReference.toBytes(buffer.bytes());
+        buffer.reset();
+        if (!headSent) {
+            headSent = true;
+            channel.write(head);
+        }
+        HttpContent chunk = last
+            ? new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes))
+            : new DefaultHttpContent(Unpooled.wrappedBuffer(bytes));
+        ChannelFuture future = channel.writeAndFlush(chunk);
+        rowAccounting.release();
+        return future;
+    }
+
+    /**
+     * @return the completion future. It completes with null once the response has been written or the connection
+     *         has been closed and only completes exceptionally if nothing has been written yet.
+     */
+    @Override
+    public CompletableFuture<XContentBuilder> completionFuture() {
+        return result;
+    }
+}
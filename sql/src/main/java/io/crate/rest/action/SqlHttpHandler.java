@@ -49,9 +49,12 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import org.apache.logging.log4j.LogManager;
@@ -87,6 +90,11 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
     private static final String REQUEST_HEADER_USER = "User";
     private static final String REQUEST_HEADER_SCHEMA = "Default-Schema";
 
+    /**
+     * Number of rows per chunk of a streamed response
+     */
+    static final int STREAM_FETCH_SIZE = 1000;
+
     private final Settings settings;
     private final SQLOperations sqlOperations;
     private final Function<String, CircuitBreaker> circuitBreakerProvider;
@@ -96,6 +104,12 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
 
     private Session session;
 
+    /**
+     * Receiver of the last streamed response, notified if the channel becomes writable again
+     */
+    @Nullable
+    private RestStreamingResultSetReceiver streamingReceiver;
+
     SqlHttpHandler(Settings settings,
                    SQLOperations sqlOperations,
                    Function<String, CircuitBreaker> circuitBreakerProvider,
@@ -116,11 +130,13 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
         if (request.uri().startsWith("/_sql")) {
             Session session = ensureSession(request);
             Map<String, List<String>> parameters = new QueryStringDecoder(request.uri()).parameters();
-            ByteBuf content = request.content();
-            handleSQLRequest(session, content, paramContainFlag(parameters, "types"))
+            handleSQLRequest(session, ctx, request, parameters)
                 .whenComplete((result, t) -> {
                     try {
-                        sendResponse(session, ctx, request, parameters, result, t);
+                        // result is null if the response has already been streamed
+                        if (result != null || t != null) {
+                            sendResponse(session, ctx, request, parameters, result, t);
+                        }
                     } catch (Throwable ex) {
                         LOGGER.error("Error sending response", ex);
                         throw ex;
@@ -141,6 +157,40 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
         return values != null && (values.equals(singletonList("")) || values.equals(singletonList("true")));
     }
 
+    /**
+     * @return the format of a streamed response or null if the response isn't streamed.
+     *         Responses are streamed if requested with "/_sql?stream" or "/_sql?format=ndjson".
+     */
+    @Nullable
+    private static RestStreamingResultSetReceiver.Format streamFormat(FullHttpRequest request,
+                                                                     Map<String, List<String>> parameters) {
+        List<String> formatValues = parameters.get("format");
+        RestStreamingResultSetReceiver.Format format = formatValues == null
+            ? RestStreamingResultSetReceiver.Format.JSON
+            : RestStreamingResultSetReceiver.Format.of(formatValues.get(0));
+        boolean ndjson = format == RestStreamingResultSetReceiver.Format.NDJSON;
+        if (!ndjson && !paramContainFlag(parameters, "stream")) {
+            return null;
+        }
+        if (request.protocolVersion().equals(HttpVersion.HTTP_1_0)) {
+            // chunked responses require HTTP/1.1, JSON results can still be sent as a whole
+            if (ndjson) {
+                throw new IllegalArgumentException("format=ndjson requires HTTP/1.1");
+            }
+            return null;
+        }
+        return format;
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        RestStreamingResultSetReceiver receiver = streamingReceiver;
+        if (receiver != null && ctx.channel().isWritable()) {
+            receiver.channelWritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
         if (session != null) {
@@ -189,10 +239,17 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
         ctx.writeAndFlush(resp, promise);
     }
 
-    private CompletableFuture<XContentBuilder> handleSQLRequest(Session session, ByteBuf content, boolean includeTypes) {
+    private CompletableFuture<XContentBuilder> handleSQLRequest(Session session,
+                                                                ChannelHandlerContext ctx,
+                                                                FullHttpRequest request,
+                                                                Map<String, List<String>> parameters) {
+        ByteBuf content = request.content();
+        boolean includeTypes = paramContainFlag(parameters, "types");
         SQLRequestParseContext parseContext;
+        RestStreamingResultSetReceiver.Format streamFormat;
         try {
             parseContext = SQLRequestParser.parseSource(Netty4Utils.toBytesReference(content));
+            streamFormat = streamFormat(request, parameters);
         } catch (Throwable t) {
             return CompletableFuture.failedFuture(t);
         }
@@ -204,7 +261,7 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
         }
         try {
             if (args != null || bulkArgs == null) {
-                return executeSimpleRequest(session, parseContext.stmt(), args, includeTypes);
+                return executeSimpleRequest(session, ctx, request, parseContext.stmt(), args, includeTypes, streamFormat);
             } else {
                 return executeBulkRequest(session, parseContext.stmt(), bulkArgs);
             }
@@ -240,16 +297,24 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
         return !sessionContext.user().equals(user) || !sessionContext.options().equals(options);
     }
 
+    /**
+     * @param streamFormat if not null, result sets are written as chunked response by a
+     *                     {@link RestStreamingResultSetReceiver} and the returned future completes with null.
+     */
     private CompletableFuture<XContentBuilder> executeSimpleRequest(Session session,
+                                                                    ChannelHandlerContext ctx,
+                                                                    FullHttpRequest request,
                                                                     String stmt,
                                                                     List<Object> args,
-                                                                    boolean includeTypes) throws IOException {
+                                                                    boolean includeTypes,
+                                                                    @Nullable RestStreamingResultSetReceiver.Format streamFormat) throws IOException {
         long startTimeInNs = System.nanoTime();
         session.parse(UNNAMED, stmt, emptyList());
         session.bind(UNNAMED, UNNAMED, args == null ? emptyList() : args, null);
         DescribeResult description = session.describe('P', UNNAMED);
         List<Symbol> resultFields = description.getFields();
         ResultReceiver<XContentBuilder> resultReceiver;
+        int maxRows = 0;
         if (resultFields == null) {
             resultReceiver = new RestRowCountReceiver(JsonXContent.contentBuilder(), startTimeInNs, includeTypes);
         } else {
@@ -257,23 +322,54 @@ public class SqlHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest>
             RamAccounting ramAccounting = new BlockBasedRamAccounting(
                 b -> breaker.addEstimateBytesAndMaybeBreak(b, "http-result"),
                 MAX_BLOCK_SIZE_IN_BYTES);
-            resultReceiver = new RestResultSetReceiver(
-                JsonXContent.contentBuilder(),
-                resultFields,
-                startTimeInNs,
-                new RowAccountingWithEstimators(
-                    Symbols.typeView(resultFields),
-                    ramAccounting
-                ),
-                includeTypes
+            RowAccountingWithEstimators rowAccounting = new RowAccountingWithEstimators(
+                Symbols.typeView(resultFields),
+                ramAccounting
             );
+            if (streamFormat == null) {
+                resultReceiver = new RestResultSetReceiver(
+                    JsonXContent.contentBuilder(),
+                    resultFields,
+                    startTimeInNs,
+                    rowAccounting,
+                    includeTypes
+                );
+            } else {
+                HttpResponse head = new DefaultHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
+                head.headers().add(HttpHeaderNames.CONTENT_TYPE, streamFormat.mediaType());
+                HttpUtil.setTransferEncodingChunked(head, true);
+                Netty4CorsHandler.setCorsResponseHeaders(request, head, corsConfig);
+                RestStreamingResultSetReceiver streamingReceiver = new RestStreamingResultSetReceiver(
+                    ctx.channel(),
+                    head,
+                    isCloseConnection(request),
+                    streamFormat,
+                    resultFields,
+                    startTimeInNs,
+                    rowAccounting,
+                    includeTypes,
+                    receiver -> resumeStreaming(session, receiver)
+                );
+                this.streamingReceiver = streamingReceiver;
+                resultReceiver = streamingReceiver;
+                maxRows = STREAM_FETCH_SIZE;
+            }
             resultReceiver.completionFuture().whenComplete((result, error) -> ramAccounting.close());
         }
-        session.execute(UNNAMED, 0, resultReceiver);
+        session.execute(UNNAMED, maxRows, resultReceiver);
         return session.sync()
             .thenCompose(ignored -> resultReceiver.completionFuture());
     }
 
+    private static void resumeStreaming(Session session, RestStreamingResultSetReceiver receiver) {
+        try {
+            session.execute(UNNAMED, STREAM_FETCH_SIZE, receiver);
+            session.sync();
+        } catch (Throwable t) {
+            receiver.fail(t);
+        }
+    }
+
     private CompletableFuture<XContentBuilder> executeBulkRequest(Session session,
                                                                   String stmt,
                                                                   List<List<Object>> bulkArgs) {
@@ -78,4 +78,30 @@ public class RowConsumerToResultReceiverTest {
         consumer.accept(FailingBatchIterator.failOnAllLoaded(), null);
         assertThat(resultReceiver.completionFuture().isCompletedExceptionally(), is(true));
     }
+
+    @Test
+    public void testMaxRowsIsCountedPerBatchIfChangedOnResume() throws Exception {
+        List<Integer> received = new ArrayList<>();
+        BaseResultReceiver resultReceiver = new BaseResultReceiver() {
+            @Override
+            public void setNextRow(Row row) {
+                received.add((Integer) row.get(0));
+            }
+        };
+        RowConsumerToResultReceiver consumer = new RowConsumerToResultReceiver(resultReceiver, 3, t -> {});
+        consumer.accept(TestingBatchIterators.range(0, 10), null);
+        assertThat(received, Matchers.contains(0, 1, 2));
+        assertThat(consumer.suspended(), is(true));
+
+        consumer.replaceResultReceiver(resultReceiver, 2);
+        consumer.resume();
+        assertThat(received, Matchers.contains(0, 1, 2, 3, 4));
+        assertThat(consumer.suspended(), is(true));
+
+        consumer.replaceResultReceiver(resultReceiver, 0);
+        consumer.resume();
+        assertThat(received.size(), is(10));
+        assertThat(consumer.suspended(), is(false));
+        resultReceiver.completionFuture().get(10, TimeUnit.SECONDS);
+    }
 }
@@ -35,14 +35,18 @@ import io.crate.expression.symbol.ParameterSymbol;
 import io.crate.expression.symbol.Symbol;
 import io.crate.planner.DependencyCarrier;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanCache;
 import io.crate.planner.Planner;
 import io.crate.planner.PlannerContext;
 import io.crate.planner.operators.SubQueryResults;
 import io.crate.sql.parser.SqlParser;
+import io.crate.statistics.TableStats;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
+import io.crate.testing.TestingBatchIterators;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -399,6 +403,7 @@ public class SessionTest extends CrateDummyClusterServiceUnitTest {
             .build();
         DependencyCarrier executor = mock(DependencyCarrier.class, Answers.RETURNS_MOCKS);
         Planner planner = mock(Planner.class);
+        when(planner.tableStats()).thenReturn(new TableStats());
         when(planner.plan(ArgumentMatchers.any(AnalyzedStatement.class), ArgumentMatchers.any(PlannerContext.class)))
             .thenReturn(new Plan() {
                             @Override
@@ -437,4 +442,102 @@ public class SessionTest extends CrateDummyClusterServiceUnitTest {
         session.sync().get(5, TimeUnit.SECONDS);
         assertThat(jobsLogs.metrics().iterator().next().totalCount(), is(1L));
     }
+
+    private static Plan planReturningRange(int endExclusive) {
+        return new Plan() {
+            @Override
+            public StatementType type() {
+                return StatementType.SELECT;
+            }
+
+            @Override
+            public void executeOrFail(DependencyCarrier dependencies,
+                                      PlannerContext plannerContext,
+                                      RowConsumer consumer,
+                                      Row params,
+                                      SubQueryResults subQueryResults) {
+                consumer.accept(TestingBatchIterators.range(0, endExclusive), null);
+            }
+        };
+    }
+
+    private Session newCursorSession(Plan plan, int maxCursors) {
+        SQLExecutor sqlExecutor = SQLExecutor.builder(clusterService).build();
+        DependencyCarrier executor = mock(DependencyCarrier.class, Answers.RETURNS_MOCKS);
+        when(executor.clusterService()).thenReturn(clusterService);
+        Planner planner = mock(Planner.class);
+        when(planner.tableStats()).thenReturn(new TableStats());
+        when(planner.plan(ArgumentMatchers.any(AnalyzedStatement.class), ArgumentMatchers.any(PlannerContext.class)))
+            .thenReturn(plan);
+        return new Session(
+            sqlExecutor.analyzer,
+            planner,
+            new JobsLogs(() -> false),
+            false,
+            executor,
+            AccessControl.DISABLED,
+            SessionContext.systemSessionContext(),
+            new PlanCache(0),
+            maxCursors,
+            TimeValue.timeValueMinutes(1));
+    }
+
+    private static List<Object> execute(Session session, String statement) throws Exception {
+        List<Object> values = new ArrayList<>();
+        BaseResultReceiver resultReceiver = new BaseResultReceiver() {
+            @Override
+            public void setNextRow(Row row) {
+                values.add(row.get(0));
+            }
+        };
+        session.parse("", statement, List.of());
+        session.bind("", "", List.of(), null);
+        session.execute("", 0, resultReceiver);
+        session.sync().get(5, TimeUnit.SECONDS);
+        resultReceiver.completionFuture().get(5, TimeUnit.SECONDS);
+        return values;
+    }
+
+    @Test
+    public void test_fetch_resumes_the_query_of_a_cursor() throws Exception {
+        Session session = newCursorSession(planReturningRange(10), 10);
+
+        execute(session, "DECLARE c1 CURSOR FOR SELECT name FROM sys.cluster");
+        assertThat(execute(session, "FETCH 3 FROM c1"), Matchers.contains(0, 1, 2));
+        assertThat(execute(session, "FETCH FORWARD 5 FROM c1"), Matchers.contains(3, 4, 5, 6, 7));
+        assertThat(execute(session, "FETCH ALL FROM c1"), Matchers.contains(8, 9));
+        assertThat(execute(session, "FETCH NEXT FROM c1"), Matchers.empty());
+
+        execute(session, "CLOSE c1");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cursor `c1` does not exist");
+        execute(session, "FETCH NEXT FROM c1");
+    }
+
+    @Test
+    public void test_number_of_cursors_per_session_is_limited() throws Exception {
+        Session session = newCursorSession(planReturningRange(10), 1);
+
+        execute(session, "DECLARE c1 CURSOR FOR SELECT name FROM sys.cluster");
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("the limit of 1 cursors per session is reached");
+        execute(session, "DECLARE c2 CURSOR FOR SELECT name FROM sys.cluster");
+    }
+
+    @Test
+    public void test_close_all_closes_all_cursors_and_session_close_releases_cursors() throws Exception {
+        Session session = newCursorSession(planReturningRange(10), 10);
+
+        execute(session, "DECLARE c1 CURSOR FOR SELECT name FROM sys.cluster");
+        execute(session, "DECLARE c2 CURSOR FOR SELECT name FROM sys.cluster");
+        assertThat(execute(session, "FETCH 2 FROM c1"), Matchers.contains(0, 1));
+        execute(session, "CLOSE ALL");
+
+        execute(session, "DECLARE c1 CURSOR FOR SELECT name FROM sys.cluster");
+        assertThat(execute(session, "FETCH 2 FROM c1"), Matchers.contains(0, 1));
+        session.close();
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cursor `c1` does not exist");
+        session.cursors.get("c1");
+    }
 }
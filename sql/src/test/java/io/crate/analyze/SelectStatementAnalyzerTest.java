@@ -211,8 +211,10 @@ public class SelectStatementAnalyzerTest extends CrateDummyClusterServiceUnitTes
             "os_info",
             "port",
             "process",
+            "query_result_cache",
             "rest_url",
             "thread_pools",
+            "transport_compression",
             "version"
         ));
         assertThat(relation.outputs().size(), is(outputNames.size()));
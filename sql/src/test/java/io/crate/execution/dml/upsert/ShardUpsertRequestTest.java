@@ -159,6 +159,9 @@ public class ShardUpsertRequestTest extends CrateUnitTest {
             5L,
             new Symbol[0]));
 
+        request.autoGeneratedIdTimestamp(1234L);
+        request.onRetry();
+
         BytesStreamOutput out = new BytesStreamOutput();
         request.writeTo(out);
 
@@ -58,6 +58,7 @@ import org.elasticsearch.index.mapper.ObjectMapper;
 import org.elasticsearch.index.mapper.SourceToParse;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.test.transport.MockTransportService;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -72,6 +73,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -131,6 +133,7 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
 
     private TransportShardUpsertAction transportShardUpsertAction;
     private IndexShard indexShard;
+    private DocTableInfo tableInfo;
 
     @Before
     public void prepare() throws Exception {
@@ -150,7 +153,7 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
         when(indexService.getShard(0)).thenReturn(indexShard);
 
         // Avoid null pointer exceptions
-        DocTableInfo tableInfo = mock(DocTableInfo.class);
+        tableInfo = mock(DocTableInfo.class);
         Schemas schemas = mock(Schemas.class);
         when(tableInfo.columns()).thenReturn(Collections.<Reference>emptyList());
         when(schemas.getTableInfo(any(RelationName.class), eq(Operation.INSERT))).thenReturn(tableInfo);
@@ -278,4 +281,58 @@ public class TransportShardUpsertActionTest extends CrateDummyClusterServiceUnit
         verify(indexShard, times(0)).applyIndexOperationOnReplica(
             anyLong(), anyLong(), anyLong(), anyBoolean(), any(SourceToParse.class));
     }
+
+    @Test
+    public void test_items_are_processed_in_id_order_if_continue_on_error() throws Exception {
+        ShardId shardId = new ShardId(TABLE_IDENT.indexNameOrAlias(), charactersIndexUUID, 0);
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DUMMY_SESSION_INFO,
+            TimeValue.timeValueSeconds(30),
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            true,
+            null,
+            new Reference[]{ID_REF},
+            null,
+            UUID.randomUUID(),
+            false
+        ).newRequest(shardId);
+        request.add(0, new ShardUpsertRequest.Item("3", null, new Object[]{3}, null, null, null, null));
+        request.add(1, new ShardUpsertRequest.Item("1", null, new Object[]{1}, null, null, null, null));
+        request.add(2, new ShardUpsertRequest.Item("2", null, new Object[]{2}, null, null, null, null));
+
+        TransportWriteAction.WritePrimaryResult<ShardUpsertRequest, ShardResponse> result =
+            transportShardUpsertAction.processRequestItems(indexShard, request, new AtomicBoolean(false));
+
+        ShardResponse response = result.finalResponseIfSuccessful;
+        assertThat(response.failures().size(), is(3));
+        assertThat(response.failures().get(0).id(), is("1"));
+        assertThat(response.failures().get(1).id(), is("2"));
+        assertThat(response.failures().get(2).id(), is("3"));
+        assertThat(request.autoGeneratedIdTimestamp(), is(Translog.UNSET_AUTO_GENERATED_TIMESTAMP));
+    }
+
+    @Test
+    public void test_inserts_into_table_with_generated_ids_are_marked_as_append_only() throws Exception {
+        when(tableInfo.hasAutoGeneratedPrimaryKey()).thenReturn(true);
+        ShardId shardId = new ShardId(TABLE_IDENT.indexNameOrAlias(), charactersIndexUUID, 0);
+        ShardUpsertRequest request = new ShardUpsertRequest.Builder(
+            DUMMY_SESSION_INFO,
+            TimeValue.timeValueSeconds(30),
+            DuplicateKeyAction.UPDATE_OR_FAIL,
+            true,
+            null,
+            new Reference[]{ID_REF},
+            null,
+            UUID.randomUUID(),
+            false
+        ).newRequest(shardId);
+        request.add(0, new ShardUpsertRequest.Item("b", null, new Object[]{1}, null, null, null, null));
+        request.add(1, new ShardUpsertRequest.Item("a", null, new Object[]{2}, null, null, null, null));
+
+        transportShardUpsertAction.processRequestItems(indexShard, request, new AtomicBoolean(false));
+
+        assertThat(request.autoGeneratedIdTimestamp(), greaterThanOrEqualTo(0L));
+        // random ids don't benefit from being sorted
+        assertThat(TransportShardUpsertAction.itemsInIndexingOrder(request, true), is(request.items()));
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.SpillPolicy;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Literal;
+import io.crate.memory.OnHeapMemoryManager;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GroupingCollectorSpillTest extends CrateUnitTest {
+
+    private Functions functions;
+    private Path spillDirectory;
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void prepare() throws Exception {
+        functions = getFunctions();
+        spillDirectory = createTempDir();
+        circuitBreaker = mock(CircuitBreaker.class);
+        // always under pressure, so that the groups are spilled as soon as they use 1% of the limit
+        when(circuitBreaker.getLimit()).thenReturn(1000L);
+        when(circuitBreaker.getUsed()).thenReturn(1000L);
+    }
+
+    private AggregationFunction[] aggregations() {
+        return new AggregationFunction[] {
+            (AggregationFunction) functions.getQualified(new FunctionIdent("count", List.of())),
+            (AggregationFunction) functions.getQualified(new FunctionIdent("sum", List.of(DataTypes.LONG))),
+            (AggregationFunction) functions.getQualified(new FunctionIdent("collect_set", List.of(DataTypes.LONG)))
+        };
+    }
+
+    private static List<Row> rows() {
+        ArrayList<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(new RowN(i % 3 == 0 ? null : "group-" + (i % 97), i % 5, (long) i % 11));
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private GroupingCollector<?> createCollector(List<? extends DataType> keyTypes,
+                                                 RamAccounting ramAccounting,
+                                                 SpillPolicy spillPolicy) {
+        InputCollectExpression[] keys = new InputCollectExpression[keyTypes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new InputCollectExpression(i);
+        }
+        InputCollectExpression value = new InputCollectExpression(2);
+        CollectExpression<Row, ?>[] expressions = Stream.concat(Stream.of(keys), Stream.of(value))
+            .toArray(CollectExpression[]::new);
+        Input[][] inputs = new Input[][] {{}, { value }, { value }};
+        Input<Boolean>[] filters = new Input[] { Literal.BOOLEAN_TRUE, Literal.BOOLEAN_TRUE, Literal.BOOLEAN_TRUE };
+        if (keys.length == 1) {
+            return GroupingCollector.singleKey(
+                expressions, AggregateMode.ITER_FINAL, aggregations(), inputs, filters, ramAccounting,
+                new OnHeapMemoryManager(bytes -> {}), Version.CURRENT, keys[0], keyTypes.get(0), Version.CURRENT,
+                spillPolicy);
+        }
+        return GroupingCollector.manyKeys(
+            expressions, AggregateMode.ITER_FINAL, aggregations(), inputs, filters, ramAccounting,
+            new OnHeapMemoryManager(bytes -> {}), Version.CURRENT, List.<Input<?>>of(keys), keyTypes, Version.CURRENT,
+            spillPolicy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> collect(GroupingCollector collector, List<Row> rows) {
+        Iterable<Row> result = (Iterable<Row>) rows.stream().collect(collector);
+        return StreamSupport.stream(result.spliterator(), false)
+            .map(Row::materialize)
+            .collect(Collectors.toList());
+    }
+
+    private void assertSpilledGroupsHaveSameResult(List<? extends DataType> keyTypes) throws Exception {
+        List<Object[]> expected = collect(createCollector(keyTypes, RamAccounting.NO_ACCOUNTING, null), rows());
+
+        ConcurrentRamAccounting ramAccounting = new ConcurrentRamAccounting(bytes -> {}, bytes -> {});
+        GroupingCollector<?> collector = createCollector(
+            keyTypes, ramAccounting, new SpillPolicy(spillDirectory, () -> circuitBreaker));
+        List<Object[]> actual = collect(collector, rows());
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual, containsInAnyOrder(expected.toArray()));
+        // everything accounted has been released while spilling and merging
+        assertThat(ramAccounting.totalBytes(), is(0L));
+
+        collector.close();
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void testSpillingSingleKeyGroupsProducesSameResult() throws Exception {
+        assertSpilledGroupsHaveSameResult(List.of(DataTypes.STRING));
+    }
+
+    @Test
+    public void testSpillingManyKeysGroupsProducesSameResult() throws Exception {
+        assertSpilledGroupsHaveSameResult(List.of(DataTypes.STRING, DataTypes.INTEGER));
+    }
+
+    @Test
+    public void testNoSpillingWithoutMemoryPressure() throws Exception {
+        when(circuitBreaker.getUsed()).thenReturn(0L);
+        GroupingCollector<?> collector = createCollector(
+            List.of(DataTypes.STRING),
+            new ConcurrentRamAccounting(bytes -> {}, bytes -> {}),
+            new SpillPolicy(spillDirectory, () -> circuitBreaker));
+        assertThat(collect(collector, rows()).size(), is(98));
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+}
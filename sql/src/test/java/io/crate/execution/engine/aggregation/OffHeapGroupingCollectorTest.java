@@ -0,0 +1,214 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.aggregation;
+
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.execution.engine.collect.InputCollectExpression;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.expression.symbol.Literal;
+import io.crate.memory.OffHeapMemoryManager;
+import io.crate.memory.OnHeapMemoryManager;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class OffHeapGroupingCollectorTest extends CrateUnitTest {
+
+    private static final List<DataType> KEY_TYPES = List.of(DataTypes.STRING, DataTypes.INTEGER);
+
+    private final OffHeapMemoryManager memoryManager = new OffHeapMemoryManager();
+    private Functions functions;
+
+    @Before
+    public void prepareFunctions() {
+        functions = getFunctions();
+    }
+
+    @After
+    public void closeMemoryManager() {
+        memoryManager.close();
+    }
+
+    private AggregationFunction aggregation(String name, DataType... argumentTypes) {
+        return (AggregationFunction) functions.getQualified(new FunctionIdent(name, List.of(argumentTypes)));
+    }
+
+    /**
+     * count(*), sum(long), avg(integer), max(double), min(integer) grouped by (string, integer)
+     */
+    private AggregationFunction[] aggregations() {
+        return new AggregationFunction[] {
+            aggregation("count"),
+            aggregation("sum", DataTypes.LONG),
+            aggregation("avg", DataTypes.INTEGER),
+            aggregation("max", DataTypes.DOUBLE),
+            aggregation("min", DataTypes.INTEGER)
+        };
+    }
+
+    private static List<Row> rows() {
+        ArrayList<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new RowN(
+                i % 3 == 0 ? null : "group-" + (i % 17),
+                i % 5 == 0 ? null : i % 11,
+                i % 7 == 0 ? null : (long) i,
+                i * 0.5d,
+                i % 13 == 0 ? null : i
+            ));
+        }
+        return rows;
+    }
+
+    private static List<Object[]> collect(Collector<Row, ?, Iterable<Row>> collector, List<Row> rows) {
+        Iterable<Row> result = rows.stream().collect(collector);
+        return StreamSupport.stream(result.spliterator(), false)
+            .map(Row::materialize)
+            .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collector<Row, ?, Iterable<Row>> createCollector(boolean offHeap,
+                                                            AggregateMode mode,
+                                                            AggregationFunction[] aggregations) {
+        InputCollectExpression[] expressions = new InputCollectExpression[] {
+            new InputCollectExpression(0),
+            new InputCollectExpression(1),
+            new InputCollectExpression(2),
+            new InputCollectExpression(3),
+            new InputCollectExpression(4)
+        };
+        Input[][] inputs;
+        if (mode == AggregateMode.PARTIAL_FINAL) {
+            inputs = new Input[][] {
+                { expressions[2] }, { expressions[3] }, { expressions[4] }, { new InputCollectExpression(5) },
+                { new InputCollectExpression(6) }
+            };
+        } else {
+            inputs = new Input[][] {{}, { expressions[2] }, { expressions[4] }, { expressions[3] }, { expressions[4] }};
+        }
+        Input<Boolean>[] filters = new Input[aggregations.length];
+        Arrays.fill(filters, Literal.BOOLEAN_TRUE);
+        List<Input<?>> keyInputs = List.of(expressions[0], expressions[1]);
+        CollectExpression<Row, ?>[] collectExpressions = new CollectExpression[] {
+            expressions[0], expressions[1], expressions[2], expressions[3], expressions[4],
+            inputs[3][0], inputs[4][0]
+        };
+        if (offHeap) {
+            return new OffHeapGroupingCollector(
+                collectExpressions, mode, aggregations, inputs, filters, RamAccounting.NO_ACCOUNTING,
+                memoryManager, keyInputs, KEY_TYPES);
+        }
+        return (Collector) GroupingCollector.manyKeys(
+            collectExpressions, mode, aggregations, inputs, filters, RamAccounting.NO_ACCOUNTING,
+            new OnHeapMemoryManager(bytes -> {}), Version.CURRENT, keyInputs, KEY_TYPES, Version.CURRENT);
+    }
+
+    @Test
+    public void testOffHeapGroupingProducesSameResultAsOnHeapGrouping() {
+        AggregationFunction[] aggregations = aggregations();
+        assertThat(OffHeapGroupingCollector.isSupported(memoryManager, KEY_TYPES, aggregations), is(true));
+
+        List<Object[]> expected = collect(createCollector(false, AggregateMode.ITER_FINAL, aggregations), rows());
+        List<Object[]> actual = collect(createCollector(true, AggregateMode.ITER_FINAL, aggregations), rows());
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void testOffHeapGroupingReducesPartialStates() {
+        AggregationFunction[] aggregations = aggregations();
+        List<Row> rows = rows();
+        List<Object[]> expected = collect(createCollector(false, AggregateMode.ITER_FINAL, aggregations), rows);
+
+        // two partial aggregations over both halves which are then merged
+        List<Row> partialRows = new ArrayList<>();
+        for (List<Row> half : List.of(rows.subList(0, 2000), rows.subList(2000, rows.size()))) {
+            for (Object[] cells : collect(createCollector(true, AggregateMode.ITER_PARTIAL, aggregations), half)) {
+                // key1, key2, count, sum, avg, max, min
+                partialRows.add(new RowN(cells));
+            }
+        }
+        List<Object[]> actual = collect(createCollector(true, AggregateMode.PARTIAL_FINAL, aggregations), partialRows);
+        assertThat(actual, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void testOffHeapGroupByTableStoresKeysLargerThanAPage() {
+        OffHeapGroupByTable table = new OffHeapGroupByTable(
+            memoryManager, RamAccounting.NO_ACCOUNTING, List.of(DataTypes.STRING), Long.BYTES);
+        String largeKey = "x".repeat(OffHeapGroupByTable.PAGE_SIZE_IN_BYTES);
+        for (String key : List.of("small", largeKey, "small", largeKey, "other")) {
+            Input<String> keyInput = () -> key;
+            if (table.lookupOrAdd(List.of(keyInput))) {
+                table.page().setLong(table.statesOffset(), 0L);
+            }
+            table.page().setLong(table.statesOffset(), table.page().getLong(table.statesOffset()) + 1);
+        }
+        assertThat(table.size(), is(3));
+
+        List<Object> keys = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        Object[] cells = new Object[1];
+        OffHeapGroupByTable.Cursor cursor = table.cursor();
+        while (cursor.moveNext()) {
+            cursor.readKey(cells);
+            keys.add(cells[0]);
+            counts.add(cursor.page().getLong(cursor.statesOffset()));
+        }
+        assertThat(keys, contains("small", largeKey, "other"));
+        assertThat(counts, contains(2L, 2L, 1L));
+    }
+
+    @Test
+    public void testOffHeapGroupingIsOnlySupportedForFixedWidthStatesAndPrimitiveKeys() {
+        assertThat(OffHeapGroupingCollector.isSupported(
+            new OnHeapMemoryManager(bytes -> {}), KEY_TYPES, aggregations()), is(false));
+        assertThat(OffHeapGroupingCollector.isSupported(
+            memoryManager, List.of(DataTypes.GEO_POINT), aggregations()), is(false));
+        assertThat(OffHeapGroupingCollector.isSupported(
+            memoryManager, KEY_TYPES, new AggregationFunction[] { aggregation("max", DataTypes.STRING) }), is(false));
+    }
+}
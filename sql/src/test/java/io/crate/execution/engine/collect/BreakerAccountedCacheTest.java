@@ -0,0 +1,95 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BreakerAccountedCacheTest {
+
+    private final MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+        new ByteSizeValue(1, ByteSizeUnit.KB), 1.0, LogManager.getLogger(BreakerAccountedCacheTest.class));
+
+    /**
+     * Keys are strings of the form {@code group/name}, the weight of an entry is the length of its value.
+     */
+    private class StringCache extends BreakerAccountedCache<String, String, String> {
+
+        StringCache(long sizeInBytes) {
+            super(sizeInBytes, breaker, "test-cache");
+        }
+
+        @Override
+        protected long weight(String key, String value) {
+            return value.length();
+        }
+
+        @Override
+        protected String group(String key) {
+            return key.substring(0, key.indexOf('/'));
+        }
+    }
+
+    @Test
+    public void testInvalidateGroupRemovesOnlyEntriesOfTheGroup() {
+        StringCache cache = new StringCache(100);
+        cache.put("a/1", "foo");
+        cache.put("a/2", "bar");
+        cache.put("b/1", "baz");
+        assertThat(breaker.getUsed(), is(9L));
+
+        cache.invalidateGroup("a");
+        assertThat(cache.getIfPresent("a/1"), nullValue());
+        assertThat(cache.getIfPresent("a/2"), nullValue());
+        assertThat(cache.getIfPresent("b/1"), is("baz"));
+        assertThat(breaker.getUsed(), is(3L));
+    }
+
+    @Test
+    public void testReplacedEntryReleasesItsMemoryAndStaysInTheGroup() {
+        StringCache cache = new StringCache(100);
+        cache.put("a/1", "foo");
+        cache.put("a/1", "foobar");
+        assertThat(cache.count(), is(1));
+        assertThat(breaker.getUsed(), is(6L));
+
+        cache.invalidateGroup("a");
+        assertThat(cache.count(), is(0));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testEntriesAreNotAddedIfTheBreakerWouldTrip() {
+        StringCache cache = new StringCache(10_000);
+        cache.put("a/1", "x".repeat(2048));
+        assertThat(cache.count(), is(0));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+}
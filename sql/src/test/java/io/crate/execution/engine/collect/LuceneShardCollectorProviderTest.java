@@ -0,0 +1,123 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import io.crate.execution.engine.collect.collectors.LuceneBatchIterator;
+import io.crate.expression.reference.doc.lucene.CollectorContext;
+import io.crate.expression.reference.doc.lucene.LongColumnReference;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.TestingRowConsumer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+public class LuceneShardCollectorProviderTest extends CrateUnitTest {
+
+    private DirectoryReader reader;
+
+    @Before
+    public void createSegments() throws Exception {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter iw = new IndexWriter(new ByteBuffersDirectory(), config);
+        // segments with 40, 30, 20 and 10 documents
+        long value = 0;
+        for (int segmentSize = 40; segmentSize > 0; segmentSize -= 10) {
+            for (int i = 0; i < segmentSize; i++) {
+                Document doc = new Document();
+                doc.add(new NumericDocValuesField("x", value++));
+                iw.addDocument(doc);
+            }
+            iw.commit();
+        }
+        reader = DirectoryReader.open(iw);
+        iw.close();
+    }
+
+    @After
+    public void closeReader() throws Exception {
+        reader.close();
+    }
+
+    private static List<Integer> docsPerSplit(List<List<LeafReaderContext>> splits) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (List<LeafReaderContext> split : splits) {
+            result.add(split.stream().mapToInt(leaf -> leaf.reader().maxDoc()).sum());
+        }
+        return result;
+    }
+
+    @Test
+    public void testLeavesAreDistributedByNumberOfDocs() {
+        List<LeafReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), is(4));
+
+        assertThat(docsPerSplit(LuceneShardCollectorProvider.splitLeaves(leaves, 2, 1)), containsInAnyOrder(50, 50));
+        assertThat(docsPerSplit(LuceneShardCollectorProvider.splitLeaves(leaves, 8, 1)), containsInAnyOrder(40, 30, 20, 10));
+        // not enough documents to fill more than 3 splits
+        assertThat(LuceneShardCollectorProvider.splitLeaves(leaves, 8, 30).size(), is(3));
+        assertThat(LuceneShardCollectorProvider.splitLeaves(leaves, 8, 1000).size(), is(1));
+        assertThat(LuceneShardCollectorProvider.splitLeaves(leaves, 1, 1).size(), is(1));
+    }
+
+    @Test
+    public void testIteratorsOfSplitsReturnAllDocuments() throws Exception {
+        IndexSearcher indexSearcher = new IndexSearcher(reader);
+        List<Object> values = new ArrayList<>();
+        for (List<LeafReaderContext> leaves : LuceneShardCollectorProvider.splitLeaves(reader.leaves(), 3, 1)) {
+            List<LongColumnReference> columnRefs = List.of(new LongColumnReference("x"));
+            TestingRowConsumer consumer = new TestingRowConsumer();
+            consumer.accept(new LuceneBatchIterator(
+                indexSearcher,
+                leaves,
+                new MatchAllDocsQuery(),
+                null,
+                false,
+                new CollectorContext(mappedFieldType -> null),
+                columnRefs,
+                columnRefs
+            ), null);
+            for (Object[] row : consumer.getResult()) {
+                values.add(row[0]);
+            }
+        }
+        assertThat(values.size(), is(100));
+        assertThat(values.stream().distinct().count(), is(100L));
+    }
+}
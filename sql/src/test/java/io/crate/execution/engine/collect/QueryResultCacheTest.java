@@ -0,0 +1,129 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import io.crate.Streamer;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.testing.TestingBatchIterators;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class QueryResultCacheTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] { DataTypes.INTEGER };
+    private static final ShardId SHARD_ID = new ShardId("t1", "_na_", 0);
+    private static final QueryResultCache.Key KEY = new QueryResultCache.Key(new BytesArray("phase"), SHARD_ID, 1L);
+
+    private final MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+        new ByteSizeValue(1, ByteSizeUnit.MB), 1.0, LogManager.getLogger(QueryResultCacheTest.class));
+
+    private static List<Object[]> consume(BatchIterator<Row> iterator) throws Exception {
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(iterator, null);
+        return consumer.getResult();
+    }
+
+    @Test
+    public void testRowsAreCachedOnceAllIteratorsOfTheShardAreConsumed() throws Exception {
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, breaker);
+        assertThat(cache.get(KEY, STREAMERS), nullValue());
+
+        List<BatchIterator<Row>> iterators = cache.record(KEY, STREAMERS, Arrays.asList(
+            TestingBatchIterators.ofValues(Arrays.asList(1, 2, 3)),
+            TestingBatchIterators.ofValues(Arrays.asList(4, 5))
+        ));
+        consume(iterators.get(0));
+        assertThat(cache.stats().entries(), is(0L));
+        consume(iterators.get(1));
+
+        BatchIterator<Row> cachedRows = cache.get(KEY, STREAMERS);
+        assertThat(printedTable(consume(cachedRows).toArray(new Object[0][])), is("1\n2\n3\n4\n5\n"));
+        assertThat(cache.get(new QueryResultCache.Key(new BytesArray("phase"), SHARD_ID, 2L), STREAMERS), nullValue());
+
+        QueryResultCacheStats stats = cache.stats();
+        assertThat(stats.entries(), is(1L));
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(2L));
+        assertThat(stats.sizeInBytes(), greaterThan(0L));
+        assertThat(breaker.getUsed(), is(stats.sizeInBytes()));
+    }
+
+    @Test
+    public void testRowsAreNotCachedIfIteratorIsClosedBeforeItIsExhausted() throws Exception {
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, breaker);
+        List<BatchIterator<Row>> iterators = cache.record(
+            KEY, STREAMERS, List.of(TestingBatchIterators.ofValues(Arrays.asList(1, 2, 3))));
+        BatchIterator<Row> iterator = iterators.get(0);
+        assertThat(iterator.moveNext(), is(true));
+        iterator.close();
+
+        assertThat(cache.get(KEY, STREAMERS), nullValue());
+        assertThat(cache.stats().entries(), is(0L));
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testResultsLargerThanTheEntryLimitAreNotCached() throws Exception {
+        QueryResultCache cache = new QueryResultCache(100, breaker);
+        List<Integer> values = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        List<BatchIterator<Row>> iterators = cache.record(
+            KEY, STREAMERS, List.of(TestingBatchIterators.ofValues(values)));
+        assertThat(consume(iterators.get(0)).size(), is(100));
+
+        assertThat(cache.get(KEY, STREAMERS), nullValue());
+        assertThat(breaker.getUsed(), is(0L));
+    }
+
+    @Test
+    public void testClearRemovesEntriesOfShardAndReleasesMemory() throws Exception {
+        QueryResultCache cache = new QueryResultCache(1024 * 1024, breaker);
+        consume(cache.record(KEY, STREAMERS, List.of(TestingBatchIterators.ofValues(Arrays.asList(1, 2)))).get(0));
+        assertThat(breaker.getUsed(), greaterThan(0L));
+
+        cache.clear(new ShardId("t2", "_na_", 0));
+        assertThat(cache.stats().entries(), is(1L));
+
+        cache.clear(SHARD_ID);
+        assertThat(cache.get(KEY, STREAMERS), nullValue());
+        assertThat(breaker.getUsed(), is(0L));
+    }
+}
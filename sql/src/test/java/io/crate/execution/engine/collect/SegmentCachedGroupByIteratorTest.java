@@ -0,0 +1,179 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect;
+
+import io.crate.breaker.RamAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.execution.engine.aggregation.AggregationContext;
+import io.crate.execution.engine.aggregation.impl.CountAggregation;
+import io.crate.expression.InputRow;
+import io.crate.expression.reference.doc.lucene.CollectorContext;
+import io.crate.expression.reference.doc.lucene.LongColumnReference;
+import io.crate.expression.symbol.AggregateMode;
+import io.crate.memory.OnHeapMemoryManager;
+import io.crate.metadata.FunctionIdent;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+public class SegmentCachedGroupByIteratorTest extends CrateUnitTest {
+
+    private static final String COLUMN_NAME = "x";
+
+    private Directory directory;
+    private IndexWriter iw;
+    private SegmentAggregationCache cache;
+    private List<AggregationContext> aggregations;
+    private int numAggregatedSegments;
+
+    @Before
+    public void prepare() throws Exception {
+        directory = new ByteBuffersDirectory();
+        iw = new IndexWriter(
+            directory,
+            new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        cache = new SegmentAggregationCache(1024 * 1024, new NoopCircuitBreaker("dummy"));
+        CountAggregation aggregation = ((CountAggregation) getFunctions().getQualified(
+            new FunctionIdent(CountAggregation.NAME, Collections.emptyList())));
+        aggregations = Collections.singletonList(new AggregationContext(aggregation, () -> true));
+    }
+
+    @After
+    public void closeWriter() throws Exception {
+        iw.close();
+        directory.close();
+    }
+
+    private void addSegment(long... values) throws IOException {
+        for (long value : values) {
+            Document doc = new Document();
+            doc.add(new SortedNumericDocValuesField(COLUMN_NAME, value));
+            iw.addDocument(doc);
+        }
+        iw.commit();
+    }
+
+    private String groupByX(DirectoryReader reader) throws Exception {
+        LongColumnReference keyExpression = new LongColumnReference(COLUMN_NAME) {
+
+            @Override
+            public void setNextReader(LeafReaderContext context) throws IOException {
+                numAggregatedSegments++;
+                super.setNextReader(context);
+            }
+        };
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        BatchIterator<Row> iterator = SegmentCachedGroupByIterator.getIterator(
+            cache,
+            new BytesArray("phase"),
+            new IndexSearcher(reader),
+            List.of(DataTypes.LONG),
+            List.of(keyInput),
+            aggregations,
+            List.of(keyExpression),
+            List.of(keyInput),
+            RamAccounting.NO_ACCOUNTING,
+            new OnHeapMemoryManager(usedBytes -> {}),
+            Version.CURRENT,
+            new InputRow(List.of(keyExpression)),
+            new MatchAllDocsQuery(),
+            new CollectorContext(mappedFieldType -> null),
+            AggregateMode.ITER_FINAL
+        );
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(iterator, null);
+        List<Object[]> rows = new ArrayList<>(consumer.getResult());
+        rows.sort(Comparator.comparing(row -> (Long) row[0]));
+        return printedTable(rows.toArray(new Object[0][]));
+    }
+
+    @Test
+    public void testStatesOfAllSegmentsAreCachedAndReused() throws Exception {
+        addSegment(1L, 1L, 2L);
+        addSegment(2L, 3L);
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertThat(groupByX(reader), is("1| 2\n2| 2\n3| 1\n"));
+            assertThat(numAggregatedSegments, is(2));
+            assertThat(cache.count(), is(2));
+
+            numAggregatedSegments = 0;
+            assertThat(groupByX(reader), is("1| 2\n2| 2\n3| 1\n"));
+            assertThat(numAggregatedSegments, is(0));
+        }
+    }
+
+    @Test
+    public void testOnlyNewSegmentsAreAggregated() throws Exception {
+        addSegment(1L, 2L);
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertThat(groupByX(reader), is("1| 1\n2| 1\n"));
+
+            addSegment(2L, 3L);
+            try (DirectoryReader newReader = DirectoryReader.openIfChanged(reader)) {
+                numAggregatedSegments = 0;
+                assertThat(groupByX(newReader), is("1| 1\n2| 2\n3| 1\n"));
+                assertThat(numAggregatedSegments, is(1));
+            }
+        }
+    }
+
+    @Test
+    public void testStatesOfClosedSegmentsAreRemoved() throws Exception {
+        addSegment(1L, 2L);
+        DirectoryReader reader = DirectoryReader.open(directory);
+        groupByX(reader);
+        assertThat(cache.count(), is(1));
+
+        reader.close();
+        assertThat(cache.count(), is(0));
+    }
+}
@@ -32,6 +32,8 @@ import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Map;
 
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 
 public class ShardCollectorProviderTest extends SQLTransportIntegrationTest {
@@ -82,4 +84,31 @@ public class ShardCollectorProviderTest extends SQLTransportIntegrationTest {
         // shouldn't throw an exception:
         execute(plan).getResult();
     }
+
+    @Test
+    public void testSegmentsAreOnlyAggregatedSeparatelyForRepeatedGroupBys() throws Exception {
+        execute("create table t (x int) clustered into 1 shards with (number_of_replicas = 0)");
+        execute("insert into t (x) values (1), (2), (2)");
+        refresh();
+
+        execute("select x, count(*) from t group by x order by x");
+        assertThat(printedTable(response.rows()), is("1| 1\n2| 2\n"));
+        // the first execution uses the regular collect, which can be split across threads
+        assertThat(numCachedSegmentStates(), is(0));
+
+        // changes the reader of the shard, so that the result isn't served by the query result cache
+        execute("insert into t (x) values (3)");
+        refresh();
+        execute("select x, count(*) from t group by x order by x");
+        assertThat(printedTable(response.rows()), is("1| 1\n2| 2\n3| 1\n"));
+        assertThat(numCachedSegmentStates(), greaterThan(0));
+    }
+
+    private int numCachedSegmentStates() {
+        int count = 0;
+        for (SegmentAggregationCache cache : internalCluster().getInstances(SegmentAggregationCache.class)) {
+            count += cache.count();
+        }
+        return count;
+    }
 }
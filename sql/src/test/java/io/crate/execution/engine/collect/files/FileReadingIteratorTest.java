@@ -41,18 +41,31 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.CSV;
 import static io.crate.execution.dsl.phases.FileUriCollectPhase.InputFormat.JSON;
 import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
 
 public class FileReadingIteratorTest extends CrateUnitTest {
 
@@ -161,7 +174,257 @@ public class FileReadingIteratorTest extends CrateUnitTest {
         tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
     }
 
+    @Test
+    public void testLargeFileOnSharedStorageIsSplitAcrossReaders() throws Exception {
+        tempFilePath = createTempFile("tempfile", ".json");
+        tmpFile = tempFilePath.toFile();
+        List<String> lines = new ArrayList<>();
+        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 100; i++) {
+                String line = "{\"id\": " + i + "}";
+                lines.add(line);
+                writer.write(line + "\n");
+            }
+        }
+        fileUri = tempFilePath.toUri().toString();
+
+        int numReaders = 3;
+        List<String> readLines = new ArrayList<>();
+        for (int readerNumber = 0; readerNumber < numReaders; readerNumber++) {
+            List<String> linesOfReader = new ArrayList<>();
+            BatchIterator<Row> iterator = createBatchIterator(
+                Collections.singletonList(fileUri), null, JSON, true, numReaders, readerNumber, 10);
+            while (iterator.moveNext()) {
+                linesOfReader.add((String) iterator.currentElement().get(0));
+            }
+            iterator.close();
+            // each reader reads one of the ranges
+            assertThat(linesOfReader.isEmpty(), is(false));
+            readLines.addAll(linesOfReader);
+        }
+        assertThat(readLines, containsInAnyOrder(lines.toArray()));
+    }
+
+    @Test
+    public void testCopyFailsOnAllReadersIfTheSizeOfAFileOnSharedStorageIsUnknown() throws Exception {
+        // the readers must not fall back to reading the file as a whole, the other readers may have split it
+        String missingFileUri = createTempDir().resolve("missing.json").toUri().toString();
+        int numReaders = 3;
+        for (int readerNumber = 0; readerNumber < numReaders; readerNumber++) {
+            BatchIterator<Row> iterator = createBatchIterator(
+                Collections.singletonList(missingFileUri), null, JSON, true, numReaders, readerNumber, 10);
+            try {
+                iterator.moveNext();
+                fail("Expected the COPY to fail on reader " + readerNumber);
+            } catch (UncheckedIOException e) {
+                assertThat(e.getMessage(), is("Unable to get the size of " + missingFileUri));
+            } finally {
+                iterator.close();
+            }
+        }
+    }
+
+    @Test
+    public void testKillUnblocksAReadWaitingForData() throws Exception {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        InputStream blockingStream = new InputStream() {
+
+            private boolean closed = false;
+
+            @Override
+            public synchronized int read() throws IOException {
+                readStarted.countDown();
+                while (closed == false) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public synchronized void close() {
+                closed = true;
+                notifyAll();
+            }
+        };
+        FileInputFactory blockingInputFactory = () -> new FileInput() {
+
+            @Override
+            public List<URI> listUris(URI fileUri, Predicate<URI> uriPredicate) {
+                return List.of(fileUri);
+            }
+
+            @Override
+            public InputStream getStream(URI uri) {
+                return blockingStream;
+            }
+
+            @Override
+            public boolean sharedStorageDefault() {
+                return false;
+            }
+        };
+        BatchIterator<Row> iterator = createBatchIterator(
+            Collections.singletonList("blocking:///data"),
+            null,
+            JSON,
+            null,
+            1,
+            0,
+            FileReadingIterator.MIN_RANGE_SIZE_IN_BYTES,
+            ImmutableMap.of("blocking", blockingInputFactory));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                iterator.moveNext();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        assertThat(readStarted.await(10, TimeUnit.SECONDS), is(true));
+
+        iterator.kill(new InterruptedException("Job killed"));
+        reader.join(10_000);
+        assertThat(reader.isAlive(), is(false));
+        assertThat(failure.get().getMessage(), is("Job killed"));
+        iterator.close();
+    }
+
+    @Test
+    public void testKillDoesNotImportThePartialLastLineOfAStreamClosedByKill() throws Exception {
+        CountDownLatch waitingForData = new CountDownLatch(1);
+        byte[] data = "name,id\nArthur,4\nTrill".getBytes(StandardCharsets.UTF_8);
+        InputStream stream = new InputStream() {
+
+            private int position = 0;
+            private boolean closed = false;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) throws IOException {
+                if (position < data.length) {
+                    int numBytes = Math.min(len, data.length - position);
+                    System.arraycopy(data, position, b, off, numBytes);
+                    position += numBytes;
+                    return numBytes;
+                }
+                waitingForData.countDown();
+                while (closed == false) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                // like a socket closed by another thread
+                return -1;
+            }
+
+            @Override
+            public synchronized void close() {
+                closed = true;
+                notifyAll();
+            }
+        };
+        FileInputFactory inputFactory = () -> new FileInput() {
+
+            @Override
+            public List<URI> listUris(URI fileUri, Predicate<URI> uriPredicate) {
+                return List.of(fileUri);
+            }
+
+            @Override
+            public InputStream getStream(URI uri) {
+                return stream;
+            }
+
+            @Override
+            public boolean sharedStorageDefault() {
+                return false;
+            }
+        };
+        BatchIterator<Row> iterator = createBatchIterator(
+            Collections.singletonList("partial:///data"),
+            null,
+            CSV,
+            null,
+            1,
+            0,
+            FileReadingIterator.MIN_RANGE_SIZE_IN_BYTES,
+            ImmutableMap.of("partial", inputFactory));
+
+        List<String> rows = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (iterator.moveNext()) {
+                    rows.add((String) iterator.currentElement().get(0));
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        assertThat(waitingForData.await(10, TimeUnit.SECONDS), is(true));
+
+        iterator.kill(new InterruptedException("Job killed"));
+        reader.join(10_000);
+        assertThat(reader.isAlive(), is(false));
+        assertThat(failure.get().getMessage(), is("Job killed"));
+        assertThat(rows, contains("{\"name\":\"Arthur\",\"id\":\"4\"}"));
+        iterator.close();
+    }
+
+    @Test
+    public void testNumRanges() {
+        assertThat(FileReadingIterator.numRanges(-1, 4, 10), is(1));
+        assertThat(FileReadingIterator.numRanges(0, 4, 10), is(1));
+        assertThat(FileReadingIterator.numRanges(1000, 1, 10), is(1));
+        assertThat(FileReadingIterator.numRanges(15, 4, 10), is(1));
+        assertThat(FileReadingIterator.numRanges(25, 4, 10), is(2));
+        assertThat(FileReadingIterator.numRanges(1000, 4, 10), is(4));
+    }
+
     private BatchIterator<Row> createBatchIterator(Collection<String> fileUris, String compression, FileUriCollectPhase.InputFormat format) {
+        return createBatchIterator(fileUris, compression, format, false, 1, 0, FileReadingIterator.MIN_RANGE_SIZE_IN_BYTES);
+    }
+
+    private BatchIterator<Row> createBatchIterator(Collection<String> fileUris,
+                                                   String compression,
+                                                   FileUriCollectPhase.InputFormat format,
+                                                   boolean shared,
+                                                   int numReaders,
+                                                   int readerNumber,
+                                                   long minRangeSizeInBytes) {
+        return createBatchIterator(
+            fileUris,
+            compression,
+            format,
+            shared,
+            numReaders,
+            readerNumber,
+            minRangeSizeInBytes,
+            ImmutableMap.of(LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()));
+    }
+
+    private BatchIterator<Row> createBatchIterator(Collection<String> fileUris,
+                                                   String compression,
+                                                   FileUriCollectPhase.InputFormat format,
+                                                   Boolean shared,
+                                                   int numReaders,
+                                                   int readerNumber,
+                                                   long minRangeSizeInBytes,
+                                                   Map<String, FileInputFactory> fileInputFactories) {
         Reference raw = createReference("_raw", DataTypes.STRING);
         InputFactory.Context<LineCollectorExpression<?>> ctx =
             inputFactory.ctxForRefs(txnCtx, FileLineReferenceResolver::getImplementation);
@@ -172,11 +435,11 @@ public class FileReadingIteratorTest extends CrateUnitTest {
             inputs,
             ctx.expressions(),
             compression,
-            ImmutableMap.of(
-                LocalFsFileInputFactory.NAME, new LocalFsFileInputFactory()),
-            false,
-            1,
-            0,
-            format);
+            fileInputFactories,
+            shared,
+            numReaders,
+            readerNumber,
+            format,
+            minRangeSizeInBytes);
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+
+public class LineAlignedRangeInputStreamTest extends CrateUnitTest {
+
+    private static String read(byte[] content, long start, long end) throws IOException {
+        int offset = (int) Math.max(0, start - 1);
+        InputStream in = new ByteArrayInputStream(content, offset, content.length - offset);
+        try (LineAlignedRangeInputStream rangeStream = new LineAlignedRangeInputStream(in, start, end)) {
+            return new String(rangeStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> readAllRanges(String content, long... boundaries) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        List<String> ranges = new ArrayList<>();
+        long start = 0;
+        for (long boundary : boundaries) {
+            ranges.add(read(bytes, start, boundary));
+            start = boundary;
+        }
+        ranges.add(read(bytes, start, bytes.length));
+        return ranges;
+    }
+
+    @Test
+    public void testLineCrossingTheEndBelongsToTheRangeItStartsIn() throws Exception {
+        assertThat(readAllRanges("aa\nbb\ncc\n", 4), is(Arrays.asList("aa\nbb\n", "cc\n")));
+    }
+
+    @Test
+    public void testBoundaryAtTheStartOfALine() throws Exception {
+        assertThat(readAllRanges("aa\nbb\ncc\n", 3, 6), is(Arrays.asList("aa\n", "bb\n", "cc\n")));
+    }
+
+    @Test
+    public void testBoundaryAtALineBreak() throws Exception {
+        assertThat(readAllRanges("aa\nbb\ncc\n", 2, 5), is(Arrays.asList("aa\n", "bb\n", "cc\n")));
+    }
+
+    @Test
+    public void testRangeWithinALineIsEmpty() throws Exception {
+        assertThat(readAllRanges("aaaaaa\nbb\n", 2, 4), is(Arrays.asList("aaaaaa\n", "", "bb\n")));
+    }
+
+    @Test
+    public void testLastLineWithoutLineBreak() throws Exception {
+        assertThat(readAllRanges("aa\nbb\ncc", 4), is(Arrays.asList("aa\nbb\n", "cc")));
+    }
+
+    @Test
+    public void testEmptyRange() throws Exception {
+        assertThat(readAllRanges("aa\nbb\n", 0), is(Arrays.asList("", "aa\nbb\n")));
+    }
+}
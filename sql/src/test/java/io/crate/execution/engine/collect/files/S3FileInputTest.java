@@ -37,7 +37,10 @@ import java.util.function.Predicate;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -92,6 +95,16 @@ public class S3FileInputTest extends CrateUnitTest {
         assertThat(uris.get(1).toString(), is("s3://fakeBucket/prefix/test2.json.gz"));
     }
 
+    @Test
+    public void testSizeOfListedObjectIsTakenFromTheListing() throws Exception {
+        when(objectListing.getObjectSummaries()).thenReturn(objectSummaries());
+
+        List<URI> uris = s3FileInput.listUris(uri, uriPredicate);
+        assertThat(s3FileInput.size(uris.get(0)), is(10L));
+        assertThat(s3FileInput.size(uris.get(1)), is(20L));
+        verify(amazonS3, never()).getObjectMetadata(anyString(), anyString());
+    }
+
     private List<S3ObjectSummary> objectSummaries() {
         listObjectSummaries = new LinkedList<>();
 
@@ -101,6 +114,8 @@ public class S3FileInputTest extends CrateUnitTest {
         secondObj.setBucketName(BUCKET_NAME);
         firstObj.setKey("prefix/test1.json.gz");
         secondObj.setKey("prefix/test2.json.gz");
+        firstObj.setSize(10L);
+        secondObj.setSize(20L);
         listObjectSummaries.add(firstObj);
         listObjectSummaries.add(secondObj);
         return listObjectSummaries;
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.files;
+
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+
+import static org.hamcrest.Matchers.is;
+
+public class StdinFileInputFactoryTest extends CrateDummyClusterServiceUnitTest {
+
+    @Test
+    public void testNumberOfRegisteredStreamsIsLimited() throws Exception {
+        StdinFileInputFactory factory = new StdinFileInputFactory(
+            Settings.builder().put(StdinFileInputFactory.MAX_CONCURRENT_SETTING.getKey(), 1).build(),
+            clusterService);
+        URI uri = factory.register(new ByteArrayInputStream(new byte[0]));
+        try {
+            factory.register(new ByteArrayInputStream(new byte[0]));
+            fail("Expected the second stream to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().startsWith("Too many concurrent COPY FROM STDIN operations"), is(true));
+        }
+
+        // reading the stream doesn't free the slot, only unregistering does
+        try (InputStream stream = factory.create().getStream(uri)) {
+            assertThat(stream.read(), is(-1));
+        }
+        factory.unregister(uri);
+        factory.unregister(uri);
+
+        URI otherUri = factory.register(new ByteArrayInputStream(new byte[0]));
+        // unregistering the first stream twice released only one slot
+        expectedException.expect(IllegalStateException.class);
+        try {
+            factory.register(new ByteArrayInputStream(new byte[0]));
+        } finally {
+            factory.unregister(otherUri);
+        }
+    }
+}
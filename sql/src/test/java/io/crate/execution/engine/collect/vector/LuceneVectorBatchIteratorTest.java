@@ -0,0 +1,148 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.NumericUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+public class LuceneVectorBatchIteratorTest extends CrateUnitTest {
+
+    private static final int NUM_DOCS = 2500;
+
+    private IndexSearcher indexSearcher;
+    private List<DocValuesVectorLoader> loaders;
+
+    @Before
+    public void prepareSearcher() throws Exception {
+        IndexWriter iw = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(new StandardAnalyzer()));
+        for (int i = 0; i < NUM_DOCS; i++) {
+            Document doc = new Document();
+            if (i % 7 != 0) {
+                doc.add(new SortedNumericDocValuesField("x", i));
+            }
+            doc.add(new SortedNumericDocValuesField("d", NumericUtils.doubleToSortableLong(i * 0.25)));
+            iw.addDocument(doc);
+            if (i % 1000 == 999) {
+                // more than one segment
+                iw.commit();
+            }
+        }
+        iw.commit();
+        indexSearcher = new IndexSearcher(DirectoryReader.open(iw));
+        loaders = List.of(
+            DocValuesVectorLoader.of("x", DataTypes.LONG),
+            DocValuesVectorLoader.of("d", DataTypes.DOUBLE)
+        );
+    }
+
+    private BatchIterator<VectorBatch> createIterator(Query query, int batchSize) {
+        return new LuceneVectorBatchIterator(
+            indexSearcher,
+            query,
+            loaders,
+            LuceneVectorBatchIterator.newBatch(loaders, batchSize)
+        );
+    }
+
+    @Test
+    public void testVectorsAreFilledFromDocValues() throws Exception {
+        List<Object[]> expectedResult = new ArrayList<>();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            expectedResult.add(new Object[] { i % 7 == 0 ? null : (long) i, i * 0.25 });
+        }
+        BatchIterator<VectorBatch> it = createIterator(new MatchAllDocsQuery(), 128);
+        List<Object[]> result = new ArrayList<>();
+        while (it.moveNext()) {
+            VectorBatch batch = it.currentElement();
+            assertThat(batch.numRows() <= 128, is(true));
+            LongVector x = (LongVector) batch.column(0);
+            DoubleVector d = (DoubleVector) batch.column(1);
+            for (int i = 0; i < batch.numRows(); i++) {
+                result.add(new Object[] { x.isNull(i) ? null : x.values()[i], d.isNull(i) ? null : d.values()[i] });
+            }
+        }
+        assertThat(result.toArray(), is(expectedResult.toArray()));
+
+        it.moveToStart();
+        int numRows = 0;
+        while (it.moveNext()) {
+            numRows += it.currentElement().numRows();
+        }
+        assertThat(numRows, is(NUM_DOCS));
+    }
+
+    @Test
+    public void testVectorizedAggregationMatchesRowBasedResult() throws Exception {
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        double sumOfD = 0;
+        for (int i = 0; i < NUM_DOCS; i++) {
+            if (i % 7 != 0) {
+                count++;
+                sum += i;
+                max = i;
+            }
+            sumOfD += i * 0.25;
+        }
+        BatchIterator<Row> aggregated = VectorAggregators.aggregate(
+            createIterator(new MatchAllDocsQuery(), 1000),
+            VectorAggregators.countAll(),
+            VectorAggregators.count(0),
+            VectorAggregators.longSum(0),
+            VectorAggregators.longMax(0),
+            VectorAggregators.doubleSum(1)
+        );
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(aggregated, null);
+
+        Object[] result = consumer.getResult().get(0);
+        assertThat(result[0], is((long) NUM_DOCS));
+        assertThat(result[1], is(count));
+        assertThat(result[2], is(sum));
+        assertThat(result[3], is(max));
+        assertThat((double) result[4], closeTo(sumOfD, 0.0001));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.data.BatchIterator;
+import io.crate.data.InMemoryBatchIterator;
+import io.crate.data.Row;
+import io.crate.testing.TestingRowConsumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class VectorAggregatorsTest {
+
+    private static final int NUM_ROWS = 100;
+
+    /**
+     * Batches with the columns [x long, d double] where x is 0 .. 99 and null for multiples of 10 and d is x * 0.5
+     */
+    private static BatchIterator<VectorBatch> source() {
+        List<VectorBatch> batches = new ArrayList<>();
+        for (int start = 0; start < NUM_ROWS; start += 16) {
+            VectorBatch batch = new VectorBatch(16, new LongVector(16), new DoubleVector(16));
+            int numRows = Math.min(16, NUM_ROWS - start);
+            batch.reset(numRows);
+            LongVector x = (LongVector) batch.column(0);
+            DoubleVector d = (DoubleVector) batch.column(1);
+            for (int i = 0; i < numRows; i++) {
+                int value = start + i;
+                if (value % 10 == 0) {
+                    x.setNull(i);
+                } else {
+                    x.set(i, value);
+                }
+                d.set(i, value * 0.5);
+            }
+            batches.add(batch);
+        }
+        return InMemoryBatchIterator.of(batches, null, false);
+    }
+
+    private static BatchIterator<VectorBatch> doubles(double... values) {
+        VectorBatch batch = new VectorBatch(values.length, new DoubleVector(values.length));
+        batch.reset(values.length);
+        DoubleVector vector = (DoubleVector) batch.column(0);
+        for (int i = 0; i < values.length; i++) {
+            vector.set(i, values[i]);
+        }
+        return InMemoryBatchIterator.of(List.of(batch), null, false);
+    }
+
+    private static Object[] aggregate(BatchIterator<VectorBatch> source, VectorAggregator... aggregators) throws Exception {
+        BatchIterator<Row> aggregated = VectorAggregators.aggregate(source, aggregators);
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(aggregated, null);
+        List<Object[]> result = consumer.getResult();
+        assertThat(result.size(), is(1));
+        return result.get(0);
+    }
+
+    @Test
+    public void testAggregationsOverAllBatches() throws Exception {
+        long sum = 0;
+        double doubleSum = 0;
+        for (int x = 0; x < NUM_ROWS; x++) {
+            doubleSum += x * 0.5;
+            if (x % 10 != 0) {
+                sum += x;
+            }
+        }
+        Object[] result = aggregate(
+            source(),
+            VectorAggregators.countAll(),
+            VectorAggregators.count(0),
+            VectorAggregators.longSum(0),
+            VectorAggregators.longMin(0),
+            VectorAggregators.longMax(0),
+            VectorAggregators.doubleSum(1),
+            VectorAggregators.doubleMax(1)
+        );
+        assertThat(result, is(new Object[] { 100L, 90L, sum, 1L, 99L, doubleSum, 49.5 }));
+    }
+
+    @Test
+    public void testFilteredAggregationsOnlyAggregateTheMatchingRows() throws Exception {
+        double doubleSum = 0;
+        for (int x = 0; x < NUM_ROWS; x += 10) {
+            doubleSum += x * 0.5;
+        }
+        Object[] result = aggregate(
+            source(),
+            VectorAggregators.filtered(VectorFilters.isNull(0), VectorAggregators.countAll()),
+            VectorAggregators.filtered(VectorFilters.isNull(0), VectorAggregators.doubleSum(1)),
+            VectorAggregators.countAll()
+        );
+        assertThat(result, is(new Object[] { 10L, doubleSum, 100L }));
+    }
+
+    @Test
+    public void testAggregationsWithoutValuesReturnNull() throws Exception {
+        Object[] result = aggregate(
+            InMemoryBatchIterator.empty(null),
+            VectorAggregators.countAll(),
+            VectorAggregators.longSum(0),
+            VectorAggregators.doubleMin(0)
+        );
+        assertThat(result, is(new Object[] { 0L, null, null }));
+    }
+
+    @Test
+    public void testDoubleAggregationsCompareLikeBoxedDoubles() throws Exception {
+        Object[] result = aggregate(
+            doubles(-0.0),
+            VectorAggregators.doubleSum(0)
+        );
+        assertThat(result, is(new Object[] { -0.0 }));
+
+        result = aggregate(
+            doubles(2.0, Double.NaN, 1.0),
+            VectorAggregators.doubleMin(0)
+        );
+        assertThat(result, is(new Object[] { 1.0 }));
+
+        result = aggregate(
+            doubles(2.0, Double.NaN, 1.0),
+            VectorAggregators.doubleMax(0)
+        );
+        assertThat(result, is(new Object[] { Double.NaN }));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.crate.execution.engine.collect.vector.VectorEvals.Operator.ADD;
+import static io.crate.execution.engine.collect.vector.VectorEvals.Operator.MULTIPLY;
+import static io.crate.execution.engine.collect.vector.VectorEvals.Operator.SUBTRACT;
+import static org.hamcrest.Matchers.is;
+
+public class VectorEvalsTest extends CrateUnitTest {
+
+    private static VectorBatch longs(long[] left, long[] right) {
+        VectorBatch batch = new VectorBatch(left.length, new LongVector(left.length), new LongVector(left.length),
+            new LongVector(left.length));
+        batch.reset(left.length);
+        for (int i = 0; i < left.length; i++) {
+            ((LongVector) batch.column(0)).set(i, left[i]);
+            ((LongVector) batch.column(1)).set(i, right[i]);
+        }
+        return batch;
+    }
+
+    @Test
+    public void testLongArithmeticPropagatesNulls() {
+        VectorBatch batch = longs(new long[] { 1, 2, 3 }, new long[] { 10, 20, 30 });
+        ((LongVector) batch.column(1)).setNull(1);
+        VectorEvals.arithmetic(SUBTRACT, VectorEvals.ResultType.LONG, 0, 1, 2).evaluate(batch);
+        LongVector result = (LongVector) batch.column(2);
+        assertThat(result.values()[0], is(-9L));
+        assertThat(result.isNull(1), is(true));
+        assertThat(result.values()[2], is(-27L));
+    }
+
+    @Test
+    public void testIntegerOverflowRaisesTheErrorOfTheRowBasedOperator() {
+        VectorBatch batch = longs(new long[] { Integer.MAX_VALUE }, new long[] { 1 });
+        VectorEval eval = VectorEvals.arithmetic(ADD, VectorEvals.ResultType.INTEGER, 0, 1, 2);
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("integer overflow");
+        eval.evaluate(batch);
+    }
+
+    @Test
+    public void testOnlySelectedRowsAreEvaluated() {
+        VectorBatch batch = longs(new long[] { 3, Long.MAX_VALUE }, new long[] { 4, 2 });
+        batch.select(new int[] { 0 }, 1);
+        VectorEvals.arithmetic(MULTIPLY, VectorEvals.ResultType.LONG, 0, 1, 2).evaluate(batch);
+        assertThat(((LongVector) batch.column(2)).values()[0], is(12L));
+    }
+
+    @Test
+    public void testFloatArithmeticIsRoundedToFloat() {
+        VectorBatch batch = new VectorBatch(1, new DoubleVector(1), new DoubleVector(1), new DoubleVector(1));
+        batch.reset(1);
+        ((DoubleVector) batch.column(0)).set(0, 0.1f);
+        ((DoubleVector) batch.column(1)).set(0, 0.2f);
+        VectorEvals.arithmetic(ADD, VectorEvals.ResultType.FLOAT, 0, 1, 2).evaluate(batch);
+        assertThat(((DoubleVector) batch.column(2)).values()[0], is((double) (0.1f + 0.2f)));
+    }
+
+    @Test
+    public void testEvaluateBeforeAggregatorUsesTheSelectionOfTheAggregator() {
+        // x + y would overflow for the second row, which doesn't match the filter x < y
+        VectorBatch batch = longs(new long[] { 1, Long.MAX_VALUE, 3 }, new long[] { 2, 1, 4 });
+        VectorAggregator aggregator = VectorAggregators.filtered(
+            VectorFilters.longCompare(VectorFilters.Comparison.LT, 0, 1),
+            VectorEvals.evaluateBefore(
+                List.of(VectorEvals.arithmetic(ADD, VectorEvals.ResultType.LONG, 0, 1, 2)),
+                VectorAggregators.longSum(2)));
+        aggregator.aggregate(batch);
+        assertThat(aggregator.result(), is(10L));
+    }
+}
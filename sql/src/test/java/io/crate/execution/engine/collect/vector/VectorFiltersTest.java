@@ -0,0 +1,123 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.collect.vector;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static io.crate.execution.engine.collect.vector.VectorFilters.Comparison.EQ;
+import static io.crate.execution.engine.collect.vector.VectorFilters.Comparison.GT;
+import static io.crate.execution.engine.collect.vector.VectorFilters.Comparison.GTE;
+import static io.crate.execution.engine.collect.vector.VectorFilters.Comparison.LT;
+import static io.crate.execution.engine.collect.vector.VectorFilters.Comparison.LTE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class VectorFiltersTest {
+
+    /**
+     * A batch with the columns [x long, c long, d double, e double] where x is 0 .. 9 and null for 5, c is the
+     * constant 5, d is x * 0.5 and e is NaN for the first row and 2.0 for the others.
+     */
+    private static VectorBatch batch() {
+        VectorBatch batch = new VectorBatch(
+            16, new LongVector(16), new LongVector(16), new DoubleVector(16), new DoubleVector(16));
+        batch.reset(10);
+        LongVector x = (LongVector) batch.column(0);
+        LongVector c = (LongVector) batch.column(1);
+        DoubleVector d = (DoubleVector) batch.column(2);
+        DoubleVector e = (DoubleVector) batch.column(3);
+        Arrays.fill(c.values(), 5L);
+        for (int i = 0; i < 10; i++) {
+            if (i == 5) {
+                x.setNull(i);
+            } else {
+                x.set(i, i);
+            }
+            d.set(i, i * 0.5);
+            e.set(i, i == 0 ? Double.NaN : 2.0);
+        }
+        return batch;
+    }
+
+    private static int[] filter(VectorFilter filter, VectorBatch batch) {
+        int[] matches = new int[batch.capacity()];
+        int numMatches = filter.filter(batch, matches);
+        return Arrays.copyOf(matches, numMatches);
+    }
+
+    @Test
+    public void testLongComparisonsDoNotMatchNulls() {
+        VectorBatch batch = batch();
+        assertThat(filter(VectorFilters.longCompare(LT, 0, 1), batch), is(new int[] { 0, 1, 2, 3, 4 }));
+        assertThat(filter(VectorFilters.longCompare(LTE, 0, 1), batch), is(new int[] { 0, 1, 2, 3, 4 }));
+        assertThat(filter(VectorFilters.longCompare(EQ, 0, 1), batch), is(new int[0]));
+        assertThat(filter(VectorFilters.longCompare(GT, 0, 1), batch), is(new int[] { 6, 7, 8, 9 }));
+        assertThat(filter(VectorFilters.longCompare(GTE, 1, 0), batch), is(new int[] { 0, 1, 2, 3, 4 }));
+    }
+
+    @Test
+    public void testDoubleComparisonsCompareLikeBoxedDoubles() {
+        VectorBatch batch = batch();
+        // NaN is greater than all other values
+        assertThat(filter(VectorFilters.doubleCompare(GT, 3, 2), batch), is(new int[] { 0, 1, 2, 3 }));
+        assertThat(filter(VectorFilters.doubleCompare(EQ, 2, 3), batch), is(new int[] { 4 }));
+    }
+
+    @Test
+    public void testComparisonOnlyEvaluatesSelectedRows() {
+        VectorBatch batch = batch();
+        batch.select(new int[] { 1, 3, 7 }, 3);
+        assertThat(filter(VectorFilters.longCompare(LT, 0, 1), batch), is(new int[] { 1, 3 }));
+        assertThat(batch.numSelected(), is(3));
+    }
+
+    @Test
+    public void testIsNullAndIsNotNull() {
+        VectorBatch batch = batch();
+        assertThat(filter(VectorFilters.isNull(0), batch), is(new int[] { 5 }));
+        assertThat(filter(VectorFilters.isNull(2), batch), is(new int[0]));
+        assertThat(filter(VectorFilters.isNotNull(0), batch), is(new int[] { 0, 1, 2, 3, 4, 6, 7, 8, 9 }));
+    }
+
+    @Test
+    public void testAndMatchesRowsMatchedByAllConditionsAndRestoresTheSelection() {
+        VectorBatch batch = batch();
+        VectorFilter filter = VectorFilters.and(
+            VectorFilters.longCompare(LT, 0, 1),
+            VectorFilters.doubleCompare(GT, 3, 2));
+        assertThat(filter(filter, batch), is(new int[] { 0, 1, 2, 3 }));
+        assertThat(batch.numSelected(), is(10));
+        assertThat(batch.selected()[9], is(9));
+    }
+
+    @Test
+    public void testOrMatchesRowsMatchedByEitherCondition() {
+        VectorBatch batch = batch();
+        VectorFilter filter = VectorFilters.or(
+            VectorFilters.longCompare(GT, 0, 1),
+            VectorFilters.or(VectorFilters.isNull(0), VectorFilters.longCompare(LTE, 0, 1)));
+        assertThat(filter(filter, batch), is(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }));
+    }
+}
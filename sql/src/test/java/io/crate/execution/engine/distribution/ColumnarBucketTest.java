@@ -0,0 +1,162 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.distribution;
+
+import io.crate.Streamer;
+import io.crate.breaker.RamAccounting;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import io.crate.types.ObjectType;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ColumnarBucketTest extends CrateUnitTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] {
+        DataTypes.BYTE,
+        DataTypes.SHORT,
+        DataTypes.INTEGER,
+        DataTypes.LONG,
+        DataTypes.TIMESTAMPZ,
+        DataTypes.FLOAT,
+        DataTypes.DOUBLE,
+        DataTypes.STRING,
+        DataTypes.BOOLEAN,
+        ObjectType.untyped()
+    };
+
+    private static List<Object[]> rows(int numRows) {
+        List<Object[]> rows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            if (i % 7 == 0) {
+                rows.add(new Object[STREAMERS.length]);
+            } else {
+                rows.add(new Object[] {
+                    (byte) i,
+                    (short) -i,
+                    i * 1000,
+                    (long) i << 40,
+                    1577836800000L + i,
+                    i / 3.0f,
+                    i / 7.0,
+                    "group-" + (i % 5),
+                    i % 2 == 0,
+                    Map.of("x", i)
+                });
+            }
+        }
+        return rows;
+    }
+
+    private static StreamBucket build(List<Object[]> rows, boolean columnar) {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, RamAccounting.NO_ACCOUNTING, columnar);
+        for (Object[] row : rows) {
+            builder.add(new RowN(row));
+        }
+        return builder.build();
+    }
+
+    private static List<Object[]> materialize(StreamBucket bucket) {
+        List<Object[]> result = new ArrayList<>();
+        for (Row row : bucket) {
+            result.add(row.materialize());
+        }
+        return result;
+    }
+
+    private static void assertRows(List<Object[]> actual, List<Object[]> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(Arrays.deepEquals(actual.get(i), expected.get(i)), is(true));
+        }
+    }
+
+    private static StreamBucket streamed(StreamBucket bucket, Version version) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(version);
+        bucket.writeTo(out);
+        StreamInput in = out.bytes().streamInput();
+        in.setVersion(version);
+        return new StreamBucket(in, STREAMERS);
+    }
+
+    @Test
+    public void test_columnar_bucket_returns_the_added_rows() throws Exception {
+        List<Object[]> rows = rows(150);
+        StreamBucket bucket = build(rows, true);
+
+        assertThat(bucket.size(), is(150));
+        assertRows(materialize(bucket), rows);
+        assertRows(materialize(streamed(bucket, Version.CURRENT)), rows);
+    }
+
+    @Test
+    public void test_columnar_bucket_is_row_encoded_for_nodes_before_4_2() throws Exception {
+        List<Object[]> rows = rows(20);
+        StreamBucket bucket = streamed(build(rows, true), Version.V_4_1_0);
+
+        assertRows(materialize(bucket), rows);
+    }
+
+    @Test
+    public void test_builder_can_be_reused_after_reset() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS, RamAccounting.NO_ACCOUNTING, true);
+        List<Object[]> rows = rows(80);
+        for (Object[] row : rows) {
+            builder.add(new RowN(row));
+        }
+        StreamBucket first = builder.build();
+        builder.reset();
+        List<Object[]> nextRows = rows(3).subList(1, 3);
+        for (Object[] row : nextRows) {
+            builder.add(new RowN(row));
+        }
+        StreamBucket second = builder.build();
+
+        assertRows(materialize(first), rows);
+        assertRows(materialize(second), nextRows);
+    }
+
+    @Test
+    public void test_columnar_encoding_is_smaller_than_row_encoding() throws Exception {
+        List<Object[]> rows = rows(1000);
+        BytesStreamOutput rowEncoded = new BytesStreamOutput();
+        build(rows, false).writeTo(rowEncoded);
+        BytesStreamOutput columnar = new BytesStreamOutput();
+        build(rows, true).writeTo(columnar);
+
+        assertThat(columnar.size(), lessThan(rowEncoded.size()));
+    }
+}
@@ -40,6 +40,7 @@ import io.crate.planner.distribution.DistributionInfo;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.types.DataType;
 import io.crate.types.LongType;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -57,6 +58,7 @@ public class DistributingConsumerFactoryTest extends CrateDummyClusterServiceUni
     @Before
     public void prepare() {
         rowDownstreamFactory = new DistributingConsumerFactory(
+            Settings.EMPTY,
             clusterService,
             THREAD_POOL,
             mock(TransportDistributedResultAction.class)
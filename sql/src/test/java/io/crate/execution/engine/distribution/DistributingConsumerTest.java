@@ -45,6 +45,7 @@ import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 
 import java.util.Collections;
@@ -55,6 +56,7 @@ import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
@@ -166,7 +168,36 @@ public class DistributingConsumerTest extends CrateUnitTest {
         collectingConsumer.getResult();
     }
 
+    @Test
+    public void test_pages_are_pipelined_if_multiple_pages_are_allowed_in_flight() throws Exception {
+        Streamer<?>[] streamers = { DataTypes.INTEGER.streamer() };
+        TestingRowConsumer collectingConsumer = new TestingRowConsumer();
+        DistResultRXTask distResultRXTask = createPageDownstreamContext(streamers, collectingConsumer);
+        TransportDistributedResultAction distributedResultAction = createFakeTransport(streamers, distResultRXTask);
+        DistributingConsumer distributingConsumer = createDistributingConsumer(streamers, distributedResultAction, 3);
+
+        distributingConsumer.accept(TestingBatchIterators.range(0, 9), null);
+
+        List<Object[]> result = collectingConsumer.getResult();
+        assertThat(TestingHelpers.printedTable(new CollectionBucket(result)),
+            is("0\n1\n2\n3\n4\n5\n6\n7\n8\n"));
+        distributingConsumer.completionFuture().get(5, TimeUnit.SECONDS);
+
+        // pageSize=2 and 9 rows causes 5x pushResult
+        ArgumentCaptor<DistributedResultRequest> requests = ArgumentCaptor.forClass(DistributedResultRequest.class);
+        verify(distributedResultAction, times(5)).pushResult(anyString(), requests.capture(), any());
+        assertThat(
+            requests.getAllValues().stream().map(DistributedResultRequest::pageIdx).collect(Collectors.toList()),
+            Matchers.contains(0, 1, 2, 3, 4));
+    }
+
     private DistributingConsumer createDistributingConsumer(Streamer<?>[] streamers, TransportDistributedResultAction distributedResultAction) {
+        return createDistributingConsumer(streamers, distributedResultAction, 1);
+    }
+
+    private DistributingConsumer createDistributingConsumer(Streamer<?>[] streamers,
+                                                            TransportDistributedResultAction distributedResultAction,
+                                                            int maxPagesInFlight) {
         return new DistributingConsumer(
             logger,
             executorService,
@@ -177,7 +208,8 @@ public class DistributingConsumerTest extends CrateUnitTest {
             0,
             Collections.singletonList("n1"),
             distributedResultAction,
-            2 // pageSize
+            2, // pageSize
+            maxPagesInFlight
         );
     }
 
@@ -212,6 +244,7 @@ public class DistributingConsumerTest extends CrateUnitTest {
             if (throwable == null) {
                 bucketReceiver.setBucket(
                     resultRequest.bucketIdx(),
+                    resultRequest.pageIdx(),
                     resultRequest.readRows(streamers),
                     resultRequest.isLast(),
                     needMore -> listener.onResponse(new DistributedResultResponse(needMore)));
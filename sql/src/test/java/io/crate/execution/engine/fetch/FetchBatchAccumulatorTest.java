@@ -57,6 +57,7 @@ import java.util.concurrent.TimeUnit;
 
 import static io.crate.analyze.TableDefinitions.USER_TABLE_IDENT;
 import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -92,6 +93,86 @@ public class FetchBatchAccumulatorTest {
         assertThat(result.next().get(0), is(4));
     }
 
+    @Test
+    public void testDocIdsAreRequestedInAscendingOrderAndRowsKeepTheInputOrder() throws Exception {
+        FetchBatchAccumulator fetchBatchAccumulator = new FetchBatchAccumulator(
+            CoordinatorTxnCtx.systemTransactionContext(),
+            fetchOperation,
+            getFunctions(),
+            buildOutputSymbols(),
+            buildFetchProjectorContext(),
+            4
+        );
+        fetchBatchAccumulator.onItem(new Row1(4L));
+        fetchBatchAccumulator.onItem(new Row1(1L));
+        fetchBatchAccumulator.onItem(new Row1(3L));
+        fetchBatchAccumulator.onItem(new Row1(1L));
+
+        Iterator<? extends Row> result = fetchBatchAccumulator.processBatch(false).get(10, TimeUnit.SECONDS);
+        assertThat(fetchOperation.requestedDocIds, contains(1, 3, 4));
+        assertThat(result.next().get(0), is(4));
+        assertThat(result.next().get(0), is(1));
+        assertThat(result.next().get(0), is(3));
+        assertThat(result.next().get(0), is(1));
+        assertThat(result.hasNext(), is(false));
+    }
+
+    @Test
+    public void testBatchesCanBeFetchedConcurrently() throws Exception {
+        fetchOperation.deferResults = true;
+        FetchBatchAccumulator fetchBatchAccumulator = new FetchBatchAccumulator(
+            CoordinatorTxnCtx.systemTransactionContext(),
+            fetchOperation,
+            getFunctions(),
+            buildOutputSymbols(),
+            buildFetchProjectorContext(),
+            2
+        );
+        fetchBatchAccumulator.onItem(new Row1(1L));
+        fetchBatchAccumulator.onItem(new Row1(2L));
+        CompletableFuture<Iterator<? extends Row>> firstBatch = fetchBatchAccumulator.processBatch(false);
+
+        fetchBatchAccumulator.onItem(new Row1(3L));
+        fetchBatchAccumulator.onItem(new Row1(4L));
+        CompletableFuture<Iterator<? extends Row>> secondBatch = fetchBatchAccumulator.processBatch(false);
+
+        // complete the fetch of the second batch first
+        fetchOperation.pendingResults.get(1).run();
+        fetchOperation.pendingResults.get(0).run();
+
+        Iterator<? extends Row> result = firstBatch.get(10, TimeUnit.SECONDS);
+        assertThat(result.next().get(0), is(1));
+        assertThat(result.next().get(0), is(2));
+        assertThat(result.hasNext(), is(false));
+
+        result = secondBatch.get(10, TimeUnit.SECONDS);
+        assertThat(result.next().get(0), is(3));
+        assertThat(result.next().get(0), is(4));
+        assertThat(result.hasNext(), is(false));
+    }
+
+    @Test
+    public void testCloseWaitsForTheBatchFetchedInTheBackground() throws Exception {
+        fetchOperation.deferResults = true;
+        FetchBatchAccumulator fetchBatchAccumulator = new FetchBatchAccumulator(
+            CoordinatorTxnCtx.systemTransactionContext(),
+            fetchOperation,
+            getFunctions(),
+            buildOutputSymbols(),
+            buildFetchProjectorContext(),
+            2
+        );
+        fetchBatchAccumulator.onItem(new Row1(1L));
+        CompletableFuture<Iterator<? extends Row>> batch = fetchBatchAccumulator.processBatch(false);
+
+        fetchBatchAccumulator.close();
+        assertThat(fetchOperation.numCloseRequests, is(0));
+
+        fetchOperation.pendingResults.get(0).run();
+        assertThat(batch.isDone(), is(true));
+        assertThat(fetchOperation.numCloseRequests, is(2));
+    }
+
     private static List<Symbol> buildOutputSymbols() {
         return Collections.singletonList(new FetchReference(
             new InputColumn(0),
@@ -131,20 +212,33 @@ public class FetchBatchAccumulatorTest {
     private static class DummyFetchOperation implements FetchOperation {
 
         int numFetches = 0;
+        int numCloseRequests = 0;
+        boolean deferResults = false;
+        final List<Integer> requestedDocIds = new ArrayList<>();
+        final List<Runnable> pendingResults = new ArrayList<>();
 
         @Override
         public CompletableFuture<IntObjectMap<? extends Bucket>> fetch(String nodeId,
                                                                        IntObjectMap<? extends IntContainer> toFetch,
                                                                        boolean closeContext) {
             numFetches++;
+            if (closeContext) {
+                numCloseRequests++;
+            }
             IntObjectHashMap<Bucket> readerToBuckets = new IntObjectHashMap<>();
             for (IntObjectCursor<? extends IntContainer> cursor : toFetch) {
                 List<Object[]> rows = new ArrayList<>();
                 for (IntCursor docIdCursor : cursor.value) {
+                    requestedDocIds.add(docIdCursor.value);
                     rows.add(new Object[]{docIdCursor.value});
                 }
                 readerToBuckets.put(cursor.key, new CollectionBucket(rows));
             }
+            if (deferResults) {
+                CompletableFuture<IntObjectMap<? extends Bucket>> result = new CompletableFuture<>();
+                pendingResults.add(() -> result.complete(readerToBuckets));
+                return result;
+            }
             return CompletableFuture.completedFuture(readerToBuckets);
         }
     }
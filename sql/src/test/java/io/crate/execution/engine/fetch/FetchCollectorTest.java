@@ -0,0 +1,65 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.fetch;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FetchCollectorTest extends CrateUnitTest {
+
+    @Test
+    public void testSequentialStoredFieldsReaderIsUsedForSortedIdsWithGaps() throws Exception {
+        try (IndexWriter iw = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                doc.add(new StoredField("x", i));
+                iw.addDocument(doc);
+            }
+            iw.commit();
+            try (DirectoryReader reader = DirectoryReader.open(iw)) {
+                LeafReaderContext leaf = reader.leaves().get(0);
+                int end = leaf.docBase + leaf.reader().maxDoc();
+
+                int[] sparseIds = new int[FetchCollector.MIN_SEQUENTIAL_DOCS];
+                for (int i = 0; i < sparseIds.length; i++) {
+                    sparseIds[i] = i * 7;
+                }
+                assertThat(FetchCollector.sequentialStoredFieldsReader(leaf, sparseIds, 0, end), notNullValue());
+
+                int[] fewIds = new int[] { 1, 2, 3 };
+                assertThat(FetchCollector.sequentialStoredFieldsReader(leaf, fewIds, 0, end), nullValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.breaker.RowAccounting;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.join.CombinedRow;
+import io.crate.planner.node.dql.join.JoinType;
+import io.crate.testing.BatchIteratorTester;
+import io.crate.testing.TestingBatchIterators;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class GraceHashJoinBatchIteratorTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] { DataTypes.INTEGER };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static ToIntFunction<Row> getHash() {
+        return row -> Objects.hash(row.get(0));
+    }
+
+    private SpilledRowPartitions partition(Path directory, String prefix, int numPartitions, List<Integer> values) throws Exception {
+        SpilledRowPartitions partitions = new SpilledRowPartitions(directory, prefix, numPartitions, STREAMERS, getHash());
+        BatchIterator<Row> source = TestingBatchIterators.ofValues(values);
+        while (source.moveNext()) {
+            partitions.add(source.currentElement());
+        }
+        partitions.finishWriting();
+        return partitions;
+    }
+
+    private BatchIterator<Row> createGraceHashJoin(Path directory, JoinType joinType) throws Exception {
+        // a block size of 1 makes sure that a partition join also works if a partition doesn't fit into memory
+        return GraceHashJoinBatchIterator.newInstance(
+            partition(directory, "left", 3, Arrays.asList(0, 0, 1, 2, 2, 3, 4, 4)),
+            partition(directory, "right", 3, Arrays.asList(1, 1, 2, 3, 4, 4, 5, 5, 6)),
+            (left, right, numLeftRows) -> joinType == JoinType.INNER
+                ? new HashInnerJoinBatchIterator(
+                    left, right, new CombinedRow(1, 1), row -> Objects.equals(row.get(0), row.get(1)), getHash(), getHash(), () -> 1)
+                : new HashOuterJoinBatchIterator(
+                    left, right, new CombinedRow(1, 1), joinType, row -> Objects.equals(row.get(0), row.get(1)), getHash(), getHash(), () -> 1),
+            mock(RowAccounting.class)
+        );
+    }
+
+    private static List<Object[]> matchedRows() {
+        return Arrays.asList(
+            new Object[] { 1, 1 }, new Object[] { 1, 1 },
+            new Object[] { 2, 2 }, new Object[] { 2, 2 },
+            new Object[] { 3, 3 },
+            new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }, new Object[] { 4, 4 }
+        );
+    }
+
+    @Test
+    public void testInnerJoinOverPartitions() throws Exception {
+        Path directory = temporaryFolder.newFolder().toPath();
+        BatchIteratorTester tester = new BatchIteratorTester(() -> {
+            try {
+                return createGraceHashJoin(directory, JoinType.INNER);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        tester.verifyResultAndEdgeCaseBehaviour(matchedRows());
+    }
+
+    @Test
+    public void testPartitionFilesAreDeletedOnClose() throws Exception {
+        Path directory = temporaryFolder.newFolder().toPath();
+        TestingRowConsumer consumer = new TestingRowConsumer();
+        consumer.accept(createGraceHashJoin(directory, JoinType.INNER), null);
+        assertThat(consumer.getResult().size(), is(9));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void testFullOuterJoinOverPartitions() throws Exception {
+        Path directory = temporaryFolder.newFolder().toPath();
+        List<Object[]> expectedResult = Stream.concat(
+            matchedRows().stream(),
+            Stream.of(
+                new Object[] { 0, null }, new Object[] { 0, null },
+                new Object[] { null, 5 }, new Object[] { null, 5 }, new Object[] { null, 6 }
+            )
+        ).collect(Collectors.toList());
+        BatchIteratorTester tester = new BatchIteratorTester(() -> {
+            try {
+                return createGraceHashJoin(directory, JoinType.FULL);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        tester.verifyResultAndEdgeCaseBehaviour(expectedResult);
+    }
+
+    @Test
+    public void testNumberOfPartitions() {
+        // fits into memory
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(1000L, 10, 50), is(GraceHashJoinBatchIterator.MIN_PARTITIONS));
+        // missing statistics
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(1000L, -1, 5000), is(GraceHashJoinBatchIterator.MIN_PARTITIONS));
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(1000L, 10, -1), is(GraceHashJoinBatchIterator.MIN_PARTITIONS));
+        // 10 times the budget of 500 bytes
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(1000L, 10, 500), is(20));
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(1000L, 10, 1_000_000), is(GraceHashJoinBatchIterator.MAX_PARTITIONS));
+        // no limit
+        assertThat(GraceHashJoinBatchIterator.numberOfPartitions(-1L, 10, 1_000_000), is(GraceHashJoinBatchIterator.MIN_PARTITIONS));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.data.RowN;
+import io.crate.memory.OffHeapMemoryManager;
+import io.crate.types.DataTypes;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class HashJoinBufferTest {
+
+    private final OffHeapMemoryManager memoryManager = new OffHeapMemoryManager();
+
+    @After
+    public void closeMemoryManager() {
+        memoryManager.close();
+    }
+
+    private OffHeapHashJoinBuffer offHeapBuffer() {
+        return new OffHeapHashJoinBuffer(memoryManager, new Streamer[] { DataTypes.INTEGER, DataTypes.STRING });
+    }
+
+    private static List<Object> valuesOfChain(HashJoinBuffer buffer, int hash) {
+        ArrayList<Object> values = new ArrayList<>();
+        for (int pos = buffer.firstPosition(hash); pos != HashJoinBuffer.NO_POSITION; pos = buffer.nextPosition(pos)) {
+            values.add(buffer.get(pos)[0]);
+        }
+        return values;
+    }
+
+    private static void assertChainsInInsertionOrder(HashJoinBuffer buffer) {
+        buffer.clear(4);
+        // more rows than expected to trigger a rehash
+        for (int i = 0; i < 100; i++) {
+            buffer.add(new RowN(i, "value-" + i), i % 7);
+        }
+        assertThat(buffer.size(), is(100));
+        assertThat(valuesOfChain(buffer, 3), contains(3, 10, 17, 24, 31, 38, 45, 52, 59, 66, 73, 80, 87, 94));
+        assertThat(buffer.firstPosition(7), is(HashJoinBuffer.NO_POSITION));
+        assertThat(buffer.get(42)[1], is("value-42"));
+
+        buffer.clear(4);
+        assertThat(buffer.size(), is(0));
+        assertThat(buffer.firstPosition(3), is(HashJoinBuffer.NO_POSITION));
+        buffer.add(new RowN(1, "foo"), 3);
+        assertThat(valuesOfChain(buffer, 3), contains(1));
+    }
+
+    @Test
+    public void testOnHeapBufferChainsRowsWithSameHash() {
+        assertChainsInInsertionOrder(new OnHeapHashJoinBuffer());
+    }
+
+    @Test
+    public void testOffHeapBufferChainsRowsWithSameHash() {
+        assertChainsInInsertionOrder(offHeapBuffer());
+    }
+
+    @Test
+    public void testOffHeapBufferStoresRowsLargerThanAPage() {
+        OffHeapHashJoinBuffer buffer = offHeapBuffer();
+        buffer.clear(10);
+        String largeValue = "x".repeat(OffHeapHashJoinBuffer.PAGE_SIZE_IN_BYTES);
+        buffer.add(new RowN(1, "small"), 1);
+        buffer.add(new RowN(2, largeValue), 2);
+        buffer.add(new RowN(3, null), 3);
+
+        assertThat(buffer.get(0)[1], is("small"));
+        assertThat(buffer.get(1)[1], is(largeValue));
+        assertThat(buffer.get(2)[0], is(3));
+        assertThat(buffer.get(2)[1], is((Object) null));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.execution.engine.join;
+
+import io.crate.Streamer;
+import io.crate.breaker.ConcurrentRamAccounting;
+import io.crate.breaker.RowAccountingWithEstimators;
+import io.crate.data.BatchIterator;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.engine.SpillPolicy;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.TestingRowConsumer;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SpillableLeftRowsTest extends CrateUnitTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] { DataTypes.INTEGER };
+    private static final int NUM_ROWS = 1000;
+
+    private Path spillDirectory;
+    private CircuitBreaker circuitBreaker;
+    private ConcurrentRamAccounting ramAccounting;
+
+    @Before
+    public void prepare() throws Exception {
+        spillDirectory = createTempDir();
+        circuitBreaker = mock(CircuitBreaker.class);
+        when(circuitBreaker.getLimit()).thenReturn(1000L);
+        ramAccounting = new ConcurrentRamAccounting(bytes -> {}, bytes -> {});
+    }
+
+    private SpillableLeftRows createAndFill() throws Exception {
+        SpillableLeftRows leftRows = new SpillableLeftRows(
+            new SpillPolicy(spillDirectory, () -> circuitBreaker),
+            ramAccounting,
+            new RowAccountingWithEstimators(List.of(DataTypes.INTEGER), ramAccounting, 32),
+            4,
+            STREAMERS,
+            row -> Objects.hashCode(row.get(0))
+        );
+        for (int i = 0; i < NUM_ROWS; i++) {
+            leftRows.add(new RowN(i));
+        }
+        leftRows.finishWriting();
+        return leftRows;
+    }
+
+    private long numSpillFiles() throws Exception {
+        if (Files.notExists(spillDirectory)) {
+            return 0L;
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testRowsAreKeptInMemoryWithoutMemoryPressure() throws Exception {
+        when(circuitBreaker.getUsed()).thenReturn(0L);
+        try (SpillableLeftRows leftRows = createAndFill()) {
+            assertThat(leftRows.partitions(), nullValue());
+            assertThat(leftRows.numInMemoryRows(), is(NUM_ROWS));
+            assertThat(ramAccounting.totalBytes() > 0, is(true));
+
+            TestingRowConsumer consumer = new TestingRowConsumer();
+            consumer.accept(leftRows.inMemoryRows(), null);
+            assertThat(consumer.getResult().size(), is(NUM_ROWS));
+            assertThat(numSpillFiles(), is(0L));
+        }
+    }
+
+    @Test
+    public void testRowsAreSpilledIntoPartitionsOnMemoryPressure() throws Exception {
+        // always under pressure, so that the rows are spilled as soon as they use 1% of the limit
+        when(circuitBreaker.getUsed()).thenReturn(1000L);
+        SpillableLeftRows leftRows = createAndFill();
+        SpilledRowPartitions partitions = leftRows.partitions();
+        assertThat(partitions, notNullValue());
+        assertThat(ramAccounting.totalBytes(), is(0L));
+
+        int numRows = 0;
+        for (int i = 0; i < partitions.numPartitions(); i++) {
+            BatchIterator<Row> partition = partitions.iterator(i);
+            while (partition.moveNext()) {
+                numRows++;
+            }
+            partition.close();
+        }
+        assertThat(numRows, is(NUM_ROWS));
+        assertThat(numSpillFiles(), is(4L));
+
+        leftRows.close();
+        assertThat(numSpillFiles(), is(0L));
+    }
+}
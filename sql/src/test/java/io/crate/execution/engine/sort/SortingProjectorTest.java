@@ -23,6 +23,8 @@
 package io.crate.execution.engine.sort;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.Streamer;
+import io.crate.breaker.BlockBasedRamAccounting;
 import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RowAccounting;
 import io.crate.breaker.RowCellsAccountingWithEstimators;
@@ -30,6 +32,7 @@ import io.crate.data.BatchIterator;
 import io.crate.data.Bucket;
 import io.crate.data.Projector;
 import io.crate.data.Row;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.collect.InputCollectExpression;
 import io.crate.expression.symbol.Literal;
@@ -38,16 +41,23 @@ import io.crate.testing.TestingBatchIterators;
 import io.crate.testing.TestingRowConsumer;
 import io.crate.types.DataTypes;
 import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static io.crate.testing.TestingHelpers.isRow;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SortingProjectorTest extends CrateUnitTest {
 
@@ -124,4 +134,47 @@ public class SortingProjectorTest extends CrateUnitTest {
         expectedException.expect(CircuitBreakingException.class);
         consumer.getResult();
     }
+
+    @Test
+    public void testOrderBySpillsSortedRunsUnderMemoryPressure() throws Exception {
+        CircuitBreaker circuitBreaker = mock(CircuitBreaker.class);
+        // always under pressure, so that the rows are spilled as soon as they use 1% of the limit
+        when(circuitBreaker.getLimit()).thenReturn(1000L);
+        when(circuitBreaker.getUsed()).thenReturn(1000L);
+        Path spillDirectory = createTempDir();
+        SpillPolicy spillPolicy = new SpillPolicy(spillDirectory, () -> circuitBreaker);
+        BlockBasedRamAccounting ramAccounting = new BlockBasedRamAccounting(
+            bytes -> {}, spillPolicy.ramAccountingBlockSizeInBytes());
+        ExternalSort externalSort = new ExternalSort(
+            spillPolicy,
+            ramAccounting,
+            new Streamer[] { DataTypes.INTEGER, DataTypes.BOOLEAN },
+            OrderingByPosition.arrayOrdering(0, false, false)
+        );
+        InputCollectExpression input = new InputCollectExpression(0);
+        SortingProjector projector = new SortingProjector(
+            new RowCellsAccountingWithEstimators(List.of(DataTypes.INTEGER, DataTypes.BOOLEAN), ramAccounting, 0),
+            ImmutableList.of(input, Literal.of(true)),
+            ImmutableList.<CollectExpression<Row, ?>>of(input),
+            1,
+            OrderingByPosition.arrayOrdering(0, false, false),
+            5,
+            externalSort
+        );
+        // more runs than ExternalSort.MAX_RUNS, so that the runs are also compacted
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            values.add((i * 7919) % 500);
+        }
+        consumer.accept(projector.apply(TestingBatchIterators.ofValues(values)), null);
+
+        List<Object[]> rows = consumer.getResult();
+        assertThat(rows.size(), is(495));
+        for (int i = 0; i < rows.size(); i++) {
+            assertThat(rows.get(i)[0], is(i + 5));
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
 }
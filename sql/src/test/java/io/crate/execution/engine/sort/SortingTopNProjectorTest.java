@@ -23,6 +23,8 @@
 package io.crate.execution.engine.sort;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.Streamer;
+import io.crate.breaker.BlockBasedRamAccounting;
 import io.crate.breaker.ConcurrentRamAccounting;
 import io.crate.breaker.RowAccounting;
 import io.crate.breaker.RowCellsAccountingWithEstimators;
@@ -30,6 +32,7 @@ import io.crate.data.Bucket;
 import io.crate.data.Input;
 import io.crate.data.Projector;
 import io.crate.data.Row;
+import io.crate.execution.engine.SpillPolicy;
 import io.crate.execution.engine.collect.CollectExpression;
 import io.crate.execution.engine.collect.InputCollectExpression;
 import io.crate.execution.engine.pipeline.TopN;
@@ -39,17 +42,24 @@ import io.crate.testing.TestingBatchIterators;
 import io.crate.testing.TestingRowConsumer;
 import io.crate.types.DataTypes;
 import org.apache.logging.log4j.LogManager;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static io.crate.testing.TestingHelpers.isRow;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SortingTopNProjectorTest extends CrateUnitTest {
 
@@ -191,4 +201,41 @@ public class SortingTopNProjectorTest extends CrateUnitTest {
         int i = Integer.MAX_VALUE / 2 + 1;
         getProjector(2, i, i);
     }
+
+    @Test
+    public void testUnboundedCollectorSpillsSortedRunsUnderMemoryPressure() throws Exception {
+        CircuitBreaker circuitBreaker = mock(CircuitBreaker.class);
+        when(circuitBreaker.getLimit()).thenReturn(1000L);
+        when(circuitBreaker.getUsed()).thenReturn(1000L);
+        Path spillDirectory = createTempDir();
+        SpillPolicy spillPolicy = new SpillPolicy(spillDirectory, () -> circuitBreaker);
+        BlockBasedRamAccounting ramAccounting = new BlockBasedRamAccounting(
+            bytes -> {}, spillPolicy.ramAccountingBlockSizeInBytes());
+        Projector projector = new SortingTopNProjector(
+            new RowCellsAccountingWithEstimators(List.of(DataTypes.INTEGER, DataTypes.BOOLEAN), ramAccounting, 0),
+            INPUT_LITERAL_LIST,
+            COLLECT_EXPRESSIONS,
+            1,
+            FIRST_CELL_ORDERING,
+            100,
+            10,
+            1,
+            new ExternalSort(
+                spillPolicy, ramAccounting, new Streamer[] { DataTypes.INTEGER, DataTypes.BOOLEAN }, FIRST_CELL_ORDERING)
+        );
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            values.add((i * 7919) % 500);
+        }
+        consumer.accept(projector.apply(TestingBatchIterators.ofValues(values)), null);
+
+        List<Object[]> rows = consumer.getResult();
+        assertThat(rows.size(), is(100));
+        for (int i = 0; i < rows.size(); i++) {
+            assertThat(rows.get(i)[0], is(i + 10));
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
 }
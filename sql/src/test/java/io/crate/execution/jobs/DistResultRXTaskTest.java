@@ -41,6 +41,7 @@ import io.crate.testing.TestingHelpers;
 import io.crate.testing.TestingRowConsumer;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -51,6 +52,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
@@ -100,6 +102,53 @@ public class DistResultRXTaskTest extends CrateUnitTest {
         batchConsumer.getResult();
     }
 
+    @Test
+    public void test_numbered_pages_received_ahead_of_time_are_processed_in_order() throws Throwable {
+        TestingRowConsumer batchConsumer = new TestingRowConsumer();
+        DistResultRXTask ctx = getPageDownstreamContext(
+            batchConsumer,
+            new SortedPagingIterator<>(Comparator.comparingInt(r -> (int) r.get(0)), false),
+            2
+        );
+        PageBucketReceiver bucketReceiver = ctx.getBucketReceiver((byte) 0);
+        assertThat(bucketReceiver, notNullValue());
+
+        List<Boolean> firstPageResponses = new ArrayList<>();
+        List<Boolean> secondPageResponses = new ArrayList<>();
+        Bucket secondPage = new ArrayBucket(new Object[][] { new Object[] { 2 }, new Object[] { 3 } });
+        bucketReceiver.setBucket(0, 1, secondPage, true, secondPageResponses::add);
+        assertThat(secondPageResponses.isEmpty(), is(true));
+
+        Bucket firstPage = new ArrayBucket(new Object[][] { new Object[] { 1 }, new Object[] { 1 } });
+        bucketReceiver.setBucket(0, 0, firstPage, false, firstPageResponses::add);
+        bucketReceiver.setBucket(1, 0, new ArrayBucket(new Object[][] { new Object[] { 4 } }), true, mock(PageResultListener.class));
+
+        List<Object[]> result = batchConsumer.getResult();
+        assertThat(TestingHelpers.printedTable(new CollectionBucket(result)),
+            is("1\n" +
+               "1\n" +
+               "2\n" +
+               "3\n" +
+               "4\n"));
+        assertThat(firstPageResponses, contains(true));
+        assertThat(secondPageResponses, contains(false));
+    }
+
+    @Test
+    public void test_buffered_pages_are_released_on_kill() throws Throwable {
+        TestingRowConsumer batchConsumer = new TestingRowConsumer();
+        DistResultRXTask ctx = getPageDownstreamContext(batchConsumer, PassThroughPagingIterator.oneShot(), 2);
+        PageBucketReceiver bucketReceiver = ctx.getBucketReceiver((byte) 0);
+        assertThat(bucketReceiver, notNullValue());
+
+        PageResultListener bufferedPageListener = mock(PageResultListener.class);
+        bucketReceiver.setBucket(0, 0, Bucket.EMPTY, false, mock(PageResultListener.class));
+        bucketReceiver.setBucket(0, 1, Bucket.EMPTY, false, bufferedPageListener);
+        ctx.kill(new InterruptedException());
+
+        verify(bufferedPageListener, times(1)).needMore(false);
+    }
+
     @Test
     public void testKillCallsDownstream() throws Throwable {
         TestingRowConsumer batchConsumer = new TestingRowConsumer();
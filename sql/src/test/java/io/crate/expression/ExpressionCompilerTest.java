@@ -0,0 +1,160 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.expression;
+
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.data.Input;
+import io.crate.data.Row;
+import io.crate.data.RowN;
+import io.crate.execution.dsl.projection.builder.InputColumns;
+import io.crate.execution.engine.collect.CollectExpression;
+import io.crate.expression.symbol.Symbol;
+import io.crate.metadata.CoordinatorTxnCtx;
+import io.crate.metadata.RelationName;
+import io.crate.metadata.TransactionContext;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SqlExpressions;
+import io.crate.testing.T3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+
+public class ExpressionCompilerTest extends CrateDummyClusterServiceUnitTest {
+
+    private static final List<Object[]> ROWS = Arrays.asList(
+        new Object[] { "foo", 1, 2 },
+        new Object[] { "bar", 10, -3 },
+        new Object[] { null, 3, 0 },
+        new Object[] { "foo", null, 4 },
+        new Object[] { "baz", -7, null },
+        new Object[] { null, null, null },
+        new Object[] { "foo", Integer.MAX_VALUE, 2 }
+    );
+
+    private SqlExpressions expressions;
+    private InputFactory inputFactory;
+    private List<Symbol> columns;
+    private TransactionContext txnCtx = CoordinatorTxnCtx.systemTransactionContext();
+
+    @Before
+    public void prepare() throws Exception {
+        Map<RelationName, AnalyzedRelation> sources = T3.sources(List.of(T3.T1), clusterService);
+        DocTableRelation tr1 = (DocTableRelation) sources.get(T3.T1);
+        expressions = new SqlExpressions(sources, tr1);
+        inputFactory = new InputFactory(expressions.functions());
+        columns = List.of(expressions.asSymbol("a"), expressions.asSymbol("x"), expressions.asSymbol("i"));
+    }
+
+    private Symbol symbol(String expression) {
+        return InputColumns.create(expressions.asSymbol(expression), columns);
+    }
+
+    private static List<Object> evaluate(InputFactory.Context<CollectExpression<Row, ?>> ctx, Input<?> input) {
+        List<Object> results = new ArrayList<>();
+        for (Object[] cells : ROWS) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> expression : ctx.expressions()) {
+                expression.setNextRow(row);
+            }
+            try {
+                results.add(input.value());
+            } catch (IllegalArgumentException e) {
+                results.add(e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    private void assertCompiledResultsMatchInterpreter(String expression) {
+        Symbol symbol = symbol(expression);
+        InputFactory.Context<CollectExpression<Row, ?>> interpretedCtx = inputFactory.ctxForInputColumns(txnCtx);
+        Input<?> interpreted = interpretedCtx.add(symbol);
+
+        InputFactory.Context<CollectExpression<Row, ?>> compiledCtx = inputFactory.ctxForInputColumns(txnCtx);
+        Input<?> compiled = ExpressionCompiler.compile(symbol, compiledCtx);
+        assertThat(compiled, not(instanceOf(FunctionExpression.class)));
+
+        assertThat(expression, evaluate(compiledCtx, compiled), is(evaluate(interpretedCtx, interpreted)));
+    }
+
+    @Test
+    public void testIntegerArithmeticAndComparisons() {
+        assertCompiledResultsMatchInterpreter("x + i * 2");
+        assertCompiledResultsMatchInterpreter("x - i");
+        assertCompiledResultsMatchInterpreter("x / i");
+        assertCompiledResultsMatchInterpreter("x % i");
+        assertCompiledResultsMatchInterpreter("x + i * 2 > 10");
+        assertCompiledResultsMatchInterpreter("x <= i");
+        assertCompiledResultsMatchInterpreter("x = 3");
+    }
+
+    @Test
+    public void testLongAndDoubleArithmetic() {
+        assertCompiledResultsMatchInterpreter("x::bigint * 3 - i");
+        assertCompiledResultsMatchInterpreter("x::bigint * 3 >= i::bigint");
+        assertCompiledResultsMatchInterpreter("x::double precision / i::double precision");
+        assertCompiledResultsMatchInterpreter("x::double precision / i::double precision < 0.5");
+    }
+
+    @Test
+    public void testThreeValuedLogic() {
+        assertCompiledResultsMatchInterpreter("x > 2 and i > 0");
+        assertCompiledResultsMatchInterpreter("x > 2 or i > 0");
+        assertCompiledResultsMatchInterpreter("not (x > 2)");
+        assertCompiledResultsMatchInterpreter("x is null or a = 'foo'");
+        assertCompiledResultsMatchInterpreter("not (a is null) and x + 1 > i");
+    }
+
+    @Test
+    public void testConditionMatchesOnlyTrue() {
+        Symbol symbol = symbol("x > 2 and i > 0");
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx);
+        BooleanSupplier condition = ExpressionCompiler.compileCondition(symbol, ctx);
+        List<Boolean> matches = new ArrayList<>();
+        for (Object[] cells : ROWS) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> expression : ctx.expressions()) {
+                expression.setNextRow(row);
+            }
+            matches.add(condition.getAsBoolean());
+        }
+        assertThat(matches, is(List.of(false, false, false, false, false, false, true)));
+    }
+
+    @Test
+    public void testUnsupportedFunctionsAreInterpreted() {
+        Symbol symbol = symbol("substr(a, 1, 1)");
+        InputFactory.Context<CollectExpression<Row, ?>> ctx = inputFactory.ctxForInputColumns(txnCtx);
+        assertThat(ExpressionCompiler.compile(symbol, ctx), instanceOf(FunctionExpression.class));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.expression.reference.doc.lucene;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SourceParserTest {
+
+    private static final BytesReference SOURCE = new BytesArray(
+        "{" +
+        "  \"x\": 10," +
+        "  \"s\": \"foo\"," +
+        "  \"o\": {\"a\": 1, \"b\": {\"c\": [1, 2]}, \"d\": null}," +
+        "  \"arr\": [{\"a\": 1, \"b\": 2}, {\"a\": 3, \"b\": 4}, 5]" +
+        "}");
+
+    @Test
+    public void testParseWithoutRegisteredColumnsParsesFullSource() {
+        SourceParser sourceParser = new SourceParser();
+        Map<String, Object> map = sourceParser.parse(SOURCE);
+        assertThat(map.keySet().size(), is(4));
+        assertThat(sourceParser.covers(List.of("o", "b")), is(true));
+    }
+
+    @Test
+    public void testParseExtractsOnlyRegisteredColumns() {
+        SourceParser sourceParser = new SourceParser();
+        sourceParser.register(List.of("x"));
+        sourceParser.register(List.of("o", "b"));
+        Map<String, Object> map = sourceParser.parse(SOURCE);
+
+        assertThat(map.toString(), is("{x=10, o={b={c=[1, 2]}}}"));
+        assertThat(sourceParser.covers(List.of("o", "b", "c")), is(true));
+        assertThat(sourceParser.covers(List.of("o")), is(false));
+        assertThat(sourceParser.covers(List.of("s")), is(false));
+    }
+
+    @Test
+    public void testParseExtractsChildColumnsFromArrays() {
+        SourceParser sourceParser = new SourceParser();
+        sourceParser.register(List.of("arr", "b"));
+        Map<String, Object> map = sourceParser.parse(SOURCE);
+
+        assertThat(map.toString(), is("{arr=[{b=2}, {b=4}, 5]}"));
+        assertThat((List<Object>) SourceLookup.extractValue(map, List.of("arr", "b"), 0), contains(2, 4, 5));
+    }
+
+    @Test
+    public void testRegisteringParentColumnIncludesAllChildren() {
+        SourceParser sourceParser = new SourceParser();
+        sourceParser.register(List.of("o", "a"));
+        sourceParser.register(List.of("o"));
+        sourceParser.register(List.of("o", "b"));
+        Map<String, Object> map = sourceParser.parse(SOURCE);
+
+        assertThat(map.toString(), is("{o={a=1, b={c=[1, 2]}, d=null}}"));
+    }
+
+    @Test
+    public void testRegisterAllParsesFullSource() {
+        SourceParser sourceParser = new SourceParser();
+        sourceParser.register(List.of("x"));
+        sourceParser.registerAll();
+        assertThat(sourceParser.parse(SOURCE).keySet().size(), is(4));
+    }
+}
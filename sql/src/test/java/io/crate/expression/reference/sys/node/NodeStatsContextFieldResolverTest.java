@@ -24,6 +24,7 @@ package io.crate.expression.reference.sys.node;
 
 import com.google.common.collect.ImmutableSet;
 import io.crate.execution.engine.collect.NestableCollectExpression;
+import io.crate.execution.engine.collect.QueryResultCacheStats;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.expressions.RowCollectExpressionFactory;
 import io.crate.metadata.sys.SysNodesTableInfo;
@@ -36,6 +37,7 @@ import org.elasticsearch.monitor.MonitorService;
 import org.elasticsearch.monitor.os.OsService;
 import org.elasticsearch.monitor.os.OsStats;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportStats;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -84,7 +86,9 @@ public class NodeStatsContextFieldResolverTest {
             () -> new ConnectionStats(2L, 4L),
             () -> postgresAddress,
             () -> 12L,
-            () -> 1L
+            () -> 1L,
+            () -> new QueryResultCacheStats(3L, 1024L, 10L, 5L, 1L),
+            () -> new TransportStats(12L, 100L, 4096L, 80L, 2048L, 8L, 4000L, 1000L, 5_000_000L)
         );
     }
 
@@ -146,6 +150,48 @@ public class NodeStatsContextFieldResolverTest {
         assertThat(open.value(), is(12L));
     }
 
+    @Test
+    public void testQueryResultCacheHitsCanBeRetrieved() {
+        NodeStatsContext statsContext = resolver.forTopColumnIdents(
+            Collections.singletonList(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE));
+        RowCollectExpressionFactory<NodeStatsContext> expressionFactory =
+            SysNodesTableInfo.create().expressions().get(SysNodesTableInfo.Columns.QUERY_RESULT_CACHE);
+        NestableCollectExpression<NodeStatsContext, ?> expression = expressionFactory.create();
+
+        NestableCollectExpression hits = (NestableCollectExpression) expression.getChild("hits");
+        hits.setNextRow(statsContext);
+        assertThat(hits.value(), is(10L));
+    }
+
+    @Test
+    public void testTransportCompressionStatsCanBeRetrieved() {
+        NodeStatsContext statsContext = resolver.forTopColumnIdents(
+            Collections.singletonList(SysNodesTableInfo.Columns.TRANSPORT_COMPRESSION));
+        RowCollectExpressionFactory<NodeStatsContext> expressionFactory =
+            SysNodesTableInfo.create().expressions().get(SysNodesTableInfo.Columns.TRANSPORT_COMPRESSION);
+        NestableCollectExpression<NodeStatsContext, ?> expression = expressionFactory.create();
+
+        NestableCollectExpression messages = (NestableCollectExpression) expression.getChild("messages");
+        messages.setNextRow(statsContext);
+        assertThat(messages.value(), is(8L));
+
+        NestableCollectExpression uncompressedSize = (NestableCollectExpression) expression.getChild("uncompressed_size");
+        uncompressedSize.setNextRow(statsContext);
+        assertThat(uncompressedSize.value(), is(4000L));
+
+        NestableCollectExpression compressedSize = (NestableCollectExpression) expression.getChild("compressed_size");
+        compressedSize.setNextRow(statsContext);
+        assertThat(compressedSize.value(), is(1000L));
+
+        NestableCollectExpression ratio = (NestableCollectExpression) expression.getChild("ratio");
+        ratio.setNextRow(statsContext);
+        assertThat(ratio.value(), is(4.0));
+
+        NestableCollectExpression time = (NestableCollectExpression) expression.getChild("time");
+        time.setNextRow(statsContext);
+        assertThat(time.value(), is(5L));
+    }
+
     @Test
     public void testColumnIdentsResolution() {
         NodeStatsContext context = resolver.forTopColumnIdents(ImmutableSet.of(
@@ -36,6 +36,7 @@ import org.elasticsearch.monitor.os.OsProbe;
 import org.elasticsearch.monitor.process.ProcessProbe;
 import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportStats;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -85,6 +86,7 @@ public class NodeStatsContextTest extends CrateUnitTest {
         ctx1.extendedOsStats(extendedNodeInfo.osStats());
         ctx1.threadPools(threadPool.stats());
         ctx1.clusterStateVersion(10L);
+        ctx1.transportStats(new TransportStats(2L, 10L, 1024L, 12L, 2048L, 3L, 4000L, 1000L, 150L));
 
         ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
         StreamOutput out = new OutputStreamStreamOutput(outBuffer);
@@ -111,6 +113,10 @@ public class NodeStatsContextTest extends CrateUnitTest {
         assertThat(ctx1.extendedOsStats().uptime(), is(ctx2.extendedOsStats().uptime()));
         assertThat(ctx1.threadPools().iterator().next().getActive(), is(ctx2.threadPools().iterator().next().getActive()));
         assertThat(ctx1.clusterStateVersion(), is(ctx2.clusterStateVersion()));
+        assertThat(ctx2.transportStats().txCompressedCount(), is(3L));
+        assertThat(ctx2.transportStats().txUncompressedSize().getBytes(), is(4000L));
+        assertThat(ctx2.transportStats().txCompressedSize().getBytes(), is(1000L));
+        assertThat(ctx2.transportStats().txCompressionTime().nanos(), is(150L));
     }
 
     @Test
@@ -36,6 +36,7 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
@@ -93,4 +94,29 @@ public class ExplainAnalyzeIntegrationTest extends SQLTransportIntegrationTest {
         }
         assertThat(executeAnalysis.keySet(), hasItems(is("Total"), anyOf(nodeIds.toArray(new Matcher[]{}))));
     }
+
+    @Test
+    public void testExplainAnalyzeShowsTheRuntimeFiltersOfHashJoins() {
+        execute("create table small (id int)");
+        execute("create table large (id int)");
+        execute("insert into small (id) values (1), (2), (3)");
+        Object[][] ids = new Object[1_100][];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = new Object[] { i };
+        }
+        execute("insert into large (id) values (?)", ids);
+        execute("refresh table small, large");
+        execute("analyze");
+
+        execute("explain analyze select * from small join large on small.id = large.id");
+        Map<String, Object> analysis = (Map<String, Object>) response.rows()[0][0];
+        assertThat(analysis.get("Execute"), is(notNullValue()));
+
+        Map<String, Map<String, Object>> runtimeFilters = (Map<String, Map<String, Object>>) analysis.get("RuntimeFilters");
+        assertThat(runtimeFilters.size(), is(1));
+        Map<String, Object> runtimeFilter = runtimeFilters.values().iterator().next();
+        assertThat((String) runtimeFilter.get("filter"), containsString("array_length("));
+        assertThat(runtimeFilter.get("keys"), is(3));
+        assertThat(runtimeFilter.get("overflowed"), is(false));
+    }
 }
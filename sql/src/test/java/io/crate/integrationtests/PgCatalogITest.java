@@ -104,6 +104,7 @@ public class PgCatalogITest extends SQLTransportIntegrationTest {
         assertThat(printedTable(response.rows()), is(
             "search_path| pg_catalog, doc| Sets the schema search order.| NULL| NULL\n" +
             "enable_hashjoin| false| Considers using the Hash Join instead of the Nested Loop Join implementation.| NULL| NULL\n" +
+            "enable_result_cache| true| Enables the use of the query result cache.| NULL| NULL\n" +
             "max_index_keys| 32| Shows the maximum number of index keys.| NULL| NULL\n" +
             "server_version_num| 100500| Reports the emulated PostgreSQL version number| NULL| NULL\n" +
             "server_version| 10.5| Reports the emulated PostgreSQL version number| NULL| NULL\n"
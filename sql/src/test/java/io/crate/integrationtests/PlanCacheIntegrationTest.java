@@ -0,0 +1,76 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.action.sql.SQLOperations;
+import org.junit.Test;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class PlanCacheIntegrationTest extends SQLTransportIntegrationTest {
+
+    private long numCachedPlans() {
+        long numCachedPlans = 0;
+        for (SQLOperations sqlOperations : internalCluster().getInstances(SQLOperations.class)) {
+            numCachedPlans += sqlOperations.planCache().numCachedPlans();
+        }
+        return numCachedPlans;
+    }
+
+    @Test
+    public void testCachedPlanIsExecutedWithTheParametersOfEachExecution() {
+        execute("create table t (id int, name text, p int) clustered by (id) into 2 shards " +
+                "partitioned by (p) with (number_of_replicas = 0)");
+        execute("insert into t (id, name, p) values (1, 'Arthur', 1), (2, 'Trillian', 1), (3, 'Marvin', 2)");
+        execute("refresh table t");
+        ensureYellow();
+
+        String stmt = "select name from t where id = ? or p = ? order by name";
+        execute(stmt, new Object[]{1, 2});
+        assertThat(printedTable(response.rows()), is("Arthur\nMarvin\n"));
+        assertThat(numCachedPlans(), greaterThan(0L));
+
+        execute(stmt, new Object[]{2, 3});
+        assertThat(printedTable(response.rows()), is("Trillian\n"));
+
+        execute(stmt, new Object[]{4, 1});
+        assertThat(printedTable(response.rows()), is("Arthur\nTrillian\n"));
+    }
+
+    @Test
+    public void testCachedGroupByPlanIsExecutedWithTheParametersOfEachExecution() {
+        execute("create table t (id int, name text) clustered by (id) into 2 shards with (number_of_replicas = 0)");
+        execute("insert into t (id, name) values (1, 'Arthur'), (1, 'Arthur'), (2, 'Trillian')");
+        execute("refresh table t");
+
+        String stmt = "select id, count(*) from t where id = ? group by id";
+        execute(stmt, new Object[]{1});
+        assertThat(printedTable(response.rows()), is("1| 2\n"));
+        assertThat(numCachedPlans(), greaterThan(0L));
+
+        execute(stmt, new Object[]{2});
+        assertThat(printedTable(response.rows()), is("2| 1\n"));
+    }
+}
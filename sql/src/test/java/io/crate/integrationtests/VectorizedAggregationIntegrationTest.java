@@ -0,0 +1,100 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.execution.engine.collect.vector.VectorizedGlobalAggregation;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+public class VectorizedAggregationIntegrationTest extends SQLTransportIntegrationTest {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(VectorizedGlobalAggregation.ENABLED_SETTING.getKey(), true)
+            .build();
+    }
+
+    @Before
+    public void createTable() {
+        execute("create table t (i int, l long, d double, f float, ts timestamp with time zone, s string) " +
+                "clustered into 2 shards with (number_of_replicas = 0)");
+        execute("insert into t (i, l, d, f, ts, s) values (1, 10, 0.5, 1.5, 1000, 'a'), (2, null, 1.25, -2.5, 3000, 'a')");
+        refresh();
+        // more than one segment per shard
+        execute("insert into t (i, l, d, f, ts, s) values (null, 30, null, null, 2000, 'b'), (4, 40, 2.0, 0.25, null, 'b')");
+        refresh();
+    }
+
+    @Test
+    public void testGlobalAggregationsOnDocValues() {
+        execute("select count(*), count(l), sum(i), sum(l), sum(d), min(i), max(l), min(f), max(f), min(ts), max(ts) " +
+                "from t");
+        assertThat(printedTable(response.rows()), is("4| 3| 7| 80| 3.75| 1| 40| -2.5| 1.5| 1000| 3000\n"));
+    }
+
+    @Test
+    public void testGlobalAggregationsWithWhereClause() {
+        execute("select count(*), count(l), sum(i), sum(l), sum(d), min(i), max(l), min(f), max(f), min(ts), max(ts) " +
+                "from t where s = 'a'");
+        assertThat(printedTable(response.rows()), is("2| 1| 3| 10| 1.75| 1| 10| -2.5| 1.5| 1000| 3000\n"));
+    }
+
+    @Test
+    public void testGlobalAggregationsWithoutMatchingRows() {
+        execute("select count(*), count(l), sum(l), min(d), max(ts) from t where i > 100");
+        assertThat(printedTable(response.rows()), is("0| 0| NULL| NULL| NULL\n"));
+    }
+
+    @Test
+    public void testGlobalAggregationsIgnoreDeletedRows() {
+        execute("delete from t where i = 4");
+        refresh();
+        execute("select count(*), sum(i), max(l) from t");
+        assertThat(printedTable(response.rows()), is("3| 3| 30\n"));
+    }
+
+    @Test
+    public void testGlobalAggregationsOnArithmeticExpressions() {
+        execute("select sum(i + 1), max(l * 2), min(d - 0.5), sum(l + i) from t");
+        assertThat(printedTable(response.rows()), is("10| 80| 0.0| 55\n"));
+    }
+
+    @Test
+    public void testGlobalAggregationsWithFilter() {
+        execute("select count(*) filter (where l > 15), sum(i) filter (where d >= 1.25 or l is null), " +
+                "count(*) filter (where ts is not null and i < 4), max(l) filter (where i + 1 = 3) from t");
+        assertThat(printedTable(response.rows()), is("2| 6| 2| NULL\n"));
+    }
+
+    @Test
+    public void testUnsupportedAggregationsFallBackToTheRowBasedAggregation() {
+        execute("select avg(i), sum(f), count(s), max(i + 1) from t");
+        assertThat(printedTable(response.rows()), is("2.3333333333333335| -0.75| 4| 5\n"));
+    }
+}
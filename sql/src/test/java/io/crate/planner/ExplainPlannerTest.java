@@ -25,6 +25,7 @@ package io.crate.planner;
 import com.google.common.collect.ImmutableList;
 import io.crate.data.BatchIterator;
 import io.crate.data.Row;
+import io.crate.data.Row1;
 import io.crate.data.RowConsumer;
 import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
 import io.crate.planner.node.management.ExplainPlan;
@@ -50,6 +51,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static io.crate.testing.TestingHelpers.getFunctions;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
 
 public class ExplainPlannerTest extends CrateDummyClusterServiceUnitTest {
 
@@ -109,6 +111,19 @@ public class ExplainPlannerTest extends CrateDummyClusterServiceUnitTest {
         }
     }
 
+    @Test
+    public void testPrinterBindsParameters() {
+        LogicalPlan plan = e.logicalPlan("select id from users where name = ?");
+        Map<String, Object> map = ExplainLogicalPlan.explainMap(
+            plan,
+            e.getPlannerContext(clusterService.state()),
+            new ProjectionBuilder(getFunctions()),
+            new Row1("Arthur"),
+            SubQueryResults.EMPTY);
+        assertThat(map.toString(), containsString("Arthur"));
+        assertThat(map.toString(), not(containsString("$1")));
+    }
+
     @Test
     public void testPrinterToXContent() {
         for (String statement : EXPLAIN_TEST_STATEMENTS) {
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.planner;
+
+import io.crate.analyze.AnalyzedStatement;
+import io.crate.analyze.ParamTypeHints;
+import io.crate.metadata.RelationName;
+import io.crate.statistics.Stats;
+import io.crate.statistics.TableStats;
+import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
+import io.crate.testing.SQLExecutor;
+import io.crate.types.DataTypes;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PlanCacheTest extends CrateDummyClusterServiceUnitTest {
+
+    private SQLExecutor e;
+    private PlanCache planCache;
+    private AtomicInteger numPlanned;
+
+    @Before
+    public void prepare() {
+        e = SQLExecutor.builder(clusterService).build();
+        planCache = new PlanCache(10);
+        numPlanned = new AtomicInteger(0);
+    }
+
+    private Plan getOrPlan(String stmt, ParamTypeHints paramTypeHints, long metaDataVersion) {
+        return getOrPlan(stmt, paramTypeHints, metaDataVersion, 0L);
+    }
+
+    private Plan getOrPlan(String stmt, ParamTypeHints paramTypeHints, long metaDataVersion, long tableStatsVersion) {
+        AnalyzedStatement analyzedStatement = e.analyze(stmt, paramTypeHints);
+        return planCache.getOrPlan(
+            stmt,
+            analyzedStatement,
+            paramTypeHints,
+            e.getSessionContext(),
+            metaDataVersion,
+            tableStatsVersion,
+            () -> {
+                numPlanned.incrementAndGet();
+                return e.plan(stmt);
+            }
+        );
+    }
+
+    @Test
+    public void testParsedStatementIsReused() {
+        String stmt = "select name from sys.cluster where name = ?";
+        assertThat(planCache.parse(stmt), sameInstance(planCache.parse(stmt)));
+    }
+
+    @Test
+    public void testPlanIsReusedForSameStatementAndMetaDataVersion() {
+        String stmt = "select name from sys.cluster where name = ?";
+        Plan plan = getOrPlan(stmt, ParamTypeHints.EMPTY, 1L);
+        assertThat(getOrPlan(stmt, ParamTypeHints.EMPTY, 1L), sameInstance(plan));
+        assertThat(numPlanned.get(), is(1));
+
+        assertThat(getOrPlan(stmt, new ParamTypeHints(List.of(DataTypes.STRING)), 1L), not(sameInstance(plan)));
+        assertThat(getOrPlan(stmt, ParamTypeHints.EMPTY, 2L), not(sameInstance(plan)));
+        assertThat(numPlanned.get(), is(3));
+    }
+
+    @Test
+    public void testPlanIsNotReusedAfterTableStatsUpdate() {
+        TableStats tableStats = new TableStats();
+        String stmt = "select name from sys.cluster";
+        Plan plan = getOrPlan(stmt, ParamTypeHints.EMPTY, 1L, tableStats.version());
+
+        tableStats.updateTableStats(Map.of(new RelationName("doc", "t1"), new Stats(10, 100, Map.of())));
+        assertThat(getOrPlan(stmt, ParamTypeHints.EMPTY, 1L, tableStats.version()), not(sameInstance(plan)));
+        assertThat(numPlanned.get(), is(2));
+    }
+
+    @Test
+    public void testPlansWithNonDeterministicFunctionsAreNotCached() {
+        getOrPlan("select random() from sys.cluster", ParamTypeHints.EMPTY, 1L);
+        getOrPlan("select name from sys.cluster where current_timestamp > 0", ParamTypeHints.EMPTY, 1L);
+        assertThat(planCache.numCachedPlans(), is(0L));
+    }
+
+    @Test
+    public void testPlansWithSubQueriesAreNotCached() {
+        getOrPlan("select name from sys.cluster where name = (select 'crate')", ParamTypeHints.EMPTY, 1L);
+        assertThat(planCache.numCachedPlans(), is(0L));
+    }
+
+    @Test
+    public void testNonSelectOrInsertStatementsAreNotCached() {
+        getOrPlan("set GLOBAL PERSISTENT stats.jobs_log_size = 1024", ParamTypeHints.EMPTY, 1L);
+        assertThat(planCache.numCachedPlans(), is(0L));
+    }
+
+    @Test
+    public void testCacheIsClearedOnMetaDataChange() {
+        getOrPlan("select name from sys.cluster", ParamTypeHints.EMPTY, 1L);
+        assertThat(planCache.numCachedPlans(), is(1L));
+
+        ClusterState currentState = clusterService.state();
+        ClusterState newState = ClusterState.builder(currentState)
+            .metaData(MetaData.builder(currentState.metaData()).version(currentState.metaData().version() + 1))
+            .build();
+        planCache.clusterChanged(new ClusterChangedEvent("metadata changed", newState, currentState));
+        assertThat(planCache.numCachedPlans(), is(0L));
+    }
+
+    @Test
+    public void testCacheWithSizeZeroIsDisabled() {
+        planCache = new PlanCache(0);
+        getOrPlan("select name from sys.cluster", ParamTypeHints.EMPTY, 1L);
+        getOrPlan("select name from sys.cluster", ParamTypeHints.EMPTY, 1L);
+        assertThat(numPlanned.get(), is(2));
+        assertThat(planCache.numCachedPlans(), is(0L));
+    }
+}
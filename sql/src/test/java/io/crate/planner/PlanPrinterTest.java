@@ -82,6 +82,8 @@ public class PlanPrinterTest extends CrateDummyClusterServiceUnitTest {
                                             "on t1.x = t2.y " +
                                             "order by 1");
         assertThat(map.toString(),containsString("joinPhase={HASH_JOIN={type=executionPhas"));
+        // no statistics available
+        assertThat(map.toString(), containsString("estimatedRows=-1, estimatedCost=-1"));
     }
 
     @Test
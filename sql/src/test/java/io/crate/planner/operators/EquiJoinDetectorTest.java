@@ -78,17 +78,33 @@ public class EquiJoinDetectorTest extends CrateDummyClusterServiceUnitTest {
     }
 
     @Test
-    public void testNotPossibleIfNotAnInnerJoin() {
+    public void testNotPossibleOnCrossJoin() {
         assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.CROSS, null), is(false));
+    }
 
+    @Test
+    public void testPossibleOnOuterJoinsContainingEqCondition() {
+        Symbol joinCondition = sqlExpressions.asSymbol("t1.x = t2.y");
+        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.LEFT, joinCondition), is(true));
+        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.RIGHT, joinCondition), is(true));
+        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.FULL, joinCondition), is(true));
+    }
+
+    @Test
+    public void testNotPossibleOnSemiAndAntiJoins() {
+        // ANTI joins need NULL aware semantics for NOT IN, both are executed as nested loop
         Symbol joinCondition = sqlExpressions.asSymbol("t1.x = t2.y");
-        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.LEFT, joinCondition), is(false));
-        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.RIGHT, joinCondition), is(false));
-        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.FULL, joinCondition), is(false));
         assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.ANTI, joinCondition), is(false));
         assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.SEMI, joinCondition), is(false));
     }
 
+    @Test
+    public void testNotPossibleOnOuterJoinWithoutAnyEqCondition() {
+        Symbol joinCondition = sqlExpressions.asSymbol("t1.x > t2.y");
+        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.LEFT, joinCondition), is(false));
+        assertThat(EquiJoinDetector.isHashJoinPossible(JoinType.FULL, joinCondition), is(false));
+    }
+
     @Test
     public void testNotPossibleOnEqWithoutRelationFieldsOnBothSides() {
         Symbol joinCondition = sqlExpressions.asSymbol("t1.x = 4");
@@ -31,11 +31,14 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class JoinOrderingTest {
@@ -79,4 +82,36 @@ public class JoinOrderingTest {
         );
         assertThat(qualifiedNames, contains(T3.T1, T3.T2, T3.T3));
     }
+
+    @Test
+    public void testOrderByEstimatedRowsStartsWithSmallestJoinResult() {
+        // SELECT * FROM t1, t2, t3, t4 WHERE t1.id = t2.id AND t2.id = t3.id AND t3.id = t4.id
+        Map<RelationName, Long> rowsByRelation = new LinkedHashMap<>();
+        rowsByRelation.put(T3.T1, 1_000_000L);
+        rowsByRelation.put(T3.T2, 1_000L);
+        rowsByRelation.put(T3.T3, 100L);
+        rowsByRelation.put(T3.T4, 20L);
+        Map<Set<RelationName>, Double> selectivityByPair = Map.of(
+            Set.of(T3.T1, T3.T2), 0.001,    // 1_000_000 rows
+            Set.of(T3.T2, T3.T3), 0.01,     // 1_000 rows
+            Set.of(T3.T3, T3.T4), 1.0       // 2_000 rows
+        );
+        Collection<RelationName> order = JoinOrdering.orderByEstimatedRows(rowsByRelation, selectivityByPair);
+        // t2 ⋈ t3 -> 1_000 rows, then t4 (20_000 rows) before t1 (1_000_000 rows)
+        assertThat(order, contains(T3.T2, T3.T3, T3.T4, T3.T1));
+    }
+
+    @Test
+    public void testOrderByEstimatedRowsPrefersJoinConditionsOverCrossJoins() {
+        // SELECT * FROM t1, t2, t3 WHERE t1.id = t3.id
+        Map<RelationName, Long> rowsByRelation = new LinkedHashMap<>();
+        rowsByRelation.put(T3.T1, 1_000L);
+        rowsByRelation.put(T3.T2, 1L);
+        rowsByRelation.put(T3.T3, 1_000L);
+        Map<Set<RelationName>, Double> selectivityByPair = Map.of(Set.of(T3.T1, T3.T3), 0.5);
+        Collection<RelationName> order = JoinOrdering.orderByEstimatedRows(rowsByRelation, selectivityByPair);
+        assertThat(order, contains(T3.T1, T3.T3, T3.T2));
+
+        assertThat(JoinOrdering.orderByEstimatedRows(rowsByRelation, Map.of()), is(nullValue()));
+    }
 }
@@ -23,10 +23,19 @@
 package io.crate.planner.operators;
 
 import io.crate.analyze.QueriedSelectRelation;
+import io.crate.analyze.relations.AbstractTableRelation;
+import io.crate.common.collections.Lists2;
 import io.crate.data.Row;
+import io.crate.expression.operator.GtOperator;
+import io.crate.expression.operator.OrOperator;
+import io.crate.expression.operator.any.AnyOperators;
+import io.crate.expression.symbol.SelectSymbol;
+import io.crate.expression.symbol.Symbol;
 import io.crate.execution.dsl.phases.HashJoinPhase;
 import io.crate.execution.dsl.phases.NestedLoopPhase;
+import io.crate.execution.dsl.phases.RoutedCollectPhase;
 import io.crate.execution.dsl.projection.builder.ProjectionBuilder;
+import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.CoordinatorTxnCtx;
 import io.crate.metadata.Functions;
 import io.crate.metadata.Reference;
@@ -39,18 +48,27 @@ import io.crate.planner.SubqueryPlanner;
 import io.crate.planner.node.dql.Collect;
 import io.crate.planner.node.dql.join.Join;
 import io.crate.planner.node.dql.join.JoinType;
+import io.crate.planner.node.management.ExplainPlan;
+import io.crate.planner.optimizer.matcher.Captures;
+import io.crate.planner.optimizer.rule.PushRuntimeFilterBeneathHashJoin;
+import io.crate.statistics.ColumnStats;
+import io.crate.statistics.MostCommonValues;
 import io.crate.statistics.Stats;
 import io.crate.statistics.TableStats;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
 import io.crate.testing.T3;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.Randomness;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -58,14 +76,18 @@ import static io.crate.analyze.TableDefinitions.TEST_DOC_LOCATIONS_TABLE_DEFINIT
 import static io.crate.analyze.TableDefinitions.USER_TABLE_DEFINITION;
 import static io.crate.analyze.TableDefinitions.USER_TABLE_IDENT;
 import static io.crate.planner.operators.LogicalPlannerTest.isPlan;
+import static io.crate.testing.SymbolMatchers.isFunction;
 import static io.crate.testing.SymbolMatchers.isInputColumn;
+import static io.crate.testing.SymbolMatchers.isLiteral;
 import static io.crate.testing.SymbolMatchers.isReference;
 import static io.crate.testing.TestingHelpers.getFunctions;
 import static io.crate.testing.TestingHelpers.isSQL;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 
 public class JoinTest extends CrateDummyClusterServiceUnitTest {
@@ -144,6 +166,7 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
 
     @Test
     public void testNestedLoop_TablesAreSwitchedIfBlockJoinAndRightIsSmallerThanLeft() throws IOException {
+        txnCtx.sessionContext().setHashJoinEnabled(false);
         // blockNL is only possible on single node clusters
         e = SQLExecutor.builder(clusterService)
             .addTable("create table j.left_table (id int)")
@@ -289,11 +312,83 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
     }
 
     @Test
-    public void testMixedHashJoinNestedLoop() {
+    public void testHashJoinIsUsedForOuterEquiJoin() {
         QueriedSelectRelation mss = e.analyze("select * " +
                                               "from t1 inner join t2 on t1.a = t2.b " +
                                               "left join t3 on t3.c = t2.b");
 
+        LogicalPlan operator = createLogicalPlan(mss, new TableStats());
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).joinType(), is(JoinType.LEFT));
+        LogicalPlan leftPlan = ((HashJoin) operator).lhs;
+        assertThat(leftPlan, instanceOf(HashJoin.class));
+
+        Join join = buildJoin(operator);
+        assertThat(join.joinPhase(), instanceOf(HashJoinPhase.class));
+        assertThat(join.joinPhase().joinType(), is(JoinType.LEFT));
+    }
+
+    @Test
+    public void testHashJoinKeepsTopMostLeftRelationForNestedLoopFallback() {
+        QueriedSelectRelation mss = e.analyze("select * " +
+                                              "from t1 inner join t2 on t1.a = t2.b " +
+                                              "left join t3 on t3.c = t2.b");
+
+        HashJoin operator = (HashJoin) createLogicalPlan(mss, new TableStats());
+        assertThat(operator.topMostLeftRelation().relationName().name(), is("t1"));
+        assertThat(operator.concreteRelation().relationName().name(), is("t3"));
+        HashJoin leftJoin = (HashJoin) operator.lhs;
+        assertThat(leftJoin.topMostLeftRelation().relationName().name(), is("t1"));
+        assertThat(leftJoin.concreteRelation().relationName().name(), is("t2"));
+    }
+
+    @Test
+    public void testHashJoin_OuterJoinTypeIsInvertedIfTablesAreSwitched() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "left join locations on users.id = locations.id");
+
+        TableStats tableStats = new TableStats();
+        Map<RelationName, Stats> rowCountByTable = new HashMap<>();
+        rowCountByTable.put(USER_TABLE_IDENT, new Stats(10, 0, Map.of()));
+        rowCountByTable.put(TEST_DOC_LOCATIONS_TABLE_IDENT, new Stats(10_000, 0, Map.of()));
+        tableStats.updateTableStats(rowCountByTable);
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+        assertThat(((HashJoin) operator).joinType(), is(JoinType.LEFT));
+
+        Join join = buildJoin(operator);
+        assertThat(((Reference) ((Collect) join.left()).collectPhase().toCollect().get(0)).ident().tableIdent().name(), is("locations"));
+        assertThat(join.joinPhase().joinType(), is(JoinType.RIGHT));
+    }
+
+    @Test
+    public void testHashJoinPhaseIsGraceHashJoinIfStatisticsAreAvailable() {
+        QueriedSelectRelation mss = e.analyze("select users.name, locations.id " +
+                                              "from users " +
+                                              "join locations on users.id = locations.id");
+
+        HashJoinPhase joinPhase = (HashJoinPhase) buildJoin(createLogicalPlan(mss, new TableStats())).joinPhase();
+        assertThat(joinPhase.graceHashJoin(), is(false));
+
+        TableStats tableStats = new TableStats();
+        Map<RelationName, Stats> rowCountByTable = new HashMap<>();
+        rowCountByTable.put(USER_TABLE_IDENT, new Stats(10, 1000, Map.of()));
+        // the number of partitions depends on the memory of the executing nodes, so even small tables qualify
+        rowCountByTable.put(TEST_DOC_LOCATIONS_TABLE_IDENT, new Stats(10_000, 1_000_000, Map.of()));
+        tableStats.updateTableStats(rowCountByTable);
+
+        joinPhase = (HashJoinPhase) buildJoin(createLogicalPlan(mss, tableStats)).joinPhase();
+        assertThat(joinPhase.graceHashJoin(), is(true));
+    }
+
+    @Test
+    public void testMixedHashJoinNestedLoop() {
+        QueriedSelectRelation mss = e.analyze("select * " +
+                                              "from t1 inner join t2 on t1.a = t2.b " +
+                                              "left join t3 on t3.c > t2.b");
+
         LogicalPlan operator = createLogicalPlan(mss, new TableStats());
         assertThat(operator, instanceOf(NestedLoopJoin.class));
         LogicalPlan leftPlan = ((NestedLoopJoin) operator).lhs;
@@ -511,4 +606,215 @@ public class JoinTest extends CrateDummyClusterServiceUnitTest {
             "]\n";
         assertThat(logicalPlan, is(isPlan(e.functions(), expectedPlan)));
     }
+
+    private static ColumnStats<Integer> intColumnStats(double approxDistinct) {
+        return new ColumnStats<>(
+            0.0, 4, approxDistinct, DataTypes.INTEGER, new MostCommonValues(new Object[0], new double[0]), List.of());
+    }
+
+    @Test
+    public void test_relations_are_ordered_by_estimated_join_rows_if_column_stats_are_available() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 " +
+                                              "join t2 on t1.i = t2.i " +
+                                              "join t3 on t2.y = t3.z");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(100_000, 0, Map.of(new ColumnIdent("i"), intColumnStats(10))),
+            T3.T2, new Stats(1_000, 0, Map.of(
+                new ColumnIdent("i"), intColumnStats(10),
+                new ColumnIdent("y"), intColumnStats(1_000))),
+            T3.T3, new Stats(10_000, 0, Map.of(new ColumnIdent("z"), intColumnStats(10_000)))
+        ));
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        // t1 ⋈ t2 would result in 10_000_000 rows, t2 ⋈ t3 only in 1_000 rows
+        assertThat(Lists2.map(operator.baseTables(), AbstractTableRelation::relationName), contains(T3.T2, T3.T3, T3.T1));
+        assertThat(((HashJoin) operator).lhs.numExpectedRows(), is(1_000L));
+        assertThat(operator.numExpectedRows(), is(10_000_000L));
+
+        Join join = buildJoin(operator);
+        assertThat(join.estimatedRows(), is(10_000_000L));
+        assertThat(join.estimatedCost(), is(2 * (1_000L + 100_000L)));
+    }
+
+    @Test
+    public void test_join_order_is_kept_if_column_stats_are_missing() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 " +
+                                              "join t2 on t1.i = t2.i " +
+                                              "join t3 on t2.y = t3.z");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(100_000, 0, Map.of()),
+            T3.T2, new Stats(1_000, 0, Map.of()),
+            T3.T3, new Stats(10_000, 0, Map.of())
+        ));
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(Lists2.map(operator.baseTables(), AbstractTableRelation::relationName), contains(T3.T1, T3.T2, T3.T3));
+        assertThat(operator.numExpectedRows(), is(100_000L));
+    }
+
+    @Test
+    public void test_nested_loop_is_used_instead_of_hash_join_if_one_side_has_a_single_row() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(1, 0, Map.of()),
+            T3.T2, new Stats(1_000, 0, Map.of())
+        ));
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(NestedLoopJoin.class));
+        Join join = buildJoin(operator);
+        assertThat(join.estimatedCost(), is(1_000L));
+
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(10, 0, Map.of()),
+            T3.T2, new Stats(1_000, 0, Map.of())
+        ));
+        operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+        join = buildJoin(operator);
+        assertThat(join.estimatedCost(), is(2 * (10L + 1_000L)));
+    }
+
+    @Test
+    public void test_hash_join_is_kept_if_the_other_side_is_not_small() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(1, 0, Map.of()),
+            T3.T2, new Stats(10_000, 0, Map.of())
+        ));
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+    }
+
+    @Test
+    public void test_hash_join_is_kept_if_a_table_was_empty_when_it_was_analyzed() {
+        // The stats of t1 may be outdated, the table could contain many rows by now
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(0, 0, Map.of()),
+            T3.T2, new Stats(100, 0, Map.of())
+        ));
+
+        LogicalPlan operator = createLogicalPlan(mss, tableStats);
+        assertThat(operator, instanceOf(HashJoin.class));
+    }
+
+    @Test
+    public void test_join_keys_of_small_side_are_pushed_as_runtime_filter_into_collect_of_large_side() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(10, 0, Map.of()),
+            T3.T2, new Stats(10_000, 0, Map.of())
+        ));
+        HashJoin hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+
+        HashJoin filteredJoin = (HashJoin) new PushRuntimeFilterBeneathHashJoin()
+            .apply(hashJoin, Captures.empty(), tableStats, txnCtx);
+        assertThat(filteredJoin, notNullValue());
+        assertThat(filteredJoin.lhs(), is(hashJoin.lhs()));
+        assertThat(((io.crate.planner.operators.Collect) filteredJoin.rhs()).where().queryOrFallback(),
+            isFunction(
+                OrOperator.NAME,
+                isFunction(AnyOperators.Names.EQ, isReference("i"), instanceOf(SelectSymbol.class)),
+                isFunction(GtOperator.NAME)));
+        assertThat(filteredJoin.runtimeFilters().size(), is(1));
+        LogicalPlan keysPlan = filteredJoin.runtimeFilters().keySet().iterator().next();
+        assertThat(keysPlan.sources().get(0), instanceOf(Limit.class));
+        assertThat(filteredJoin.dependencies(), is(filteredJoin.runtimeFilters()));
+        assertThat(filteredJoin.pruneOutputsExcept(filteredJoin.outputs()).dependencies().size(), is(1));
+    }
+
+    @Test
+    public void test_no_runtime_filter_is_pushed_if_sides_are_of_similar_size_or_stats_are_missing() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(1_000, 0, Map.of()),
+            T3.T2, new Stats(5_000, 0, Map.of())
+        ));
+        HashJoin hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+        PushRuntimeFilterBeneathHashJoin rule = new PushRuntimeFilterBeneathHashJoin();
+        assertThat(rule.apply(hashJoin, Captures.empty(), tableStats, txnCtx), nullValue());
+
+        tableStats = new TableStats();
+        hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+        assertThat(rule.apply(hashJoin, Captures.empty(), tableStats, txnCtx), nullValue());
+    }
+
+    @Test
+    public void test_runtime_filter_is_skipped_if_the_small_side_has_more_keys_than_the_cap() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(10, 0, Map.of()),
+            T3.T2, new Stats(10_000, 0, Map.of())
+        ));
+        HashJoin hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+        HashJoin filteredJoin = (HashJoin) new PushRuntimeFilterBeneathHashJoin()
+            .apply(hashJoin, Captures.empty(), tableStats, txnCtx);
+        var large = (io.crate.planner.operators.Collect) filteredJoin.rhs();
+        SelectSymbol keysSymbol = filteredJoin.runtimeFilters().values().iterator().next();
+
+        // The statistics were outdated, the keys plan returned MAX_KEYS + 1 keys
+        List<Object> tooManyKeys = new ArrayList<>();
+        for (int i = 0; i < 10_001; i++) {
+            tooManyKeys.add(i);
+        }
+        Collect collect = (Collect) large.build(
+            plannerCtx, projectionBuilder, -1, 0, null, null, Row.EMPTY,
+            new SubQueryResults(Map.of(keysSymbol, tooManyKeys)));
+        assertThat(((RoutedCollectPhase) collect.collectPhase()).where(), isLiteral(true));
+
+        collect = (Collect) large.build(
+            plannerCtx, projectionBuilder, -1, 0, null, null, Row.EMPTY,
+            new SubQueryResults(Map.of(keysSymbol, List.of(1, 2, 3))));
+        assertThat(((RoutedCollectPhase) collect.collectPhase()).where(),
+            isFunction(AnyOperators.Names.EQ, isReference("i"), isLiteral(List.of(1, 2, 3))));
+    }
+
+    @Test
+    public void test_runtime_filter_is_shown_in_explain_with_the_number_of_keys_and_whether_it_overflowed() {
+        QueriedSelectRelation mss = e.analyze("select * from t1 join t2 on t1.i = t2.i");
+        TableStats tableStats = new TableStats();
+        tableStats.updateTableStats(Map.of(
+            T3.T1, new Stats(10, 0, Map.of()),
+            T3.T2, new Stats(10_000, 0, Map.of())
+        ));
+        HashJoin hashJoin = (HashJoin) createLogicalPlan(mss, tableStats);
+        HashJoin filteredJoin = (HashJoin) new PushRuntimeFilterBeneathHashJoin()
+            .apply(hashJoin, Captures.empty(), tableStats, txnCtx);
+        SelectSymbol keysSymbol = filteredJoin.runtimeFilters().values().iterator().next();
+        Symbol filter = filteredJoin.runtimeFilter(keysSymbol);
+        assertThat(filter, is(((io.crate.planner.operators.Collect) filteredJoin.rhs()).where().queryOrFallback()));
+        assertThat(hashJoin.runtimeFilter(keysSymbol), nullValue());
+
+        Map<String, Object> explain = ExplainLogicalPlan.explainMap(filteredJoin, plannerCtx, projectionBuilder);
+        Map<String, Object> join = (Map<String, Object>) explain.get("HashJoin");
+        Map<String, Map<String, Object>> runtimeFilters = (Map<String, Map<String, Object>>) join.get("runtimeFilters");
+        Map<String, Object> runtimeFilter = runtimeFilters.get(keysSymbol.toString());
+        assertThat(runtimeFilter.get("filter"), is(filter.toString()));
+        assertThat((String) runtimeFilter.get("filter"), containsString("array_length("));
+        assertThat(runtimeFilter.get("keys"), instanceOf(Map.class));
+
+        Map<String, Object> analyzed = ExplainPlan.explainRuntimeFilters(
+            Map.of(keysSymbol, filteredJoin),
+            new SubQueryResults(Map.of(keysSymbol, new Object[] { 1, 2, 3 })));
+        Map<String, Object> expected = Map.of("filter", filter.toString(), "keys", 3, "overflowed", false);
+        assertThat(analyzed, is(Map.<String, Object>of(keysSymbol.toString(), expected)));
+
+        Object[] tooManyKeys = new Object[(int) PushRuntimeFilterBeneathHashJoin.MAX_KEYS + 1];
+        Arrays.fill(tooManyKeys, 1);
+        analyzed = ExplainPlan.explainRuntimeFilters(
+            Map.of(keysSymbol, filteredJoin),
+            new SubQueryResults(Map.of(keysSymbol, tooManyKeys)));
+        expected = Map.of("filter", filter.toString(), "keys", 10_001, "overflowed", true);
+        assertThat(analyzed, is(Map.<String, Object>of(keysSymbol.toString(), expected)));
+    }
 }
@@ -51,7 +51,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         );
         var expectedPlan =
             "RootBoundary[x, x]\n" +
-            "NestedLoopJoin[\n" +
+            "HashJoin[\n" +
             "    Collect[doc.t1 | [x] | true]\n" +
             "    --- INNER ---\n" +
             "    Collect[doc.t2 | [x] | (x = 10)]\n" +
@@ -68,7 +68,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         var expectedPlan =
             "RootBoundary[x, x]\n" +
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "NestedLoopJoin[\n" +
+            "HashJoin[\n" +
             "    Collect[doc.t1 | [x] | true]\n" +
             "    --- LEFT ---\n" +
             "    Collect[doc.t2 | [x] | true]\n" +
@@ -85,7 +85,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         var expectedPlan =
             "RootBoundary[x, x]\n" +
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "NestedLoopJoin[\n" +
+            "HashJoin[\n" +
             "    Collect[doc.t1 | [x] | (x > 5)]\n" +
             "    --- LEFT ---\n" +
             "    Collect[doc.t2 | [x] | true]\n" +
@@ -102,7 +102,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         var expectedPlan =
             "RootBoundary[x, x]\n" +
             "Filter[(coalesce(x, 10) = 10)]\n" +
-            "NestedLoopJoin[\n" +
+            "HashJoin[\n" +
             "    Collect[doc.t1 | [x] | true]\n" +
             "    --- RIGHT ---\n" +
             "    Collect[doc.t2 | [x] | (x > 5)]\n" +
@@ -119,7 +119,7 @@ public class OuterJoinRewriteTest extends CrateDummyClusterServiceUnitTest {
         var expectedPlan =
             "RootBoundary[x, x]\n" +
             "Filter[((coalesce(x, 10) = 10) AND (x > 5))]\n" +
-            "NestedLoopJoin[\n" +
+            "HashJoin[\n" +
             "    Collect[doc.t1 | [x] | true]\n" +
             "    --- FULL ---\n" +
             "    Collect[doc.t2 | [x] | (x > 5)]\n" +
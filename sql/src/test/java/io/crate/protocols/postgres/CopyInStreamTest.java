@@ -0,0 +1,105 @@
+/*
+ * Licensed to Crate under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.  Crate licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial
+ * agreement.
+ */
+
+package io.crate.protocols.postgres;
+
+import io.crate.test.integration.CrateUnitTest;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CopyInStreamTest extends CrateUnitTest {
+
+    @Test
+    public void testLinesSpanningMultipleMessagesAreReadUntilCopyDone() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyInStream stream = new CopyInStream(channel);
+        stream.add("{\"id\": 1}\n{\"i".getBytes(StandardCharsets.UTF_8));
+        stream.add("d\": 2}\n".getBytes(StandardCharsets.UTF_8));
+        stream.finish();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        assertThat(reader.readLine(), is("{\"id\": 1}"));
+        assertThat(reader.readLine(), is("{\"id\": 2}"));
+        assertThat(reader.readLine(), nullValue());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testAutoReadIsDisabledIfTooMuchDataIsBufferedAndRestoredOnRead() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyInStream stream = new CopyInStream(channel);
+        byte[] chunk = new byte[1024 * 1024];
+        for (int i = 0; i < 5; i++) {
+            stream.add(chunk);
+        }
+        assertThat(channel.config().isAutoRead(), is(false));
+
+        byte[] buffer = new byte[chunk.length];
+        for (int i = 0; i < 4; i++) {
+            assertThat(stream.read(buffer, 0, buffer.length), is(chunk.length));
+        }
+        // 1MB is still buffered
+        assertThat(channel.config().isAutoRead(), is(false));
+        assertThat(stream.read(buffer, 0, buffer.length), is(chunk.length));
+        assertThat(channel.config().isAutoRead(), is(true));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testReadFailsIfClientSentCopyFail() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyInStream stream = new CopyInStream(channel);
+        stream.add("{\"id\": 1}\n".getBytes(StandardCharsets.UTF_8));
+        stream.fail("COPY FROM STDIN failed: aborted by client");
+
+        expectedException.expect(UncheckedIOException.class);
+        expectedException.expectMessage("aborted by client");
+        stream.read(new byte[10], 0, 10);
+    }
+
+    @Test
+    public void testReadOfClosedStreamFailsInsteadOfReturningAPartialLine() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        CopyInStream stream = new CopyInStream(channel);
+        stream.add("{\"id\": 1}\n{\"id\": ".getBytes(StandardCharsets.UTF_8));
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        assertThat(reader.readLine(), is("{\"id\": 1}"));
+        stream.close();
+        try {
+            reader.readLine();
+            fail("readLine must fail if the stream was closed before CopyDone");
+        } catch (UncheckedIOException e) {
+            assertThat(e.getMessage(), containsString("closed"));
+        }
+        channel.finishAndReleaseAll();
+    }
+}
@@ -117,6 +117,21 @@ public class MessagesTest extends CrateUnitTest {
         }
     }
 
+    @Test
+    public void testCommandCompleteOfCursorStatements() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        try {
+            Messages.sendCommandComplete(channel, "declare c1 cursor for select 1", 0);
+            verifyResponse(channel, "DECLARE CURSOR");
+            Messages.sendCommandComplete(channel, "FETCH 10 FROM c1", 7);
+            verifyResponse(channel, "FETCH 7");
+            Messages.sendCommandComplete(channel, "CLOSE c1", 0);
+            verifyResponse(channel, "CLOSE CURSOR");
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
     private static void verifyResponse(EmbeddedChannel channel, String response) {
         byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
         ByteBuf buffer = (ByteBuf) channel.outboundMessages().poll();
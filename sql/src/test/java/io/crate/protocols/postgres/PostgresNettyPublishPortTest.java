@@ -24,6 +24,7 @@ package io.crate.protocols.postgres;
 
 import io.crate.action.sql.SQLOperations;
 import io.crate.auth.AlwaysOKNullAuthentication;
+import io.crate.execution.engine.collect.files.StdinFileInputFactory;
 import io.crate.protocols.ssl.SslContextProvider;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.user.StubUserManager;
@@ -83,7 +84,8 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
             new StubUserManager(),
             networkService,
             new AlwaysOKNullAuthentication(),
-            mock(SslContextProvider.class));
+            mock(SslContextProvider.class),
+            mock(StdinFileInputFactory.class));
         try {
             psql.doStart();
         } finally {
@@ -102,7 +104,8 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
             new StubUserManager(),
             networkService,
             new AlwaysOKNullAuthentication(),
-            mock(SslContextProvider.class));
+            mock(SslContextProvider.class),
+            mock(StdinFileInputFactory.class));
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
@@ -125,7 +128,8 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
             new StubUserManager(),
             networkService,
             new AlwaysOKNullAuthentication(),
-            mock(SslContextProvider.class));
+            mock(SslContextProvider.class),
+            mock(StdinFileInputFactory.class));
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
@@ -148,7 +152,8 @@ public class PostgresNettyPublishPortTest extends CrateUnitTest {
             new StubUserManager(),
             networkService,
             new AlwaysOKNullAuthentication(),
-            mock(SslContextProvider.class));
+            mock(SslContextProvider.class),
+            mock(StdinFileInputFactory.class));
         try {
             psql.doStart();
             fail("Should have failed due to custom hostname");
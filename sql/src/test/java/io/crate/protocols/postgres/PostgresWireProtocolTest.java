@@ -33,9 +33,13 @@ import io.crate.auth.user.AccessControl;
 import io.crate.auth.user.User;
 import io.crate.auth.user.UserManager;
 import io.crate.exceptions.JobKilledException;
+import io.crate.execution.engine.collect.files.StdinFileInputFactory;
 import io.crate.execution.engine.collect.stats.JobsLogs;
 import io.crate.planner.DependencyCarrier;
 import io.crate.protocols.postgres.types.PGTypes;
+import io.crate.sql.tree.CopyFrom;
+import io.crate.sql.tree.CopyTo;
+import io.crate.sql.tree.Expression;
 import io.crate.test.integration.CrateDummyClusterServiceUnitTest;
 import io.crate.testing.SQLExecutor;
 import io.crate.types.DataTypes;
@@ -66,8 +70,10 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isOneOf;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.anyChar;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.any;
@@ -121,7 +127,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 mock(SQLOperations.class),
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -163,7 +170,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         AtomicBoolean flushed = new AtomicBoolean(false);
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler) {
             @Override
@@ -191,7 +199,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -216,7 +225,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
 
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
         {
@@ -273,7 +283,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
 
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
         {
@@ -334,7 +345,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 mock(SQLOperations.class),
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
 
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
@@ -360,7 +372,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
     @Test
     public void testCrateServerVersionIsReceivedOnStartup() throws Exception {
         PostgresWireProtocol ctx = new PostgresWireProtocol(
-            sqlOperations, sessionContext -> AccessControl.DISABLED, new AlwaysOKNullAuthentication(), null);
+            sqlOperations, sessionContext -> AccessControl.DISABLED, new AlwaysOKNullAuthentication(), null,
+            mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buf = Unpooled.buffer();
@@ -414,7 +427,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                         };
                     }
                 },
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf respBuf;
@@ -451,7 +465,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionContext -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         ByteBuf buffer = Unpooled.buffer();
@@ -500,7 +515,8 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
                 sqlOperations,
                 sessionCtx -> AccessControl.DISABLED,
                 new AlwaysOKNullAuthentication(),
-                null);
+                null,
+                mock(StdinFileInputFactory.class));
         channel = new EmbeddedChannel(ctx.decoder, ctx.handler);
 
         if (failure != null) {
@@ -543,6 +559,29 @@ public class PostgresWireProtocolTest extends CrateDummyClusterServiceUnitTest {
         assertThat(responseBytes, is(new byte[]{'R', 0, 0, 0, 8, 0, 0, 0, 0}));
     }
 
+    @Test
+    public void testCopyWithStdioIsDetected() {
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("copy t1 from stdin with (format='csv')"), instanceOf(CopyFrom.class));
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("  COPY t1 (a) TO STDOUT"), instanceOf(CopyTo.class));
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("copy t1 from '/tmp/t1.json'"), nullValue());
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("copy t1 to directory stdout"), nullValue());
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("select * from stdin"), nullValue());
+        assertThat(PostgresWireProtocol.parseCopyWithStdio("copy t1 from"), nullValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSelectForCopyToStdout() {
+        CopyTo<Expression> copyTo = (CopyTo<Expression>) PostgresWireProtocol.parseCopyWithStdio(
+            "copy doc.parted partition (p = 1) (a, b['x']) where a > 10 to stdout");
+        assertThat(
+            PostgresWireProtocol.selectForCopyTo(copyTo),
+            is("SELECT \"a\", \"b\"['x'] FROM \"doc\".\"parted\" WHERE \"p\" = 1 AND ((\"a\" > 10))"));
+
+        copyTo = (CopyTo<Expression>) PostgresWireProtocol.parseCopyWithStdio("copy t1 to stdout");
+        assertThat(PostgresWireProtocol.selectForCopyTo(copyTo), is("SELECT * FROM \"t1\""));
+    }
+
     private static void skipParameterMessages(EmbeddedChannel channel) {
         int messagesToSkip = 0;
         for (Object msg : channel.outboundMessages()) {
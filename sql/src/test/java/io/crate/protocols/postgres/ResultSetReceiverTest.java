@@ -24,32 +24,71 @@ package io.crate.protocols.postgres;
 
 import io.crate.data.Row1;
 import io.crate.types.DataTypes;
-import io.netty.channel.Channel;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
 import org.junit.Test;
-import org.mockito.Answers;
 
 import java.util.Collections;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 public class ResultSetReceiverTest {
 
-    @Test
-    public void testChannelIsPeriodicallyFlushedToAvoidConsumingTooMuchMemory() {
-        Channel channel = mock(Channel.class, Answers.RETURNS_DEEP_STUBS);
-        ResultSetReceiver resultSetReceiver = new ResultSetReceiver(
+    private final EmbeddedChannel channel = new EmbeddedChannel();
+
+    @After
+    public void releaseChannel() {
+        channel.finishAndReleaseAll();
+    }
+
+    private ResultSetReceiver createReceiver() {
+        return new ResultSetReceiver(
             "select * from t",
             channel,
             RuntimeException::new,
             Collections.singletonList(DataTypes.INTEGER),
             null
         );
+    }
+
+    @Test
+    public void testRowsAreWrittenInBatchesFlushedBySize() {
+        ResultSetReceiver resultSetReceiver = createReceiver();
         Row1 row1 = new Row1(1);
-        for (int i = 0; i < 1500; i++) {
+        // 'D' + int32 len + int16 numColumns + int32 valueLen + "1"
+        int rowSize = 1 + 4 + 2 + 4 + 1;
+        int rowsPerBatch = (DataRowWriter.FLUSH_THRESHOLD_IN_BYTES + rowSize - 1) / rowSize;
+        for (int i = 0; i < rowsPerBatch + 10; i++) {
             resultSetReceiver.setNextRow(row1);
         }
-        verify(channel, times(1)).flush();
+        ByteBuf batch = channel.readOutbound();
+        try {
+            assertThat(batch.readableBytes(), is(rowsPerBatch * rowSize));
+            assertThat(batch.readableBytes(), greaterThanOrEqualTo(DataRowWriter.FLUSH_THRESHOLD_IN_BYTES));
+            assertThat((char) batch.getByte(0), is('D'));
+        } finally {
+            batch.release();
+        }
+        // the remaining rows are only written once the result is complete
+        assertThat(channel.readOutbound(), nullValue());
+
+        resultSetReceiver.allFinished(false);
+        channel.flush();
+        ByteBuf remainingRows = channel.readOutbound();
+        try {
+            assertThat(remainingRows.readableBytes(), is(10 * rowSize));
+        } finally {
+            remainingRows.release();
+        }
+        ByteBuf commandComplete = channel.readOutbound();
+        try {
+            assertThat((char) commandComplete.getByte(0), is('C'));
+        } finally {
+            commandComplete.release();
+        }
     }
 }
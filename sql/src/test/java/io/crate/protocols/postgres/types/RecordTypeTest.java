@@ -30,6 +30,8 @@ import org.junit.Test;
 
 import io.crate.data.Row;
 import io.crate.data.RowN;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 public class RecordTypeTest extends BasePGTypeTest<RecordType> {
 
@@ -60,4 +62,17 @@ public class RecordTypeTest extends BasePGTypeTest<RecordType> {
         var str = new String(bytes, StandardCharsets.UTF_8);
         assertThat(str, Matchers.is("(10,\"\",,foo)"));
     }
+
+    @Test
+    public void test_record_null_value_binary_encoding_is_included_in_length() throws Exception {
+        Row record = new RowN(10, "foo", null, "", null);
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            int bytesWritten = pgType.writeAsBinary(buffer, record);
+            assertThat(bytesWritten, Matchers.is(buffer.readableBytes()));
+            assertThat(buffer.readInt(), Matchers.is(buffer.readableBytes()));
+        } finally {
+            buffer.release();
+        }
+    }
 }
@@ -35,14 +35,26 @@ import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.RelationName;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.types.DataTypes;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 
 public class RestActionReceiversTest extends CrateUnitTest {
 
@@ -125,4 +137,126 @@ public class RestActionReceiversTest extends CrateUnitTest {
         String s = Strings.toString(builder.build());
         assertEquals(s, "{\"results\":[{\"rowcount\":1},{\"rowcount\":2},{\"rowcount\":3}]}");
     }
+
+    private RestStreamingResultSetReceiver streamingReceiver(EmbeddedChannel channel,
+                                                             RestStreamingResultSetReceiver.Format format,
+                                                             AtomicInteger numResumes) throws IOException {
+        return new RestStreamingResultSetReceiver(
+            channel,
+            new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK),
+            false,
+            format,
+            fields,
+            0L,
+            new RowAccountingWithEstimators(Symbols.typeView(fields), RamAccounting.NO_ACCOUNTING),
+            true,
+            receiver -> numResumes.incrementAndGet()
+        );
+    }
+
+    /**
+     * Reads the written chunks, asserting that the response head comes first and the last chunk is a LastHttpContent
+     */
+    private static String readStreamedResponse(EmbeddedChannel channel) {
+        assertThat(channel.readOutbound(), instanceOf(HttpResponse.class));
+        StringBuilder content = new StringBuilder();
+        Object msg;
+        Object lastMsg = null;
+        while ((msg = channel.readOutbound()) != null) {
+            HttpContent chunk = (HttpContent) msg;
+            content.append(chunk.content().toString(StandardCharsets.UTF_8));
+            chunk.release();
+            lastMsg = msg;
+        }
+        assertThat(lastMsg, instanceOf(LastHttpContent.class));
+        return content.toString();
+    }
+
+    @Test
+    public void testRestStreamingResultSetReceiverJsonFormat() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicInteger numResumes = new AtomicInteger();
+        RestStreamingResultSetReceiver receiver = streamingReceiver(
+            channel, RestStreamingResultSetReceiver.Format.JSON, numResumes);
+        receiver.setNextRow(rows.get(0));
+        receiver.setNextRow(rows.get(1));
+        receiver.batchFinished();
+        channel.runPendingTasks();
+        assertThat(numResumes.get(), is(1));
+        receiver.setNextRow(rows.get(2));
+        receiver.allFinished(false);
+        assertThat(receiver.completionFuture().isDone(), is(true));
+
+        ResultToXContentBuilder builder = ResultToXContentBuilder.builder(JsonXContent.contentBuilder());
+        builder.cols(fields);
+        builder.colTypes(fields);
+        builder.startRows();
+        for (Row row : rows) {
+            builder.addRow(row, 3);
+        }
+        builder.finishRows();
+        builder.rowCount(rows.size());
+
+        assertEquals(Strings.toString(builder.build()), stripDuration(readStreamedResponse(channel)));
+    }
+
+    @Test
+    public void testRestStreamingResultSetReceiverNdJsonFormat() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RestStreamingResultSetReceiver receiver = streamingReceiver(
+            channel, RestStreamingResultSetReceiver.Format.NDJSON, new AtomicInteger());
+        for (Row row : rows) {
+            receiver.setNextRow(row);
+        }
+        receiver.allFinished(false);
+
+        String header = Strings.toString(
+            ResultToXContentBuilder.builder(JsonXContent.contentBuilder()).cols(fields).colTypes(fields).build());
+        assertEquals(
+            header + "\n" +
+            "[\"foo\",1,true]\n" +
+            "[\"bar\",2,false]\n" +
+            "[\"foobar\",3,null]\n" +
+            "{\"rowcount\":3}\n",
+            stripDuration(readStreamedResponse(channel))
+        );
+    }
+
+    @Test
+    public void testRestStreamingResultSetReceiverResumesOnlyIfChannelIsWritable() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicInteger numResumes = new AtomicInteger();
+        RestStreamingResultSetReceiver receiver = streamingReceiver(
+            channel, RestStreamingResultSetReceiver.Format.JSON, numResumes);
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        receiver.setNextRow(rows.get(0));
+        receiver.batchFinished();
+        channel.runPendingTasks();
+        assertThat(numResumes.get(), is(0));
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        receiver.channelWritable();
+        assertThat(numResumes.get(), is(1));
+        receiver.channelWritable();
+        assertThat(numResumes.get(), is(1));
+    }
+
+    @Test
+    public void testRestStreamingResultSetReceiverFailure() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RestStreamingResultSetReceiver receiver = streamingReceiver(
+            channel, RestStreamingResultSetReceiver.Format.JSON, new AtomicInteger());
+        receiver.fail(new IllegalStateException("dummy"));
+        // nothing has been written yet, so a regular error response can be sent
+        assertThat(receiver.completionFuture().isCompletedExceptionally(), is(true));
+        assertThat(channel.isOpen(), is(true));
+
+        receiver = streamingReceiver(channel, RestStreamingResultSetReceiver.Format.JSON, new AtomicInteger());
+        receiver.setNextRow(rows.get(0));
+        receiver.batchFinished();
+        receiver.fail(new IllegalStateException("dummy"));
+        assertThat(receiver.completionFuture().isCompletedExceptionally(), is(false));
+        assertThat(channel.isOpen(), is(false));
+    }
 }